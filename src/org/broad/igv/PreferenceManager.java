@@ -101,6 +101,9 @@ public class PreferenceManager implements PropertyManager {
     public static final String SAM_BISULFITE_CONTEXT = "SAM.BISULFITE_CONTEXT";
     public static final String SAM_FILTER_FAILED_READS = "SAM.FILTER_FAILED_READS";
     public static final String SAM_COMPUTE_ISIZES = "SAM.COMPUTE_ISIZES";
+    public static final String SAM_SUMMARY_SIDECAR = "SAM.SUMMARY_SIDECAR";
+    public static final String SAM_JUNCTION_INDEX = "SAM.JUNCTION_INDEX";
+    public static final String SAM_PARALLEL_INFLATE = "SAM.PARALLEL_INFLATE";
     public static final String SAM_FLAG_ZERO_QUALITY = "SAM.FLAG_ZERO_QUALITY";
     //dhmay adding 20110208
     public static final String SAM_SHOW_JUNCTION_TRACK = "SAM.SHOW_JUNCTION_TRACK";
@@ -114,9 +117,11 @@ public class PreferenceManager implements PropertyManager {
 
     public static final String SAM_FLAG_LARGE_INSERTIONS = "SAM.FLAG_LARGE_INSERTIONS";
     public static final String SAM_LARGE_INSERTIONS_THRESHOLD = "SAM.LARGE_INSERTIONS_THRESOLD";
+    public static final String SAM_MERGED_READ_AHEAD = "SAM.MERGED_READ_AHEAD";
 
 
     public static final String EXPAND_FEAUTRE_TRACKS = "EXPAND_FEATURE_TRACKS";
+    public static final String FEATURE_DENSITY_SUMMARY = "FEATURE_DENSITY_SUMMARY";
     public static final String PORT_ENABLED = "PORT_ENABLED";
     public static final String PORT_NUMBER = "PORT_NUMBER";
     public static final String COLOR_SCALE_KEY = "COLOR_SCALE_";
@@ -137,6 +142,8 @@ public class PreferenceManager implements PropertyManager {
     final static public String LAST_SNAPSHOT_DIRECTORY = "LAST_SNAPSHOT_DIRECTORY";
     final static public String LAST_GENOME_IMPORT_DIRECTORY = "LAST_GENOME_IMPORT_DIRECTORY";
     final static public String LAST_SESSION_DIRECTORY = "LAST_SESSION_DIRECTORY";
+    final static public String SESSION_LOAD_THREADS = "SESSION.LOAD_THREADS";
+    final static public String SESSION_LOAD_THREADS_PER_HOST = "SESSION.LOAD_THREADS_PER_HOST";
     final static public String DEFAULT_GENOME_KEY = "DEFAULT_GENOME_KEY";
     final static public String LAST_CHROMOSOME_VIEWED_KEY = "LAST_CHROMOSOME_VIEWED_KEY";
     final static public String HISTORY_DELIMITER = ";";
@@ -170,6 +177,7 @@ public class PreferenceManager implements PropertyManager {
     public static final String SHOW_EXPAND_ICON = "SHOW_EXPAND_ICON";
 
     public static final String SHOW_SIZE_WARNING = "SHOW_SIZE_WARNING";
+    public static final String DATASET_CACHE = "DATASET_CACHE";
     public static final String SHOW_GENOME_SERVER_WARNING = "SHOW_GENOME_SERVER_WARNING";
 
     final public static String USE_PROXY = "PROXY.USE";
@@ -927,6 +935,7 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(SHOW_SINGLE_TRACK_PANE_KEY, "false");
         defaultValues.put(PORT_ENABLED, "true");
         defaultValues.put(EXPAND_FEAUTRE_TRACKS, "false");
+        defaultValues.put(FEATURE_DENSITY_SUMMARY, "true");
         defaultValues.put(SHOW_ATTRIBUTE_VIEWS_KEY, "true");
         defaultValues.put(SHOW_MISSING_DATA_KEY, "false");
         defaultValues.put(SHOW_SINGLE_TRACK_PANE_KEY, "false");
@@ -981,6 +990,9 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(SAM_SORT_BY_TAG, "");
         defaultValues.put(SAM_BISULFITE_CONTEXT, "CG");
         defaultValues.put(SAM_COMPUTE_ISIZES, "true");
+        defaultValues.put(SAM_SUMMARY_SIDECAR, "true");
+        defaultValues.put(SAM_JUNCTION_INDEX, "true");
+        defaultValues.put(SAM_PARALLEL_INFLATE, "true");
         defaultValues.put(SAM_FLAG_ZERO_QUALITY, "true");
         defaultValues.put(SAM_SHOW_JUNCTION_TRACK, "false");
         defaultValues.put(SAM_JUNCTION_MIN_FLANKING_WIDTH, "0");
@@ -990,6 +1002,10 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(SAM_COUNT_DELETED_BASES_COVERED, "false");
         defaultValues.put(SAM_FLAG_LARGE_INSERTIONS, "false");
         defaultValues.put(SAM_LARGE_INSERTIONS_THRESHOLD, "1");
+        defaultValues.put(SAM_MERGED_READ_AHEAD, "true");
+
+        defaultValues.put(SESSION_LOAD_THREADS, "8");
+        defaultValues.put(SESSION_LOAD_THREADS_PER_HOST, "4");
 
         defaultValues.put(NORMALIZE_COVERAGE, "false");
 
@@ -1073,6 +1089,7 @@ public class PreferenceManager implements PropertyManager {
         defaultValues.put(DETAILS_BEHAVIOR_KEY, IGVCommandBar.SHOW_DETAILS_BEHAVIOR.HOVER.name());
 
         defaultValues.put(SHOW_SIZE_WARNING, "true");
+        defaultValues.put(DATASET_CACHE, "true");
     }
 
     /**
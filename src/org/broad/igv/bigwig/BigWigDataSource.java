@@ -19,7 +19,8 @@ import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.DataTile;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
-import org.broad.igv.track.FeatureSource;
+import org.broad.igv.track.FeatureTrackUtils;
+import org.broad.igv.track.IndexedFeatureSource;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.color.ColorUtilities;
@@ -36,7 +37,7 @@ import java.util.*;
  * @author jrobinso
  * @date Jun 19, 2011
  */
-public class BigWigDataSource extends AbstractDataSource implements FeatureSource {
+public class BigWigDataSource extends AbstractDataSource implements IndexedFeatureSource<Feature> {
 
     final int screenWidth = 1000; // TODO use actual screen width
 
@@ -358,7 +359,7 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
 
     // Feature interface follows ------------------------------------------------------------------------
 
-    public Iterator getFeatures(String chr, int start, int end) throws IOException {
+    public Iterator<Feature> getFeatures(String chr, int start, int end) throws IOException {
 
         String tmp = chrNameMap.get(chr);
         String querySeq = tmp == null ? chr : tmp;
@@ -366,6 +367,41 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         return new WrappedIterator(bedIterator);
     }
 
+    /**
+     * Query the R+ tree from {@code position} to the end of each chromosome in turn.  Data blocks are decompressed
+     * as the iterator advances, so only the block holding the next feature is read.
+     */
+    public Feature nextFeature(String chr, int position) throws IOException {
+
+        Collection<String> fileChrNames = reader.getChromosomeNames();
+        String nextChr = chr;
+        while (nextChr != null) {
+            String tmp = chrNameMap.get(nextChr);
+            String querySeq = tmp == null ? nextChr : tmp;
+            if (fileChrNames.contains(querySeq)) {
+                int chrLength = Integer.MAX_VALUE;
+                if (genome != null && genome.getChromosome(nextChr) != null) {
+                    chrLength = genome.getChromosome(nextChr).getLength();
+                }
+                Iterator<Feature> iter = new WrappedIterator(
+                        reader.getBigBedIterator(querySeq, Math.max(0, position), querySeq, chrLength, false));
+                while (iter.hasNext()) {
+                    Feature f = iter.next();
+                    if (f.getStart() > position) {
+                        return f;
+                    }
+                }
+            }
+            nextChr = genome == null ? null : genome.getNextChrName(nextChr);
+            position = -1;
+        }
+        return null;
+    }
+
+    public Feature previousFeature(String chr, int position) throws IOException {
+        return FeatureTrackUtils.searchPreviousFeature(this, genome, chr, position);
+    }
+
     public List<LocusScore> getCoverageScores(String chr, int start, int end, int zoom) {
         String tmp = chrNameMap.get(chr);
         String querySeq = tmp == null ? chr : tmp;
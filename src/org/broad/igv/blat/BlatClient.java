@@ -25,6 +25,7 @@ import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.util.HttpUtils;
 import org.broad.igv.util.LongRunningTask;
 import org.broad.igv.util.NamedRunnable;
+import org.broad.tribble.Feature;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -241,7 +242,7 @@ public class BlatClient {
                         MessageUtils.showMessage("No features found");
                     } else {
 
-                        FeatureSource<PSLRecord> source = new FeatureCollectionSource(features, genome);
+                        FeatureSource<Feature> source = new FeatureCollectionSource(features, genome);
                         FeatureTrack newTrack = new FeatureTrack("Blat", "Blat", source);
                         newTrack.setUseScore(true);
                         newTrack.setDisplayMode(Track.DisplayMode.SQUISHED);
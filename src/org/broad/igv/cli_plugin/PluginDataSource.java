@@ -145,4 +145,9 @@ public class PluginDataSource extends AbstractDataSource {
 //    public void setQueryTracker(QueryTracker queryTracker) {
 //        this.pluginFeatureSource.setQueryTracker(queryTracker);
 //    }
+
+    @Override
+    public void dispose() {
+        pluginFeatureSource.clearCache();
+    }
 }
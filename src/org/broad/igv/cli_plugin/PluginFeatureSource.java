@@ -57,7 +57,7 @@ public class PluginFeatureSource<E extends Feature, D extends Feature> extends P
 
     /**
      * Perform the actual combination operation between the constituent data
-     * sources. This implementation re-runs the operation each call.
+     * sources. Results are cached, see {@link PluginSource#getFeatures(String, int, int, int)}.
      *
      * @param chr
      * @param start
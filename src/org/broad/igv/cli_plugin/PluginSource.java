@@ -24,6 +24,7 @@ import org.broad.igv.track.FeatureTrack;
 import org.broad.igv.track.Track;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.RuntimeUtils;
+import org.broad.igv.util.collections.LRUCache;
 import org.broad.tribble.AsciiFeatureCodec;
 import org.broad.tribble.Feature;
 import org.broad.tribble.FeatureCodec;
@@ -39,6 +40,9 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * A feature source which derives its information
@@ -89,7 +93,21 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
     protected String lastRunId;
     private static final String RUN_ID_ATTR = "RUN_ID";
 
-    //private QueryTracker queryTracker = new QueryTracker();
+    private static final int MAX_CACHED_RESULTS = 10;
+
+    /**
+     * Decoded results of previous runs, keyed by {@link #getStateKey(int)}
+     */
+    private final LRUCache<String, CachedResult<D>> resultCache = new LRUCache<String, CachedResult<D>>(this, MAX_CACHED_RESULTS);
+
+    /**
+     * The run in progress, if any
+     */
+    private PendingRun pendingRun;
+
+    private final Object runLock = new Object();
+
+    private volatile PluginWorker worker;
 
     @SubtlyImportant
     protected PluginSource() {
@@ -325,6 +343,10 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
     /**
      * Perform the actual combination operation between the constituent data
      * sources.
+     * <p/>
+     * The plugin is run over an interval wider than the query, and the decoded results are cached.
+     * Later queries within that interval, with the same arguments and input track state, are answered
+     * from the cache.  Queries covered by a run in progress wait for it instead of starting another process.
      *
      * @param chr
      * @param start
@@ -337,52 +359,213 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
             throw new IllegalStateException("Null value for source");
         }
 
-        boolean rerun = true;
-        //synchronized (this.queryTracker){
-        //    rerun = !this.queryTracker.isQuerySame(chr, start, end, zoom);
-        //}
+        String stateKey = getStateKey(zoom);
+        PendingRun run;
+        boolean runHere = false;
+        synchronized (this) {
+            CachedResult<D> cached = resultCache.get(stateKey);
+            if (cached != null && cached.contains(chr, start, end)) {
+                return cached.getFeatures(start, end);
+            }
+            if (pendingRun != null && pendingRun.stateKey.equals(stateKey) && pendingRun.contains(chr, start, end)) {
+                run = pendingRun;
+            } else {
+                int expand = (end - start) / 2;
+                int expandedEnd = (int) Math.min(Integer.MAX_VALUE, (long) end + expand);
+                run = new PendingRun(stateKey, chr, Math.max(0, start - expand), expandedEnd, zoom);
+                pendingRun = run;
+                runHere = true;
+            }
+        }
 
-        /**
-         * A process might generate multiple output files, we only want to run it once.
-         * e.g. Cufflinks generates transcripts.gtf, genes.fpkm_tracking, isoforms.fpkm_tracking
-         * If the file exists we just read from it
-         */
+        if (runHere) {
+            run.task.run();
+        }
 
-        InputStream dataStream = null;
-        if (!rerun) {
-            File inFile = new File(parser.source);
-            if (inFile.canRead()) {
-                //Use the existing file
-                dataStream = new FileInputStream(parser.source);
+        CachedResult<D> result;
+        try {
+            result = run.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for plugin");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            if (runHere) {
+                synchronized (this) {
+                    if (pendingRun == run) pendingRun = null;
+                }
             }
         }
 
-        if (dataStream == null) {
-            //synchronized (this.queryTracker){
-            String[] fullCmd = genFullCommand(chr, start, end, zoom);
-            //log.debug("interval: " + Locus.getFormattedLocusString(chr, start, end));
-            //log.debug(StringUtils.join(fullCmd, " "));
+        if (runHere) {
+            resultCache.put(stateKey, result);
+        }
+        return result.getFeatures(start, end);
+    }
 
-            //Start cli_plugin process
-            Process pr = RuntimeUtils.startExternalProcess(fullCmd, null, null);
+    /**
+     * Run the plugin over the specified interval and decode all of its output.
+     * Runs are serialized, the command generation and decoding share {@link #attributes}.
+     */
+    private List<D> runPlugin(String chr, int start, int end, int zoom) throws IOException {
+        synchronized (runLock) {
+            String[] fullCmd = genFullCommand(chr, start, end, zoom);
 
-            if (parser.source.equals(PluginSpecReader.Parser.SOURCE_STDOUT)) {
-                dataStream = pr.getInputStream();
+            /**
+             * A process might generate multiple output files, we only want to run it once.
+             * e.g. Cufflinks generates transcripts.gtf, genes.fpkm_tracking, isoforms.fpkm_tracking
+             */
+            InputStream dataStream;
+            boolean stdout = parser.source.equals(PluginSpecReader.Parser.SOURCE_STDOUT);
+            if (parser.worker && stdout) {
+                PluginWorker runWorker = worker;
+                if (runWorker == null) {
+                    runWorker = new PluginWorker(commands);
+                    worker = runWorker;
+                }
+                List<String> fullList = Arrays.asList(fullCmd);
+                dataStream = runWorker.query(fullList.subList(commands.size(), fullList.size()));
             } else {
-                try {
-                    pr.waitFor();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                if (parser.worker) {
+                    log.warn("Plugin worker mode requires output on stdout, running a process per query");
                 }
-                dataStream = new FileInputStream(parser.source);
+
+                //Start cli_plugin process
+                Process pr = RuntimeUtils.startExternalProcess(fullCmd, null, null);
+
+                if (stdout) {
+                    dataStream = pr.getInputStream();
+                } else {
+                    try {
+                        pr.waitFor();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                    dataStream = new FileInputStream(parser.source);
+                }
+            }
+
+            //Read back in the data which cli_plugin output
+            try {
+                FeatureDecoder<D> codec = getDecodingCodec();
+                Iterator<D> iter = codec.decodeAll(dataStream, parser.strict);
+                List<D> features = new ArrayList<D>();
+                while (iter.hasNext()) {
+                    features.add(iter.next());
+                }
+                return features;
+            } finally {
+                dataStream.close();
             }
-            //this.queryTracker.setLastQuery(chr, start, end, zoom);
-            //}
         }
-        //Read back in the data which cli_plugin output
-        FeatureDecoder<D> codec = getDecodingCodec();
+    }
 
-        return codec.decodeAll(dataStream, parser.strict);
+    /**
+     * Key identifying everything, other than the interval, which determines the plugin output.  Tracks are identified
+     * by object identity, and alignment tracks also by their loaded intervals, so a reloaded track is a new key.
+     */
+    private String getStateKey(int zoom) {
+        StringBuilder key = new StringBuilder();
+        for (String command : commands) {
+            key.append(command).append('\t');
+        }
+        for (Map.Entry<Argument, Object> entry : arguments.entrySet()) {
+            key.append(entry.getKey().getName()).append('=');
+            appendState(key, entry.getValue());
+            key.append('\t');
+        }
+        key.append(zoom);
+        return key.toString();
+    }
+
+    private static void appendState(StringBuilder key, Object value) {
+        if (value instanceof Track) {
+            key.append(((Track) value).getId()).append('@').append(System.identityHashCode(value));
+            if (value instanceof AlignmentTrack) {
+                for (AlignmentInterval interval : ((AlignmentTrack) value).getDataManager().getAllLoadedIntervals()) {
+                    key.append(':').append(System.identityHashCode(interval));
+                }
+            }
+        } else if (value instanceof List) {
+            for (Object v : (List) value) {
+                appendState(key, v);
+                key.append(',');
+            }
+        } else {
+            key.append(value);
+        }
+    }
+
+    /**
+     * Discard cached results, and stop the worker process if any.  Called when the owning track is disposed.
+     */
+    public void clearCache() {
+        PluginWorker oldWorker;
+        synchronized (this) {
+            resultCache.clear();
+            oldWorker = worker;
+            worker = null;
+        }
+        // Outside the source lock, stopping the worker waits for a query in progress
+        if (oldWorker != null) {
+            oldWorker.destroy();
+        }
+    }
+
+    private class PendingRun {
+        final String stateKey;
+        final String chr;
+        final int start;
+        final int end;
+        final FutureTask<CachedResult<D>> task;
+
+        PendingRun(String stateKey, final String chr, final int start, final int end, final int zoom) {
+            this.stateKey = stateKey;
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.task = new FutureTask<CachedResult<D>>(new Callable<CachedResult<D>>() {
+                public CachedResult<D> call() throws Exception {
+                    return new CachedResult<D>(chr, start, end, runPlugin(chr, start, end, zoom));
+                }
+            });
+        }
+
+        boolean contains(String chr, int start, int end) {
+            return this.chr.equals(chr) && start >= this.start && end <= this.end;
+        }
+    }
+
+    private static class CachedResult<T extends Feature> {
+        final String chr;
+        final int start;
+        final int end;
+        final List<T> features;
+
+        CachedResult(String chr, int start, int end, List<T> features) {
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.features = features;
+        }
+
+        boolean contains(String chr, int start, int end) {
+            return this.chr.equals(chr) && start >= this.start && end <= this.end;
+        }
+
+        Iterator<T> getFeatures(int start, int end) {
+            List<T> overlapping = new ArrayList<T>();
+            for (T f : features) {
+                if (f.getEnd() >= start && f.getStart() <= end) {
+                    overlapping.add(f);
+                }
+            }
+            return overlapping.iterator();
+        }
     }
 
     /**
@@ -596,10 +779,6 @@ public abstract class PluginSource<E extends Feature, D extends Feature> {
         MyMapAdapter.updateTrackReferences(arguments, allTracks);
     }
 
-//    public void setQueryTracker(QueryTracker queryTracker){
-//        this.queryTracker = queryTracker;
-//    }
-
     static class XmlMap {
         public List<Argument> arg =
                 new ArrayList<Argument>();
@@ -432,6 +432,12 @@ public class PluginSpecReader {
         String decodingCodec;
         @XmlAttribute
         String source = SOURCE_STDOUT;
+        /**
+         * If true the tool is started once and serves queries over stdin/stdout.
+         * See {@link PluginWorker}
+         */
+        @XmlAttribute
+        boolean worker;
 
         @XmlElement
         String[] libs;
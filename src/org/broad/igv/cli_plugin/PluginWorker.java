@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.cli_plugin;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.RuntimeUtils;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * A long-lived plugin process which serves many queries, rather than one process per query.
+ * <p/>
+ * The process is started with the tool's command tokens only.  For each query the arguments
+ * (which would otherwise follow the command on the command line) are written to the process's
+ * standard input as a single tab delimited line.  The process writes its results to standard output,
+ * in the format given by the parser, followed by a line containing only {@link #END_OF_RESULT}.
+ * The process should exit when its standard input is closed.
+ * <p/>
+ * If the process exits it is restarted on the next query.
+ */
+class PluginWorker {
+
+    private static Logger log = Logger.getLogger(PluginWorker.class);
+
+    static final String END_OF_RESULT = "#END";
+
+    private final String[] command;
+    private volatile Process process;
+    private Writer toProcess;
+    private BufferedReader fromProcess;
+
+    PluginWorker(List<String> commands) {
+        this.command = commands.toArray(new String[commands.size()]);
+    }
+
+    /**
+     * Send a query to the worker and read back the results
+     *
+     * @param args arguments for this query
+     * @return stream containing the result lines, excluding the terminator
+     * @throws IOException if the worker cannot be started, or exits before completing the query
+     */
+    synchronized InputStream query(List<String> args) throws IOException {
+
+        StringBuilder line = new StringBuilder();
+        for (String arg : args) {
+            if (arg.indexOf('\t') >= 0 || arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Worker arguments cannot contain tabs or line breaks: " + arg);
+            }
+            if (line.length() > 0) line.append('\t');
+            line.append(arg);
+        }
+
+        if (!isAlive()) {
+            start();
+        }
+
+        try {
+            toProcess.write(line.toString());
+            toProcess.write('\n');
+            toProcess.flush();
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            Writer resultWriter = new OutputStreamWriter(result);
+            String nextLine;
+            while ((nextLine = fromProcess.readLine()) != null) {
+                if (nextLine.equals(END_OF_RESULT)) {
+                    resultWriter.close();
+                    return new ByteArrayInputStream(result.toByteArray());
+                }
+                resultWriter.write(nextLine);
+                resultWriter.write('\n');
+            }
+            throw new IOException("Plugin worker exited before completing query: " + line);
+        } catch (IOException e) {
+            destroyProcess();
+            throw e;
+        }
+    }
+
+    private void start() throws IOException {
+        log.info("Starting plugin worker " + command[0]);
+        process = RuntimeUtils.startExternalProcess(command, null, null);
+        toProcess = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+        fromProcess = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    }
+
+    synchronized boolean isAlive() {
+        if (process == null) return false;
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Stop the worker process.  It will be restarted on the next query.
+     */
+    void destroy() {
+        // Kill the process before taking the lock, this ends a query blocked reading its output
+        Process runningProcess = process;
+        if (runningProcess != null) {
+            runningProcess.destroy();
+        }
+        synchronized (this) {
+            destroyProcess();
+        }
+    }
+
+    private void destroyProcess() {
+        if (process != null) {
+            process.destroy();
+            process = null;
+            toProcess = null;
+            fromProcess = null;
+        }
+    }
+}
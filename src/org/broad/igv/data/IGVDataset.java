@@ -15,12 +15,15 @@
  */
 package org.broad.igv.data;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.util.ObjectCache;
 import org.broad.igv.util.ResourceLocator;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +33,8 @@ import java.util.Map;
  */
 public class IGVDataset implements Dataset {
 
+    private static Logger log = Logger.getLogger(IGVDataset.class);
+
     private String name;
 
     private TrackType type = TrackType.OTHER;
@@ -39,6 +44,7 @@ public class IGVDataset implements Dataset {
     private Map<String, ChromosomeSummary> chromosomeSummaries = new LinkedHashMap();
     private GenomeSummaryData genomeSummary;
     private IGVDatasetParser parser;
+    private IGVDatasetCache cache;
     private ObjectCache<String, ChromosomeData> chromsomeDataCache = new ObjectCache(30);
     private float dataMin;
     private float dataMax;
@@ -46,10 +52,30 @@ public class IGVDataset implements Dataset {
     private Map<String, Integer> longestFeatureMap;
 
     public IGVDataset(ResourceLocator locator, Genome genome) {
+        this(locator, genome, IGVDatasetCache.getCacheFile(locator));
+    }
+
+    /**
+     * @param locator
+     * @param genome
+     * @param cacheFile binary cache of the dataset, created if missing or out of date.  If null the text file
+     *                  is read for each chromosome.
+     */
+    IGVDataset(ResourceLocator locator, Genome genome, File cacheFile) {
 
         parser = new IGVDatasetParser(locator, genome);
 
-        List<ChromosomeSummary> summaries = parser.scan(this);
+        if (cacheFile != null) {
+            cache = IGVDatasetCache.open(cacheFile, new File(locator.getPath()), genome);
+        }
+
+        List<ChromosomeSummary> summaries;
+        if (cache != null) {
+            log.debug("Loading dataset from cache " + cacheFile.getAbsolutePath());
+            summaries = parser.scanCache(this, cache);
+        } else {
+            summaries = parser.scan(this, cacheFile);
+        }
 
         if (summaries == null || summaries.size() == 0)
             throw new RuntimeException("Could not find any chromosomes in the dataset on the genome(" + genome.getId() + ")");
@@ -130,7 +156,16 @@ public class IGVDataset implements Dataset {
             }
             //synchronized (sum) {
 
-            cd = parser.loadChromosomeData(sum, dataHeadings);
+            if (cache != null) {
+                try {
+                    cd = cache.loadChromosomeData(chr);
+                } catch (IOException e) {
+                    log.error("Error reading dataset cache", e);
+                    throw new RuntimeException(e);
+                }
+            } else {
+                cd = parser.loadChromosomeData(sum, dataHeadings);
+            }
             chromsomeDataCache.put(chr, cd);
             //}
 
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.ResourceLocator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Binary, column oriented copy of an .igv / .cn dataset, written while the text file is scanned and memory mapped on
+ * subsequent loads.  Loading a chromosome then maps a single block of the file, and the values for a sample are
+ * copied out only when that sample is requested.
+ * <p/>
+ * Layout:
+ * <pre>
+ * header   int magic, int version, long source length, long source modification time, UTF genome id
+ * blocks   one per chromosome:  int[n] starts, int[n] ends (optional), float[nSamples][n] values, UTF[n] probes
+ * index    UTF[] headings, min, max, log normalized flag, then per chromosome its name, row count,
+ *          longest feature and block offsets
+ * trailer  long index position
+ * </pre>
+ * The cache is only used if the source file length and modification time, and the genome (which determines
+ * chromosome aliasing), match those recorded in the header.
+ */
+public class IGVDatasetCache {
+
+    private static Logger log = Logger.getLogger(IGVDatasetCache.class);
+
+    static final int MAGIC = 0x49474443;  // "IGDC"
+    static final int VERSION = 1;
+    static final String EXTENSION = ".cache";
+    static final String CACHE_SUBDIRECTORY = "datasets";
+
+    private File file;
+    private String[] headings;
+    private Map<String, Integer> headingIndexMap;
+    private float dataMin;
+    private float dataMax;
+    private boolean logNormalized;
+    private Map<String, Block> blocks;
+    private Map<String, Integer> longestFeatureMap;
+
+    private IGVDatasetCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the location of the cache for a dataset, or null if the dataset should not be cached
+     */
+    public static File getCacheFile(ResourceLocator locator) {
+        if (!locator.isLocal() ||
+                !PreferenceManager.getInstance().getAsBoolean(PreferenceManager.DATASET_CACHE)) {
+            return null;
+        }
+        File cacheDir = DirectoryManager.getCacheDirectory();
+        if (cacheDir == null) {
+            return null;
+        }
+        File datasetDir = new File(cacheDir, CACHE_SUBDIRECTORY);
+        if (!datasetDir.exists()) {
+            datasetDir.mkdirs();
+        }
+        File source = new File(locator.getPath());
+        // The path hash distinguishes files of the same name in different directories
+        String name = source.getName() + "_" + Integer.toHexString(source.getAbsolutePath().hashCode()) + EXTENSION;
+        return new File(datasetDir, name);
+    }
+
+    /**
+     * Open a cache file.
+     *
+     * @return the cache, or null if it does not exist, is unreadable, or is out of date
+     */
+    public static IGVDatasetCache open(File cacheFile, File source, Genome genome) {
+        if (cacheFile == null || !cacheFile.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(cacheFile, "r");
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION ||
+                    raf.readLong() != source.length() ||
+                    raf.readLong() != source.lastModified() ||
+                    !raf.readUTF().equals(genome.getId())) {
+                return null;
+            }
+
+            raf.seek(raf.length() - 8);
+            raf.seek(raf.readLong());
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(raf.getFD())));
+
+            IGVDatasetCache cache = new IGVDatasetCache(cacheFile);
+            int nHeadings = dis.readInt();
+            cache.headings = new String[nHeadings];
+            cache.headingIndexMap = new HashMap<String, Integer>(nHeadings * 2);
+            for (int i = 0; i < nHeadings; i++) {
+                cache.headings[i] = dis.readUTF();
+                cache.headingIndexMap.put(cache.headings[i], i);
+            }
+            cache.dataMin = dis.readFloat();
+            cache.dataMax = dis.readFloat();
+            cache.logNormalized = dis.readBoolean();
+
+            int nBlocks = dis.readInt();
+            cache.blocks = new LinkedHashMap<String, Block>(nBlocks * 2);
+            cache.longestFeatureMap = new HashMap<String, Integer>(nBlocks * 2);
+            for (int i = 0; i < nBlocks; i++) {
+                Block block = new Block();
+                block.chr = dis.readUTF();
+                block.nRows = dis.readInt();
+                block.hasEndLocations = dis.readBoolean();
+                block.position = dis.readLong();
+                block.probesPosition = dis.readLong();
+                block.end = dis.readLong();
+                block.longestFeature = dis.readInt();
+                // As with the text scan a chromosome split into several runs is represented by its last run
+                cache.blocks.put(block.chr, block);
+                Integer longest = cache.longestFeatureMap.get(block.chr);
+                cache.longestFeatureMap.put(block.chr,
+                        longest == null ? block.longestFeature : Math.max(longest, block.longestFeature));
+            }
+            return cache;
+
+        } catch (IOException e) {
+            log.info("Ignoring unreadable dataset cache: " + cacheFile.getAbsolutePath());
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    log.error("Error closing dataset cache", e);
+                }
+            }
+        }
+    }
+
+    public String[] getHeadings() {
+        return headings;
+    }
+
+    public float getDataMin() {
+        return dataMin;
+    }
+
+    public float getDataMax() {
+        return dataMax;
+    }
+
+    public boolean isLogNormalized() {
+        return logNormalized;
+    }
+
+    public Map<String, Integer> getLongestFeatureMap() {
+        return longestFeatureMap;
+    }
+
+    public Collection<String> getChromosomes() {
+        return blocks.keySet();
+    }
+
+    public int getRowCount(String chr) {
+        Block block = blocks.get(chr);
+        return block == null ? 0 : block.nRows;
+    }
+
+    /**
+     * Map the block for a chromosome.  Locations are read immediately, sample values and probe names when first
+     * requested.
+     *
+     * @return the chromosome data, or null if the chromosome is not in the dataset
+     */
+    public ChromosomeData loadChromosomeData(String chr) throws IOException {
+        Block block = blocks.get(chr);
+        if (block == null) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // The mapping remains valid after the channel is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, block.position, block.end - block.position);
+        } finally {
+            raf.close();
+        }
+
+        CachedChromosomeData cd = new CachedChromosomeData(block, buffer);
+        int n = block.nRows;
+        int[] starts = new int[n];
+        buffer.asIntBuffer().get(starts);
+        cd.setStartLocations(starts);
+        if (block.hasEndLocations) {
+            int[] ends = new int[n];
+            ((ByteBuffer) buffer.duplicate().position(4 * n)).asIntBuffer().get(ends);
+            cd.setEndLocations(ends);
+        }
+        return cd;
+    }
+
+    private class CachedChromosomeData extends ChromosomeData {
+
+        private Block block;
+        private ByteBuffer buffer;
+        private boolean probesLoaded;
+
+        CachedChromosomeData(Block block, ByteBuffer buffer) {
+            super(block.chr);
+            this.block = block;
+            this.buffer = buffer;
+        }
+
+        @Override
+        synchronized float[] getData(String heading) {
+            float[] values = super.getData(heading);
+            if (values == null) {
+                Integer idx = headingIndexMap.get(heading);
+                if (idx == null) {
+                    return null;
+                }
+                int n = block.nRows;
+                int offset = 4 * n * ((block.hasEndLocations ? 2 : 1) + idx);
+                values = new float[n];
+                ((ByteBuffer) buffer.duplicate().position(offset)).asFloatBuffer().get(values);
+                setData(heading, values);
+            }
+            return values;
+        }
+
+        @Override
+        public synchronized String[] getProbes() {
+            if (!probesLoaded) {
+                probesLoaded = true;
+                byte[] bytes = new byte[(int) (block.end - block.probesPosition)];
+                ((ByteBuffer) buffer.duplicate().position((int) (block.probesPosition - block.position))).get(bytes);
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+                String[] probes = new String[block.nRows];
+                try {
+                    for (int i = 0; i < probes.length; i++) {
+                        probes[i] = dis.readUTF();
+                    }
+                } catch (IOException e) {
+                    // Not expected from a byte array
+                    log.error("Error reading probes from dataset cache", e);
+                }
+                setProbes(probes);
+            }
+            return super.getProbes();
+        }
+    }
+
+    private static class Block {
+        String chr;
+        int nRows;
+        boolean hasEndLocations;
+        long position;
+        long probesPosition;
+        long end;
+        int longestFeature;
+    }
+
+    /**
+     * Writes a cache file one chromosome at a time.  Output goes to a temporary file which is renamed by
+     * {@link #finish}, so an incomplete cache is never opened.
+     */
+    public static class Writer {
+
+        private File cacheFile;
+        private File tmpFile;
+        private FileOutputStream fos;
+        private DataOutputStream dos;
+        private String[] headings;
+        private List<Block> blocks = new ArrayList<Block>();
+
+        public Writer(File cacheFile, File source, Genome genome, String[] headings) throws IOException {
+            this.cacheFile = cacheFile;
+            this.tmpFile = new File(cacheFile.getPath() + ".tmp");
+            this.headings = headings;
+            fos = new FileOutputStream(tmpFile);
+            dos = new DataOutputStream(new BufferedOutputStream(fos, 512000));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeLong(source.length());
+            dos.writeLong(source.lastModified());
+            dos.writeUTF(genome.getId());
+        }
+
+        /**
+         * Add the block for one chromosome.
+         *
+         * @param ends   end locations, or null
+         * @param values values, indexed by heading and then row
+         */
+        public void addChromosome(String chr, int[] starts, int[] ends, String[] probes, float[][] values,
+                                  int longestFeature) throws IOException {
+            Block block = new Block();
+            block.chr = chr;
+            block.nRows = starts.length;
+            block.hasEndLocations = ends != null;
+            block.longestFeature = longestFeature;
+            block.position = position();
+
+            for (int s : starts) dos.writeInt(s);
+            if (ends != null) {
+                for (int e : ends) dos.writeInt(e);
+            }
+            for (float[] column : values) {
+                for (float v : column) dos.writeFloat(v);
+            }
+            block.probesPosition = position();
+            for (String p : probes) dos.writeUTF(p == null ? "" : p);
+            block.end = position();
+
+            blocks.add(block);
+        }
+
+        public void finish(float dataMin, float dataMax, boolean logNormalized) throws IOException {
+            long indexPosition = position();
+            dos.writeInt(headings.length);
+            for (String h : headings) dos.writeUTF(h);
+            dos.writeFloat(dataMin);
+            dos.writeFloat(dataMax);
+            dos.writeBoolean(logNormalized);
+            dos.writeInt(blocks.size());
+            for (Block block : blocks) {
+                dos.writeUTF(block.chr);
+                dos.writeInt(block.nRows);
+                dos.writeBoolean(block.hasEndLocations);
+                dos.writeLong(block.position);
+                dos.writeLong(block.probesPosition);
+                dos.writeLong(block.end);
+                dos.writeInt(block.longestFeature);
+            }
+            dos.writeLong(indexPosition);
+            dos.close();
+            dos = null;
+
+            if (cacheFile.exists() && !cacheFile.delete()) {
+                throw new IOException("Could not replace " + cacheFile.getAbsolutePath());
+            }
+            if (!tmpFile.renameTo(cacheFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath());
+            }
+        }
+
+        /**
+         * Discard a partially written cache
+         */
+        public void abort() {
+            if (dos != null) {
+                try {
+                    dos.close();
+                } catch (IOException e) {
+                    // Ignore, the file is deleted
+                }
+                dos = null;
+            }
+            tmpFile.delete();
+        }
+
+        private long position() throws IOException {
+            dos.flush();
+            return fos.getChannel().position();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.AsciiTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.FloatArrayList;
@@ -28,9 +29,9 @@ import org.broad.igv.util.collections.IntArrayList;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 import org.broad.tribble.readers.AsciiLineReader;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -147,6 +148,18 @@ public class IGVDatasetParser {
      * @return
      */
     public List<ChromosomeSummary> scan(IGVDataset dataset) {
+        return scan(dataset, null);
+    }
+
+    /**
+     * Scan the datafile for chromosome breaks, optionally writing a binary cache of the data.
+     *
+     * @param dataset
+     * @param cacheFile the cache to create, or null
+     * @return
+     * @see IGVDatasetCache
+     */
+    public List<ChromosomeSummary> scan(IGVDataset dataset, File cacheFile) {
 
         int estLineCount = ParsingUtils.estimateLineCount(dataResourceLocator.getPath());
         Map<String, Integer> longestFeatureMap = new HashMap();
@@ -154,9 +167,7 @@ public class IGVDatasetParser {
         float dataMin = 0;
         float dataMax = 0;
 
-        InputStream is = null;
-        AsciiLineReader reader = null;
-        String nextLine = null;
+        AsciiTokenizer tokenizer = null;
         ChromosomeSummary chrSummary = null;
         List<ChromosomeSummary> chrSummaries = new ArrayList();
         String[] headings = null;
@@ -165,117 +176,100 @@ public class IGVDatasetParser {
 
         int headerRows = 0;
         int count = 0;
+        IGVDatasetCache.Writer cacheWriter = null;
+        boolean complete = false;
 
         boolean logNormalized;
         try {
 
             int skipColumns = hasCalls ? 2 : 1;
 
-            // BufferedReader reader = ParsingUtils.openBufferedReader(dataResourceLocator);
-            is = ParsingUtils.openInputStreamGZ(dataResourceLocator);
-            reader = new AsciiLineReader(is);
-
-            // Infer datatype from extension.  This can be overriden in the
-            // comment section
-            if (isCopyNumberFileExt(dataResourceLocator.getPath())) {
-                dataset.setTrackType(TrackType.COPY_NUMBER);
-                dataset.getTrackProperties().setWindowingFunction(WindowFunction.mean);
-            } else if (isLOHFileExt(dataResourceLocator.getPath())) {
-                dataset.setTrackType(TrackType.LOH);
-                dataset.getTrackProperties().setWindowingFunction(WindowFunction.mean);
-            } else {
-                dataset.getTrackProperties().setWindowingFunction(WindowFunction.mean);
-            }
+            tokenizer = ParsingUtils.openAsciiTokenizer(dataResourceLocator);
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
 
-            // Parse comments and directives, if any
-            nextLine = reader.readLine();
-            while (nextLine.startsWith("#") || (nextLine.trim().length() == 0)) {
-                headerRows++;
+            headings = parseHeader(tokenizer, dataset);
+            headerRows = tokenizer.getLineNumber() - 1;
 
-                if (nextLine.length() > 0) {
-                    parseDirective(nextLine, dataset);
+            if (cacheFile != null) {
+                try {
+                    cacheWriter = new IGVDatasetCache.Writer(cacheFile, new File(dataResourceLocator.getPath()),
+                            genome, headings);
+                } catch (IOException e) {
+                    log.error("Error creating dataset cache " + cacheFile.getAbsolutePath(), e);
                 }
-                nextLine = reader.readLine();
-            }
-
-            if (chrColumn < 0) {
-                setColumnDefaults();
             }
 
-
-            // Parse column headings
-            String[] data = nextLine.trim().split("\t");
-
-            // Set last data column
-            if (lastDataColumn < 0) {
-                lastDataColumn = data.length - 1;
-            }
-
-            headings = getHeadings(data, skipColumns);
-
-            dataset.setDataHeadings(headings);
-
             // Infer if the data is logNormalized by looking for negative data values.
             // Assume it is not until proven otherwise
             logNormalized = false;
 
-            wgData = new WholeGenomeData(headings);
+            wgData = new WholeGenomeData(headings, cacheWriter != null);
 
             int chrRowCount = 0;
 
             // Update
             int updateCount = 5000;
             long lastPosition = 0;
-            while ((nextLine = reader.readLine()) != null) {
+            // The chromosome name is only materialized when it changes
+            String chrToken = null;
+            String thisChr = null;
+            while (tokenizer.nextLine()) {
 
                 if (igv != null && ++count % updateCount == 0) {
                     igv.setStatusBarMessage("Loaded: " + count + " / " + estLineCount + " (est)");
                 }
                 // Distance since last sample
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
+                int nTokens = tokenizer.getFieldCount();
                 if (nTokens > 0) {
-                    String thisChr = genome.getChromosomeAlias(tokens[chrColumn]);
+                    if (chrToken == null || !tokenizer.fieldEquals(chrColumn, chrToken)) {
+                        chrToken = tokenizer.getString(chrColumn);
+                        thisChr = genome.getChromosomeAlias(chrToken);
+                    }
                     if (chrSummary == null || !thisChr.equals(chrSummary.getName())) {
                         // Update whole genome and previous chromosome summary, unless this is
                         // the first chromosome
                         if (chrSummary != null) {
                             updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
                             chrSummary.setNDataPoints(nRows);
+                            cacheWriter = writeCache(cacheWriter, chrSummary.getName(), wgData, longestFeatureMap);
                         }
 
                         // Shart the next chromosome
                         chrSummary = new ChromosomeSummary(thisChr, lastPosition);
                         chrSummaries.add(chrSummary);
                         nRows = 0;
-                        wgData = new WholeGenomeData(headings);
+                        wgData = new WholeGenomeData(headings, cacheWriter != null);
                         chrRowCount = 0;
 
                     }
-                    lastPosition = reader.getPosition();
+                    lastPosition = tokenizer.getNextLineOffset();
 
                     int location = -1;
                     try {
-                        location = ParsingUtils.parseInt(tokens[startColumn]) - startBase;
+                        location = (int) tokenizer.getDouble(startColumn) - startBase;
 
                     } catch (NumberFormatException numberFormatException) {
-                        log.error("Column " + tokens[startColumn] + " is not a number");
+                        log.error("Column " + tokenizer.getString(startColumn) + " is not a number");
                         throw new ParserException("Column " + (startColumn + 1) +
-                                " must contain an integer value." + " Found: " + tokens[startColumn],
-                                count + headerRows, nextLine);
+                                " must contain an integer value." + " Found: " + tokenizer.getString(startColumn),
+                                count + headerRows, tokenizer.getLine());
                     }
 
                     int length = 1;
                     if (hasEndLocations) {
                         try {
-                            length = ParsingUtils.parseInt(tokens[endColumn].trim()) - location + 1;
+                            int end = (int) tokenizer.getDouble(endColumn);
+                            length = end - location + 1;
+                            if (wgData.endLocations != null) {
+                                wgData.endLocations.add(end);
+                            }
 
                         } catch (NumberFormatException numberFormatException) {
-                            log.error("Column " + tokens[endColumn] + " is not a number");
+                            log.error("Column " + tokenizer.getString(endColumn) + " is not a number");
                             throw new ParserException("Column " + (endColumn + 1) +
-                                    " must contain an integer value." + " Found: " + tokens[endColumn],
-                                    count + headerRows, nextLine);
+                                    " must contain an integer value." + " Found: " + tokenizer.getString(endColumn),
+                                    count + headerRows, tokenizer.getLine());
                         }
                     }
 
@@ -287,11 +281,15 @@ public class IGVDatasetParser {
                     }
 
                     wgData.locations.add(location);
+                    if (wgData.probes != null) {
+                        wgData.probes.add(probeColumn >= 0 && probeColumn < nTokens ?
+                                tokenizer.getString(probeColumn) : "");
+                    }
 
                     for (int idx = 0; idx < headings.length; idx++) {
                         int i = firstDataColumn + idx * skipColumns;
 
-                        float copyNo = i < tokens.length ? readFloat(tokens[i]) : Float.NaN;
+                        float copyNo = i < nTokens ? readFloat(tokenizer, i) : Float.NaN;
 
                         if (!Float.isNaN(copyNo)) {
                             dataMin = Math.min(dataMin, copyNo);
@@ -311,6 +309,7 @@ public class IGVDatasetParser {
             }
 
             dataset.setLongestFeatureMap(longestFeatureMap);
+            complete = true;
 
         } catch (ParserException pe) {
             throw pe;
@@ -320,25 +319,37 @@ public class IGVDatasetParser {
             throw new RuntimeException(e);
         } catch (Exception e) {
             log.error("Exception when loading: " + dataResourceLocator.getPath(), e);
-            if (nextLine != null && (count + headerRows != 0)) {
-                throw new ParserException(e.getMessage(), e, count + headerRows, nextLine);
+            if (tokenizer != null && (count + headerRows != 0)) {
+                throw new ParserException(e.getMessage(), e, count + headerRows, tokenizer.getLine());
             } else {
                 throw new RuntimeException(e);
             }
         } finally {
-            if (is != null) {
+            if (tokenizer != null) {
                 try {
-                    is.close();
+                    tokenizer.close();
                 } catch (IOException e) {
                     log.error("Error closing IGVDataset stream", e);
                 }
             }
+            if (cacheWriter != null && !complete) {
+                cacheWriter.abort();
+            }
         }
 
         // Update last chromosome
         if (chrSummary != null) {
             updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
             chrSummary.setNDataPoints(nRows);
+            cacheWriter = writeCache(cacheWriter, chrSummary.getName(), wgData, longestFeatureMap);
+        }
+        if (cacheWriter != null) {
+            try {
+                cacheWriter.finish(dataMin, dataMax, logNormalized);
+            } catch (IOException e) {
+                log.error("Error writing dataset cache", e);
+                cacheWriter.abort();
+            }
         }
 
         dataset.setLogNormalized(logNormalized);
@@ -348,6 +359,161 @@ public class IGVDatasetParser {
         return chrSummaries;
     }
 
+    /**
+     * Initialize a dataset from its cache.  Only the header of the text file is read, for the directives it
+     * contains.
+     *
+     * @param dataset
+     * @param cache   the dataset cache, previously created by {@link #scan(IGVDataset, java.io.File)}
+     * @return
+     */
+    public List<ChromosomeSummary> scanCache(IGVDataset dataset, IGVDatasetCache cache) {
+
+        AsciiTokenizer tokenizer = null;
+        try {
+            tokenizer = ParsingUtils.openAsciiTokenizer(dataResourceLocator);
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
+            parseHeader(tokenizer, dataset);
+        } catch (ParserException pe) {
+            throw pe;
+        } catch (IOException e) {
+            log.error("Exception when loading: " + dataResourceLocator.getPath(), e);
+            throw new RuntimeException(e);
+        } finally {
+            if (tokenizer != null) {
+                try {
+                    tokenizer.close();
+                } catch (IOException e) {
+                    log.error("Error closing IGVDataset stream", e);
+                }
+            }
+        }
+
+        String[] headings = cache.getHeadings();
+        dataset.setDataHeadings(headings);
+        dataset.setLongestFeatureMap(cache.getLongestFeatureMap());
+        dataset.setLogNormalized(cache.isLogNormalized());
+        dataset.setDataMin(cache.getDataMin());
+        dataset.setDataMax(cache.getDataMax());
+
+        List<ChromosomeSummary> chrSummaries = new ArrayList();
+        for (String chr : cache.getChromosomes()) {
+            ChromosomeSummary chrSummary = new ChromosomeSummary(chr, -1);
+            chrSummary.setNDataPoints(cache.getRowCount(chr));
+            chrSummaries.add(chrSummary);
+        }
+
+        if (genome.getHomeChromosome().equals(Globals.CHR_ALL)) {
+            for (String chr : cache.getChromosomes()) {
+                try {
+                    ChromosomeData cd = cache.loadChromosomeData(chr);
+                    if (cd.getStartLocations().length == 0) continue;
+
+                    Map<String, float[]> data = new HashMap(headings.length);
+                    for (String h : headings) {
+                        data.put(h, cd.getData(h));
+                    }
+                    GenomeSummaryData genomeSummary = dataset.getGenomeSummary();
+                    if (genomeSummary == null) {
+                        genomeSummary = new GenomeSummaryData(genome, headings);
+                        dataset.setGenomeSummary(genomeSummary);
+                    }
+                    genomeSummary.addData(chr, cd.getStartLocations(), data);
+                } catch (IOException e) {
+                    log.error("Error reading dataset cache", e);
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        return chrSummaries;
+    }
+
+    /**
+     * Parse the comment lines, directives, and column headings at the start of the file.
+     *
+     * @param tokenizer
+     * @param dataset
+     * @return the data headings
+     */
+    private String[] parseHeader(AsciiTokenizer tokenizer, IGVDataset dataset) throws IOException {
+
+        int skipColumns = hasCalls ? 2 : 1;
+
+        // Infer datatype from extension.  This can be overriden in the
+        // comment section
+        if (isCopyNumberFileExt(dataResourceLocator.getPath())) {
+            dataset.setTrackType(TrackType.COPY_NUMBER);
+            dataset.getTrackProperties().setWindowingFunction(WindowFunction.mean);
+        } else if (isLOHFileExt(dataResourceLocator.getPath())) {
+            dataset.setTrackType(TrackType.LOH);
+            dataset.getTrackProperties().setWindowingFunction(WindowFunction.mean);
+        } else {
+            dataset.getTrackProperties().setWindowingFunction(WindowFunction.mean);
+        }
+
+        // Parse comments and directives, if any
+        int headerRows = 0;
+        boolean hasLine = tokenizer.nextLine();
+        while (hasLine && (tokenizer.startsWith("#") || tokenizer.isBlank())) {
+            headerRows++;
+
+            if (tokenizer.startsWith("#")) {
+                parseDirective(tokenizer.getLine(), dataset);
+            }
+            hasLine = tokenizer.nextLine();
+        }
+        if (!hasLine) {
+            throw new ParserException("No column headings found", headerRows);
+        }
+
+        if (chrColumn < 0) {
+            setColumnDefaults();
+        }
+
+
+        // Parse column headings
+        String[] data = tokenizer.getLine().trim().split("\t");
+
+        // Set last data column
+        if (lastDataColumn < 0) {
+            lastDataColumn = data.length - 1;
+        }
+
+        String[] headings = getHeadings(data, skipColumns);
+
+        dataset.setDataHeadings(headings);
+        return headings;
+    }
+
+    /**
+     * Add a chromosome to the cache.  A write error abandons the cache, it does not affect loading.
+     *
+     * @return the writer, or null if the cache has been abandoned
+     */
+    private IGVDatasetCache.Writer writeCache(IGVDatasetCache.Writer cacheWriter, String chr, WholeGenomeData wgData,
+                                              Map<String, Integer> longestFeatureMap) {
+        if (cacheWriter == null) {
+            return null;
+        }
+        try {
+            float[][] values = new float[wgData.headings.length][];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = wgData.data.get(wgData.headings[i]).toArray();
+            }
+            Integer longestFeature = longestFeatureMap.get(chr);
+            cacheWriter.addChromosome(chr, wgData.locations.toArray(),
+                    wgData.endLocations == null ? null : wgData.endLocations.toArray(),
+                    wgData.probes.toArray(new String[wgData.probes.size()]), values,
+                    longestFeature == null ? 1 : longestFeature);
+            return cacheWriter;
+        } catch (IOException e) {
+            log.error("Error writing dataset cache", e);
+            cacheWriter.abort();
+            return null;
+        }
+    }
+
     private void updateLongestFeature(Map<String, Integer> longestFeatureMap, String thisChr, int length) {
         if (longestFeatureMap.containsKey(thisChr)) {
             longestFeatureMap.put(thisChr, Math.max(longestFeatureMap.get(thisChr), length));
@@ -356,13 +522,10 @@ public class IGVDatasetParser {
         }
     }
 
-    private float readFloat(String token) {
+    private float readFloat(AsciiTokenizer tokenizer, int field) {
         float copyNo = Float.NaN;
         try {
-            if (token != null) {
-                copyNo = Float.parseFloat(token);
-            }
-
+            copyNo = tokenizer.getFloat(field);
         } catch (NumberFormatException e) {
             // This is an expected condition.
         }
@@ -388,7 +551,8 @@ public class IGVDatasetParser {
 
             SeekableStream is = IGVSeekableStreamFactory.getStreamFor(dataResourceLocator.getPath());
             is.seek(chrSummary.getStartPosition());
-            AsciiLineReader reader = new AsciiLineReader(is);
+            AsciiTokenizer tokenizer = new AsciiTokenizer(is);
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
 
 
             // Create containers to hold data
@@ -404,57 +568,60 @@ public class IGVDatasetParser {
             // Begin loop through rows
             String chromosome = chrSummary.getName();
             boolean chromosomeStarted = false;
-            String nextLine = reader.readLine();
+            String chrToken = null;
+            boolean chrMatches = false;
 
-            while ((nextLine != null) && (nextLine.trim().length() > 0)) {
+            try {
+                while (tokenizer.nextLine() && !tokenizer.isBlank()) {
 
-                if (!nextLine.startsWith("#")) {
-                    try {
-                        String[] tokens = Globals.tabPattern.split(nextLine, -1);
+                    if (!tokenizer.startsWith("#")) {
+                        try {
+                            // The chromosome name is only materialized when it changes
+                            if (chrToken == null || !tokenizer.fieldEquals(chrColumn, chrToken)) {
+                                chrToken = tokenizer.getString(chrColumn);
+                                chrMatches = genome.getChromosomeAlias(chrToken).equals(chromosome);
+                            }
+                            if (chrMatches) {
+                                chromosomeStarted = true;
 
-                        String thisChromosome = genome.getChromosomeAlias(tokens[chrColumn].trim());
-                        if (thisChromosome.equals(chromosome)) {
-                            chromosomeStarted = true;
+                                // chromosomeData.setMarkerId(nRows, tokens[0]);
 
-                            // chromosomeData.setMarkerId(nRows, tokens[0]);
+                                probes.add(tokenizer.getString(probeColumn));
 
-                            // The probe.  A new string is created to prevent holding on to the entire row through a substring reference
-                            String probe = new String(tokens[probeColumn]);
-                            probes.add(probe);
+                                int start = (int) tokenizer.getDouble(startColumn) - startBase;
+                                if (hasEndLocations) {
+                                    endLocations.add((int) tokenizer.getDouble(endColumn));
+                                }
 
-                            int start = ParsingUtils.parseInt(tokens[startColumn].trim()) - startBase;
-                            if (hasEndLocations) {
-                                endLocations.add(ParsingUtils.parseInt(tokens[endColumn].trim()));
-                            }
+                                startLocations.add(start);
 
-                            startLocations.add(start);
+                                if (tokenizer.getFieldCount() <= firstDataColumn + (dataHeaders.length - 1) * skipColumns) {
+                                    String msg = "Line has too few data columns: " + tokenizer.getLine();
+                                    log.error(msg);
+                                    throw new RuntimeException(msg);
+                                }
+
+                                for (int idx = 0; idx < dataHeaders.length; idx++) {
+                                    int i = firstDataColumn + idx * skipColumns;
+                                    float copyNo = i <= lastDataColumn ? readFloat(tokenizer, i) : Float.NaN;
+                                    String heading = dataHeaders[idx];
+                                    dataMap.get(heading).add(copyNo);
+                                }
 
-                            if(tokens.length <= firstDataColumn + (dataHeaders.length - 1)*skipColumns){
-                                String msg = "Line has too few data columns: " + nextLine;
-                                log.error(msg);
-                                throw new RuntimeException(msg);
-                            }
 
-                            for (int idx = 0; idx < dataHeaders.length; idx++) {
-                                int i = firstDataColumn + idx * skipColumns;
-                                float copyNo = i <= lastDataColumn ? readFloat(tokens[i]) : Float.NaN;
-                                String heading = dataHeaders[idx];
-                                dataMap.get(heading).add(copyNo);
+                            } else if (chromosomeStarted) {
+                                break;
                             }
 
+                        } catch (NumberFormatException numberFormatException) {
 
-                        } else if (chromosomeStarted) {
-                            break;
+                            // Skip line
+                            log.info("Skipping line (NumberFormatException) " + tokenizer.getLine());
                         }
-
-                    } catch (NumberFormatException numberFormatException) {
-
-                        // Skip line
-                        log.info("Skipping line (NumberFormatException) " + nextLine);
                     }
                 }
-
-                nextLine = reader.readLine();
+            } finally {
+                tokenizer.close();
             }
 
             // Loop complete
@@ -669,11 +836,21 @@ public class IGVDatasetParser {
         IntArrayList locations = new IntArrayList(50000);
         Map<String, FloatArrayList> data = new HashMap();
 
-        WholeGenomeData(String[] headings) {
+        /**
+         * End locations and probe names, only collected when writing a cache
+         */
+        IntArrayList endLocations;
+        List<String> probes;
+
+        WholeGenomeData(String[] headings, boolean collectAll) {
             this.headings = headings;
             for (String h : headings) {
                 data.put(h, new FloatArrayList(50000));
             }
+            if (collectAll) {
+                endLocations = hasEndLocations ? new IntArrayList(50000) : null;
+                probes = new ArrayList<String>(50000);
+            }
         }
 
         int size() {
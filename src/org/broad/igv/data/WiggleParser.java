@@ -12,18 +12,18 @@ package org.broad.igv.data;
 
 import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.AsciiTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.DownsampledDoubleArrayList;
 import org.broad.igv.util.collections.FloatArrayList;
 import org.broad.igv.util.collections.IntArrayList;
-import org.broad.tribble.readers.AsciiLineReader;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -129,63 +129,59 @@ public class WiggleParser {
         initializeDataHolders();
         unsortedChromosomes = new HashSet();
 
-        AsciiLineReader reader = null;
-        String nextLine = null;
+        AsciiTokenizer tokenizer = null;
         int lineNumber = 0;
         float[] dataArray = null;
 
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            tokenizer = ParsingUtils.openAsciiTokenizer(locator);
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB_OR_SPACES);
 
             if (type == Type.EXPR) {
-                reader.readLine(); // Skip header line
+                tokenizer.nextLine(); // Skip header line
             }
 
             int position = -1;
 
-            while ((nextLine = reader.readLine()) != null) {
+            while (tokenizer.nextLine()) {
                 lineNumber++;
 
-                if (nextLine.startsWith("#") || nextLine.startsWith("data") || nextLine.startsWith("browser") || nextLine.trim().length() == 0) {
+                if (tokenizer.startsWith("#") || tokenizer.startsWith("data") || tokenizer.startsWith("browser") || tokenizer.isBlank()) {
                     continue;
                     // Skip
                 }
 
 
-                if (nextLine.startsWith("track") && type != Type.CPG) {
+                if (tokenizer.startsWith("track") && type != Type.CPG) {
                     type = Type.BED_GRAPH;
-                    ParsingUtils.parseTrackLine(nextLine, dataset.getTrackProperties());
+                    ParsingUtils.parseTrackLine(tokenizer.getLine(), dataset.getTrackProperties());
                     if (dataset.getTrackProperties().getBaseCoord() == TrackProperties.BaseCoord.ZERO) {
                         this.startBase = 0;
                     }
 
-                } else if (nextLine.startsWith("fixedStep")) {
+                } else if (tokenizer.startsWith("fixedStep")) {
                     type = Type.FIXED;
-                    parseStepLine(nextLine);
+                    parseStepLine(tokenizer.getLine());
                     position = start;
                     if (start < lastPosition) {
                         unsortedChromosomes.add(chr);
                     }
 
-                } else if (nextLine.startsWith("variableStep")) {
+                } else if (tokenizer.startsWith("variableStep")) {
                     type = Type.VARIABLE;
-                    parseStepLine(nextLine);
+                    parseStepLine(tokenizer.getLine());
                     if (start < lastPosition) {
                         unsortedChromosomes.add(chr);
                     }
 
                 } else {
-                    // Must be data
-                    String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-                    int nTokens = tokens.length;
-                    if (nTokens == 0) {
-                        continue;
-                    }
+                    // Must be data.  Fields are parsed in place, chromosome names are only materialized when they change.
+                    int nTokens = tokenizer.getFieldCount();
                     try {
                         if (type.equals(Type.CPG)) {
 
                             if (nTokens > 3) {
-                                chr = tokens[1].trim();
+                                chr = (lastChr != null && tokenizer.fieldEquals(1, lastChr)) ? lastChr : tokenizer.getString(1);
                                 if (!chr.equals(lastChr)) {
                                     changedChromosome(dataset, lastChr);
 
@@ -194,12 +190,12 @@ public class WiggleParser {
 
                                 int endPosition = -1;
                                 try {
-                                    endPosition = Integer.parseInt(tokens[2].trim());
+                                    endPosition = tokenizer.getInt(2);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column 2 is not a number");
 
-                                    throw new ParserException("Column 2 must be numeric." + " Found: " + tokens[1],
-                                            lineNumber, nextLine);
+                                    throw new ParserException("Column 2 must be numeric." + " Found: " + tokenizer.getString(1),
+                                            lineNumber, tokenizer.getLine());
                                 }
                                 int startPosition = endPosition - 1;
 
@@ -208,8 +204,8 @@ public class WiggleParser {
                                 }
                                 lastPosition = startPosition;
 
-                                float value = Float.parseFloat(tokens[4].trim());
-                                if (tokens[3].trim().equals("R")) {
+                                float value = tokenizer.getFloat(4);
+                                if (tokenizer.fieldEquals(3, "R")) {
                                     value = -value;
                                 }
 
@@ -218,7 +214,7 @@ public class WiggleParser {
                         } else if (type.equals(Type.BED_GRAPH) || type.equals(Type.EXPR)) {
 
                             if (nTokens > 3) {
-                                chr = tokens[chrColumn].trim();
+                                chr = (lastChr != null && tokenizer.fieldEquals(chrColumn, lastChr)) ? lastChr : tokenizer.getString(chrColumn);
                                 if (!chr.equals(lastChr)) {
                                     changedChromosome(dataset, lastChr);
 
@@ -227,13 +223,13 @@ public class WiggleParser {
 
                                 int startPosition = -1;
                                 try {
-                                    startPosition = Integer.parseInt(tokens[startColumn].trim());
+                                    startPosition = tokenizer.getInt(startColumn);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column " + (startColumn + 1) + "  is not a number");
 
                                     throw new ParserException("Column (startColumn + 1) must be numeric." + " Found: " +
-                                            tokens[startColumn],
-                                            lineNumber, nextLine);
+                                            tokenizer.getString(startColumn),
+                                            lineNumber, tokenizer.getLine());
                                 }
 
                                 if (startPosition < lastPosition) {
@@ -244,32 +240,32 @@ public class WiggleParser {
 
                                 int endPosition = -1;
                                 try {
-                                    endPosition = Integer.parseInt(tokens[endColumn].trim());
+                                    endPosition = tokenizer.getInt(endColumn);
                                     int length = endPosition - startPosition;
                                     updateLongestFeature(length);
                                 } catch (NumberFormatException numberFormatException) {
                                     log.error("Column " + (endColumn + 1) + " is not a number");
 
                                     throw new ParserException("Column " + (endColumn + 1) +
-                                            " must be numeric." + " Found: " + tokens[endColumn],
-                                            lineNumber, nextLine);
+                                            " must be numeric." + " Found: " + tokenizer.getString(endColumn),
+                                            lineNumber, tokenizer.getLine());
                                 }
 
-                                addData(chr, startPosition, endPosition, Float.parseFloat(tokens[dataColumn].trim()));
+                                addData(chr, startPosition, endPosition, tokenizer.getFloat(dataColumn));
                             }
                         } else if (type.equals(Type.VARIABLE)) {
                             if (nTokens > 1) {
 
                                 // Per UCSC specification variable and fixed step coordinates are "1" based.
                                 // We need to subtract 1 to convert to the internal "zero" based coordinates.
-                                int startPosition = Integer.parseInt(tokens[0]) - 1;
+                                int startPosition = tokenizer.getInt(0) - 1;
                                 if (startPosition < lastPosition) {
                                     unsortedChromosomes.add(chr);
                                 }
                                 lastPosition = startPosition;
 
                                 int endPosition = startPosition + windowSpan;
-                                addData(chr, startPosition, endPosition, Float.parseFloat(tokens[1]));
+                                addData(chr, startPosition, endPosition, tokenizer.getFloat(1));
                             }
                         } else {    // Fixed step -- sorting is checked when step line is parsed
                             if (position >= 0) {
@@ -277,7 +273,7 @@ public class WiggleParser {
                                     dataArray = new float[nTokens];
                                 }
                                 for (int ii = 0; ii < dataArray.length; ii++) {
-                                    dataArray[ii] = Float.parseFloat(tokens[ii].trim());
+                                    dataArray[ii] = tokenizer.getFloat(ii);
                                 }
                                 int endPosition = position + windowSpan;
                                 addData(chr, position, endPosition, dataArray);
@@ -288,7 +284,7 @@ public class WiggleParser {
 
                     } catch (NumberFormatException e) {
                         log.error(e);
-                        throw new ParserException(e.getMessage(), lineNumber, nextLine);
+                        throw new ParserException(e.getMessage(), lineNumber, tokenizer.getLine());
                     }
 
 
@@ -302,14 +298,18 @@ public class WiggleParser {
         } catch (ParserException pe) {
             throw (pe);
         } catch (Exception e) {
-            if (nextLine != null && lineNumber != 0) {
-                throw new ParserException(e.getMessage(), e, lineNumber, nextLine);
+            if (tokenizer != null && lineNumber != 0) {
+                throw new ParserException(e.getMessage(), e, lineNumber, tokenizer.getLine());
             } else {
                 throw new RuntimeException(e);
             }
         } finally {
-            if (reader != null) {
-                reader.close();
+            if (tokenizer != null) {
+                try {
+                    tokenizer.close();
+                } catch (IOException e) {
+                    log.error("Error closing " + locator.getPath(), e);
+                }
             }
         }
     }
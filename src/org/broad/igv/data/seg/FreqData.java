@@ -11,44 +11,73 @@
 
 package org.broad.igv.data.seg;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Frequency of amplifications and deletions, in bins, across the samples of a segmented data set.
+ * <p/>
+ * The segments of all samples are extracted once into primitive arrays, sorted by score.  Changing the thresholds or
+ * bin size re-aggregates from these arrays, visiting only the segments beyond the thresholds.  Each segment adds
+ * its fractional overlap to its first and last bins, and a unit weight to the bins between them with a difference
+ * array, so the cost is independent of segment length.  Large data sets are aggregated in parallel, with an
+ * accumulator per task.
+ *
  * @author jrobinso
  * @date Oct 13, 2010
  */
 public class FreqData {
 
+    private static Logger log = Logger.getLogger(FreqData.class);
+
     public static float DEFAULT_AMP_THRESHOLD = 0.1f;
     public static float DEFAULT_DEL_THRESHOLD = -0.1f;
     public static int DEFAULT_BIN_SIZE = 200000;
 
+    /**
+     * Minimum number of segments per parallel task
+     */
+    private static final int MIN_SEGMENTS_PER_TASK = 50000;
+
+    private static final int N_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(N_THREADS, new ThreadFactory() {
+        private AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "FreqData-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
     private float ampThreshold = DEFAULT_AMP_THRESHOLD;
     private float delThreshold = DEFAULT_DEL_THRESHOLD;
     private int binSize = DEFAULT_BIN_SIZE;    // 200 kb bin size;
 
-    private SegmentedDataSet dataset;
     private int numberOfSamples;
-    // private boolean logNormalized;
-    private Map<String, List<LocusScore>> amp;
-    private Map<String, List<LocusScore>> del;
-    private List<String> sampleNames;
+    private List<String> chromosomeNames;
+    private Segments segments;
+    private volatile Counts counts;
     Genome genome;
 
     public FreqData(SegmentedDataSet ds, Genome genome) {
 
-        this.dataset = ds;
-        this.sampleNames = ds.getSampleNames();
+        List<String> sampleNames = ds.getSampleNames();
         numberOfSamples = sampleNames.size();
-        amp = new HashMap();
-        del = new HashMap();
         this.genome = genome;
+        this.chromosomeNames = new ArrayList<String>(genome.getAllChromosomeNames());
+        this.segments = new Segments(ds, sampleNames, genome, chromosomeNames);
         compute();
 
     }
@@ -63,86 +92,81 @@ public class FreqData {
 
     void compute() {
 
-        amp.clear();
-        del.clear();
-
         int sizeInKB = (int) (genome.getNominalLength() / 1000);
         int wgBinSize = sizeInKB / 700;
         int wgBinCount = sizeInKB / wgBinSize + 1;
 
-        //Chromosome bins
-        for (String chr : genome.getAllChromosomeNames()) {
-            Chromosome c = genome.getChromosome(chr);
-            int len = c.getLength();
-            int nBins = len / binSize + 1;
-            List<LocusScore> ampBins = new ArrayList(nBins);
-            List<LocusScore> delBins = new ArrayList(nBins);
-            for (int i = 0; i < nBins; i++) {
-                int start = i * binSize;
-                int end = start + binSize;
-                ampBins.add(new Bin(chr, start, end));
-                delBins.add(new Bin(chr, start, end));
-            }
-            amp.put(chr, ampBins);
-            del.put(chr, delBins);
+        //Chromosome bins, concatenated in the order of chromosomeNames
+        int[] offsets = new int[chromosomeNames.size() + 1];
+        int[] nBins = new int[chromosomeNames.size()];
+        for (int i = 0; i < nBins.length; i++) {
+            Chromosome c = genome.getChromosome(chromosomeNames.get(i));
+            nBins[i] = c.getLength() / binSize + 1;
+            offsets[i + 1] = offsets[i] + nBins[i];
         }
 
-        // Whole genome bins
-        List<LocusScore> ampBins = new ArrayList(wgBinCount);
-        List<LocusScore> delBins = new ArrayList(wgBinCount);
-        for (int i = 0; i < wgBinCount; i++) {
-            int start = i * wgBinSize;
-            int end = start + wgBinSize;
-            ampBins.add(new Bin(Globals.CHR_ALL, start, end));
-            delBins.add(new Bin(Globals.CHR_ALL, start, end));
-        }
-        amp.put(Globals.CHR_ALL, ampBins);
-        del.put(Globals.CHR_ALL, delBins);
+        BinLayout layout = new BinLayout(binSize, offsets, nBins, wgBinSize, wgBinCount);
 
-        // Chromsomes visible in whole genome view
-        Set<String> wgChromosomes = new HashSet<String>(genome.getLongChromosomeNames());
+        // Segments are sorted by score, so the deletions are a prefix and the amplifications a suffix
+        int delEnd = segments.firstIndexAbove(delThreshold, true);
+        int ampStart = segments.firstIndexAbove(ampThreshold, false);
 
-        final boolean logNormalized = dataset.isLogNormalized();
-        for (String sample : sampleNames) {
-            for (String chr : genome.getLongChromosomeNames()) {
-                List<LocusScore> segments = dataset.getSegments(sample, chr);
-                if (segments != null) {
+        Accumulator ampAcc = aggregate(layout, ampStart, segments.size());
+        Accumulator delAcc = aggregate(layout, 0, delEnd);
 
-                    for (LocusScore seg : segments) {
-                        final float segScore = logNormalized ? seg.getScore() :
-                                (float) (Math.log(seg.getScore() / 2) / Globals.log2);
+        counts = new Counts(layout, ampAcc, delAcc);
+    }
 
-                        if (segScore > ampThreshold || segScore < delThreshold) {
-
-                            int startBin = seg.getStart() / binSize;
-                            int endBin = seg.getEnd() / binSize;
-                            for (int b = startBin; b <= endBin; b++) {
-                                if (b >= amp.get(chr).size()) {
-                                    break;
-                                }
-                                binCounts(chr, seg.getStart(), seg.getEnd(), segScore, b, binSize);
-                            }
-
-                            if (wgChromosomes.contains(chr)) {
-                                int gStart = genome.getGenomeCoordinate(chr, seg.getStart());
-                                int gEnd = genome.getGenomeCoordinate(chr, seg.getEnd());
-                                int wgStartBin = gStart / wgBinSize;
-                                int wgEndBin = gEnd / wgBinSize;
-                                for (int b = wgStartBin; b <= wgEndBin; b++) {
-                                    if (b >= amp.get(Globals.CHR_ALL).size()) {
-                                        break;
-                                    }
-                                    binCounts(Globals.CHR_ALL, gStart, gEnd, segScore, b, wgBinSize);
-                                }
-                            }
-                        }
-                    }
+    /**
+     * Sum the contributions of segments [from, to), splitting large ranges across threads
+     */
+    private Accumulator aggregate(final BinLayout layout, int from, int to) {
+
+        int nTasks = Math.min(N_THREADS, (to - from) / MIN_SEGMENTS_PER_TASK);
+        if (nTasks <= 1) {
+            Accumulator acc = new Accumulator(layout);
+            acc.add(segments, from, to);
+            return acc;
+        }
+
+        List<Future<Accumulator>> futures = new ArrayList<Future<Accumulator>>(nTasks);
+        int step = (to - from + nTasks - 1) / nTasks;
+        for (int lo = from; lo < to; lo += step) {
+            final int taskFrom = lo;
+            final int taskTo = Math.min(to, lo + step);
+            futures.add(executor.submit(new Callable<Accumulator>() {
+                public Accumulator call() {
+                    Accumulator acc = new Accumulator(layout);
+                    acc.add(segments, taskFrom, taskTo);
+                    return acc;
+                }
+            }));
+        }
+
+        Accumulator total = null;
+        for (Future<Accumulator> f : futures) {
+            try {
+                Accumulator acc = f.get();
+                if (total == null) {
+                    total = acc;
+                } else {
+                    total.merge(acc);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                log.error("Error computing copy number frequencies", e);
+                throw new RuntimeException(e.getCause());
             }
         }
+        return total;
     }
 
-    private void binCounts(String chr, int segStart, int segEnd, float segScore, int b, int binSize) {
+    /**
+     * Weight of a segment in bin b, the fraction of the bin which it overlaps
+     */
+    static float weight(int segStart, int segEnd, int b, int binSize) {
 
         int binStart = b * binSize;
         int binEnd = binStart + binSize;
@@ -157,17 +181,7 @@ public class FreqData {
             int e = Math.min(segEnd, binEnd);
             weight = ((float) (e - segStart)) / binSize;
         }
-
-
-        if (segScore > ampThreshold) {
-            Bin bin = (Bin) amp.get(chr).get(b);
-            bin.increment(weight, weight * segScore);
-        }
-
-        if (segScore < delThreshold) {
-            Bin bin = (Bin) del.get(chr).get(b);
-            bin.increment(-weight, weight * segScore);
-        }
+        return weight;
     }
 
     // For testing
@@ -175,20 +189,12 @@ public class FreqData {
     public void dumpData(String chr) {
 
         System.out.println("track name=Amplifications");
-        for (Map.Entry<String, List<LocusScore>> entry : amp.entrySet()) {
-            if (!entry.getKey().equals(Globals.CHR_ALL)) {
-                for (LocusScore bin : entry.getValue()) {
-                    System.out.println(bin.getChr() + "\t" + bin.getStart() + "\t" + bin.getEnd() + "\t" + bin.getScore());
-                }
+        for (String c : chromosomeNames) {
+            for (LocusScore bin : getAmpCounts(c)) {
+                System.out.println(bin.getChr() + "\t" + bin.getStart() + "\t" + bin.getEnd() + "\t" + bin.getScore());
             }
         }
 
-        //System.out.println("track name=Deletions");
-        //for(Bin bin : del.get(chr)) {
-        //    System.out.println(bin.getChr() + "\t" + bin.getStart() + "\t" + bin.getEnd() + "\t" + bin.getCount());
-        //}
-
-
     }
 
     public int getNumberOfSamples() {
@@ -196,11 +202,11 @@ public class FreqData {
     }
 
     public List<LocusScore> getAmpCounts(String chr) {
-        return amp.get(chr);
+        return counts.getBins(chr, true);
     }
 
     public List<LocusScore> getDelCounts(String chr) {
-        return del.get(chr);
+        return counts.getBins(chr, false);
     }
 
     public float getAmpThreshold() {
@@ -225,6 +231,12 @@ public class FreqData {
             this.end = end;
         }
 
+        Bin(String chr, int start, int end, float count, float totalCN) {
+            this(chr, start, end);
+            this.count = count;
+            this.totalCN = totalCN;
+        }
+
         void increment(float count, float score) {
             this.count += count;
             totalCN = getTotalCN() + score;
@@ -281,4 +293,272 @@ public class FreqData {
     }
 
 
+
+    /**
+     * Segments of all samples on whole genome chromosomes, sorted by score (log2(cn/2)).  Segments with
+     * NaN scores are dropped, they are neither amplifications nor deletions.
+     */
+    static class Segments {
+
+        final int[] chrIndex;
+        final int[] start;
+        final int[] end;
+        final int[] wgStart;
+        final int[] wgEnd;
+        final float[] score;
+
+        Segments(SegmentedDataSet dataset, List<String> sampleNames, Genome genome, List<String> chromosomeNames) {
+
+            Map<String, Integer> chrIndices = new HashMap<String, Integer>();
+            for (int i = 0; i < chromosomeNames.size(); i++) {
+                chrIndices.put(chromosomeNames.get(i), i);
+            }
+
+            final boolean logNormalized = dataset.isLogNormalized();
+            IntArrayList chrList = new IntArrayList();
+            IntArrayList startList = new IntArrayList();
+            IntArrayList endList = new IntArrayList();
+            FloatArrayList scoreList = new FloatArrayList();
+            for (String chr : genome.getLongChromosomeNames()) {
+                Integer chrIdx = chrIndices.get(chr);
+                if (chrIdx == null) continue;
+                for (String sample : sampleNames) {
+                    List<LocusScore> segs = dataset.getSegments(sample, chr);
+                    if (segs == null) continue;
+                    for (LocusScore seg : segs) {
+                        final float segScore = logNormalized ? seg.getScore() :
+                                (float) (Math.log(seg.getScore() / 2) / Globals.log2);
+                        if (Float.isNaN(segScore)) continue;
+                        chrList.add(chrIdx);
+                        startList.add(seg.getStart());
+                        endList.add(seg.getEnd());
+                        scoreList.add(segScore);
+                    }
+                }
+            }
+
+            // Sort by score, with the segment index in the low bits of the key
+            int n = scoreList.size();
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                int bits = Float.floatToIntBits(scoreList.get(i));
+                int sortable = bits >= 0 ? bits : bits ^ 0x7FFFFFFF;
+                keys[i] = ((long) sortable << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            chrIndex = new int[n];
+            start = new int[n];
+            end = new int[n];
+            wgStart = new int[n];
+            wgEnd = new int[n];
+            score = new float[n];
+            for (int i = 0; i < n; i++) {
+                int idx = (int) keys[i];
+                chrIndex[i] = chrList.get(idx);
+                start[i] = startList.get(idx);
+                end[i] = endList.get(idx);
+                score[i] = scoreList.get(idx);
+                String chr = chromosomeNames.get(chrIndex[i]);
+                wgStart[i] = genome.getGenomeCoordinate(chr, start[i]);
+                wgEnd[i] = genome.getGenomeCoordinate(chr, end[i]);
+            }
+        }
+
+        int size() {
+            return score.length;
+        }
+
+        /**
+         * @return index of the first segment with score greater than (or equal to, if inclusive) value
+         */
+        int firstIndexAbove(float value, boolean inclusive) {
+            int lo = 0;
+            int hi = score.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (score[mid] < value || (!inclusive && score[mid] == value)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Bin sizes and the position of each chromosome's bins in the concatenated arrays
+     */
+    static class BinLayout {
+        final int binSize;
+        final int[] offsets;
+        final int[] nBins;
+        final int wgBinSize;
+        final int wgBinCount;
+
+        BinLayout(int binSize, int[] offsets, int[] nBins, int wgBinSize, int wgBinCount) {
+            this.binSize = binSize;
+            this.offsets = offsets;
+            this.nBins = nBins;
+            this.wgBinSize = wgBinSize;
+            this.wgBinCount = wgBinCount;
+        }
+
+        int getTotalBins() {
+            return offsets[offsets.length - 1];
+        }
+    }
+
+    /**
+     * Weighted counts and total copy number per bin.  Weights of bins spanned entirely by a segment are
+     * recorded in difference arrays, and added in by {@link #finish()}.
+     */
+    static class Accumulator {
+
+        final BinLayout layout;
+        final double[] count;
+        final double[] totalCN;
+        final double[] countDiff;
+        final double[] cnDiff;
+        final double[] wgCount;
+        final double[] wgTotalCN;
+        final double[] wgCountDiff;
+        final double[] wgCNDiff;
+
+        Accumulator(BinLayout layout) {
+            this.layout = layout;
+            int n = layout.getTotalBins();
+            count = new double[n];
+            totalCN = new double[n];
+            countDiff = new double[n + 1];
+            cnDiff = new double[n + 1];
+            int wgN = layout.wgBinCount;
+            wgCount = new double[wgN];
+            wgTotalCN = new double[wgN];
+            wgCountDiff = new double[wgN + 1];
+            wgCNDiff = new double[wgN + 1];
+        }
+
+        void add(Segments segments, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int c = segments.chrIndex[i];
+                float segScore = segments.score[i];
+                add(segments.start[i], segments.end[i], segScore, layout.binSize,
+                        layout.offsets[c], layout.nBins[c], count, totalCN, countDiff, cnDiff);
+                add(segments.wgStart[i], segments.wgEnd[i], segScore, layout.wgBinSize,
+                        0, layout.wgBinCount, wgCount, wgTotalCN, wgCountDiff, wgCNDiff);
+            }
+        }
+
+        private static void add(int segStart, int segEnd, float segScore, int binSize, int offset, int nBins,
+                                double[] count, double[] totalCN, double[] countDiff, double[] cnDiff) {
+
+            int startBin = segStart / binSize;
+            int endBin = segEnd / binSize;
+            if (startBin >= nBins) {
+                return;
+            }
+
+            float w = weight(segStart, segEnd, startBin, binSize);
+            count[offset + startBin] += w;
+            totalCN[offset + startBin] += w * segScore;
+
+            if (endBin > startBin) {
+                // Bins strictly between the first and last are covered entirely
+                int lastBin = Math.min(endBin, nBins);
+                if (lastBin > startBin + 1) {
+                    countDiff[offset + startBin + 1] += 1;
+                    countDiff[offset + lastBin] -= 1;
+                    cnDiff[offset + startBin + 1] += segScore;
+                    cnDiff[offset + lastBin] -= segScore;
+                }
+                if (endBin < nBins) {
+                    w = weight(segStart, segEnd, endBin, binSize);
+                    count[offset + endBin] += w;
+                    totalCN[offset + endBin] += w * segScore;
+                }
+            }
+        }
+
+        void merge(Accumulator other) {
+            add(count, other.count);
+            add(totalCN, other.totalCN);
+            add(countDiff, other.countDiff);
+            add(cnDiff, other.cnDiff);
+            add(wgCount, other.wgCount);
+            add(wgTotalCN, other.wgTotalCN);
+            add(wgCountDiff, other.wgCountDiff);
+            add(wgCNDiff, other.wgCNDiff);
+        }
+
+        private static void add(double[] a, double[] b) {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+        }
+
+        void finish() {
+            integrate(count, countDiff);
+            integrate(totalCN, cnDiff);
+            integrate(wgCount, wgCountDiff);
+            integrate(wgTotalCN, wgCNDiff);
+        }
+
+        private static void integrate(double[] values, double[] diff) {
+            double sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                sum += diff[i];
+                values[i] += sum;
+            }
+        }
+    }
+
+    /**
+     * Result of a computation.  Bins are created per chromosome on request.
+     */
+    class Counts {
+
+        final BinLayout layout;
+        final Accumulator amp;
+        final Accumulator del;
+        final Map<String, List<LocusScore>> ampBins = new HashMap<String, List<LocusScore>>();
+        final Map<String, List<LocusScore>> delBins = new HashMap<String, List<LocusScore>>();
+
+        Counts(BinLayout layout, Accumulator amp, Accumulator del) {
+            this.layout = layout;
+            this.amp = amp;
+            this.del = del;
+            amp.finish();
+            del.finish();
+        }
+
+        synchronized List<LocusScore> getBins(String chr, boolean isAmp) {
+            Map<String, List<LocusScore>> cache = isAmp ? ampBins : delBins;
+            List<LocusScore> bins = cache.get(chr);
+            if (bins == null) {
+                Accumulator acc = isAmp ? amp : del;
+                float sign = isAmp ? 1 : -1;
+                if (chr.equals(Globals.CHR_ALL)) {
+                    bins = createBins(chr, acc.wgCount, acc.wgTotalCN, 0, layout.wgBinCount, layout.wgBinSize, sign);
+                } else {
+                    int c = chromosomeNames.indexOf(chr);
+                    if (c < 0) return null;
+                    bins = createBins(chr, acc.count, acc.totalCN, layout.offsets[c], layout.nBins[c], layout.binSize, sign);
+                }
+                cache.put(chr, bins);
+            }
+            return bins;
+        }
+
+        private List<LocusScore> createBins(String chr, double[] count, double[] totalCN, int offset, int nBins,
+                                            int binSize, float sign) {
+            List<LocusScore> bins = new ArrayList<LocusScore>(nBins);
+            for (int i = 0; i < nBins; i++) {
+                int start = i * binSize;
+                bins.add(new Bin(chr, start, start + binSize, sign * (float) count[offset + i], (float) totalCN[offset + i]));
+            }
+            return bins;
+        }
+    }
 }
@@ -13,14 +13,15 @@ package org.broad.igv.data.seg;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.AsciiTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
-import org.broad.tribble.readers.AsciiLineReader;
+
+import java.io.IOException;
 
 /**
  * Example
@@ -76,24 +77,27 @@ public class SegmentFileParser implements SegFileParser {
             dataset.setTrackType(TrackType.CNV);
         }
 
-        AsciiLineReader reader = null;
-        String nextLine = null;
+        AsciiTokenizer tokenizer = null;
         int lineNumber = 0;
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            tokenizer = ParsingUtils.openAsciiTokenizer(locator);
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
 
             // Parse comments, if any
-            nextLine = reader.readLine();
-            while (nextLine.startsWith("#") || (nextLine.trim().length() == 0)) {
+            boolean hasLine = tokenizer.nextLine();
+            while (hasLine && (tokenizer.startsWith("#") || tokenizer.isBlank())) {
                 lineNumber++;
-                if (nextLine.length() > 0) {
-                    parseComment(nextLine, dataset);
+                if (tokenizer.startsWith("#")) {
+                    parseComment(tokenizer.getLine(), dataset);
                 }
-                nextLine = reader.readLine();
+                hasLine = tokenizer.nextLine();
+            }
+            if (!hasLine) {
+                throw new ParserException("No column headings found", lineNumber);
             }
 
             // Read column headings
-            String[] headings = nextLine.split("\t");
+            String[] headings = tokenizer.getLine().split("\t");
 
 
             if (birdsuite) {
@@ -112,34 +116,39 @@ public class SegmentFileParser implements SegFileParser {
                 dataColumn = headings.length - 1;
             }
 
-            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+            // Sample and chromosome names are only materialized when they change
+            String trackId = null;
+            String chrToken = null;
+            String chr = null;
+
+            while (tokenizer.nextLine() && !tokenizer.isBlank()) {
                 lineNumber++;
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
+                int nTokens = tokenizer.getFieldCount();
                 if (nTokens > 4) {
                     int start;
                     int end;
                     try {
-                        start = ParsingUtils.parseInt(tokens[startColumn].trim());
+                        start = (int) tokenizer.getDouble(startColumn);
                     } catch (NumberFormatException numberFormatException) {
                         throw new ParserException("Column " + (startColumn + 1) + " must contain a numeric value.",
-                                lineNumber, nextLine);
+                                lineNumber, tokenizer.getLine());
                     }
                     try {
-                        end = ParsingUtils.parseInt(tokens[endColumn].trim());
+                        end = (int) tokenizer.getDouble(endColumn);
                     } catch (NumberFormatException numberFormatException) {
                         throw new ParserException("Column " + (endColumn + 1) + " must contain a numeric value.",
-                                lineNumber, nextLine);
+                                lineNumber, tokenizer.getLine());
                     }
 
-                    String chr = tokens[chrColumn].trim();
-                    if (genome != null) {
-                        chr = genome.getChromosomeAlias(chr);
+                    if (chrToken == null || !tokenizer.fieldEquals(chrColumn, chrToken)) {
+                        chrToken = tokenizer.getString(chrColumn);
+                        chr = genome == null ? chrToken : genome.getChromosomeAlias(chrToken);
                     }
 
-
-                    String trackId = new String(tokens[sampleColumn].trim());
+                    if (trackId == null || !tokenizer.fieldEquals(sampleColumn, trackId)) {
+                        trackId = tokenizer.getString(sampleColumn);
+                    }
 
                     StringBuffer desc = null;
                     if (birdsuite) {
@@ -147,22 +156,20 @@ public class SegmentFileParser implements SegFileParser {
                         desc.append("<br>");
                         desc.append(headings[6]);
                         desc.append("=");
-                        desc.append(tokens[6]);
+                        desc.append(tokenizer.getString(6));
                     } else {
-                        if (tokens.length > 4) {
-                            desc = new StringBuffer();
-                            for (int i = 4; i < headings.length - 1; i++) {
-                                desc.append("<br>");
-                                desc.append(headings[i]);
-                                desc.append(": ");
-                                desc.append(tokens[i]);
-                            }
+                        desc = new StringBuffer();
+                        for (int i = 4; i < headings.length - 1; i++) {
+                            desc.append("<br>");
+                            desc.append(headings[i]);
+                            desc.append(": ");
+                            desc.append(tokenizer.getString(i));
                         }
                     }
 
 
                     try {
-                        float value = Float.parseFloat(tokens[dataColumn]);
+                        float value = tokenizer.getFloat(dataColumn);
                         String description = desc == null ? null : desc.toString();
                         dataset.addSegment(trackId, chr, start, end, value, description);
                     } catch (NumberFormatException numberFormatException) {
@@ -176,14 +183,18 @@ public class SegmentFileParser implements SegFileParser {
         } catch (ParserException pe) {
             throw pe;
         } catch (Exception e) {
-            if (nextLine != null && lineNumber != 0) {
-                throw new ParserException(e.getMessage(), e, lineNumber, nextLine);
+            if (tokenizer != null && lineNumber != 0) {
+                throw new ParserException(e.getMessage(), e, lineNumber, tokenizer.getLine());
             } else {
                 throw new RuntimeException(e);
             }
         } finally {
-            if (reader != null) {
-                reader.close();
+            if (tokenizer != null) {
+                try {
+                    tokenizer.close();
+                } catch (IOException e) {
+                    log.error("Error closing segment file", e);
+                }
             }
         }
 
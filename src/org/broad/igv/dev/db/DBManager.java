@@ -313,7 +313,7 @@ public class DBManager {
         String s;
         int type = rs.getMetaData().getColumnType(sqlCol);
 
-        if (blobTypes.contains(type)) {
+        if (isBlobType(type)) {
             Blob b = rs.getBlob(sqlCol);
             s = new String(b.getBytes(1l, (int) b.length()));
         } else {
@@ -322,6 +322,14 @@ public class DBManager {
         return s;
     }
 
+    /**
+     * @param type SQL type, from {@link java.sql.Types}
+     * @return whether values of this type must be read as blobs
+     */
+    static boolean isBlobType(int type) {
+        return blobTypes.contains(type);
+    }
+
     private static final Set<Integer> blobTypes;
 
     static {
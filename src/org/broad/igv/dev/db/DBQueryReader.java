@@ -37,13 +37,23 @@ public abstract class DBQueryReader<T> extends DBReader {
         this.table = table;
     }
 
+    /**
+     * Execute the statement and load all results.  The result set is closed, but the statement
+     * and connection are left open so the statement can be reused.
+     *
+     * @param st
+     * @return
+     */
     protected Iterator loadIterator(PreparedStatement st) {
+        ResultSet rs = null;
         try {
-            ResultSet rs = st.executeQuery();
-            return loadIterator(rs);
+            rs = st.executeQuery();
+            return loadResults(rs).iterator();
         } catch (SQLException e) {
             log.error("Database error", e);
             throw new RuntimeException("Database error", e);
+        } finally {
+            DBManager.closeResources(rs, null, null);
         }
     }
 
@@ -54,18 +64,22 @@ public abstract class DBQueryReader<T> extends DBReader {
      * @return
      */
     protected Iterator loadIterator(ResultSet rs) {
-        List<T> results = new ArrayList<T>();
         try {
-            while (rs.next()) {
-                results.add(processResult(rs));
-            }
+            return loadResults(rs).iterator();
         } catch (SQLException e) {
             log.error("Database error", e);
             throw new RuntimeException("Database error", e);
         } finally {
             DBManager.closeAll(rs);
         }
-        return results.iterator();
+    }
+
+    private List<T> loadResults(ResultSet rs) throws SQLException {
+        List<T> results = new ArrayList<T>();
+        while (rs.next()) {
+            results.add(processResult(rs));
+        }
+        return results;
     }
 
     /**
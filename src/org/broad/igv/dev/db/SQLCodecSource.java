@@ -16,6 +16,7 @@ import org.apache.log4j.Logger;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.feature.tribble.IGVBEDCodec;
 import org.broad.igv.track.FeatureSource;
 import org.broad.tribble.AsciiFeatureCodec;
 import org.broad.tribble.Feature;
@@ -27,10 +28,7 @@ import org.broad.tribble.readers.LineIteratorImpl;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Types;
+import java.sql.*;
 import java.util.*;
 
 
@@ -93,6 +91,25 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
 
     private static final int MAX_BINS = 20;
 
+    /**
+     * Rows fetched from the database per round trip
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Query statements are prepared once, and reused as long as the connection is open
+     */
+    private PreparedStatement queryStatement;
+    private PreparedStatement binnedQueryStatement;
+    private Connection statementConnection;
+
+    /**
+     * Column layout of the result set being read, see {@link #rowToStringArray(java.sql.ResultSet)}
+     */
+    private ResultSet columnsResultSet;
+    private int[] columnIndexes;
+    private boolean[] blobColumns;
+
     SQLCodecSource(DBProfile.DBTable table, AsciiFeatureCodec codec) {
         super(table);
         this.codec = codec;
@@ -197,35 +214,121 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
         return source;
     }
 
-    private String rowToStringLine(ResultSet rs) throws SQLException {
-        String[] tokens = rowToStringArray(rs);
-        return StringUtils.join(tokens, "\t");
-    }
-
     //TODO We already know how to parse strings, so just turn everything to strings
     //TODO See IParser for better, type-safe way of handling different data sources
     private String[] rowToStringArray(ResultSet rs) throws SQLException {
 
-        String[] tokens;
-        if (table.getColumnLabelMap() != null) {
-            tokens = DBManager.lineToArray(rs, table.getColumnLabelMap());
-        } else {
-            tokens = DBManager.lineToArray(rs, startColIndex, endColIndex, false);
+        // The column layout is looked up once per result set, rather than once per value
+        if (rs != columnsResultSet) {
+            ResultSetMetaData md = rs.getMetaData();
+            if (table.getColumnLabelMap() != null) {
+                String[] colNames = DBProfile.DBTable.columnMapToArray(table.getColumnLabelMap());
+                columnIndexes = new int[colNames.length];
+                for (int cc = 0; cc < colNames.length; cc++) {
+                    columnIndexes[cc] = colNames[cc] == null ? -1 : rs.findColumn(colNames[cc]);
+                }
+            } else {
+                int colCount = Math.min(md.getColumnCount(), endColIndex) - startColIndex + 1;
+                columnIndexes = new int[Math.max(0, colCount)];
+                for (int cc = 0; cc < columnIndexes.length; cc++) {
+                    columnIndexes[cc] = cc + startColIndex;
+                }
+            }
+            blobColumns = new boolean[columnIndexes.length];
+            for (int cc = 0; cc < columnIndexes.length; cc++) {
+                blobColumns[cc] = columnIndexes[cc] > 0 && DBManager.isBlobType(md.getColumnType(columnIndexes[cc]));
+            }
+            columnsResultSet = rs;
+        }
+
+        String[] tokens = new String[columnIndexes.length];
+        for (int cc = 0; cc < tokens.length; cc++) {
+            int sqlCol = columnIndexes[cc];
+            if (sqlCol < 0) continue;
+            if (blobColumns[cc]) {
+                Blob b = rs.getBlob(sqlCol);
+                tokens[cc] = new String(b.getBytes(1l, (int) b.length()));
+            } else {
+                tokens[cc] = rs.getString(sqlCol);
+            }
         }
         return tokens;
     }
 
+    /**
+     * BED rows are decoded from the column values directly.  Other formats, and rows which the line parser
+     * would tokenize differently (empty values, or values containing whitespace), are joined into a line
+     * and decoded by the codec.
+     */
     @Override
     protected Feature processResult(ResultSet rs) throws SQLException {
-        String line = rowToStringLine(rs);
-        return codec.decode(line);
+        String[] tokens = rowToStringArray(rs);
+        if (codec instanceof IGVBEDCodec && isPlainRow(tokens)) {
+            return ((IGVBEDCodec) codec).decode(tokens);
+        }
+        return codec.decode(StringUtils.join(tokens, "\t"));
+    }
+
+    private static boolean isPlainRow(String[] tokens) {
+        if (tokens.length == 0 || tokens[0] == null ||
+                tokens[0].startsWith("#") || tokens[0].startsWith("track") || tokens[0].startsWith("browser")) {
+            return false;
+        }
+        for (String token : tokens) {
+            if (token == null || token.length() == 0) return false;
+            for (int i = 0; i < token.length(); i++) {
+                if (Character.isWhitespace(token.charAt(i))) return false;
+            }
+        }
+        return true;
     }
 
     /**
+     * Return the query statement, preparing it if this is the first query or the connection has changed
+     *
      * @param useBinning Whether to query using bin column, for efficiency
      * @throws IOException
      */
-    private PreparedStatement generateQueryStatement(boolean useBinning) throws IOException {
+    synchronized PreparedStatement getQueryStatement(boolean useBinning) throws IOException {
+
+        Connection conn = DBManager.getConnection(locator);
+        if (conn != statementConnection) {
+            closeStatements();
+            statementConnection = conn;
+        }
+
+        PreparedStatement statement = useBinning ? binnedQueryStatement : queryStatement;
+        if (statement == null) {
+            statement = generateQueryStatement(conn, useBinning);
+            if (useBinning) {
+                binnedQueryStatement = statement;
+            } else {
+                queryStatement = statement;
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Close the prepared query statements.  They are prepared again by the next query.
+     */
+    public synchronized void dispose() {
+        closeStatements();
+        statementConnection = null;
+    }
+
+    private void closeStatements() {
+        DBManager.closeResources(null, queryStatement, null);
+        DBManager.closeResources(null, binnedQueryStatement, null);
+        queryStatement = null;
+        binnedQueryStatement = null;
+    }
+
+    /**
+     * @param useBinning Whether to query using bin column, for efficiency
+     * @throws IOException
+     */
+    private PreparedStatement generateQueryStatement(Connection conn, boolean useBinning) throws IOException {
         PreparedStatement queryStatement;
 
         String prependWord = baseQueryString.contains("WHERE") ? " AND " : " WHERE ";
@@ -243,11 +346,13 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
             if (useBinning) {
                 String[] qs = new String[MAX_BINS];
                 Arrays.fill(qs, "?");
-                String binnedQueryString = queryString + String.format(" AND %s IN (%s) %s", binColName, StringUtils.join(qs, ','), orderClause);
-                queryStatement = DBManager.getConnection(locator).prepareStatement(binnedQueryString);
+                queryString = queryString + String.format(" AND %s IN (%s) %s", binColName, StringUtils.join(qs, ','), orderClause);
             } else {
-                queryStatement = DBManager.getConnection(locator).prepareStatement(queryString + " " + orderClause);
+                queryString = queryString + " " + orderClause;
             }
+            // Forward only and read only, so drivers can stream rows rather than load the whole result
+            queryStatement = conn.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            queryStatement.setFetchSize(FETCH_SIZE);
             return queryStatement;
         } catch (SQLException e) {
             log.error("Error initializing query statement", e);
@@ -256,15 +361,18 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
 
     }
 
-    private Iterator query(String chr, int start, int end) throws IOException {
+    /**
+     * Query features overlapping the interval.  Synchronized because the prepared statements are shared, and
+     * a source may be queried from several threads.
+     */
+    private synchronized Iterator query(String chr, int start, int end) throws IOException {
 
-        Set<Integer> bins = null;
-        boolean useBinning = false;
+        int[] bins = null;
         if (binColName != null) {
             bins = calculateBins(start, end);
-            useBinning = bins.size() < MAX_BINS;
         }
-        PreparedStatement statement = generateQueryStatement(useBinning);
+        boolean useBinning = bins != null;
+        PreparedStatement statement = getQueryStatement(useBinning);
 
         try {
             statement.clearParameters();
@@ -281,13 +389,13 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
             }
 
             if (useBinning) {
-                int qnum = 6;
-                for (Integer bin : bins) {
+                int qnum = startCols[startCols.length - 1] + 1;
+                for (int bin : bins) {
                     statement.setInt(qnum, bin);
                     qnum++;
                 }
 
-                for (; qnum <= statement.getParameterMetaData().getParameterCount(); qnum++) {
+                for (int ii = bins.length; ii < MAX_BINS; ii++, qnum++) {
                     statement.setNull(qnum, Types.INTEGER);
                 }
             }
@@ -303,24 +411,39 @@ public class SQLCodecSource extends DBQueryReader<Feature> implements FeatureSou
 
     private static final int SMALLEST_BIN_SIZE = 128 * 1024;
 
-    private Set<Integer> calculateBins(int start, int end) {
-        int length = end - start;
-        int sweepLength = SMALLEST_BIN_SIZE;
-        Set<Integer> bins = new HashSet<Integer>(2 * (length) / SMALLEST_BIN_SIZE);
-
-        while (sweepLength < BINRANGE_MAXEND_512M) {
-            int tstStart = Math.max(start - sweepLength / 2, 0);
-            while (tstStart < end) {
-                bins.add(binFromRange(tstStart, tstStart += sweepLength));
-                if (tstStart < 0) {
-                    throw new IllegalArgumentException("Overflow while calculating bins");
-                }
+    /**
+     * Offsets of the first bin at each level of the standard (not extended) scheme, smallest bins first
+     */
+    private static final int[] BIN_OFFSETS = {512 + 64 + 8 + 1, 64 + 8 + 1, 8 + 1, 1, 0};
+
+    /**
+     * Return the bins, at all levels, which overlap the interval.  Features overlapping the interval
+     * can only be in these bins.
+     *
+     * @return the bins, or null if binning should not be used for this interval
+     */
+    static int[] calculateBins(int start, int end) {
+
+        if (start < 0 || end > BINRANGE_MAXEND_512M) {
+            return null;
+        }
+        end = Math.max(end, start + 1);
+
+        int[] bins = new int[MAX_BINS];
+        int nBins = 0;
+        int shift = 17;
+        for (int offset : BIN_OFFSETS) {
+            int first = start >> shift;
+            int last = (end - 1) >> shift;
+            if (nBins + last - first + 1 > MAX_BINS) {
+                return null;
             }
-            sweepLength *= 2;
+            for (int b = first; b <= last; b++) {
+                bins[nBins++] = offset + b;
+            }
+            shift += 3;
         }
-        bins.add(binFromRange(start, end));
-
-        return bins;
+        return Arrays.copyOf(bins, nBins);
     }
 
     private static final int BINRANGE_MAXEND_512M = 512 * 1024 * 1024;
@@ -22,6 +22,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -35,8 +40,22 @@ public abstract class AbstractCacher {
 
     private static Logger log = Logger.getLogger(AbstractCacher.class);
 
+    /**
+     * Loads neighbouring bins in the background, see {@link #setPrefetch(boolean)}
+     */
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BinPrefetch");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
     protected int binSize;
     protected LRUCache<String, Bin> cache;
+    private boolean prefetch = false;
+    private final AtomicBoolean prefetchPending = new AtomicBoolean();
+    private final Object loadLock = new Object();
 
 
     /**
@@ -66,6 +85,16 @@ public abstract class AbstractCacher {
 
     }
 
+    /**
+     * If true, after each query the bins on either side of it, as many as the query spans,
+     * are loaded in the background.  Useful for sources with a high cost per query, such as databases.
+     *
+     * @param prefetch
+     */
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
     public void close() throws IOException {
         cache.clear();
     }
@@ -90,6 +119,10 @@ public abstract class AbstractCacher {
         }
         List<Bin> tiles = getBins(chr, startBin, endBin);
 
+        if (prefetch && binSize > 0) {
+            prefetch(chr, startBin, endBin);
+        }
+
         if (tiles.size() == 0) {
             return Collections.<Feature>emptyList().iterator();
         }
@@ -109,62 +142,109 @@ public abstract class AbstractCacher {
     }
 
 
+    /**
+     * Load the bins adjacent to [startBin, endBin] in the background.  Only one prefetch per
+     * cacher is queued at a time, further requests are dropped until it completes.
+     */
+    private void prefetch(final String chr, int startBin, int endBin) {
+        if (!prefetchPending.compareAndSet(false, true)) {
+            return;
+        }
+        final int nBins = endBin - startBin + 1;
+        final int before = Math.max(0, startBin - nBins);
+        final int after = endBin + 1;
+        final int beforeEnd = startBin - 1;
+        prefetchExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    getBins(chr, after, after + nBins - 1);
+                    if (beforeEnd >= before) {
+                        getBins(chr, before, beforeEnd);
+                    }
+                } catch (Exception e) {
+                    log.debug("Error prefetching bins", e);
+                } finally {
+                    prefetchPending.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Block until all prefetches queued so far are complete.  Prefetches run in order on a single thread, so this
+     * is the case when an empty task queued after them has run.
+     */
+    static void awaitPrefetch() throws InterruptedException, ExecutionException {
+        prefetchExecutor.submit(new Runnable() {
+            public void run() {
+            }
+        }).get();
+    }
+
     /**
      * Return loaded tiles that span the query interval.
      * <p/>
-     * We synchronize this method because different threads might be using
-     * the same source. Synchronizing here ensures that data
-     * is loaded as few times as possible (first caller loads it into the cache,
-     * the second caller accesses it from there) as well as preventing bugs stemming
-     * from multiple thread access
+     * Different threads might be using the same source, including the prefetch thread.  Missing tiles are loaded
+     * one query at a time, under {@code loadLock}, so data is loaded as few times as possible (the first caller
+     * loads it into the cache, the second caller accesses it from there) and the underlying source is never
+     * queried concurrently.  The cacher lock is only held to look up and install tiles, so queries answered from
+     * the cache do not wait for a load in progress.
      *
      * @param seq
      * @param startBin
      * @param endBin
      * @return
      */
-    private synchronized List<Bin> getBins(String seq, int startBin, int endBin) {
-
-        List<Bin> tiles = new ArrayList(endBin - startBin + 1);
-        List<Bin> tilesToLoad = new ArrayList(endBin - startBin + 1);
-
-        for (int t = startBin; t <= endBin; t++) {
-            String key = seq + "_" + t;
-            Bin tile = cache.get(key);
+    private List<Bin> getBins(String seq, int startBin, int endBin) {
 
-            if (tile == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Tile cache miss: " + t);
-                }
-                int start = t * binSize;
-                int end = start + binSize;
-                tile = new Bin(t, start, end);
-                cache.put(key, tile);
-            }
+        List<Bin> tiles = getCachedBins(seq, startBin, endBin);
+        if (!tiles.contains(null)) {
+            return tiles;
+        }
 
-            tiles.add(tile);
+        synchronized (loadLock) {
+            // Another thread may have loaded some of the tiles while this one waited
+            tiles = getCachedBins(seq, startBin, endBin);
 
-            // The current tile is loaded,  load any preceding tiles we have pending
-            if (tile.isLoaded()) {
-                if (tilesToLoad.size() > 0) {
-                    if (!loadTiles(seq, tilesToLoad)) {
-                        return tiles;
+            List<Bin> tilesToLoad = new ArrayList(endBin - startBin + 1);
+            for (int t = startBin; t <= endBin + 1; t++) {
+                int idx = t - startBin;
+                if (t <= endBin && tiles.get(idx) == null) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Tile cache miss: " + t);
+                    }
+                    int start = t * binSize;
+                    int end = start + binSize;
+                    Bin tile = new Bin(t, start, end);
+                    tiles.set(idx, tile);
+                    tilesToLoad.add(tile);
+                } else if (tilesToLoad.size() > 0) {
+                    // End of a run of missing tiles, load them with a single query
+                    loadTiles(seq, tilesToLoad);
+                    synchronized (this) {
+                        for (Bin tile : tilesToLoad) {
+                            cache.put(seq + "_" + tile.getBinNumber(), tile);
+                        }
                     }
+                    tilesToLoad.clear();
                 }
-                tilesToLoad.clear();
-            } else {
-                tilesToLoad.add(tile);
             }
         }
+        return tiles;
+    }
 
-        if (tilesToLoad.size() > 0) {
-            loadTiles(seq, tilesToLoad);
+    /**
+     * @return the cached tiles from startBin to endBin, with null for each tile not in the cache
+     */
+    private synchronized List<Bin> getCachedBins(String seq, int startBin, int endBin) {
+        List<Bin> tiles = new ArrayList(endBin - startBin + 1);
+        for (int t = startBin; t <= endBin; t++) {
+            tiles.add(cache.get(seq + "_" + t));
         }
-
         return tiles;
     }
 
-    private boolean loadTiles(String seq, List<Bin> tiles) {
+    private void loadTiles(String seq, List<Bin> tiles) {
 
         assert (tiles.size() > 0);
 
@@ -220,7 +300,6 @@ public abstract class AbstractCacher {
                 long rate = dt == 0 ? Long.MAX_VALUE : featureCount / dt;
                 log.debug("Loaded " + featureCount + " reads in " + dt + "ms.  (" + rate + " reads/ms)");
             }
-            return true;
 
         } catch (IOException e) {
             log.error("IOError loading feature data", e);
@@ -244,6 +244,10 @@ public class Exon extends AbstractFeature implements IExon {
         return msg;
     }
 
+    public int getNumber() {
+        return number;
+    }
+
     public void setNumber(int number) {
         this.number = number;
     }
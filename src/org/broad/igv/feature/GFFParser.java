@@ -12,7 +12,6 @@
 package org.broad.igv.feature;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.tribble.GFFCodec;
@@ -20,6 +19,7 @@ import org.broad.igv.renderer.GeneTrackRenderer;
 import org.broad.igv.renderer.IGVFeatureRenderer;
 import org.broad.igv.track.*;
 import org.broad.igv.ui.IGV;
+import org.broad.igv.util.AsciiTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.tribble.Feature;
@@ -166,58 +166,62 @@ public class GFFParser implements FeatureParser {
      */
     public static void splitFileByType(String gffFile, String outputDirectory) throws IOException {
 
-        BufferedReader br = new BufferedReader(new FileReader(gffFile));
-        String nextLine;
         String ext = "." + gffFile.substring(gffFile.length() - 4);
 
         Map<String, PrintWriter> writers = new HashMap();
 
-        while ((nextLine = br.readLine()) != null) {
-            nextLine = nextLine.trim();
-            if (!nextLine.startsWith("#")) {
-                String[] tokens = Globals.tabPattern.split(nextLine.trim().replaceAll("\"", ""), -1);
-
-                String type = tokens[2];
-                if (SequenceOntology.geneParts.contains(type)) {
-                    type = "gene";
-                }
-                if (!writers.containsKey(type)) {
-                    writers.put(type,
-                            new PrintWriter(new FileWriter(new File(outputDirectory, type + ext))));
+        AsciiTokenizer tokenizer = new AsciiTokenizer(new FileInputStream(gffFile));
+        tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
+        try {
+            while (tokenizer.nextLine()) {
+                if (!tokenizer.startsWith("#") && !tokenizer.isBlank()) {
+                    String type = getSplitType(tokenizer);
+                    if (!writers.containsKey(type)) {
+                        writers.put(type,
+                                new PrintWriter(new FileWriter(new File(outputDirectory, type + ext))));
+                    }
                 }
             }
+        } finally {
+            tokenizer.close();
         }
-        br.close();
 
-        br = new BufferedReader(new FileReader(gffFile));
+        tokenizer = new AsciiTokenizer(new FileInputStream(gffFile));
+        tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
         PrintWriter currentWriter = null;
-        while ((nextLine = br.readLine()) != null) {
-            nextLine = nextLine.trim();
-            if (nextLine.startsWith("#")) {
-                for (PrintWriter pw : writers.values()) {
-                    pw.println(nextLine);
-                }
-            } else {
-                String[] tokens = Globals.tabPattern.split(nextLine.trim().replaceAll("\"", ""), -1);
-                String type = tokens[2];
-                if (SequenceOntology.geneParts.contains(type)) {
-                    type = "gene";
+        try {
+            while (tokenizer.nextLine()) {
+                String nextLine = tokenizer.getLine().trim();
+                if (nextLine.startsWith("#")) {
+                    for (PrintWriter pw : writers.values()) {
+                        pw.println(nextLine);
+                    }
+                } else if (!tokenizer.isBlank()) {
+                    String type = getSplitType(tokenizer);
+                    currentWriter = writers.get(type);
+
+                    if (currentWriter != null) {
+                        currentWriter.println(nextLine);
+                    } else {
+                        System.out.println("No writer for: " + type);
+                    }
                 }
-                currentWriter = writers.get(type);
 
-                if (currentWriter != null) {
-                    currentWriter.println(nextLine);
-                } else {
-                    System.out.println("No writer for: " + type);
-                }
             }
-
+        } finally {
+            tokenizer.close();
+            for (PrintWriter pw : writers.values()) {
+                pw.close();
+            }
         }
+    }
 
-        br.close();
-        for (PrintWriter pw : writers.values()) {
-            pw.close();
-        }
+    /**
+     * @return the feature type of the current line, with gene parts grouped as "gene"
+     */
+    private static String getSplitType(AsciiTokenizer tokenizer) {
+        String type = tokenizer.getString(2).replace("\"", "");
+        return SequenceOntology.geneParts.contains(type) ? "gene" : type;
     }
 
     public TrackProperties getTrackProperties() {
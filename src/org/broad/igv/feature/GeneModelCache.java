@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature;
+
+import net.sf.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.exceptions.DataLoadException;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.track.GFFFeatureSource;
+import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.collections.MultiMap;
+import org.broad.igv.util.index.Interval;
+import org.broad.igv.util.index.IntervalTree;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.tribble.AbstractFeatureReader;
+import org.broad.tribble.Feature;
+import org.broad.tribble.FeatureCodec;
+
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Cache of pre-assembled gene models for a GFF file, written next to the GFF file (path + ".gmc").  Loading features
+ * from the cache skips parsing and combining the GFF records entirely.
+ * <p/>
+ * File layout:
+ * <pre>
+ *   int     magic ("IGVG")
+ *   int     version
+ *   long    length of the source GFF file
+ *   long    last modified time of the source GFF file
+ *   long    file offset of the index
+ *   chunk*
+ *   index:  int chromosome count, then for each chromosome UTF name, int chunk count, and (int start, int end,
+ *           long offset) for each chunk
+ * </pre>
+ * Each chunk is an int byte count followed by a deflated payload of up to {@link #CHUNK_SIZE} combined features,
+ * sorted by start, from a single chromosome.  The cache is ignored if the source file length or modification
+ * time no longer match.
+ */
+public class GeneModelCache {
+
+    private static Logger log = Logger.getLogger(GeneModelCache.class);
+
+    public static final String EXTENSION = ".gmc";
+
+    static final int MAGIC = ('I' << 24) | ('G' << 16) | ('V' << 8) | 'G';
+    static final int VERSION = 1;
+    static final int CHUNK_SIZE = 1000;
+
+    private String path;
+    private Genome genome;
+    private Map<String, IntervalTree> index;
+    private CompressionUtils compressionUtils = new CompressionUtils();
+
+    public GeneModelCache(String path, Genome genome) throws IOException {
+        this.path = path;
+        this.genome = genome;
+        readIndex();
+    }
+
+    public static String getCachePath(String gffPath) {
+        return gffPath + EXTENSION;
+    }
+
+    /**
+     * @param gffPath path to a local GFF file
+     * @return true if a cache for the file exists and is up to date
+     */
+    public static boolean isValid(String gffPath) {
+        File gffFile = new File(gffPath);
+        File cacheFile = new File(getCachePath(gffPath));
+        if (!gffFile.exists() || !cacheFile.exists()) {
+            return false;
+        }
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            return dis.readInt() == MAGIC &&
+                    dis.readInt() == VERSION &&
+                    dis.readLong() == gffFile.length() &&
+                    dis.readLong() == gffFile.lastModified();
+        } catch (IOException e) {
+            log.error("Error reading gene model cache " + cacheFile.getAbsolutePath(), e);
+            return false;
+        } finally {
+            if (dis != null) try {
+                dis.close();
+            } catch (IOException e) {
+                log.error("Error closing " + cacheFile.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Assemble all features of a sorted GFF file and write the cache.  The cache is written to a temporary file and
+     * renamed when complete, so a partially written cache is never read.
+     *
+     * @param gffPath
+     * @param outputPath
+     * @throws IOException
+     */
+    public static void write(String gffPath, String outputPath) throws IOException {
+
+        File gffFile = new File(gffPath);
+        File outputFile = new File(outputPath);
+        File tmpFile = new File(outputPath + ".tmp");
+
+        FeatureCodec codec = CodecFactory.getCodec(gffPath, null);
+        AbstractFeatureReader reader = AbstractFeatureReader.getFeatureReader(gffPath, codec, false);
+        DataOutputStream dos = null;
+        CompressionUtils compressionUtils = new CompressionUtils();
+        Map<String, List<Interval>> index = new LinkedHashMap<String, List<Interval>>();
+        int featureCount = 0;
+        try {
+            dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeLong(gffFile.length());
+            dos.writeLong(gffFile.lastModified());
+            dos.writeLong(0);     // Placeholder for index position
+            long position = dos.size();
+
+            Iterator<Feature> combiner = new GFFFeatureSource.StreamingGFFCombiner(reader.iterator());
+            List<BasicFeature> chunk = new ArrayList<BasicFeature>(CHUNK_SIZE);
+            while (combiner.hasNext()) {
+                BasicFeature bf = (BasicFeature) combiner.next();
+                featureCount++;
+                if (!chunk.isEmpty() && (chunk.size() >= CHUNK_SIZE || !chunk.get(0).getChr().equals(bf.getChr()))) {
+                    position += writeChunk(chunk, compressionUtils, index, position, dos);
+                    chunk.clear();
+                }
+                chunk.add(bf);
+            }
+            if (!chunk.isEmpty()) {
+                position += writeChunk(chunk, compressionUtils, index, position, dos);
+            }
+
+            dos.writeInt(index.size());
+            for (Map.Entry<String, List<Interval>> entry : index.entrySet()) {
+                dos.writeUTF(entry.getKey());
+                dos.writeInt(entry.getValue().size());
+                for (Interval iv : entry.getValue()) {
+                    dos.writeInt(iv.getLow());
+                    dos.writeInt(iv.getHigh());
+                    dos.writeLong(iv.getValue());
+                }
+            }
+            dos.close();
+            dos = null;
+
+            RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+            try {
+                raf.seek(24);
+                raf.writeLong(position);
+            } finally {
+                raf.close();
+            }
+
+            if ((outputFile.exists() && !outputFile.delete()) || !tmpFile.renameTo(outputFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath() + " to " + outputPath);
+            }
+            log.info("Wrote " + featureCount + " gene models to " + outputPath);
+
+        } finally {
+            reader.close();
+            if (dos != null) dos.close();
+            if (tmpFile.exists()) tmpFile.delete();
+        }
+    }
+
+    private static int writeChunk(List<BasicFeature> chunk, CompressionUtils compressionUtils,
+                                  Map<String, List<Interval>> index, long position, DataOutputStream dos) throws IOException {
+
+        String chr = chunk.get(0).getChr();
+        int start = Integer.MAX_VALUE;
+        int end = 0;
+        for (BasicFeature bf : chunk) {
+            start = Math.min(start, bf.getStart());
+            end = Math.max(end, bf.getEnd());
+        }
+        List<Interval> intervals = index.get(chr);
+        if (intervals == null) {
+            intervals = new ArrayList<Interval>();
+            index.put(chr, intervals);
+        }
+        intervals.add(new Interval(start, end, position));
+
+        byte[] bytes = compressionUtils.compress(encodeChunk(chunk));
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    private void readIndex() throws IOException {
+        SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getStreamFor(path);
+            DataInputStream dis = new DataInputStream(is);
+            if (dis.readInt() != MAGIC) {
+                throw new DataLoadException("Not a gene model cache", path);
+            }
+            int version = dis.readInt();
+            if (version != VERSION) {
+                throw new DataLoadException("Unsupported gene model cache version: " + version, path);
+            }
+            dis.readLong();
+            dis.readLong();
+            long indexPosition = dis.readLong();
+
+            is.seek(indexPosition);
+            dis = new DataInputStream(new BufferedInputStream(is));
+            int nChrs = dis.readInt();
+            index = new HashMap<String, IntervalTree>(nChrs * 2);
+            for (int i = 0; i < nChrs; i++) {
+                String chr = dis.readUTF();
+                int nChunks = dis.readInt();
+                IntervalTree tree = new IntervalTree();
+                for (int j = 0; j < nChunks; j++) {
+                    int start = dis.readInt();
+                    int end = dis.readInt();
+                    long offset = dis.readLong();
+                    tree.insert(new Interval(start, end, offset));
+                }
+                index.put(chr, tree);
+            }
+        } finally {
+            if (is != null) is.close();
+        }
+    }
+
+    public Collection<String> getChrNames() {
+        return index.keySet();
+    }
+
+    /**
+     * Return the features overlapping the interval, sorted by start position.
+     *
+     * @param chr   chromosome name, as it appears in the source file
+     * @param start
+     * @param end
+     * @return
+     * @throws IOException
+     */
+    public List<Feature> getFeatures(String chr, int start, int end) throws IOException {
+
+        IntervalTree tree = index.get(chr);
+        if (tree == null) return Collections.emptyList();
+
+        List<Interval> intervals = tree.findOverlapping(start, end);
+        if (intervals.isEmpty()) return Collections.emptyList();
+
+        TreeSet<Long> offsets = new TreeSet<Long>();
+        for (Interval iv : intervals) {
+            offsets.add(iv.getValue());
+        }
+
+        String igvChr = genome == null ? chr : genome.getChromosomeAlias(chr);
+        List<Feature> features = new ArrayList<Feature>();
+        SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getStreamFor(path);
+            for (Long offset : offsets) {
+                is.seek(offset);
+                DataInputStream dis = new DataInputStream(is);
+                byte[] bytes = new byte[dis.readInt()];
+                dis.readFully(bytes);
+                for (BasicFeature bf : decodeChunk(compressionUtils.decompress(bytes), igvChr)) {
+                    if (bf.getEnd() >= start && bf.getStart() <= end) {
+                        features.add(bf);
+                    }
+                }
+            }
+        } finally {
+            if (is != null) is.close();
+        }
+
+        // Chunks are written in start order, but their extents can overlap
+        if (offsets.size() > 1) {
+            FeatureUtils.sortFeatureList(features);
+        }
+        return features;
+    }
+
+
+    static byte[] encodeChunk(List<BasicFeature> features) throws IOException {
+
+        // Types and attribute keys are highly repetitive, these are written once per chunk in a string table
+        Map<String, Integer> stringIndices = new LinkedHashMap<String, Integer>();
+        for (BasicFeature bf : features) {
+            addStrings(bf, stringIndices);
+            if (bf.exons != null) {
+                for (Exon exon : bf.exons) {
+                    addStrings(exon, stringIndices);
+                }
+            }
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        dos.writeInt(stringIndices.size());
+        for (String s : stringIndices.keySet()) {
+            writeString(s, dos);
+        }
+
+        dos.writeInt(features.size());
+        for (BasicFeature bf : features) {
+            writeCommon(bf, stringIndices, dos);
+            dos.writeInt(bf.getThickStart());
+            dos.writeInt(bf.getThickEnd());
+            writeString(bf.identifier, dos);
+            dos.writeFloat(bf.score);
+            writeString(bf.link, dos);
+            writeStrings(bf.parentIds, dos);
+
+            List<Exon> exons = bf.exons;
+            dos.writeInt(exons == null ? -1 : exons.size());
+            if (exons != null) {
+                for (Exon exon : exons) {
+                    writeCommon(exon, stringIndices, dos);
+                    dos.writeInt(exon.getCdStart());
+                    dos.writeInt(exon.getCdEnd());
+                    dos.writeBoolean(exon.isNonCoding());
+                    dos.writeInt(exon.getNumber());
+                }
+            }
+        }
+        dos.close();
+        return bos.toByteArray();
+    }
+
+    static List<BasicFeature> decodeChunk(byte[] bytes, String chr) throws IOException {
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        int nStrings = dis.readInt();
+        String[] strings = new String[nStrings];
+        for (int i = 0; i < nStrings; i++) {
+            strings[i] = readString(dis);
+        }
+
+        Strand[] strands = Strand.values();
+        int nFeatures = dis.readInt();
+        List<BasicFeature> features = new ArrayList<BasicFeature>(nFeatures);
+        for (int i = 0; i < nFeatures; i++) {
+            int start = dis.readInt();
+            int end = dis.readInt();
+            BasicFeature bf = new BasicFeature(chr, start, end, strands[dis.readByte()]);
+            readCommon(bf, strings, dis);
+            int thickStart = dis.readInt();
+            int thickEnd = dis.readInt();
+            bf.setIdentifier(readString(dis));
+            bf.setScore(dis.readFloat());
+            bf.setURL(readString(dis));
+            bf.setParentIds(readStrings(dis));
+
+            int nExons = dis.readInt();
+            for (int e = 0; e < nExons; e++) {
+                int exonStart = dis.readInt();
+                int exonEnd = dis.readInt();
+                Exon exon = new Exon(chr, exonStart, exonEnd, strands[dis.readByte()]);
+                readCommon(exon, strings, dis);
+                int codingStart = dis.readInt();
+                int codingEnd = dis.readInt();
+                exon.setNonCoding(dis.readBoolean());
+                exon.setCodingStart(codingStart);
+                exon.setCodingEnd(codingEnd);
+                exon.setNumber(dis.readInt());
+                bf.addExon(exon);
+            }
+
+            // Adding exons resets the thick start and end
+            bf.setThickStart(thickStart);
+            bf.setThickEnd(thickEnd);
+            features.add(bf);
+        }
+        return features;
+    }
+
+    private static void addStrings(AbstractFeature f, Map<String, Integer> stringIndices) {
+        addString(f.type, stringIndices);
+        if (f.attributes != null) {
+            for (String key : f.attributes.keys()) {
+                addString(key, stringIndices);
+            }
+        }
+    }
+
+    private static void addString(String s, Map<String, Integer> stringIndices) {
+        if (s != null && !stringIndices.containsKey(s)) {
+            stringIndices.put(s, stringIndices.size());
+        }
+    }
+
+    /**
+     * Write the fields common to features and exons
+     */
+    private static void writeCommon(AbstractFeature f, Map<String, Integer> stringIndices, DataOutputStream dos)
+            throws IOException {
+        dos.writeInt(f.start);
+        dos.writeInt(f.end);
+        dos.writeByte(f.strand.ordinal());
+        dos.writeInt(f.type == null ? -1 : stringIndices.get(f.type));
+        writeString(f.name, dos);
+        writeString(f.description, dos);
+        dos.writeBoolean(f.color != null);
+        if (f.color != null) {
+            dos.writeInt(f.color.getRGB());
+        }
+        dos.writeInt(f.readingFrame);
+
+        MultiMap<String, String> attributes = f.attributes;
+        dos.writeInt(attributes == null ? -1 : attributes.keys().size());
+        if (attributes != null) {
+            for (String key : attributes.keys()) {
+                dos.writeInt(stringIndices.get(key));
+                List<String> values = attributes.getAll(key);
+                dos.writeInt(values.size());
+                for (String v : values) {
+                    writeString(v, dos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the fields written by {@link #writeCommon}, except location which is read by the caller.
+     */
+    private static void readCommon(AbstractFeature f, String[] strings, DataInputStream dis) throws IOException {
+        int typeIdx = dis.readInt();
+        f.type = typeIdx < 0 ? null : strings[typeIdx];
+        f.name = readString(dis);
+        f.description = readString(dis);
+        if (dis.readBoolean()) {
+            f.color = new Color(dis.readInt(), true);
+        }
+        f.readingFrame = dis.readInt();
+
+        int nKeys = dis.readInt();
+        if (nKeys >= 0) {
+            MultiMap<String, String> attributes = new MultiMap<String, String>(nKeys);
+            for (int k = 0; k < nKeys; k++) {
+                String key = strings[dis.readInt()];
+                int nValues = dis.readInt();
+                for (int v = 0; v < nValues; v++) {
+                    attributes.put(key, readString(dis));
+                }
+            }
+            f.attributes = attributes;
+        }
+    }
+
+    private static void writeStrings(String[] strings, DataOutputStream dos) throws IOException {
+        dos.writeInt(strings == null ? -1 : strings.length);
+        if (strings != null) {
+            for (String s : strings) {
+                writeString(s, dos);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream dis) throws IOException {
+        int n = dis.readInt();
+        if (n < 0) return null;
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++) {
+            strings[i] = readString(dis);
+        }
+        return strings;
+    }
+
+    /**
+     * Write a nullable string.  Unlike writeUTF there is no limit on the length.
+     */
+    private static void writeString(String s, DataOutputStream dos) throws IOException {
+        if (s == null) {
+            dos.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        dis.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -52,6 +52,25 @@ public class SpliceJunctionFeature extends BasicFeature {
         junctionEnd = end;
     }
 
+    /**
+     * Copy the junction, depth, and flanking regions of another feature, with a new strand
+     *
+     * @param feature
+     * @param strand
+     */
+    public SpliceJunctionFeature(SpliceJunctionFeature feature, Strand strand) {
+        this(feature.getChr(), feature.junctionStart, feature.junctionEnd, strand);
+        start = feature.getStart();
+        end = feature.getEnd();
+        junctionDepth = feature.junctionDepth;
+        if (feature.startFlankingRegionDepthArray != null) {
+            startFlankingRegionDepthArray = feature.startFlankingRegionDepthArray.clone();
+        }
+        if (feature.endFlankingRegionDepthArray != null) {
+            endFlankingRegionDepthArray = feature.endFlankingRegionDepthArray.clone();
+        }
+    }
+
 
     /**
      * Does this splice junction feature represent the same splice junction as another feature? This is used for
@@ -13,6 +13,7 @@ package org.broad.igv.feature.exome;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.NamedFeature;
 import org.broad.igv.feature.genome.Genome;
@@ -32,7 +33,22 @@ public class ExomeReferenceFrame extends ReferenceFrame {
 
     private static Logger log = Logger.getLogger(ExomeReferenceFrame.class);
 
-    Map<String, ExomeData> exomeBlockData = new HashMap();
+    /**
+     * Exome data by reference track, shared by all frames built from the same track.  Building the blocks for a
+     * whole-exome target set is expensive, this avoids repeating it when exome mode is toggled.
+     */
+    private static final Map<FeatureTrack, Map<String, ExomeData>> trackCache =
+            Collections.synchronizedMap(new WeakHashMap<FeatureTrack, Map<String, ExomeData>>());
+
+    /**
+     * Chromosome name -> exome data.  A null value indicates the chromosome has no features.
+     */
+    Map<String, ExomeData> exomeBlockData;
+
+    /**
+     * Source of features for chromosomes not yet in exomeBlockData, null if all data was supplied on construction
+     */
+    private FeatureTrack referenceTrack;
 
     int firstBlockIdx;
 
@@ -52,33 +68,62 @@ public class ExomeReferenceFrame extends ReferenceFrame {
     }
 
 
+    /**
+     * Exome data for the track is built lazily, one chromosome at a time, and cached for other frames.
+     *
+     * @param geneTrack
+     */
     private void init(FeatureTrack geneTrack) {
-        Genome genome = GenomeManager.getInstance().getCurrentGenome();
-        for (Chromosome chromosome : genome.getChromosomes()) {
-            String chr = chromosome.getName();
-            List<Feature> features = geneTrack.getFeatures(chr, 0, chromosome.getLength());
-            if (features != null && features.size() > 0) {
-                createExomBlockData(chr, features);
+        this.referenceTrack = geneTrack;
+        synchronized (trackCache) {
+            exomeBlockData = trackCache.get(geneTrack);
+            if (exomeBlockData == null) {
+                exomeBlockData = new HashMap<String, ExomeData>();
+                trackCache.put(geneTrack, exomeBlockData);
             }
-
         }
     }
 
     private void init(Map<String, List<Feature>> featureMap) {
+        exomeBlockData = new HashMap<String, ExomeData>();
         for (String chr : featureMap.keySet()) {
             List<Feature> features = featureMap.get(chr);
             if (features.size() > 0) {
-                createExomBlockData(chr, features);
+                exomeBlockData.put(chr, createExomeData(features));
             }
 
         }
     }
 
-    private void createExomBlockData(String chr, List<Feature> features) {
+    private static ExomeData createExomeData(List<Feature> features) {
         List<ExomeBlock> blocks = ExomeUtils.collapseTranscripts(features);
         List<Gene> genes = ExomeUtils.collapseToGenes(features);
-        ExomeData exomeData = new ExomeData(blocks, genes);
-        exomeBlockData.put(chr, exomeData);
+        return blocks.isEmpty() ? null : new ExomeData(blocks, genes);
+    }
+
+    /**
+     * Return the exome data for the chromosome, loading it from the reference track if needed.
+     *
+     * @param chr
+     * @return the data, or null if the chromosome has no features
+     */
+    public ExomeData getExomeData(String chr) {
+        if (chr == null) return null;
+        synchronized (exomeBlockData) {
+            if (!exomeBlockData.containsKey(chr) && referenceTrack != null) {
+                ExomeData exomeData = null;
+                Genome genome = GenomeManager.getInstance().getCurrentGenome();
+                Chromosome chromosome = genome == null ? null : genome.getChromosome(chr);
+                if (chromosome != null) {
+                    List<Feature> features = referenceTrack.getFeatures(chr, 0, chromosome.getLength());
+                    if (features != null && features.size() > 0) {
+                        exomeData = createExomeData(features);
+                    }
+                }
+                exomeBlockData.put(chr, exomeData);
+            }
+            return exomeBlockData.get(chr);
+        }
     }
 
     /**
@@ -91,31 +136,14 @@ public class ExomeReferenceFrame extends ReferenceFrame {
 
         if (exomeOrigin == 0 && delta < 0) return;
 
+        ExomeData ed = getExomeData(getChrName());
+        if (ed == null) return;
+
         double shiftBP = delta * getScale();
         exomeOrigin += shiftBP;
         if (exomeOrigin < 0) exomeOrigin = 0;
 
-        // Find exome blocks that contains the new position.  We're assuming is very close to the current blocks.
-        List<ExomeBlock> blocks = getBlocks(getChrName());
-        ExomeBlock b = blocks.get(firstBlockIdx);
-        int comp = b.compareExomePosition(exomeOrigin);
-        if (comp > 0) {
-            while (firstBlockIdx < blocks.size() - 1) {
-                firstBlockIdx++;
-                b = blocks.get(firstBlockIdx);
-                if (b.compareExomePosition(exomeOrigin) <= 0) break;
-            }
-        } else if (comp < 0) {
-            while (firstBlockIdx > 0) {
-                firstBlockIdx--;
-                b = blocks.get(firstBlockIdx);
-                if (b.compareExomePosition(exomeOrigin) >= 0) break;
-            }
-        }
-
-        // Find genomePosition
-        double genomePosition = b.getGenomeStart() + (exomeOrigin - b.getExomeStart());
-        setOrigin(genomePosition);
+        setOrigin(ed.exomeToGenomePosition(exomeOrigin));
     }
 
     /**
@@ -123,12 +151,15 @@ public class ExomeReferenceFrame extends ReferenceFrame {
      * based on current origin
      */
     private void calcExomeOrigin() {
-        List<ExomeBlock> blocks = getBlocks(chrName);
-        firstBlockIdx = getIndexForGenomePosition(blocks, origin);
-        ExomeBlock firstBlock = blocks.get(firstBlockIdx);
-
-        exomeOrigin = origin > firstBlock.getGenomeEnd() ? firstBlock.getExomeEnd() :
-                firstBlock.getExomeStart() + (int) (origin - firstBlock.getGenomeStart());
+        ExomeData ed = getExomeData(chrName);
+        if (ed == null) {
+            firstBlockIdx = 0;
+            exomeOrigin = 0;
+            return;
+        }
+        firstBlockIdx = ed.getBlockIndexForGenomePosition(origin);
+        exomeOrigin = origin > ed.getGenomeEnd(firstBlockIdx) ? ed.getExomeEnd(firstBlockIdx) :
+                ed.getExomeStart(firstBlockIdx) + (int) (origin - ed.getGenomeStart(firstBlockIdx));
     }
 
 
@@ -186,8 +217,8 @@ public class ExomeReferenceFrame extends ReferenceFrame {
         locationScale /= zoomFactor;
         zoom = newZoom;
 
-        List<ExomeBlock> blocks = getBlocks(chrName);
-        firstBlockIdx = getIndexForGenomePosition(blocks, origin);
+        ExomeData ed = getExomeData(chrName);
+        firstBlockIdx = ed == null ? 0 : ed.getBlockIndexForGenomePosition(origin);
 
         IGV.repaintPanelsHeadlessSafe();
     }
@@ -219,106 +250,36 @@ public class ExomeReferenceFrame extends ReferenceFrame {
     }
 
     public int genomeToExomePosition(int genomePosition) {
-
-        ExomeData ed = exomeBlockData.get(chrName);
-        if (ed == null) return -1;
-
-        List<ExomeBlock> blocks = ed.getBlocks();
-        int idx = getIndexForGenomePosition(blocks, genomePosition);
-        ExomeBlock b = blocks.get(idx);
-
-        if (genomePosition < b.getGenomeStart()) {
-            return b.getExomeStart();
-        } else {
-            return genomePosition < b.getGenomeEnd() ?
-                    b.getExomeStart() + (genomePosition - b.getGenomeStart()) :
-                    b.getExomeEnd();
-        }
+        ExomeData ed = getExomeData(chrName);
+        return ed == null ? -1 : ed.genomeToExomePosition(genomePosition);
     }
 
     public int exomeToGenomePosition(int exomePosition) {
-
-
-        ExomeData ed = exomeBlockData.get(chrName);
-        if (ed == null) return -1;
-
-        List<ExomeBlock> blocks = ed.getBlocks();
-        ExomeBlock b = getBlockAtExomePosition(blocks, exomePosition);
-        if (b != null) {
-            return b.getGenomeStart() + (exomePosition - b.getExomeStart());
-        } else {
-            // ?? Should be impossible if "exomePosition" is in bounds
-            b = blocks.get(blocks.size() - 1);
-            return b.getGenomeEnd();
-        }
+        ExomeData ed = getExomeData(chrName);
+        return ed == null ? -1 : ed.exomeToGenomePosition(exomePosition);
     }
 
     public List<ExomeBlock> getBlocks(String chr) {
-        ExomeData exomeData = exomeBlockData.get(chr);
+        ExomeData exomeData = getExomeData(chr);
         return exomeData == null ? null : exomeData.blocks;
     }
 
     public List<Gene> getGenes(String chr) {
-        ExomeData exomeData = exomeBlockData.get(chr);
+        ExomeData exomeData = getExomeData(chr);
         return exomeData == null ? null : exomeData.genes;
 
     }
 
-    private ExomeBlock getBlockAtExomePosition(List<ExomeBlock> blocks, int exomePosition) {
-        ExomeBlock key = new ExomeBlock(-1, -1, exomePosition, 1);
-        int r = Collections.binarySearch(blocks, key, EXOME_POSITION_COMPARATOR);
-        if (r >= 0) {
-            return blocks.get(r);
-        } else {
-            return null;
-        }
-    }
-
     /**
-     * Return the index to the last feature in the list with a start < the given position
+     * Return the index of the last gene on the current chromosome which starts before the current origin.
      *
-     * @param position
-     * @param blocks
-     * @return
+     * @return the index, or -1 if there are no genes
      */
-    public static int getIndexForGenomePosition(List<ExomeBlock> blocks, double position) {
-
-
-        int startIdx = 0;
-        int endIdx = blocks.size() - 1;
-
-        while (startIdx != endIdx) {
-            int idx = (startIdx + endIdx) / 2;
-            double distance = blocks.get(idx).getGenomeStart() - position;
-            if (distance <= 0) {
-                startIdx = idx;
-            } else {
-                endIdx = idx;
-            }
-            if (endIdx - startIdx < 10) {
-                break;
-            }
-        }
-
-        if (blocks.get(endIdx).getGenomeStart() >= position) {
-            for (int idx = endIdx; idx >= 0; idx--) {
-                if (blocks.get(idx).getGenomeStart() <= position) {
-                    return idx;
-                }
-            }
-            return 0;
-        } else {
-            for (int idx = endIdx + 1; idx < blocks.size(); idx++) {
-                if (blocks.get(idx).getGenomeStart() >= position) {
-                    return idx - 1;
-                }
-
-            }
-            return blocks.size() - 1;
-        }
+    public int getFirstGeneIdx() {
+        ExomeData exomeData = getExomeData(chrName);
+        return exomeData == null ? -1 : exomeData.getGeneIndexBefore(origin);
     }
 
-
     public List<ExomeBlock> getBlocks() {
         return getBlocks(getChrName());
     }
@@ -383,47 +344,138 @@ public class ExomeReferenceFrame extends ReferenceFrame {
 
     }
 
+    /**
+     * Blocks and genes for a single chromosome.  Block coordinates are also held in primitive arrays, the exome
+     * starts being the prefix sums of the block lengths, so positions can be mapped between genome and exome
+     * coordinates with a binary search.
+     */
     public static class ExomeData {
         private List<ExomeBlock> blocks;
         private List<Gene> genes;
 
+        private int[] genomeStarts;
+        private int[] lengths;
+        /**
+         * exomeStarts[i] is the total length of blocks 0 ... i-1.  The extra last element is the exome length.
+         */
+        private int[] exomeStarts;
+        private int[] geneStarts;
+
         ExomeData(List<ExomeBlock> block, List<Gene> genes) {
             this.blocks = block;
             this.genes = genes;
+
+            int nBlocks = blocks.size();
+            genomeStarts = new int[nBlocks];
+            lengths = new int[nBlocks];
+            exomeStarts = new int[nBlocks + 1];
+            for (int i = 0; i < nBlocks; i++) {
+                ExomeBlock b = blocks.get(i);
+                genomeStarts[i] = b.getGenomeStart();
+                lengths[i] = b.getLength();
+                exomeStarts[i + 1] = exomeStarts[i] + lengths[i];
+            }
+
+            geneStarts = new int[genes.size()];
+            for (int i = 0; i < geneStarts.length; i++) {
+                geneStarts[i] = genes.get(i).getStart();
+            }
         }
 
-        public List<ExomeBlock> getBlocks() {
-            return blocks;
+        int getGenomeStart(int blockIdx) {
+            return genomeStarts[blockIdx];
         }
 
-        public List<Gene> getGenes() {
-            return genes;
+        int getGenomeEnd(int blockIdx) {
+            return genomeStarts[blockIdx] + lengths[blockIdx];
+        }
+
+        int getExomeStart(int blockIdx) {
+            return exomeStarts[blockIdx];
+        }
+
+        int getExomeEnd(int blockIdx) {
+            return exomeStarts[blockIdx + 1];
         }
-    }
 
+        /**
+         * @return the index of the last block starting at or before the genome position, or 0 if there is none
+         */
+        public int getBlockIndexForGenomePosition(double genomePosition) {
+            return Math.max(0, lastIndexAtOrBefore(genomeStarts, genomeStarts.length, genomePosition));
+        }
+
+        /**
+         * @return the index of the block containing the exome position, clamped to the first and last blocks
+         */
+        public int getBlockIndexForExomePosition(double exomePosition) {
+            return Math.max(0, lastIndexAtOrBefore(exomeStarts, genomeStarts.length, exomePosition));
+        }
 
-    private static final Comparator<ExomeBlock> GENOME_POSITION_COMPARATOR = new Comparator<ExomeBlock>() {
-        public int compare(ExomeBlock o1, ExomeBlock o2) {
-            int genomeStart2 = o2.getGenomeStart();
-            int genomeStart1 = o1.getGenomeStart();
-            if (genomeStart2 >= genomeStart1 && o2.getGenomeEnd() <= o1.getGenomeEnd()) {
-                return 0;
+        /**
+         * Map a genome position to the exome.  Positions between blocks map to the end of the preceding block.
+         */
+        public int genomeToExomePosition(int genomePosition) {
+            int idx = getBlockIndexForGenomePosition(genomePosition);
+            if (genomePosition < genomeStarts[idx]) {
+                return exomeStarts[idx];
             } else {
-                return genomeStart1 - genomeStart2;
+                return genomePosition < getGenomeEnd(idx) ?
+                        exomeStarts[idx] + (genomePosition - genomeStarts[idx]) :
+                        getExomeEnd(idx);
             }
         }
-    };
-
-    private static final Comparator<ExomeBlock> EXOME_POSITION_COMPARATOR = new Comparator<ExomeBlock>() {
-        public int compare(ExomeBlock o1, ExomeBlock o2) {
-            int exomeStart2 = o2.getExomeStart();
-            int exomeStart1 = o1.getExomeStart();
-            if (exomeStart2 >= exomeStart1 && o2.getExomeEnd() <= o1.getExomeEnd()) {
-                return 0;
+
+        /**
+         * Map an exome position to the genome.  Positions past the end of the exome map to the end of the last block.
+         */
+        public int exomeToGenomePosition(int exomePosition) {
+            int idx = getBlockIndexForExomePosition(exomePosition);
+            if (exomePosition >= getExomeEnd(idx)) {
+                return getGenomeEnd(idx);
+            } else if (exomePosition < exomeStarts[idx]) {
+                return genomeStarts[idx];
             } else {
-                return exomeStart1 - exomeStart2;
+                return genomeStarts[idx] + (exomePosition - exomeStarts[idx]);
+            }
+        }
+
+        /**
+         * @return the index of the last gene starting before the position, 0 if there is none, or -1 if there
+         *         are no genes.  Equivalent to {@link FeatureUtils#getIndexBefore(double, java.util.List)}.
+         */
+        public int getGeneIndexBefore(double position) {
+            if (geneStarts.length == 0) return -1;
+            if (geneStarts[geneStarts.length - 1] <= position) return geneStarts.length - 1;
+            return Math.max(0, lastIndexAtOrBefore(geneStarts, geneStarts.length, Math.ceil(position) - 1));
+        }
+
+        /**
+         * Binary search for the last of the first n sorted values <= position
+         *
+         * @return the index, or -1 if all values are greater than position
+         */
+        private static int lastIndexAtOrBefore(int[] values, int n, double position) {
+            int low = 0;
+            int high = n - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= position) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
             }
+            return high;
+        }
+
+        public List<ExomeBlock> getBlocks() {
+            return blocks;
         }
-    };
+
+        public List<Gene> getGenes() {
+            return genes;
+        }
+    }
 
 }
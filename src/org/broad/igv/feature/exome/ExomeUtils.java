@@ -97,6 +97,7 @@ public class ExomeUtils {
             }
 
         }
+        blocks.add(block);
 
         return blocks;
 
@@ -14,9 +14,9 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.AsciiTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
-import org.broad.tribble.readers.AsciiLineReader;
 
 import java.io.IOException;
 
@@ -38,6 +38,9 @@ public class GWASParser {
     private int SNPCol = -1;
     Genome genome;
 
+    private String lastChrToken;
+    private String lastChr;
+
     public static boolean isGWASFile(String typeString) {
         return typeString.endsWith(".logistic") || typeString.endsWith(".linear") || typeString.endsWith(".assoc") ||
                 typeString.endsWith(".qassoc") || typeString.endsWith(".gwas");
@@ -112,7 +115,7 @@ public class GWASParser {
      */
     public GWASData parseDescriptions(GWASData gData, String hitChr, long hitLocation, int searchStartRow) throws IOException {
 
-        AsciiLineReader reader = null;
+        AsciiTokenizer tokenizer = null;
         String nextLine = null;
 
         boolean hitFound = false;
@@ -120,11 +123,11 @@ public class GWASParser {
         int rowCounter = 0;
 
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            tokenizer = openTokenizer();
 
             // Parse header line
-            String headerLine = reader.readLine();
-            if (!parseHeader(headerLine))
+            String headerLine = tokenizer.nextLine() ? tokenizer.getLine() : null;
+            if (headerLine == null || !parseHeader(headerLine))
                 throw new ParserException("Error while parsing header line.", 0, nextLine);
 
             gData.getDescriptionCache().setHeaderTokens(headerLine);
@@ -134,14 +137,13 @@ public class GWASParser {
             int cacheAfter = cacheSize / 2;
             int cacheCounter = 0;
 
-            while (cacheCounter < cacheAfter && (nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+            while (cacheCounter < cacheAfter && tokenizer.nextLine() && !tokenizer.isBlank()) {
 
-                nextLine = nextLine.trim();
                 rowCounter++;
 
                 if (rowCounter >= searchStartRow) {
 
-                    GWASEntry entry = parseLine(nextLine, rowCounter);
+                    GWASEntry entry = parseLine(tokenizer, rowCounter);
                     if(entry == null) continue;
 
                     // See if chr and nucleotide position match to our query data point
@@ -153,6 +155,7 @@ public class GWASParser {
                     if (hitFound) {
                         cacheCounter++;
                     }
+                    nextLine = tokenizer.getLine().trim();
                     gData.getDescriptionCache().add(entry.chr, entry.start, entry.p, nextLine);
 
                 }
@@ -161,13 +164,13 @@ public class GWASParser {
         } catch (ParserException e) {
             throw e;
         } catch (Exception e){
-            if (nextLine != null && rowCounter != 0) {
-                throw new ParserException(e.getMessage(), e, rowCounter, nextLine);
+            if (tokenizer != null && rowCounter != 0) {
+                throw new ParserException(e.getMessage(), e, rowCounter, tokenizer.getLine());
             } else {
                 throw new RuntimeException(e);
             }
         } finally{
-            if(reader != null) reader.close();
+            if(tokenizer != null) tokenizer.close();
         }
 
         return gData;
@@ -176,28 +179,26 @@ public class GWASParser {
 
     public GWASData parse() throws IOException {
 
-        AsciiLineReader reader = null;
-        String nextLine = null;
+        AsciiTokenizer tokenizer = null;
         int rowCounter = 0;
 
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            tokenizer = openTokenizer();
 
             // Parse header line
-            String headerLine = reader.readLine();
-            if (!parseHeader(headerLine))
-                throw new ParserException("Error while parsing header line.", 0, nextLine);
+            String headerLine = tokenizer.nextLine() ? tokenizer.getLine() : null;
+            if (headerLine == null || !parseHeader(headerLine))
+                throw new ParserException("Error while parsing header line.", 0, headerLine);
 
             GWASData gData = new GWASData();
 
             int indexCounter = 0;
 
-            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+            while (tokenizer.nextLine() && !tokenizer.isBlank()) {
 
-                nextLine = nextLine.trim();
                 rowCounter++;
 
-                GWASEntry entry = parseLine(nextLine, rowCounter);
+                GWASEntry entry = parseLine(tokenizer, rowCounter);
                 if (entry == null) continue;
 
                 gData.addLocation(entry.chr, entry.start);
@@ -207,52 +208,64 @@ public class GWASParser {
 
                 int indexSize = 10000;
                 if (indexCounter == indexSize) {
-                    gData.getFileIndex().add((int) reader.getPosition());
+                    gData.getFileIndex().add((int) tokenizer.getNextLineOffset());
                     indexCounter = 0;
                 }
             }
             return gData;
 
+        } catch (ParserException e) {
+            throw e;
         } catch (Exception e) {
-            if (nextLine != null && rowCounter != 0) {
-                throw new ParserException(e.getMessage(), e, rowCounter, nextLine);
+            if (tokenizer != null && rowCounter != 0) {
+                throw new ParserException(e.getMessage(), e, rowCounter, tokenizer.getLine());
             } else {
                 throw new RuntimeException(e);
             }
         } finally {
-            if(reader != null) reader.close();
+            if(tokenizer != null) tokenizer.close();
         }
     }
 
+    private AsciiTokenizer openTokenizer() throws IOException {
+        AsciiTokenizer tokenizer = ParsingUtils.openAsciiTokenizer(locator);
+        tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB_OR_SPACES);
+        return tokenizer;
+    }
+
     /**
-     * Parse data from the given text line to {@code GWASData} instance provided
-     * @param nextLine
+     * Parse data from the current line of the tokenizer.  Fields are parsed in place, the chromosome name is only
+     * materialized when it changes.
+     *
+     * @param tokenizer
      * @param lineNumber
-     * @return  Data container, with relevant info
+     * @return  Data container, with relevant info, or null if the line has no p-value
      * @throws ParserException If there is an error parsing the line
      *
      */
-    private GWASEntry parseLine(String nextLine, long lineNumber) {
-        String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-        if (tokens.length > 1) {
+    private GWASEntry parseLine(AsciiTokenizer tokenizer, long lineNumber) {
+        if (tokenizer.getFieldCount() > 1) {
 
-            //String chr = ParsingUtils.convertChrString(tokens[chrCol].trim());
-            String chr = genome.getChromosomeAlias(tokens[chrCol].trim());
+            if (lastChrToken == null || !tokenizer.fieldEquals(chrCol, lastChrToken)) {
+                lastChrToken = tokenizer.getString(chrCol);
+                lastChr = genome.getChromosomeAlias(lastChrToken);
+            }
+            String chr = lastChr;
 
             int start;
 
             try {
-                start = Integer.parseInt(tokens[locationCol].trim());
+                start = tokenizer.getInt(locationCol);
             } catch (NumberFormatException e) {
-                throw new ParserException("Column " + locationCol + " must be a numeric value.", lineNumber, nextLine);
+                throw new ParserException("Column " + locationCol + " must be a numeric value.", lineNumber, tokenizer.getLine());
             }
 
             // Check if the p-value is NA
-            if (!tokens[pCol].trim().equalsIgnoreCase("NA")) {
+            if (!tokenizer.fieldEqualsIgnoreCase(pCol, "NA")) {
                 double p;
 
                 try {
-                    p = Double.parseDouble(tokens[pCol]);
+                    p = tokenizer.getDouble(pCol);
                     if (p <= 0) {
                         throw new NumberFormatException();
                     }
@@ -260,10 +273,10 @@ public class GWASParser {
                     p = -log10(p);
 
                 } catch (NumberFormatException e) {
-                    throw new ParserException("Column " + pCol + " must be a positive numeric value. Found " + tokens[pCol], lineNumber, nextLine);
+                    throw new ParserException("Column " + pCol + " must be a positive numeric value. Found " + tokenizer.getString(pCol), lineNumber, tokenizer.getLine());
                 }
 
-                return new GWASEntry(chr, start, p, nextLine);
+                return new GWASEntry(chr, start, p);
             }
         }
         return null;
@@ -274,16 +287,11 @@ public class GWASParser {
         private final String chr;
         private final int start;
         private final double p;
-        private final String description;
 
-    private GWASEntry(String chr, int start, double p, String description){
+    private GWASEntry(String chr, int start, double p){
         this.chr = chr;
         this.start = start;
         this.p = p;
-        this.description = description;
     }
 }
-
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.maf;
+
+import org.broad.igv.util.CompressionUtils;
+
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Encodes and decodes chunks of the binary MAF format (".mafb").
+ * <p/>
+ * File layout:
+ * <pre>
+ *   int     magic ("MAFB")
+ *   int     version
+ *   UTF     track line ("" if none)
+ *   chunk*
+ * </pre>
+ * Each chunk is an int byte count followed by a deflated payload holding up to {@link MAFIndex#blockSize} alignment
+ * blocks from a single chromosome.  The payload starts with a string table (species and chromosome names) which the
+ * sequence rows reference by index, so a chunk can be decoded on its own.  Sequence rows are packed 2 bases per byte
+ * when all characters are in the nucleotide/gap alphabet, otherwise stored as raw bytes.
+ * <p/>
+ * Chunks are located with a standard {@link MAFIndex}, written to the file path + ".index", whose interval values are
+ * chunk file offsets.
+ */
+public class MAFBinaryCodec {
+
+    public static final String EXTENSION = ".mafb";
+
+    static final int MAGIC = ('M' << 24) | ('A' << 16) | ('F' << 8) | 'B';
+    static final int VERSION = 1;
+
+    private static final byte RAW = 0;
+    private static final byte PACKED = 1;
+
+    private static final byte[] ALPHABET = "-ACGTNacgtn.RYrx".getBytes();
+    private static final byte[] CODES = new byte[256];
+
+    static {
+        Arrays.fill(CODES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            CODES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private CompressionUtils compressionUtils = new CompressionUtils();
+
+    public static boolean isMAFBinary(String path) {
+        return path.toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * Encode a chunk of alignment blocks, returning the compressed payload.
+     *
+     * @param blocks
+     * @return
+     * @throws IOException
+     */
+    public byte[] encodeChunk(List<MultipleAlignmentBlock> blocks) throws IOException {
+
+        Map<String, Integer> stringIndices = new LinkedHashMap<String, Integer>();
+        for (MultipleAlignmentBlock block : blocks) {
+            for (MultipleAlignmentBlock.Sequence seq : block.getSequences()) {
+                addString(seq.getSpecies(), stringIndices);
+                addString(seq.getChr(), stringIndices);
+            }
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        dos.writeInt(stringIndices.size());
+        for (String s : stringIndices.keySet()) {
+            dos.writeUTF(s);
+        }
+
+        dos.writeInt(blocks.size());
+        for (MultipleAlignmentBlock block : blocks) {
+            List<MultipleAlignmentBlock.Sequence> sequences = block.getSequences();
+            dos.writeInt(sequences.size());
+            for (MultipleAlignmentBlock.Sequence seq : sequences) {
+                dos.writeInt(stringIndices.get(seq.getSpecies()));
+                dos.writeInt(stringIndices.get(seq.getChr()));
+                dos.writeInt(seq.getStart());
+                dos.writeInt(seq.getSize());
+                dos.writeByte(seq.getStrand());
+                dos.writeInt(seq.getSrcSize());
+                writeText(seq.getText(), dos);
+            }
+        }
+        dos.close();
+
+        return compressionUtils.compress(bos.toByteArray());
+    }
+
+    /**
+     * Decode a compressed chunk payload.
+     *
+     * @param compressedBytes
+     * @return the alignment blocks, in file order
+     * @throws IOException
+     */
+    public List<MultipleAlignmentBlock> decodeChunk(byte[] compressedBytes) throws IOException {
+
+        byte[] bytes = compressionUtils.decompress(compressedBytes);
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        int nStrings = dis.readInt();
+        String[] strings = new String[nStrings];
+        for (int i = 0; i < nStrings; i++) {
+            strings[i] = dis.readUTF();
+        }
+
+        int nBlocks = dis.readInt();
+        List<MultipleAlignmentBlock> blocks = new ArrayList<MultipleAlignmentBlock>(nBlocks);
+        for (int b = 0; b < nBlocks; b++) {
+            MultipleAlignmentBlock block = new MultipleAlignmentBlock();
+            int nSequences = dis.readInt();
+            for (int i = 0; i < nSequences; i++) {
+                String species = strings[dis.readInt()];
+                String chr = strings[dis.readInt()];
+                int start = dis.readInt();
+                int size = dis.readInt();
+                char strand = (char) dis.readByte();
+                int srcSize = dis.readInt();
+                String text = readText(dis);
+                block.addSequence(new MultipleAlignmentBlock.Sequence(species, chr, start, size, strand, srcSize, text));
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private static void addString(String s, Map<String, Integer> stringIndices) {
+        if (!stringIndices.containsKey(s)) {
+            stringIndices.put(s, stringIndices.size());
+        }
+    }
+
+    private static void writeText(String text, DataOutputStream dos) throws IOException {
+
+        byte[] bytes = text.getBytes();
+        boolean packable = true;
+        for (byte b : bytes) {
+            if (b < 0 || CODES[b] < 0) {
+                packable = false;
+                break;
+            }
+        }
+
+        dos.writeInt(bytes.length);
+        if (packable) {
+            dos.writeByte(PACKED);
+            byte[] packed = new byte[(bytes.length + 1) / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                int code = CODES[bytes[i]];
+                packed[i / 2] |= (i % 2 == 0) ? (code << 4) : code;
+            }
+            dos.write(packed);
+        } else {
+            dos.writeByte(RAW);
+            dos.write(bytes);
+        }
+    }
+
+    private static String readText(DataInputStream dis) throws IOException {
+
+        int length = dis.readInt();
+        byte type = dis.readByte();
+        byte[] bytes = new byte[length];
+        if (type == PACKED) {
+            byte[] packed = new byte[(length + 1) / 2];
+            dis.readFully(packed);
+            for (int i = 0; i < length; i++) {
+                int code = (i % 2 == 0) ? (packed[i / 2] >> 4) & 0x0F : packed[i / 2] & 0x0F;
+                bytes[i] = ALPHABET[code];
+            }
+        } else {
+            dis.readFully(bytes);
+        }
+        return new String(bytes);
+    }
+
+}
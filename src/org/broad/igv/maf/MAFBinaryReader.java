@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.maf;
+
+import net.sf.samtools.seekablestream.SeekableStream;
+import org.broad.igv.Globals;
+import org.broad.igv.exceptions.DataLoadException;
+import org.broad.igv.util.ParsingUtils;
+import org.broad.igv.util.index.Interval;
+import org.broad.igv.util.index.IntervalTree;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reader for binary MAF files created by {@link MAFBinaryWriter}.  Only the chunks overlapping a query are read and
+ * decoded.
+ */
+public class MAFBinaryReader implements MAFReader {
+
+    private String path;
+    private MAFIndex index;
+    private List<String> species;
+    private String trackName;
+    private MAFBinaryCodec codec;
+
+    public MAFBinaryReader(String path) throws IOException {
+        this.path = path;
+        this.codec = new MAFBinaryCodec();
+        readHeader();
+
+        String indexPath = path + ".index";
+        if (!ParsingUtils.pathExists(indexPath)) {
+            throw new DataLoadException("Index file not found", indexPath);
+        }
+        index = MAFIndex.loadIndex(indexPath);
+    }
+
+    private void readHeader() throws IOException {
+        SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getStreamFor(path);
+            DataInputStream dis = new DataInputStream(is);
+            if (dis.readInt() != MAFBinaryCodec.MAGIC) {
+                throw new DataLoadException("Not a binary MAF file", path);
+            }
+            int version = dis.readInt();
+            if (version > MAFBinaryCodec.VERSION) {
+                throw new DataLoadException("Unsupported binary MAF version: " + version, path);
+            }
+            String trackLine = dis.readUTF();
+            if (trackLine.length() > 0) {
+                Map<String, String> properties = MAFParser.parseTrackLine(trackLine);
+                trackName = properties.get("name");
+                if (properties.containsKey("speciesorder")) {
+                    species = Arrays.asList(Globals.whitespacePattern.split(properties.get("speciesorder")));
+                }
+            }
+        } finally {
+            if (is != null) is.close();
+        }
+    }
+
+    public String getTrackName() {
+        return trackName;
+    }
+
+    @Override
+    public List<MultipleAlignmentBlock> loadAlignments(String chr, int start, int end) throws IOException {
+
+        IntervalTree ivTree = index.getIntervalTree(chr);
+        if (ivTree == null) return null;
+
+        List<Interval> intervals = ivTree.findOverlapping(start, end);
+        if (intervals.isEmpty()) {
+            return null;
+        }
+
+        // Chunks do not overlap, reading them in file order returns blocks in position order
+        TreeSet<Long> offsets = new TreeSet<Long>();
+        for (Interval iv : intervals) {
+            offsets.add(iv.getValue());
+        }
+
+        List<MultipleAlignmentBlock> alignments = new ArrayList<MultipleAlignmentBlock>();
+        SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getStreamFor(path);
+            for (Long offset : offsets) {
+                is.seek(offset);
+                DataInputStream dis = new DataInputStream(is);
+                byte[] bytes = new byte[dis.readInt()];
+                dis.readFully(bytes);
+                for (MultipleAlignmentBlock block : codec.decodeChunk(bytes)) {
+                    if (block.getEnd() >= start && block.getStart() <= end && block.getChr().equals(chr)) {
+                        alignments.add(block);
+                    }
+                }
+            }
+        } finally {
+            if (is != null) is.close();
+        }
+        return alignments;
+    }
+
+    @Override
+    public Collection<String> getChrNames() {
+        return index.getChromosomes();
+    }
+
+    @Override
+    public Collection<String> getSpecies() {
+        return species != null ? species : index.getSpecies();
+    }
+
+    @Override
+    public String getSpeciesName(String speciesId) {
+        return speciesId;
+    }
+
+    @Override
+    public String getRefId() {
+        return index.getRefId();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.maf;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.ParsingUtils;
+
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Converts a text MAF file to the binary block format described in {@link MAFBinaryCodec}, and writes the
+ * accompanying {@link MAFIndex}.
+ */
+public class MAFBinaryWriter {
+
+    private static Logger log = Logger.getLogger(MAFBinaryWriter.class);
+
+    /**
+     * Convert the MAF file at {@code mafPath}.  The index is written to {@code outputPath + ".index"}
+     *
+     * @param mafPath
+     * @param outputPath
+     * @throws IOException
+     */
+    public static void convert(String mafPath, String outputPath) throws IOException {
+
+        MAFBinaryCodec codec = new MAFBinaryCodec();
+        MAFIndex index = new MAFIndex();
+
+        Set<String> allSpecies = new HashSet<String>();
+        Map<String, MAFIndex.RunningAverage> speciesRanks = new HashMap<String, MAFIndex.RunningAverage>();
+        List<String> blockSpecies = new ArrayList<String>();
+
+        BufferedReader reader = null;
+        DataOutputStream dos = null;
+        try {
+            reader = ParsingUtils.openBufferedReader(mafPath);
+            dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath)));
+
+            // Header.  The track line, if any, precedes the first alignment block
+            String trackLine = "";
+            List<MultipleAlignmentBlock> chunk = new ArrayList<MultipleAlignmentBlock>();
+            long position = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("track")) {
+                    trackLine = line;
+                } else if (line.startsWith("a ")) {
+                    break;
+                }
+            }
+            dos.writeInt(MAFBinaryCodec.MAGIC);
+            dos.writeInt(MAFBinaryCodec.VERSION);
+            dos.writeUTF(trackLine);
+            position = dos.size();
+
+            int blockCount = 0;
+            while (line != null) {
+                if (line.startsWith("a ")) {
+                    MultipleAlignmentBlock block = MAFParser.parseBlock(reader);
+                    if (block.getSequences().isEmpty()) {
+                        line = reader.readLine();
+                        continue;
+                    }
+                    blockCount++;
+
+                    blockSpecies.clear();
+                    for (MultipleAlignmentBlock.Sequence seq : block.getSequences()) {
+                        blockSpecies.add(seq.getSpecies());
+                    }
+                    MAFIndex.mergeSpecies(blockSpecies, allSpecies, speciesRanks);
+
+                    if (!chunk.isEmpty() && (chunk.size() >= MAFIndex.blockSize ||
+                            !chunk.get(0).getChr().equals(block.getChr()))) {
+                        position += writeChunk(chunk, codec, index, position, dos);
+                        chunk.clear();
+                    }
+                    chunk.add(block);
+                }
+                line = reader.readLine();
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(chunk, codec, index, position, dos);
+            }
+
+            index.setSpecies(MAFIndex.sortSpecies(allSpecies, speciesRanks));
+            log.info("Wrote " + blockCount + " alignment blocks to " + outputPath);
+
+        } finally {
+            if (reader != null) reader.close();
+            if (dos != null) dos.close();
+        }
+
+        MAFIndex.writeIndex(index, outputPath + ".index");
+    }
+
+    /**
+     * Write a chunk and record it in the index.
+     *
+     * @return the number of bytes written
+     */
+    private static int writeChunk(List<MultipleAlignmentBlock> chunk, MAFBinaryCodec codec, MAFIndex index,
+                                  long position, DataOutputStream dos) throws IOException {
+
+        int start = Integer.MAX_VALUE;
+        int end = 0;
+        for (MultipleAlignmentBlock block : chunk) {
+            start = Math.min(start, block.getStart());
+            end = Math.max(end, block.getEnd());
+        }
+        index.insertInterval(chunk.get(0).getChr(), start, end, position);
+
+        byte[] bytes = codec.encodeChunk(chunk);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+        return 4 + bytes.length;
+    }
+
+}
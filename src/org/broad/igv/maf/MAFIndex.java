@@ -285,7 +285,7 @@ public class MAFIndex {
 
     }
 
-    private static class RunningAverage {
+    static class RunningAverage {
         int nPts = 1;
         double average = 0;
 
@@ -294,7 +294,7 @@ public class MAFIndex {
         }
     }
 
-    private static void mergeSpecies(List<String> blockSpecies, Set<String> allSpecies, Map<String, RunningAverage> speciesRank) {
+    static void mergeSpecies(List<String> blockSpecies, Set<String> allSpecies, Map<String, RunningAverage> speciesRank) {
         allSpecies.addAll(blockSpecies);
         for (int i = 0; i < blockSpecies.size(); i++) {
             String sp = blockSpecies.get(i);
@@ -308,7 +308,7 @@ public class MAFIndex {
         }
     }
 
-    private static List<String> sortSpecies(final Collection<String> allSpecies, final Map<String, RunningAverage> speciesRank) {
+    static List<String> sortSpecies(final Collection<String> allSpecies, final Map<String, RunningAverage> speciesRank) {
         List<String> speciesList = new ArrayList<String>(allSpecies);
         Collections.sort(speciesList, new Comparator<String>() {
             @Override
@@ -25,7 +25,9 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -150,29 +152,12 @@ public class MAFParser implements MAFReader {
                 if (line.startsWith("a ")) {
                     return;  // Done with header
                 } else if (line.startsWith("track")) {
-
-                    String[] tokens = breakQuotedString(line);
-                    for (int i = 0; i < tokens.length; i++) {
-                        String key = null;
-                        String value = null;
-                        String[] kv = tokens[i].split("=");
-                        if (kv.length == 1) {
-                            if (tokens[i].endsWith(("="))) {
-                                key = kv[0].toLowerCase().trim();
-                                value = tokens[++i];
-                            }
-                        } else if (kv.length == 2) {
-                            key = kv[0].toLowerCase().trim();
-                            value = kv[1];
-                        }
-                        if (key != null) {
-                            if (key.equals("name")) {
-                                this.trackName = value;
-                            }
-                            if (key.equals("speciesorder")) {
-                                species = Arrays.asList(Globals.whitespacePattern.split(value));
-                            }
-                        }
+                    Map<String, String> properties = parseTrackLine(line);
+                    if (properties.containsKey("name")) {
+                        this.trackName = properties.get("name");
+                    }
+                    if (properties.containsKey("speciesorder")) {
+                        species = Arrays.asList(Globals.whitespacePattern.split(properties.get("speciesorder")));
                     }
                 }
             }
@@ -181,7 +166,36 @@ public class MAFParser implements MAFReader {
         }
     }
 
-    private String[] breakQuotedString(String subjectString) {
+    /**
+     * Parse the key=value pairs of a "track" line.  Keys are converted to lower case.
+     *
+     * @param line
+     * @return
+     */
+    static Map<String, String> parseTrackLine(String line) {
+        Map<String, String> properties = new HashMap<String, String>();
+        String[] tokens = breakQuotedString(line);
+        for (int i = 0; i < tokens.length; i++) {
+            String key = null;
+            String value = null;
+            String[] kv = tokens[i].split("=");
+            if (kv.length == 1) {
+                if (tokens[i].endsWith(("=")) && i < tokens.length - 1) {
+                    key = kv[0].toLowerCase().trim();
+                    value = tokens[++i];
+                }
+            } else if (kv.length == 2) {
+                key = kv[0].toLowerCase().trim();
+                value = kv[1];
+            }
+            if (key != null) {
+                properties.put(key, value);
+            }
+        }
+        return properties;
+    }
+
+    private static String[] breakQuotedString(String subjectString) {
 
         List<String> matchList = new ArrayList<String>();
         Pattern regex = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
@@ -208,7 +222,7 @@ public class MAFParser implements MAFReader {
      *
      * @param reader
      */
-    private MultipleAlignmentBlock parseBlock(BufferedReader reader) throws IOException {
+    static MultipleAlignmentBlock parseBlock(BufferedReader reader) throws IOException {
 
         String line;
         MultipleAlignmentBlock ma = new MultipleAlignmentBlock();
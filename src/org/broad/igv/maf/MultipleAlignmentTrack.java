@@ -20,6 +20,7 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.panel.IGVPopupMenu;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.collections.LRUCache;
 
 import javax.swing.*;
 import java.awt.*;
@@ -51,14 +52,23 @@ public class MultipleAlignmentTrack extends AbstractTrack {
     Rectangle visibleNameRect;
 
 
-    private int tileSize = 500;
+    /**
+     * Width in bp of the windows cached in {@link #tileCache}
+     */
+    private int tileSize = 10000;
+
+    private static final int MAX_CACHED_TILES = 20;
 
     //MafChunk currentChunk
 
 
     MAFReader reader;
 
-    MAFCache loadedAlignments;
+    /**
+     * Decoded alignment blocks by tile (see {@link #getKey(String, int)}).  Shared by all reference frames,
+     * so gene-list views and panning back and forth do not reload blocks.
+     */
+    LRUCache<String, List<MultipleAlignmentBlock>> tileCache;
 
 
     /**
@@ -76,6 +86,13 @@ public class MultipleAlignmentTrack extends AbstractTrack {
             reader = new MAFListReader(locator.getPath());
             //        speciesNames.put(genome.getId(), genome.getDisplayName());
 
+        } else if (MAFBinaryCodec.isMAFBinary(locator.getPath())) {
+            MAFBinaryReader binaryReader = new MAFBinaryReader(locator.getPath());
+            String trackName = binaryReader.getTrackName();
+            if (trackName != null) {
+                setName(trackName);
+            }
+            reader = binaryReader;
         } else {
 
             MAFParser parser = new MAFParser(locator.getPath()); //  new MAFLocalReader(locator.getPath());
@@ -98,6 +115,8 @@ public class MultipleAlignmentTrack extends AbstractTrack {
 
         selectedSpecies = new ArrayList<String>();
         selectedSpecies.addAll(reader.getSpecies());
+
+        tileCache = new LRUCache<String, List<MultipleAlignmentBlock>>(this, MAX_CACHED_TILES);
     }
 
 
@@ -197,19 +216,9 @@ public class MultipleAlignmentTrack extends AbstractTrack {
 
 
         try {
-            List<MultipleAlignmentBlock> alignments = null;
-            if (loadedAlignments != null && loadedAlignments.contains(chr, start, end)) {
-                alignments = loadedAlignments.getAlignments();
-            } else {
-                String mafChr = chrMappings == null ? chr : chrMappings.get(chr);
-                alignments = reader.loadAlignments(mafChr, start, end);
-                loadedAlignments = new MAFCache(chr, start, end, alignments);
-            }
-
-            if (alignments != null) {
-                for (MultipleAlignmentBlock ma : alignments) {
-                    renderAlignment(context, rect, ma);
-                }
+            List<MultipleAlignmentBlock> alignments = getAlignments(chr, start, end);
+            for (MultipleAlignmentBlock ma : alignments) {
+                renderAlignment(context, rect, ma);
             }
         } catch (IOException e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
@@ -218,6 +227,45 @@ public class MultipleAlignmentTrack extends AbstractTrack {
 
     }
 
+    /**
+     * Return the alignment blocks overlapping the interval, loading tiles not already in the cache.
+     *
+     * @param chr   the genome chromosome name
+     * @param start
+     * @param end
+     * @return
+     * @throws IOException
+     */
+    List<MultipleAlignmentBlock> getAlignments(String chr, int start, int end) throws IOException {
+
+        List<MultipleAlignmentBlock> alignments = new ArrayList<MultipleAlignmentBlock>();
+
+        int startTile = start / tileSize;
+        int endTile = end / tileSize;
+        for (int t = startTile; t <= endTile; t++) {
+            String key = getKey(chr, t);
+            List<MultipleAlignmentBlock> tileAlignments = tileCache.get(key);
+            if (tileAlignments == null) {
+                String mafChr = chrMappings == null ? chr : chrMappings.get(chr);
+                tileAlignments = reader.loadAlignments(mafChr, t * tileSize, (t + 1) * tileSize - 1);
+                if (tileAlignments == null) {
+                    tileAlignments = Collections.emptyList();
+                }
+                tileCache.put(key, tileAlignments);
+            }
+
+            // Blocks spanning tile boundaries are loaded with each tile they overlap.  Take them from the
+            // first tile only.
+            int tileStart = t * tileSize;
+            for (MultipleAlignmentBlock ma : tileAlignments) {
+                if (t == startTile || ma.getStart() >= tileStart) {
+                    alignments.add(ma);
+                }
+            }
+        }
+        return alignments;
+    }
+
     private void renderAlignment(RenderContext context, Rectangle trackRectangle, MultipleAlignmentBlock ma) {
 
         int y = trackRectangle.y;
@@ -338,31 +386,7 @@ public class MultipleAlignmentTrack extends AbstractTrack {
 
 
     static String getKey(String chr, int tileNo) {
-        return chr + tileNo;
-    }
-
-    static class MAFCache {
-
-        String chr;
-        int start;
-        int end;
-        List<MultipleAlignmentBlock> alignments;
-
-        MAFCache(String chr, int start, int end, List<MultipleAlignmentBlock> alignments) {
-            this.chr = chr;
-            this.start = start;
-            this.end = end;
-            this.alignments = alignments;
-        }
-
-        boolean contains(String chr, int start, int end) {
-            return this.start <= start && this.end >= end && this.chr.equals(chr);
-        }
-
-        public List<MultipleAlignmentBlock> getAlignments() {
-            return alignments;
-        }
+        return chr + "_" + tileNo;
     }
 
 }
-
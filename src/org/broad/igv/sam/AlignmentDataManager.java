@@ -16,6 +16,7 @@ import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.sam.AlignmentTrack.SortOption;
+import org.broad.igv.sam.reader.AlignmentFilter;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.track.RenderContext;
 import org.broad.igv.ui.IGV;
@@ -43,6 +44,7 @@ public class AlignmentDataManager implements IAlignmentDataManager{
     private Map<String, AlignmentInterval> loadedIntervalMap = new HashMap<String, AlignmentInterval>();//new MapMaker()).softValues().makeMap();
     //private Cache<String, AlignmentInterval> loadedIntervalMap = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).initialCapacity(1).build();
 
+    private ResourceLocator locator;
     private HashMap<String, String> chrMappings = new HashMap();
     private volatile boolean isLoading = false;
     private AlignmentTileLoader reader;
@@ -63,6 +65,7 @@ public class AlignmentDataManager implements IAlignmentDataManager{
 
 
     public AlignmentDataManager(ResourceLocator locator, Genome genome) throws IOException {
+        this.locator = locator;
         reader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator));
         peStats = new HashMap();
         initLoadOptions();
@@ -308,8 +311,11 @@ public class AlignmentDataManager implements IAlignmentDataManager{
         }
     }
 
-    public void clear() {
+    public synchronized void clear() {
         // reader.clearCache();
+        for (AlignmentInterval interval : loadedIntervalMap.values()) {
+            releaseTile(interval);
+        }
         loadedIntervalMap.clear();
     }
 
@@ -355,7 +361,7 @@ public class AlignmentDataManager implements IAlignmentDataManager{
 
         String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
 
-        DownsampleOptions downsampleOptions = new DownsampleOptions();
+        final DownsampleOptions downsampleOptions = new DownsampleOptions();
 
         final AlignmentTrack.BisulfiteContext bisulfiteContext =
                 renderOptions != null ? renderOptions.bisulfiteContext : null;
@@ -372,34 +378,72 @@ public class AlignmentDataManager implements IAlignmentDataManager{
             IGV.getInstance().getContentPane().getStatusBar().activateCancelButton(cancelListener);
         }
 
-        SpliceJunctionHelper spliceJunctionHelper = new SpliceJunctionHelper(this.loadOptions);
-        AlignmentTileLoader.AlignmentTile t = reader.loadTile(sequence, start, end, spliceJunctionHelper,
-                downsampleOptions, peStats, bisulfiteContext, monitor);
-
-        List<Alignment> alignments = t.getAlignments();
+        // Tiles are shared with other frames and data managers viewing the same file with the same options
+        List<Object> key = Arrays.<Object>asList(locator.getPath(), sequence,
+                AlignmentFilter.fromPreferences().getSettings(), downsampleOptions, bisulfiteContext,
+                loadOptions.minReadFlankingWidth);
+        final String querySequence = sequence;
+        final ProgressMonitor loadMonitor = monitor;
+        AlignmentTilePool.Entry entry = AlignmentTilePool.acquire(key, start, end, peStats,
+                new AlignmentTilePool.TileLoader() {
+                    public AlignmentTileLoader.AlignmentTile loadTile(int start, int end) {
+                        SpliceJunctionHelper spliceJunctionHelper = new SpliceJunctionHelper(loadOptions);
+                        AlignmentTileLoader.AlignmentTile t = reader.loadTile(querySequence, start, end,
+                                spliceJunctionHelper, downsampleOptions, peStats, bisulfiteContext, loadMonitor);
+
+                        // Since we (potentially) downsampled,  we need to sort
+                        if (t != null) {
+                            Collections.sort(t.getAlignments(), new Comparator<Alignment>() {
+                                public int compare(Alignment alignment, Alignment alignment1) {
+                                    return alignment.getStart() - alignment1.getStart();
+                                }
+                            });
+                        }
+                        return t;
+                    }
+                });
+        AlignmentTileLoader.AlignmentTile t = entry.getTile();
+        if (entry.peStats != null && entry.peStats != peStats) {
+            for (Map.Entry<String, PEStats> e : entry.peStats.entrySet()) {
+                if (!peStats.containsKey(e.getKey())) {
+                    peStats.put(e.getKey(), e.getValue());
+                }
+            }
+        }
 
         List<DownsampledInterval> downsampledIntervals = t.getDownsampledIntervals();
 
-        // Since we (potentially) downsampled,  we need to sort
-        Comparator<Alignment> alignmentSorter = new Comparator<Alignment>() {
-            public int compare(Alignment alignment, Alignment alignment1) {
-                return alignment.getStart() - alignment1.getStart();
-            }
-        };
-        Collections.sort(alignments, alignmentSorter);
-
-        Iterator<Alignment> iter = alignments.iterator();
+        // The alignments are shared, but each interval has its own rows
+        Iterator<Alignment> iter = t.getAlignments().iterator();
 
         final AlignmentPacker alignmentPacker = new AlignmentPacker();
 
-        LinkedHashMap<String, List<AlignmentInterval.Row>> alignmentRows = alignmentPacker.packAlignments(iter, end, renderOptions);
+        LinkedHashMap<String, List<AlignmentInterval.Row>> alignmentRows = alignmentPacker.packAlignments(iter, entry.end, renderOptions);
 
-        return new AlignmentInterval(chr, start, end, alignmentRows, t.getCounts(), spliceJunctionHelper, downsampledIntervals, renderOptions);
+        // Filtered junction lists depend on this manager's load options, the raw junctions are shared
+        SpliceJunctionHelper spliceJunctionHelper = new SpliceJunctionHelper(t.getSpliceJunctionHelper());
+        spliceJunctionHelper.setLoadOptions(loadOptions);
+
+        AlignmentInterval interval = new AlignmentInterval(chr, entry.start, entry.end, alignmentRows, t.getCounts(), spliceJunctionHelper, downsampledIntervals, renderOptions);
+        interval.setFilter(t.getFilter());
+        interval.setPoolEntry(entry);
+        return interval;
     }
 
-    private void addLoadedInterval(ReferenceFrame frame, AlignmentInterval interval) {
+    private synchronized void addLoadedInterval(ReferenceFrame frame, AlignmentInterval interval) {
         String frameName = frame != null ? frame.getName() : FrameManager.DEFAULT_FRAME_NAME;
-        loadedIntervalMap.put(frameName, interval);
+        AlignmentInterval previous = loadedIntervalMap.put(frameName, interval);
+        if (previous != null && previous != interval) {
+            releaseTile(previous);
+        }
+    }
+
+    private static void releaseTile(AlignmentInterval interval) {
+        AlignmentTilePool.Entry entry = interval.getPoolEntry();
+        if (entry != null) {
+            interval.setPoolEntry(null);
+            AlignmentTilePool.release(entry);
+        }
     }
 
     /**
@@ -452,6 +496,7 @@ public class AlignmentDataManager implements IAlignmentDataManager{
     @Override
     protected void finalize() throws Throwable {
         super.finalize();
+        clear();
         if (reader != null) {
             try {
                 reader.close();
@@ -509,6 +554,24 @@ public class AlignmentDataManager implements IAlignmentDataManager{
             return maxReadCount;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DownsampleOptions)) return false;
+            DownsampleOptions that = (DownsampleOptions) o;
+            return downsample == that.downsample &&
+                    sampleWindowSize == that.sampleWindowSize &&
+                    maxReadCount == that.maxReadCount;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = downsample ? 1 : 0;
+            result = 31 * result + sampleWindowSize;
+            result = 31 * result + maxReadCount;
+            return result;
+        }
+
     }
 }
 
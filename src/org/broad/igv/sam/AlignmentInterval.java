@@ -20,6 +20,7 @@ import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.Strand;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.sam.reader.AlignmentFilter;
 import org.broad.igv.ui.panel.ReferenceFrame;
 
 import java.util.*;
@@ -37,11 +38,14 @@ public class AlignmentInterval extends Locus {
     private SpliceJunctionHelper spliceJunctionHelper;
     private List<DownsampledInterval> downsampledIntervals;
     private AlignmentTrack.RenderOptions renderOptions;
+    private AlignmentFilter filter;
+    private AlignmentTilePool.Entry poolEntry;
 
     AlignmentInterval(AlignmentInterval interval){
         this(interval.getChr(), interval.getStart(), interval.getEnd(),
                 interval.getGroupedAlignments(), interval.getCounts(),
                 new SpliceJunctionHelper(interval.getSpliceJunctionHelper()), interval.getDownsampledIntervals(), interval.renderOptions);
+        this.filter = interval.filter;
     }
     public AlignmentInterval(String chr, int start, int end,
                              LinkedHashMap<String, List<Row>> groupedAlignmentRows,
@@ -157,6 +161,28 @@ public class AlignmentInterval extends Locus {
         return counts;
     }
 
+    /**
+     * @return the filter applied when loading this interval, with counts of the reads it rejected.  May be null.
+     */
+    public AlignmentFilter getFilter() {
+        return filter;
+    }
+
+    void setFilter(AlignmentFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return the shared tile this interval was built from, released when the interval is replaced.  May be null.
+     */
+    AlignmentTilePool.Entry getPoolEntry() {
+        return poolEntry;
+    }
+
+    void setPoolEntry(AlignmentTilePool.Entry poolEntry) {
+        this.poolEntry = poolEntry;
+    }
+
     /**
      * Return the count of the specified nucleotide
      *
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+package org.broad.igv.sam;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * An ARGB pixel buffer used to render dense alignment views.  Opaque rectangles and horizontal / vertical lines, which
+ * make up nearly all of a zoomed out alignment track, are written directly into the pixel array as runs of a single
+ * value.  Anything else (arrows, outlines, wide strokes, translucent colors) is drawn with an anti-aliased Graphics2D
+ * on the same image, so the result is identical to drawing each primitive on the screen graphics.  The buffer is
+ * transparent where nothing has been drawn and is copied to the destination with a single drawImage call.
+ * <p/>
+ * Coordinates are in the user space of the destination graphics.  Drawing outside the bounds is clipped.
+ */
+public class AlignmentRaster {
+
+    private Rectangle bounds;
+    private BufferedImage image;
+    private int[] pixels;
+    private int scanWidth;
+    private Graphics2D graphics;
+
+    public AlignmentRaster(Rectangle bounds) {
+        this.bounds = new Rectangle(bounds);
+        allocate(bounds.width, bounds.height);
+    }
+
+    private void allocate(int width, int height) {
+        image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        scanWidth = image.getWidth();
+        graphics = null;
+    }
+
+    /**
+     * Prepare the raster for a new paint, clearing the pixels.  The pixel buffer is reallocated only if it is too
+     * small for the new bounds.
+     *
+     * @param bounds
+     */
+    public void reset(Rectangle bounds) {
+        if (bounds.width > image.getWidth() || bounds.height > image.getHeight()) {
+            if (graphics != null) graphics.dispose();
+            allocate(Math.max(bounds.width, image.getWidth()), Math.max(bounds.height, image.getHeight()));
+        } else {
+            for (int row = 0; row < bounds.height; row++) {
+                Arrays.fill(pixels, row * scanWidth, row * scanWidth + bounds.width, 0);
+            }
+        }
+        this.bounds = new Rectangle(bounds);
+        if (graphics != null) {
+            graphics.setTransform(new AffineTransform());
+            graphics.setClip(0, 0, bounds.width, bounds.height);
+            graphics.translate(-bounds.x, -bounds.y);
+        }
+    }
+
+    public Rectangle getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Fill a rectangle, equivalent to {@link Graphics#fillRect(int, int, int, int)}
+     */
+    public void fillRect(int x, int y, int w, int h, Color color) {
+        if (w <= 0 || h <= 0) return;
+        if (color.getAlpha() != 255) {
+            getGraphics(color).fillRect(x, y, w, h);
+            return;
+        }
+        int x0 = Math.max(x, bounds.x) - bounds.x;
+        int x1 = (int) (Math.min((long) x + w, (long) bounds.x + bounds.width) - bounds.x);
+        int y0 = Math.max(y, bounds.y) - bounds.y;
+        int y1 = (int) (Math.min((long) y + h, (long) bounds.y + bounds.height) - bounds.y);
+        if (x0 >= x1 || y0 >= y1) return;
+
+        int argb = color.getRGB();
+        for (int row = y0; row < y1; row++) {
+            int offset = row * scanWidth;
+            Arrays.fill(pixels, offset + x0, offset + x1, argb);
+        }
+    }
+
+    /**
+     * Draw a line with the default 1 pixel stroke, equivalent to {@link Graphics#drawLine(int, int, int, int)}.
+     * Both end points are included.
+     */
+    public void drawLine(int x1, int y1, int x2, int y2, Color color) {
+        if (color.getAlpha() != 255 || (x1 != x2 && y1 != y2)) {
+            getGraphics(color).drawLine(x1, y1, x2, y2);
+        } else if (y1 == y2) {
+            fillRect(Math.min(x1, x2), y1, Math.abs(x2 - x1) + 1, 1, color);
+        } else {
+            fillRect(x1, Math.min(y1, y2), 1, Math.abs(y2 - y1) + 1, color);
+        }
+    }
+
+    /**
+     * Draw a line with the given stroke
+     */
+    public void drawLine(int x1, int y1, int x2, int y2, Color color, Stroke stroke) {
+        Graphics2D g = getGraphics(color);
+        Stroke s = g.getStroke();
+        g.setStroke(stroke);
+        g.drawLine(x1, y1, x2, y2);
+        g.setStroke(s);
+    }
+
+    public void fill(Shape shape, Color color) {
+        if (shape instanceof Rectangle) {
+            Rectangle r = (Rectangle) shape;
+            fillRect(r.x, r.y, r.width, r.height, color);
+        } else {
+            getGraphics(color).fill(shape);
+        }
+    }
+
+    public void draw(Shape shape, Color color) {
+        getGraphics(color).draw(shape);
+    }
+
+    public void draw(Shape shape, Color color, Stroke stroke) {
+        Graphics2D g = getGraphics(color);
+        Stroke s = g.getStroke();
+        g.setStroke(stroke);
+        g.draw(shape);
+        g.setStroke(s);
+    }
+
+    /**
+     * Return a graphics drawing on the pixel buffer, with the same rendering hints as the per-color graphics of
+     * RenderContextImpl.
+     */
+    private Graphics2D getGraphics(Color color) {
+        if (graphics == null) {
+            graphics = image.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setClip(0, 0, bounds.width, bounds.height);
+            graphics.translate(-bounds.x, -bounds.y);
+        }
+        graphics.setColor(color);
+        return graphics;
+    }
+
+    /**
+     * Copy the pixels to {@code g}.
+     *
+     * @param g
+     */
+    public void drawTo(Graphics2D g) {
+        g.drawImage(image, bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height,
+                0, 0, bounds.width, bounds.height, null);
+    }
+
+    public void dispose() {
+        if (graphics != null) {
+            graphics.dispose();
+            graphics = null;
+        }
+    }
+}
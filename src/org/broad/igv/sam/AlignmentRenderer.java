@@ -57,6 +57,11 @@ public class AlignmentRenderer implements FeatureRenderer {
 
     private static Stroke thickStroke = new BasicStroke(2.0f);
 
+    /**
+     * Alignments taller than this are drawn with strand arrows, which the raster path does not support
+     */
+    static final int MAX_RASTER_ALIGNMENT_HEIGHT = 10;
+
     // Bisulfite constants
     private final Color bisulfiteColorFw1 = new Color(195, 195, 195);
     private final Color bisulfiteColorRev1 = new Color(195, 210, 195);
@@ -309,22 +314,228 @@ public class AlignmentRenderer implements FeatureRenderer {
 
 
     /**
-     * Method for drawing alignments without "blocks" (e.g. DotAlignedAlignment)
+     * Return true if alignments can be rendered with {@link #renderAlignments(java.util.List, RenderContext, AlignmentRaster, java.awt.Rectangle, java.awt.Rectangle, RenderOptions, boolean, java.util.Map)}
+     * in the current view.  Bases, insertions, center lines, and paired arcs are drawn only when zoomed in or in
+     * arc view, and strand arrows only on tall rows.  Their anti-aliased edges would not blend identically through a
+     * raster so these views are not supported.  The destination must be a screen or image, with no scaling, so that
+     * vector output (e.g. SVG snapshots) is unchanged.
+     *
+     * @param context
+     * @param renderOptions
+     * @param alignmentHeight height of an alignment in pixels, the row height less any margin
+     * @return
      */
-    private void drawSimpleAlignment(Alignment alignment,
-                                     Rectangle rect,
-                                     Graphics2D g,
+    public static boolean canRasterize(RenderContext context, RenderOptions renderOptions, int alignmentHeight) {
+        double locScale = context.getScale();
+        if (locScale < 5 || alignmentHeight > MAX_RASTER_ALIGNMENT_HEIGHT || renderOptions.isPairedArcView() ||
+                (AlignmentTrack.isBisulfiteColorType(renderOptions.getColorOption()) && locScale < 100)) {
+            return false;
+        }
+        Graphics2D g = context.getGraphics();
+        if (g == null) {
+            return false;
+        }
+        int transformType = g.getTransform().getType();
+        if (transformType != java.awt.geom.AffineTransform.TYPE_IDENTITY &&
+                transformType != java.awt.geom.AffineTransform.TYPE_TRANSLATION) {
+            return false;
+        }
+        GraphicsConfiguration config = g.getDeviceConfiguration();
+        if (config == null) {
+            return false;
+        }
+        int deviceType = config.getDevice().getType();
+        return deviceType == GraphicsDevice.TYPE_RASTER_SCREEN || deviceType == GraphicsDevice.TYPE_IMAGE_BUFFER;
+    }
+
+    /**
+     * Render a row of alignments into a raster.  This is the equivalent of
+     * {@link #renderAlignments(java.util.List, RenderContext, java.awt.Rectangle, java.awt.Rectangle, RenderOptions, boolean, java.util.Map)},
+     * producing the same pixels, for views where {@link #canRasterize(RenderContext, RenderOptions, int)} is true.
+     * The exception is alignments without blocks, whose arrows are anti-aliased polygons and can differ slightly in
+     * edge pixels.
+     */
+    public void renderAlignments(List<Alignment> alignments,
+                                 RenderContext context,
+                                 AlignmentRaster raster,
+                                 Rectangle rowRect,
+                                 Rectangle trackRect, RenderOptions renderOptions,
+                                 boolean leaveMargin,
+                                 Map<String, Color> selectedReadNames) {
+
+        if (alignments == null || alignments.isEmpty()) {
+            return;
+        }
+
+        double origin = context.getOrigin();
+        double locScale = context.getScale();
+        int lastPixelDrawn = -1;
+
+        for (Alignment alignment : alignments) {
+            double pixelStart = ((alignment.getStart() - origin) / locScale);
+            double pixelEnd = ((alignment.getEnd() - origin) / locScale);
+
+            if (pixelEnd < rowRect.x) {
+                continue;
+            } else if (pixelStart > rowRect.getMaxX()) {
+                break;
+            }
+
+            double pixelWidth = pixelEnd - pixelStart;
+            if ((pixelWidth < 4) && !(AlignmentTrack.isBisulfiteColorType(renderOptions.getColorOption()) && (pixelWidth >= 1))) {
+
+                Color alignmentColor = getAlignmentColor(alignment, renderOptions);
+                if (pixelEnd <= lastPixelDrawn && alignmentColor == alignment.getDefaultColor()) {
+                    continue;
+                }
+                int w = Math.max(1, (int) (pixelWidth));
+                int h = (int) Math.max(1, rowRect.getHeight() - 2);
+                int y = (int) (rowRect.getY() + (rowRect.getHeight() - h) / 2);
+                raster.fillRect((int) pixelStart, y, w, h, alignmentColor);
+                lastPixelDrawn = (int) pixelStart + w;
+            } else if (alignment instanceof PairedAlignment) {
+                drawPairedAlignment((PairedAlignment) alignment, rowRect, raster, context, renderOptions, leaveMargin, selectedReadNames);
+            } else {
+                Color alignmentColor = getAlignmentColor(alignment, renderOptions);
+                drawAlignment(alignment, rowRect, raster, context, alignmentColor, renderOptions, leaveMargin, selectedReadNames);
+            }
+        }
+    }
+
+    /**
+     * Raster equivalent of drawPairedAlignment, excluding the arc view
+     */
+    private void drawPairedAlignment(PairedAlignment pair,
+                                     Rectangle rowRect,
+                                     AlignmentRaster raster,
                                      RenderContext context,
-                                     boolean flagUnmappedPair) {
+                                     AlignmentTrack.RenderOptions renderOptions,
+                                     boolean leaveMargin,
+                                     Map<String, Color> selectedReadNames) {
+
+        Color alignmentColor1 = getAlignmentColor(pair.firstAlignment, renderOptions);
+        drawAlignment(pair.firstAlignment, rowRect, raster, context, alignmentColor1, renderOptions, leaveMargin, selectedReadNames);
+
+        if (pair.secondAlignment == null) {
+            return;
+        }
+        Color alignmentColor2 = getAlignmentColor(pair.secondAlignment, renderOptions);
+        drawAlignment(pair.secondAlignment, rowRect, raster, context, alignmentColor2, renderOptions, leaveMargin, selectedReadNames);
+
+        Color lineColor = alignmentColor1.equals(alignmentColor2) ? alignmentColor1 : grey1;
+
         double origin = context.getOrigin();
         double locScale = context.getScale();
+        int startX = (int) ((pair.firstAlignment.getEnd() - origin) / locScale);
+        int endX = (int) ((pair.firstAlignment.getMate().getStart() - origin) / locScale);
+        int h = (int) Math.max(1, rowRect.getHeight() - (leaveMargin ? 2 : 0));
+        int y = (int) (rowRect.getY());
+
+        startX = Math.max(rowRect.x, startX);
+        endX = Math.min(rowRect.x + rowRect.width, endX);
+        raster.drawLine(startX, y + h / 2, endX, y + h / 2, lineColor);
+    }
+
+    /**
+     * Raster equivalent of drawAlignment.  Bases, insertions, and arrows are not drawn in the views supported by the
+     * raster.
+     */
+    private void drawAlignment(Alignment alignment,
+                               Rectangle rowRect,
+                               AlignmentRaster raster,
+                               RenderContext context,
+                               Color alignmentColor,
+                               AlignmentTrack.RenderOptions renderOptions,
+                               boolean leaveMargin,
+                               Map<String, Color> selectedReadNames) {
+
+        double origin = context.getOrigin();
+        double locScale = context.getScale();
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+
+        boolean flagUnmappedPair = renderOptions.flagUnmappedPairs && alignment.isPaired() && !alignment.getMate().isMapped();
+
+        if (blocks == null || blocks.length == 0) {
+            Polygon shape = getSimpleAlignmentShape(alignment, rowRect, origin, locScale);
+            raster.fill(shape, alignmentColor);
+            if (flagUnmappedPair) {
+                raster.draw(shape, Color.red);
+            }
+            return;
+        }
+
+        AlignmentBlock terminalBlock = alignment.isNegativeStrand() ? blocks[0] : blocks[blocks.length - 1];
+        int lastBlockEnd = Integer.MIN_VALUE;
+        int blockNumber = -1;
+        char[] gapTypes = alignment.getGapTypes();
+
+        boolean isZeroQuality = alignment.getMappingQuality() == 0 && renderOptions.flagZeroQualityAlignments;
+        Color selectedColor = null;
+        if (selectedReadNames.containsKey(alignment.getReadName())) {
+            selectedColor = selectedReadNames.get(alignment.getReadName());
+            if (selectedColor == null) {
+                selectedColor = Color.blue;
+            }
+        }
+        int h = (int) Math.max(1, rowRect.getHeight() - (leaveMargin ? 2 : 0));
+        int y = (int) (rowRect.getY());
+
+        for (AlignmentBlock aBlock : blocks) {
+            blockNumber++;
+            int blockPixelStart = (int) ((aBlock.getStart() - origin) / locScale);
+            int blockPixelWidth = (int) Math.ceil(aBlock.getLength() / locScale);
+
+            if (blockPixelStart + blockPixelWidth >= rowRect.x && blockPixelStart <= rowRect.getMaxX()) {
+
+                // Rows are at most MAX_RASTER_ALIGNMENT_HEIGHT high, so terminal blocks are marked with a line
+                // rather than an arrow.
+                if ((aBlock == terminalBlock) && blockPixelWidth > 10) {
+                    int tH = Math.max(1, h - 1);
+                    int lineX = alignment.isNegativeStrand() ? blockPixelStart : blockPixelStart + blockPixelWidth + 1;
+                    raster.drawLine(lineX, y, lineX, y + tH, Color.DARK_GRAY);
+                }
+                Rectangle blockShape = new Rectangle(blockPixelStart, y, blockPixelWidth, h);
+
+                raster.fill(blockShape, alignmentColor);
+                if (isZeroQuality) {
+                    raster.draw(blockShape, OUTLINE_COLOR);
+                }
+                if (flagUnmappedPair) {
+                    raster.draw(blockShape, Color.red);
+                }
+                if (selectedColor != null) {
+                    raster.draw(blockShape, selectedColor, thickStroke);
+                }
+            }
+
+            if (lastBlockEnd > Integer.MIN_VALUE && blockPixelStart > rowRect.x) {
+                int gapIdx = blockNumber - 1;
+                int startX = Math.max(rowRect.x, lastBlockEnd);
+                int endX = Math.min(rowRect.x + rowRect.width, blockPixelStart);
+                if (gapTypes != null && gapIdx < gapTypes.length && gapTypes[gapIdx] == SamAlignment.SKIPPED_REGION) {
+                    raster.drawLine(startX, y + h / 2, endX, y + h / 2, skippedColor);
+                } else {
+                    raster.drawLine(startX, y + h / 2, endX, y + h / 2, deletionColor, thickStroke);
+                }
+            }
+            lastBlockEnd = blockPixelStart + blockPixelWidth;
+
+            if (lastBlockEnd > rowRect.getMaxX()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * The shape drawn by drawSimpleAlignment
+     */
+    private static Polygon getSimpleAlignmentShape(Alignment alignment, Rectangle rect, double origin, double locScale) {
         int x = (int) ((alignment.getStart() - origin) / locScale);
         int length = alignment.getEnd() - alignment.getStart();
         int w = (int) Math.ceil(length / locScale);
         int h = (int) Math.max(1, rect.getHeight() - 2);
         int y = (int) (rect.getY() + (rect.getHeight() - h) / 2);
         int arrowLength = Math.min(5, w / 6);
-        int[] xPoly = null;
         int[] yPoly = {y, y, y + h / 2, y + h, y + h};
 
         // Don't draw off edge of clipping rect
@@ -346,7 +557,7 @@ public class AlignmentRenderer implements FeatureRenderer {
             }
         }
 
-
+        int[] xPoly;
         if (alignment.isNegativeStrand()) {
             //     2     1
             //   3
@@ -358,11 +569,23 @@ public class AlignmentRenderer implements FeatureRenderer {
             //     5     4
             xPoly = new int[]{x, x + w, x + w + arrowLength, x + w, x};
         }
-        g.fillPolygon(xPoly, yPoly, xPoly.length);
+        return new Polygon(xPoly, yPoly, xPoly.length);
+    }
+
+    /**
+     * Method for drawing alignments without "blocks" (e.g. DotAlignedAlignment)
+     */
+    private void drawSimpleAlignment(Alignment alignment,
+                                     Rectangle rect,
+                                     Graphics2D g,
+                                     RenderContext context,
+                                     boolean flagUnmappedPair) {
+        Polygon shape = getSimpleAlignmentShape(alignment, rect, context.getOrigin(), context.getScale());
+        g.fill(shape);
 
         if (flagUnmappedPair && alignment.isPaired() && !alignment.getMate().isMapped()) {
             Graphics2D cRed = context.getGraphic2DForColor(Color.red);
-            cRed.drawPolygon(xPoly, yPoly, xPoly.length);
+            cRed.draw(shape);
         }
     }
 
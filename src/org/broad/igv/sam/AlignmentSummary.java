@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFGroup;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tools.AlignmentSummaryCounter;
+import org.broad.igv.tools.Preprocessor;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.ui.IGV;
+import org.broad.igv.ui.util.UIUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persistent, multi-resolution summary of a local alignment file, used by the coverage and junction tracks when zoomed
+ * out beyond the alignment visibility window.  The summary is a TDF file with the tracks produced by
+ * {@link AlignmentSummaryCounter}.
+ * <p/>
+ * A summary is looked for next to the alignment file ("alignments.bam.summary.tdf", as created by
+ * "igvtools count --summary") and then in the IGV cache directory.  It is only used if it was computed from a file of
+ * the same size and modification time, and by the current version of the summary, which are recorded as attributes
+ * of the TDF root group.  If none is found
+ * the summary can be computed in the background and written to the cache directory.
+ */
+public class AlignmentSummary {
+
+    private static Logger log = Logger.getLogger(AlignmentSummary.class);
+
+    public static final String EXTENSION = ".summary.tdf";
+    public static final int DEFAULT_WINDOW_SIZE = 25;
+    public static final int DEFAULT_MAX_ZOOM = 7;
+
+    static final String SOURCE_LENGTH = "sourceLength";
+    static final String SOURCE_LAST_MODIFIED = "sourceLastModified";
+    static final String VERSION_ATTRIBUTE = "summaryVersion";
+    /**
+     * Incremented when the tracks of the summary change.  Version 2 dropped the mismatch and discordant pair tracks.
+     */
+    static final String VERSION = "2";
+    static final String CACHE_SUBDIRECTORY = "summaries";
+
+    /**
+     * Summaries are computed one at a time at low priority, they read the entire alignment file
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "AlignmentSummary");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private static final Set<String> pending = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Compute the summary of an alignment file.  The summary is written to a temporary file that is renamed on
+     * success, so a partially written summary is never used.
+     *
+     * @param alignmentFile     path to a local alignment file, sorted by start position
+     * @param outputFile        the summary file to create
+     * @param genome
+     * @param windowSize        window size of the finest resolution, in bp
+     * @param maxZoom           number of zoom levels to precompute
+     * @param minMappingQuality alignments with a lower mapping quality are not counted
+     */
+    public static void build(String alignmentFile, File outputFile, Genome genome, int windowSize, int maxZoom,
+                             int minMappingQuality) throws IOException {
+
+        File source = new File(alignmentFile);
+        // TDFWriter requires the .tdf extension
+        File tmpFile = new File(outputFile.getPath() + ".tmp.tdf");
+        try {
+            Preprocessor p = new Preprocessor(tmpFile, genome, Arrays.asList(WindowFunction.mean), -1, null);
+            p.setNZoom(maxZoom);
+            p.setSkipZeroes(true);
+            p.setTrackParameters(TrackType.COVERAGE, null, AlignmentSummaryCounter.getTrackNames(source.getName() + " "));
+            p.setSizeEstimate((int) (genome.getNominalLength() / windowSize));
+            p.setAttribute(SOURCE_LENGTH, String.valueOf(source.length()));
+            p.setAttribute(SOURCE_LAST_MODIFIED, String.valueOf(source.lastModified()));
+            p.setAttribute(VERSION_ATTRIBUTE, VERSION);
+            p.setAttribute("windowSize", String.valueOf(windowSize));
+
+            new AlignmentSummaryCounter(alignmentFile, p, windowSize, minMappingQuality).parse();
+            p.finish();
+
+            if (outputFile.exists() && !outputFile.delete()) {
+                throw new IOException("Could not replace " + outputFile.getAbsolutePath());
+            }
+            if (!tmpFile.renameTo(outputFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath());
+            }
+        } finally {
+            if (tmpFile.exists()) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return a current summary file for the alignment file, or null if there is none
+     */
+    public static File getSummaryFile(String alignmentFile) {
+        File source = new File(alignmentFile);
+        File sidecar = new File(alignmentFile + EXTENSION);
+        if (isCurrent(sidecar, source)) {
+            return sidecar;
+        }
+        File cached = getCacheFile(source);
+        if (cached != null && isCurrent(cached, source)) {
+            return cached;
+        }
+        return null;
+    }
+
+    /**
+     * @return the location of the summary in the cache directory, or null if there is no cache directory
+     */
+    static File getCacheFile(File source) {
+        File cacheDir = DirectoryManager.getCacheDirectory();
+        if (cacheDir == null) {
+            return null;
+        }
+        File summaryDir = new File(cacheDir, CACHE_SUBDIRECTORY);
+        if (!summaryDir.exists()) {
+            summaryDir.mkdirs();
+        }
+        // The path hash distinguishes files of the same name in different directories
+        String name = source.getName() + "_" + Integer.toHexString(source.getAbsolutePath().hashCode()) + EXTENSION;
+        return new File(summaryDir, name);
+    }
+
+    /**
+     * @return true if summaryFile exists, is of the current summary version, and was computed from the current
+     *         version of source
+     */
+    static boolean isCurrent(File summaryFile, File source) {
+        if (!summaryFile.exists()) {
+            return false;
+        }
+        TDFReader reader = null;
+        try {
+            reader = TDFReader.getReader(summaryFile.getAbsolutePath());
+            TDFGroup root = reader.getGroup("/");
+            return root != null &&
+                    VERSION.equals(root.getAttribute(VERSION_ATTRIBUTE)) &&
+                    String.valueOf(source.length()).equals(root.getAttribute(SOURCE_LENGTH)) &&
+                    String.valueOf(source.lastModified()).equals(root.getAttribute(SOURCE_LAST_MODIFIED));
+        } catch (Exception e) {
+            log.info("Ignoring unreadable alignment summary: " + summaryFile.getAbsolutePath());
+            return false;
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Attach the summary of a local alignment file to its coverage and junction tracks.  A current summary is
+     * attached immediately.  Otherwise, if build is true, the summary is computed in the background and attached on
+     * the event dispatch thread, which reads the data sources of the tracks, when complete.
+     *
+     * @param alignmentFile
+     * @param genome
+     * @param coverageTrack the coverage track, the summary is not attached if it already has a data source
+     * @param junctionTrack the junction track, or null
+     * @param build         true to compute a missing summary
+     */
+    public static void attach(final String alignmentFile, final Genome genome, final CoverageTrack coverageTrack,
+                              final SpliceJunctionFinderTrack junctionTrack, boolean build) {
+
+        // Nothing to attach to, the coverage track already has coverage (e.g. a .tdf file next to the alignments)
+        if (coverageTrack.dataSource != null && junctionTrack == null) {
+            return;
+        }
+
+        File summaryFile = getSummaryFile(alignmentFile);
+        if (summaryFile != null) {
+            attach(summaryFile, genome, coverageTrack, junctionTrack);
+            return;
+        }
+
+        final File cacheFile = getCacheFile(new File(alignmentFile));
+        if (!build || cacheFile == null || !pending.add(alignmentFile)) {
+            return;
+        }
+        executor.submit(new Runnable() {
+            public void run() {
+                try {
+                    log.info("Computing alignment summary for " + alignmentFile);
+                    build(alignmentFile, cacheFile, genome, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_ZOOM, 0);
+                    UIUtilities.invokeOnEventThread(new Runnable() {
+                        public void run() {
+                            try {
+                                attach(cacheFile, genome, coverageTrack, junctionTrack);
+                            } catch (Exception e) {
+                                log.error("Error loading alignment summary " + cacheFile.getAbsolutePath(), e);
+                            }
+                            if (IGV.hasInstance()) {
+                                IGV.getInstance().repaintDataPanels();
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    log.error("Error computing alignment summary for " + alignmentFile, e);
+                } finally {
+                    pending.remove(alignmentFile);
+                }
+            }
+        });
+    }
+
+    private static void attach(File summaryFile, Genome genome, CoverageTrack coverageTrack,
+                               SpliceJunctionFinderTrack junctionTrack) {
+        log.debug("Loading alignment summary: " + summaryFile.getAbsolutePath());
+        TDFReader reader = TDFReader.getReader(summaryFile.getAbsolutePath());
+        if (coverageTrack.dataSource == null) {
+            coverageTrack.setDataSource(new TDFDataSource(reader, AlignmentSummaryCounter.COVERAGE,
+                    coverageTrack.getName(), genome));
+        }
+        if (junctionTrack != null) {
+            junctionTrack.setJunctionDensitySource(new TDFDataSource(reader, AlignmentSummaryCounter.JUNCTIONS,
+                    junctionTrack.getName(), genome));
+        }
+    }
+}
@@ -17,8 +17,9 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.sam.reader.AlignmentFilter;
 import org.broad.igv.sam.reader.AlignmentReader;
-import org.broad.igv.sam.reader.ReadGroupFilter;
+import org.broad.igv.sam.reader.FilteringAlignmentReader;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.ui.util.ProgressMonitor;
@@ -100,11 +101,8 @@ public class AlignmentTileLoader {
         }
 
         final PreferenceManager prefMgr = PreferenceManager.getInstance();
-        boolean filterFailedReads = prefMgr.getAsBoolean(PreferenceManager.SAM_FILTER_FAILED_READS);
-        boolean filterSecondaryAlignments = prefMgr.getAsBoolean(PreferenceManager.SAM_FILTER_SECONDARY_ALIGNMENTS);
-        ReadGroupFilter filter = ReadGroupFilter.getFilter();
-        boolean showDuplicates = prefMgr.getAsBoolean(PreferenceManager.SAM_SHOW_DUPLICATES);
-        int qualityThreshold = prefMgr.getAsInt(PreferenceManager.SAM_QUALITY_THRESHOLD);
+        AlignmentFilter filter = AlignmentFilter.fromPreferences();
+        t.setFilter(filter);
 
         CloseableIterator<Alignment> iter = null;
 
@@ -117,7 +115,12 @@ public class AlignmentTileLoader {
 
 
             activeLoaders.add(ref);
-            iter = reader.query(chr, start, end, false);
+            // Filter raw records where possible, rejected reads are then never decoded
+            if (reader instanceof FilteringAlignmentReader) {
+                iter = ((FilteringAlignmentReader) reader).query(chr, start, end, false, filter);
+            } else {
+                iter = reader.query(chr, start, end, false);
+            }
 
             while (iter != null && iter.hasNext()) {
 
@@ -159,11 +162,7 @@ public class AlignmentTileLoader {
                 }
 
 
-                if (!record.isMapped() || (!showDuplicates && record.isDuplicate()) ||
-                        (filterFailedReads && record.isVendorFailedRead()) ||
-                        (filterSecondaryAlignments && !record.isPrimary()) ||
-                        record.getMappingQuality() < qualityThreshold ||
-                        (filter != null && filter.filterAlignment(record))) {
+                if (!record.isMapped() || filter.filterAlignment(record)) {
                     continue;
                 }
 
@@ -292,6 +291,7 @@ public class AlignmentTileLoader {
         private List<Alignment> alignments;
         private List<DownsampledInterval> downsampledIntervals;
         private SpliceJunctionHelper spliceJunctionHelper;
+        private AlignmentFilter filter;
 
         private boolean downsample;
         private int samplingWindowSize;
@@ -396,6 +396,17 @@ public class AlignmentTileLoader {
             return downsampledIntervals;
         }
 
+        /**
+         * @return the filter applied to reads loaded into this tile, with counts of the reads it rejected
+         */
+        public AlignmentFilter getFilter() {
+            return filter;
+        }
+
+        void setFilter(AlignmentFilter filter) {
+            this.filter = filter;
+        }
+
         public boolean isLoaded() {
             return loaded;
         }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * Process wide pool of loaded alignment tiles, shared by all data managers.  Reference frames viewing the same
+ * region of a file (e.g. in gene list mode), and duplicated tracks of the same file, share the decoded alignments,
+ * coverage counts, and raw splice junctions of a tile.  Each frame packs the alignments into its own rows.
+ * <p/>
+ * Tiles are keyed by file, chromosome, and the options which affect their contents (filter, downsampling, bisulfite
+ * context, and junction flanking width).  A tile can be used for any range it contains.  Tiles are reference
+ * counted, and removed from the pool when the last reference is released.  A tile which is still loading is shared
+ * too; later requests wait for it.
+ */
+public class AlignmentTilePool {
+
+    private static Logger log = Logger.getLogger(AlignmentTilePool.class);
+
+    private static final Map<List<Object>, List<Entry>> entries = new HashMap<List<Object>, List<Entry>>();
+
+    /**
+     * Loads a tile when there is none in the pool.  The tile must be complete, with alignments sorted by start, for
+     * it to be shared.
+     */
+    interface TileLoader {
+        AlignmentTileLoader.AlignmentTile loadTile(int start, int end);
+    }
+
+    /**
+     * Get a tile containing the range start-end, loading it if there is none.  The caller must
+     * {@link #release(Entry)} the entry when done with it.
+     *
+     * @param key     file, chromosome, and load options of the tile
+     * @param start
+     * @param end
+     * @param peStats paired end statistics updated by the loader, recorded with the tile
+     * @param loader
+     * @return the pool entry for the tile.  Its tile may be null if loading failed.
+     */
+    static Entry acquire(List<Object> key, int start, int end, Map<String, PEStats> peStats, TileLoader loader) {
+
+        Entry entry;
+        boolean load = false;
+        synchronized (entries) {
+            entry = find(key, start, end);
+            if (entry == null) {
+                entry = new Entry(key, start, end);
+                entry.peStats = peStats;
+                List<Entry> list = entries.get(key);
+                if (list == null) {
+                    list = new ArrayList<Entry>(2);
+                    entries.put(key, list);
+                }
+                list.add(entry);
+                load = true;
+            }
+            entry.refCount++;
+        }
+
+        if (load) {
+            AlignmentTileLoader.AlignmentTile tile = null;
+            try {
+                tile = loader.loadTile(start, end);
+            } finally {
+                entry.setTile(tile);
+                if (tile == null || !tile.isLoaded()) {
+                    // Canceled, failed, or threw, don't share an incomplete tile
+                    remove(entry);
+                }
+            }
+        } else if (entry.awaitTile() == null) {
+            // The shared load failed, try again without the pool
+            release(entry);
+            entry = new Entry(key, start, end);
+            entry.peStats = peStats;
+            entry.refCount++;
+            entry.setTile(loader.loadTile(start, end));
+        }
+        return entry;
+    }
+
+    /**
+     * Release a reference to a tile.  The tile is removed from the pool when the last reference is released.
+     */
+    static void release(Entry entry) {
+        synchronized (entries) {
+            entry.refCount--;
+            if (entry.refCount <= 0) {
+                remove(entry);
+            }
+        }
+    }
+
+    private static Entry find(List<Object> key, int start, int end) {
+        List<Entry> list = entries.get(key);
+        if (list != null) {
+            for (Entry entry : list) {
+                if (entry.start <= start && entry.end >= end) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void remove(Entry entry) {
+        synchronized (entries) {
+            List<Entry> list = entries.get(entry.key);
+            if (list != null && list.remove(entry) && list.isEmpty()) {
+                entries.remove(entry.key);
+            }
+        }
+    }
+
+    /**
+     * @return the number of tiles in the pool
+     */
+    static int size() {
+        synchronized (entries) {
+            int size = 0;
+            for (List<Entry> list : entries.values()) {
+                size += list.size();
+            }
+            return size;
+        }
+    }
+
+    static class Entry {
+
+        private final List<Object> key;
+        final int start;
+        final int end;
+        private int refCount;
+        private boolean done;
+        private AlignmentTileLoader.AlignmentTile tile;
+
+        /**
+         * Paired end statistics collected while loading the tile
+         */
+        Map<String, PEStats> peStats;
+
+        Entry(List<Object> key, int start, int end) {
+            this.key = key;
+            this.start = start;
+            this.end = end;
+        }
+
+        synchronized void setTile(AlignmentTileLoader.AlignmentTile tile) {
+            this.tile = tile;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized AlignmentTileLoader.AlignmentTile awaitTile() {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    log.debug("Interrupted waiting for alignment tile");
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return tile;
+        }
+
+        synchronized AlignmentTileLoader.AlignmentTile getTile() {
+            return tile;
+        }
+    }
+}
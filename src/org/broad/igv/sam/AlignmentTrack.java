@@ -87,6 +87,11 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
     static final int DOWNAMPLED_ROW_HEIGHT = 3;
     static final int DS_MARGIN_2 = 5;
 
+    /**
+     * Minimum number of alignments in the visible rows for rendering through an {@link AlignmentRaster}
+     */
+    static final int RASTER_ALIGNMENT_THRESHOLD = 2000;
+
     private boolean showSpliceJunctions;
 
     public enum ShadeBasesOption {
@@ -165,6 +170,7 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
     JComponent parent;
     private Rectangle alignmentsRect;
     private Rectangle downsampleRect;
+    private AlignmentRaster raster;
 
     private ColorTable readNamePalette;
 
@@ -393,46 +399,110 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
             h = squishedHeight;
         }
 
+        AlignmentRaster rowRaster = getRaster(context, inputRect, groups, y, h, leaveMargin);
+
         // Loop through groups
         Graphics2D groupBorderGraphics = context.getGraphic2DForColor(AlignmentRenderer.GROUP_DIVIDER_COLOR);
         int nGroups = groups.size();
         int groupNumber = 0;
-        for (Map.Entry<String, List<AlignmentInterval.Row>> entry : groups.entrySet()) {
-            String group = entry.getKey();
-            groupNumber++;
+        try {
+            for (Map.Entry<String, List<AlignmentInterval.Row>> entry : groups.entrySet()) {
+                String group = entry.getKey();
+                groupNumber++;
 
-            // Loop through the alignment rows for this group
-            List<AlignmentInterval.Row> rows = entry.getValue();
-            for (AlignmentInterval.Row row : rows) {
+                // Loop through the alignment rows for this group
+                List<AlignmentInterval.Row> rows = entry.getValue();
+                for (AlignmentInterval.Row row : rows) {
 
-                if ((visibleRect != null && y > visibleRect.getMaxY())) {
-                    return;
-                }
-                if (renderOptions.isPairedArcView()) {
-                    y = Math.min(getY() + getHeight(), visibleRect.getMaxY());
-                    y -= h;
+                    if ((visibleRect != null && y > visibleRect.getMaxY())) {
+                        return;
+                    }
+                    if (renderOptions.isPairedArcView()) {
+                        y = Math.min(getY() + getHeight(), visibleRect.getMaxY());
+                        y -= h;
+                    }
+
+                    if (y + h > visibleRect.getY()) {
+                        Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
+                        if (rowRaster != null) {
+                            ((AlignmentRenderer) renderer).renderAlignments(row.alignments, context, rowRaster, rowRectangle,
+                                    inputRect, renderOptions, leaveMargin, selectedReadNames);
+                        } else {
+                            renderer.renderAlignments(row.alignments, context, rowRectangle,
+                                    inputRect, renderOptions, leaveMargin, selectedReadNames);
+                        }
+                    }
+                    y += h;
                 }
 
-                if (y + h > visibleRect.getY()) {
-                    Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
-                    renderer.renderAlignments(row.alignments, context, rowRectangle,
-                            inputRect, renderOptions, leaveMargin, selectedReadNames);
+                // Draw a subtle divider line between groups
+                if (groupNumber < nGroups) {
+                    int borderY = (int) y + GROUP_MARGIN / 2;
+                    groupBorderGraphics.drawLine(inputRect.x, borderY, inputRect.width, borderY);
                 }
-                y += h;
+                y += GROUP_MARGIN;
             }
-
-            // Draw a subtle divider line between groups
-            if (groupNumber < nGroups) {
-                int borderY = (int) y + GROUP_MARGIN / 2;
-                groupBorderGraphics.drawLine(inputRect.x, borderY, inputRect.width, borderY);
+        } finally {
+            if (rowRaster != null) {
+                rowRaster.drawTo(context.getGraphics());
+                rowRaster.dispose();
             }
-            y += GROUP_MARGIN;
         }
 
         final int bottom = inputRect.y + inputRect.height;
         groupBorderGraphics.drawLine(inputRect.x, bottom, inputRect.width, bottom);
     }
 
+    /**
+     * Return a cleared raster covering the visible part of the alignment rows, or null if the view should be drawn
+     * directly.  A raster is used for zoomed out, squished views (see {@link AlignmentRenderer#canRasterize}) with at least
+     * RASTER_ALIGNMENT_THRESHOLD alignments in the visible rows, where per-shape Graphics2D calls dominate paint time.
+     */
+    private AlignmentRaster getRaster(RenderContext context, Rectangle inputRect,
+                                      Map<String, List<AlignmentInterval.Row>> groups, double top, double rowHeight,
+                                      boolean leaveMargin) {
+
+        int alignmentHeight = (int) Math.max(1, rowHeight - (leaveMargin ? 2 : 0));
+        if (!(renderer instanceof AlignmentRenderer) ||
+                !AlignmentRenderer.canRasterize(context, renderOptions, alignmentHeight)) {
+            return null;
+        }
+
+        Rectangle visibleRect = context.getVisibleRect();
+        Rectangle bounds = visibleRect == null ? new Rectangle(inputRect) : visibleRect.intersection(inputRect);
+        Rectangle clip = context.getGraphics().getClipBounds();
+        if (clip != null) {
+            bounds = bounds.intersection(clip);
+        }
+        if (bounds.isEmpty()) {
+            return null;
+        }
+
+        int count = 0;
+        double y = top;
+        countLoop:
+        for (List<AlignmentInterval.Row> rows : groups.values()) {
+            for (AlignmentInterval.Row row : rows) {
+                if (y > bounds.getMaxY()) break countLoop;
+                if (y + rowHeight > bounds.getY() && row.alignments != null) {
+                    count += row.alignments.size();
+                }
+                y += rowHeight;
+            }
+            y += GROUP_MARGIN;
+        }
+        if (count < RASTER_ALIGNMENT_THRESHOLD) {
+            return null;
+        }
+
+        if (raster == null) {
+            raster = new AlignmentRaster(bounds);
+        } else {
+            raster.reset(bounds);
+        }
+        return raster;
+    }
+
     /**
      * Sort alignment rows based on alignments that intersect location
      */
@@ -879,6 +949,12 @@ public class AlignmentTrack extends AbstractTrack implements AlignmentTrackEvent
         dataManager.clear();
     }
 
+    @Override
+    public void dispose() {
+        // Release shared alignment tiles
+        dataManager.clear();
+    }
+
     private void refresh() {
         IGV.getInstance().getContentPane().getMainPanel().invalidate();
         IGV.getInstance().repaintDataPanels();
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import java.util.Arrays;
+
+/**
+ * Binned summary of an {@link AlignmentCounts} interval, used to draw zoomed out coverage in time proportional to the
+ * number of pixels rather than the number of bases.
+ * <p/>
+ * Bins are aligned to the start of the interval and have power of 2 sizes, so a summary is independent of the
+ * view origin and can be reused while panning.  The finest level (2 bp bins) is computed from the counts when the
+ * summary is created, coarser levels are merged from the level below on first use.  Each bin records the maximum
+ * total count and the position whose mismatch to the reference has the largest allele fraction, if any.
+ */
+public class CoverageSummary {
+
+    public static final int MIN_BIN_SIZE = 2;
+
+    private static final int MAX_LEVELS = 31;
+
+    private final int start;
+    private final float snpThreshold;
+    private final boolean bisulfiteMode;
+    private final Level[] levels = new Level[MAX_LEVELS];
+
+    /**
+     * @param counts        counts to summarize
+     * @param chr           chromosome of the counts, used for known snp lookup
+     * @param refBases      reference sequence starting at counts.getStart(), or null if mismatches should not be marked
+     * @param snpThreshold  allele fraction threshold, see {@link AlignmentCounts#isMismatch}
+     * @param bisulfiteMode true to mark positions with bisulfite counts rather than mismatches
+     */
+    public CoverageSummary(AlignmentCounts counts, String chr, byte[] refBases, float snpThreshold,
+                           boolean bisulfiteMode) {
+        this.start = counts.getStart();
+        this.snpThreshold = snpThreshold;
+        this.bisulfiteMode = bisulfiteMode;
+        levels[1] = computeLevel(counts, chr, refBases);
+    }
+
+    /**
+     * @return true if this summary was computed with the given mismatch options
+     */
+    public boolean isCurrent(float snpThreshold, boolean bisulfiteMode) {
+        return this.snpThreshold == snpThreshold && this.bisulfiteMode == bisulfiteMode;
+    }
+
+    /**
+     * @param scale bp per pixel
+     * @return the largest power of 2 not exceeding scale, so that no bin spans more than one pixel
+     */
+    public static int getBinSize(double scale) {
+        int binSize = MIN_BIN_SIZE;
+        while (binSize <= scale / 2 && binSize < (1 << (MAX_LEVELS - 1))) {
+            binSize <<= 1;
+        }
+        return binSize;
+    }
+
+    /**
+     * @param binSize a power of 2, at least MIN_BIN_SIZE
+     */
+    public synchronized Level getLevel(int binSize) {
+        int k = Integer.numberOfTrailingZeros(binSize);
+        if (binSize < MIN_BIN_SIZE || Integer.bitCount(binSize) != 1 || k >= MAX_LEVELS) {
+            throw new IllegalArgumentException("Invalid bin size: " + binSize);
+        }
+        if (levels[k] == null) {
+            levels[k] = mergeLevel(getLevel(binSize >> 1));
+        }
+        return levels[k];
+    }
+
+    private Level computeLevel(AlignmentCounts counts, String chr, byte[] refBases) {
+
+        int nBins = ((counts.getEnd() - start) >> 1) + 1;
+        Level level = new Level(MIN_BIN_SIZE, start, nBins);
+
+        BisulfiteCounts bisulfiteCounts = bisulfiteMode ? counts.getBisulfiteCounts() : null;
+        boolean isSparse = counts instanceof SparseAlignmentCounts;
+        int nPoints = counts.getNumberOfPoints();
+        for (int idx = 0; idx < nPoints; idx++) {
+            int pos = isSparse ? ((SparseAlignmentCounts) counts).getPosition(idx) : start + idx;
+            int bin = (pos - start) >> 1;
+            if (bin < 0 || bin >= nBins) continue;
+
+            int totalCount = counts.getTotalCount(pos);
+            if (totalCount > level.maxTotal[bin]) {
+                level.maxTotal[bin] = totalCount;
+            }
+
+            if (refBases == null || totalCount == 0) continue;
+            int refIdx = pos - start;
+            if (refIdx < 0 || refIdx >= refBases.length) continue;
+
+            float fraction;
+            if (bisulfiteMode) {
+                if (bisulfiteCounts == null) continue;
+                BisulfiteCounts.Count bc = bisulfiteCounts.getCount(pos);
+                int n = bc.methylatedCount + bc.unmethylatedCount;
+                if (n == 0) continue;
+                fraction = ((float) n) / totalCount;
+            } else {
+                byte ref = refBases[refIdx];
+                if (!counts.isMismatch(pos, ref, chr, snpThreshold)) continue;
+                fraction = 1 - ((float) counts.getCount(pos, ref)) / totalCount;
+            }
+            if (level.mismatchPos[bin] < 0 || fraction > level.mismatchFraction[bin]) {
+                level.mismatchPos[bin] = pos;
+                level.mismatchFraction[bin] = fraction;
+            }
+        }
+        return level;
+    }
+
+    private static Level mergeLevel(Level fine) {
+        int nBins = (fine.nBins + 1) >> 1;
+        Level level = new Level(fine.binSize << 1, fine.start, nBins);
+        for (int i = 0; i < fine.nBins; i++) {
+            int bin = i >> 1;
+            if (fine.maxTotal[i] > level.maxTotal[bin]) {
+                level.maxTotal[bin] = fine.maxTotal[i];
+            }
+            if (fine.mismatchPos[i] >= 0 &&
+                    (level.mismatchPos[bin] < 0 || fine.mismatchFraction[i] > level.mismatchFraction[bin])) {
+                level.mismatchPos[bin] = fine.mismatchPos[i];
+                level.mismatchFraction[bin] = fine.mismatchFraction[i];
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Summary at a single bin size.  Bin i covers [start + i * binSize, start + (i + 1) * binSize).
+     */
+    public static class Level {
+
+        final int binSize;
+        final int start;
+        final int nBins;
+        final int[] maxTotal;
+        final int[] mismatchPos;
+        final float[] mismatchFraction;
+
+        Level(int binSize, int start, int nBins) {
+            this.binSize = binSize;
+            this.start = start;
+            this.nBins = nBins;
+            this.maxTotal = new int[nBins];
+            this.mismatchPos = new int[nBins];
+            this.mismatchFraction = new float[nBins];
+            Arrays.fill(mismatchPos, -1);
+        }
+
+        public int getBinSize() {
+            return binSize;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getBinCount() {
+            return nBins;
+        }
+
+        public int getMaxTotal(int bin) {
+            return maxTotal[bin];
+        }
+
+        /**
+         * @return the position of the strongest mismatch in the bin, or -1 if there is none
+         */
+        public int getMismatchPosition(int bin) {
+            return mismatchPos[bin];
+        }
+
+        public float getMismatchFraction(int bin) {
+            return mismatchFraction[bin];
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.broad.igv.goby.GobyCountArchiveDataSource;
 import org.broad.igv.renderer.BarChartRenderer;
 import org.broad.igv.renderer.DataRange;
 import org.broad.igv.renderer.DataRenderer;
+import org.broad.igv.sam.reader.AlignmentFilter;
 import org.broad.igv.session.IGVSessionReader;
 import org.broad.igv.session.SubtlyImportant;
 import org.broad.igv.tdf.TDFDataSource;
@@ -56,7 +57,10 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * @author jrobinso
@@ -256,7 +260,13 @@ public class CoverageTrack extends AbstractTrack {
             if (interval.contains(chr, (int) position, (int) position)) {
                 AlignmentCounts counts = interval.getCounts();
                 if (counts != null) {
-                    return counts.getValueStringAt((int) position);
+                    String valueString = counts.getValueStringAt((int) position);
+                    AlignmentFilter filter = interval.getFilter();
+                    String filterString = filter == null ? null : filter.getValueString();
+                    if (valueString != null && filterString != null) {
+                        valueString += "<br>---------------<br>" + filterString;
+                    }
+                    return valueString;
                 }
             }
         } else {
@@ -297,6 +307,12 @@ public class CoverageTrack extends AbstractTrack {
      */
     class IntervalRenderer {
 
+        /**
+         * Binned summaries of loaded intervals, used when zoomed out.  Entries are released with the interval.
+         */
+        private Map<AlignmentCounts, CoverageSummary> summaries =
+                Collections.synchronizedMap(new WeakHashMap<AlignmentCounts, CoverageSummary>());
+
         private void paint(RenderContext context, Rectangle rect, AlignmentCounts alignmentCounts) {
 
             Color color = getColor();
@@ -316,6 +332,10 @@ public class CoverageTrack extends AbstractTrack {
 
             boolean bisulfiteMode = dataManager.getExperimentType() == AlignmentTrack.ExperimentType.BISULFITE;
 
+            if (scale >= CoverageSummary.MIN_BIN_SIZE) {
+                paintSummary(context, rect, alignmentCounts, getSummary(context, alignmentCounts, bisulfiteMode));
+                return;
+            }
 
             // First pass, coverage
             int lastpX = -1;
@@ -445,6 +465,109 @@ public class CoverageTrack extends AbstractTrack {
             //}
 
         }
+
+        private CoverageSummary getSummary(RenderContext context, AlignmentCounts alignmentCounts, boolean bisulfiteMode) {
+            CoverageSummary summary = summaries.get(alignmentCounts);
+            if (summary == null || !summary.isCurrent(snpThreshold, bisulfiteMode)) {
+                final int intervalEnd = alignmentCounts.getEnd();
+                final int intervalStart = alignmentCounts.getStart();
+                byte[] refBases = null;
+                if ((intervalEnd - intervalStart) < TEN_MB) {
+                    refBases = genome.getSequence(context.getChr(), intervalStart, intervalEnd);
+                }
+                summary = new CoverageSummary(alignmentCounts, context.getChr(), refBases, snpThreshold, bisulfiteMode);
+                summaries.put(alignmentCounts, summary);
+            }
+            return summary;
+        }
+
+        /**
+         * Paint from a binned summary, one bar per pixel.  The coverage bar shows the maximum count in the pixel,
+         * the mismatch bar the position with the largest mismatch allele fraction.
+         */
+        private void paintSummary(RenderContext context, Rectangle rect, AlignmentCounts alignmentCounts,
+                                  CoverageSummary summary) {
+
+            Graphics2D graphics = context.getGraphic2DForColor(getColor());
+
+            DataRange range = getDataRange();
+            double maxRange = range.isLog() ? Math.log10(range.getMaximum()) : range.getMaximum();
+
+            final double rectX = rect.getX();
+            final double rectMaxX = rect.getMaxX();
+            final double rectHeight = rect.getHeight();
+            final int pY = (int) rect.getMaxY() - 1;
+            final double origin = context.getOrigin();
+            final double scale = context.getScale();
+
+            CoverageSummary.Level level = summary.getLevel(CoverageSummary.getBinSize(scale));
+            final int binSize = level.getBinSize();
+            final int start = level.getStart();
+            final int nBins = level.getBinCount();
+            int firstBin = Math.max(0, (int) ((origin - start) / binSize));
+
+            // First pass, coverage.  Bins are no wider than a pixel, so merge bins that start in the same pixel.
+            int[] mismatchX = new int[rect.width + 2];
+            int[] mismatchPos = new int[rect.width + 2];
+            int nMismatches = 0;
+            int pixel = Integer.MIN_VALUE;
+            int pixelMax = 0;
+            int pixelMismatch = -1;
+            float pixelFraction = 0;
+            for (int bin = firstBin; bin <= nBins; bin++) {
+
+                int pX = bin < nBins ? (int) (rectX + (start + (long) bin * binSize - origin) / scale) : Integer.MAX_VALUE;
+
+                if (pX != pixel) {
+                    if (pixel != Integer.MIN_VALUE) {
+                        double tmp = range.isLog() ? Math.log10(pixelMax) / maxRange : pixelMax / maxRange;
+                        int height = Math.min((int) (tmp * rectHeight), rect.height - 1);
+                        if (height > 0) {
+                            graphics.fillRect(pixel, pY - height, 1, height);
+                        }
+                        if (pixelMismatch >= 0 && nMismatches < mismatchX.length) {
+                            mismatchX[nMismatches] = pixel;
+                            mismatchPos[nMismatches] = pixelMismatch;
+                            nMismatches++;
+                        }
+                    }
+                    if (pX > rectMaxX) {
+                        break; // We're done, beyond the right-side of the view
+                    }
+                    pixel = pX;
+                    pixelMax = 0;
+                    pixelMismatch = -1;
+                }
+
+                pixelMax = Math.max(pixelMax, level.getMaxTotal(bin));
+                int pos = level.getMismatchPosition(bin);
+                if (pos >= 0 && (pixelMismatch < 0 || level.getMismatchFraction(bin) > pixelFraction)) {
+                    pixelMismatch = pos;
+                    pixelFraction = level.getMismatchFraction(bin);
+                }
+            }
+
+            // Second pass - mark mismatches
+            BisulfiteCounts bisulfiteCounts = alignmentCounts.getBisulfiteCounts();
+            boolean bisulfiteMode = dataManager.getExperimentType() == AlignmentTrack.ExperimentType.BISULFITE;
+            for (int i = 0; i < nMismatches; i++) {
+                int pos = mismatchPos[i];
+                int totalCount = alignmentCounts.getTotalCount(pos);
+                double tmp = range.isLog() ? Math.log10(totalCount) / maxRange : totalCount / maxRange;
+                int height = Math.min((int) (tmp * rectHeight), rect.height - 1);
+                if (height > 0) {
+                    if (bisulfiteMode) {
+                        if (bisulfiteCounts != null) {
+                            drawBarBisulfite(context, pos, rect, totalCount, maxRange,
+                                    pY, mismatchX[i], 1, bisulfiteCounts.getCount(pos), range.isLog());
+                        }
+                    } else {
+                        drawBar(context, pos, rect, totalCount, maxRange,
+                                pY, mismatchX[i], 1, alignmentCounts, range.isLog());
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -13,7 +13,19 @@ package org.broad.igv.sam;
 
 import org.apache.log4j.Logger;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
+ * Counts for every position of an interval.
+ * <p/>
+ * To keep wide intervals affordable the counts for a position are stored together, as 16 bit counters in a single
+ * char array, rather than in one int array per count.  A counter that reaches {@link #OVERFLOW} holds that value as a
+ * marker and its true value is kept in an overflow map.  Quality sums overflow 16 bits at modest depth and are kept
+ * in an interleaved int array.  The total count, read for every increment to track the maximum, is kept as a
+ * running total.  Strand totals and the total quality are derived from the other counts.  Storage is 13 chars and 6
+ * ints per position, 50 bytes compared to the 80 bytes of an int array per count.
+ *
  * @author jrobinso
  * @date Feb 23, 2011
  */
@@ -21,28 +33,29 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
 
     private static Logger log = Logger.getLogger(DenseAlignmentCounts.class);
 
-    // counts
-    int[] posA;
-    int[] posT;
-    int[] posC;
-    int[] posG;
-    int[] posN;
-    int[] negA;
-    int[] negT;
-    int[] negC;
-    int[] negG;
-    int[] negN;
-    int[] qA;
-    int[] qT;
-    int[] qC;
-    int[] qG;
-    int[] qN;
-    int[] posTotal;
-    int[] negTotal;
-    int[] del;
-    int[] ins;
-    private int[] totalQ;
-    private int maxCount = 0;
+    // Offsets of the counts for a position in the counts array.  Base offsets are in the order of BASE_A .. BASE_N,
+    // negative strand counts follow the positive strand counts.
+    static final int BASE_A = 0;
+    static final int BASE_T = 1;
+    static final int BASE_C = 2;
+    static final int BASE_G = 3;
+    static final int BASE_N = 4;
+    private static final int NEG = 5;
+    private static final int DEL_POS = 10;
+    private static final int DEL_NEG = 11;
+    private static final int INS = 12;
+    private static final int STRIDE = 13;
+
+    // Quality sums are stored per base, in the order of BASE_A .. BASE_N
+    private static final int Q_STRIDE = 5;
+
+    static final char OVERFLOW = Character.MAX_VALUE;
+
+    private final int nPts;
+    private final char[] counts;
+    private final int[] qualities;
+    private final int[] totals;
+    private Map<Integer, Integer> overflow;
 
     /**
      * We store the maximum number of counts over intervals
@@ -54,27 +67,10 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
     public DenseAlignmentCounts(int start, int end, AlignmentTrack.BisulfiteContext bisulfiteContext) {
         super(start, end, bisulfiteContext);
 
-        int nPts = end - start;
-        posA = new int[nPts];
-        posT = new int[nPts];
-        posC = new int[nPts];
-        posG = new int[nPts];
-        posN = new int[nPts];
-        posTotal = new int[nPts];
-        negA = new int[nPts];
-        negT = new int[nPts];
-        negC = new int[nPts];
-        negG = new int[nPts];
-        negN = new int[nPts];
-        negTotal = new int[nPts];
-        qA = new int[nPts];
-        qT = new int[nPts];
-        qC = new int[nPts];
-        qG = new int[nPts];
-        qN = new int[nPts];
-        del = new int[nPts];
-        ins = new int[nPts];
-        totalQ = new int[nPts];
+        nPts = end - start;
+        counts = new char[nPts * STRIDE];
+        qualities = new int[nPts * Q_STRIDE];
+        totals = new int[nPts];
 
         maxCounts = new int[(nPts / MAX_COUNT_INTERVAL) + 1];
     }
@@ -100,197 +96,156 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
         // Noop
     }
 
-    public int getTotalCount(int pos) {
-        int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
+    /**
+     * @return the index of the base in the counts of a position, or -1 if b is not a nucleotide
+     */
+    private static int baseIndex(byte b) {
+        switch (b) {
+            case 'a':
+            case 'A':
+                return BASE_A;
+            case 't':
+            case 'T':
+                return BASE_T;
+            case 'c':
+            case 'C':
+                return BASE_C;
+            case 'g':
+            case 'G':
+                return BASE_G;
+            case 'n':
+            case 'N':
+                return BASE_N;
+        }
+        return -1;
+    }
+
+    private int get(int idx) {
+        char v = counts[idx];
+        return v == OVERFLOW ? overflow.get(idx) : v;
+    }
+
+    private void inc(int idx) {
+        char v = counts[idx];
+        if (v < OVERFLOW - 1) {
+            counts[idx] = (char) (v + 1);
         } else {
-            return posTotal[offset] + negTotal[offset];
+            if (overflow == null) {
+                overflow = new HashMap<Integer, Integer>();
+            }
+            overflow.put(idx, v == OVERFLOW ? overflow.get(idx) + 1 : OVERFLOW);
+            counts[idx] = OVERFLOW;
+        }
+    }
 
+    private int sum(int idx, int n) {
+        int total = 0;
+        for (int i = idx; i < idx + n; i++) {
+            char v = counts[i];
+            total += v == OVERFLOW ? overflow.get(i) : v;
         }
+        return total;
     }
 
-    public int getNegTotal(int pos) {
-        int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
+    private int strandTotal(int offset, boolean negativeStrand) {
+        int total = sum(offset * STRIDE + (negativeStrand ? NEG : 0), NEG);
+        if (countDeletedBasesCovered) {
+            total += get(offset * STRIDE + (negativeStrand ? DEL_NEG : DEL_POS));
+        }
+        return total;
+    }
+
+    private boolean inRange(int offset, int pos) {
+        if (offset < 0 || offset >= nPts) {
             if (log.isDebugEnabled()) {
                 log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
             }
-            return 0;
-        } else {
-            return negTotal[offset];
-
+            return false;
         }
+        return true;
     }
 
-    public int getPosTotal(int pos) {
+    public int getTotalCount(int pos) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        } else {
-            return posTotal[offset];
+        return inRange(offset, pos) ? totals[offset] : 0;
+    }
 
-        }
+    public int getNegTotal(int pos) {
+        int offset = pos - start;
+        return inRange(offset, pos) ? strandTotal(offset, true) : 0;
     }
 
-    public int getTotalQuality(int pos) {
+    public int getPosTotal(int pos) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        } else {
-            return totalQ[offset];
+        return inRange(offset, pos) ? strandTotal(offset, false) : 0;
+    }
 
-        }
+    public int getTotalQuality(int pos) {
+        int offset = pos - start;
+        if (!inRange(offset, pos)) return 0;
+        int idx = offset * Q_STRIDE;
+        return qualities[idx] + qualities[idx + 1] + qualities[idx + 2] + qualities[idx + 3] + qualities[idx + 4];
     }
 
     public int getCount(int pos, byte b) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        } else {
-            switch (b) {
-                case 'a':
-                case 'A':
-                    return posA[offset] + negA[offset];
-                case 't':
-                case 'T':
-                    return posT[offset] + negT[offset];
-                case 'c':
-                case 'C':
-                    return posC[offset] + negC[offset];
-                case 'g':
-                case 'G':
-                    return posG[offset] + negG[offset];
-                case 'n':
-                case 'N':
-                    return posN[offset] + negN[offset];
-            }
+        if (!inRange(offset, pos)) return 0;
+        int base = baseIndex(b);
+        if (base < 0) {
             log.debug("Unknown nucleotide: " + b);
             return 0;
         }
+        int idx = offset * STRIDE + base;
+        return get(idx) + get(idx + NEG);
     }
 
     public int getNegCount(int pos, byte b) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        } else {
-            switch (b) {
-                case 'a':
-                case 'A':
-                    return negA[offset];
-                case 't':
-                case 'T':
-                    return negT[offset];
-                case 'c':
-                case 'C':
-                    return negC[offset];
-                case 'g':
-                case 'G':
-                    return negG[offset];
-                case 'n':
-                case 'N':
-                    return negN[offset];
-            }
+        if (!inRange(offset, pos)) return 0;
+        int base = baseIndex(b);
+        if (base < 0) {
             log.error("Unknown nucleotide: " + b);
             return 0;
         }
+        return get(offset * STRIDE + NEG + base);
     }
 
     public int getPosCount(int pos, byte b) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        } else {
-            switch (b) {
-                case 'a':
-                case 'A':
-                    return posA[offset];
-                case 't':
-                case 'T':
-                    return posT[offset];
-                case 'c':
-                case 'C':
-                    return posC[offset];
-                case 'g':
-                case 'G':
-                    return posG[offset];
-                case 'n':
-                case 'N':
-                    return posN[offset];
-            }
+        if (!inRange(offset, pos)) return 0;
+        int base = baseIndex(b);
+        if (base < 0) {
             log.error("Unknown nucleotide: " + b);
             return 0;
         }
+        return get(offset * STRIDE + base);
     }
 
     public int getDelCount(int pos) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        }
-        return del[offset];
+        if (!inRange(offset, pos)) return 0;
+        return get(offset * STRIDE + DEL_POS) + get(offset * STRIDE + DEL_NEG);
     }
 
 
     public int getInsCount(int pos) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
-            if (log.isDebugEnabled()) {
-                log.debug("Position out of range: " + pos + " (valid range - " + start + "-" + end);
-            }
-            return 0;
-        }
-        return ins[offset];
+        if (!inRange(offset, pos)) return 0;
+        return get(offset * STRIDE + INS);
     }
 
     public int getQuality(int pos, byte b) {
         int offset = pos - start;
-        if (offset < 0 || offset >= posA.length) {
+        if (offset < 0 || offset >= nPts) {
             log.error("Position out of range: " + pos + " (valid range - " + start + "-" + end);
             return 0;
-        } else {
-            switch (b) {
-                case 'a':
-                case 'A':
-                    return qA[offset];
-                case 't':
-                case 'T':
-                    return qT[offset];
-                case 'c':
-                case 'C':
-                    return qC[offset];
-                case 'g':
-                case 'G':
-                    return qG[offset];
-                case 'n':
-                case 'N':
-                    return qN[offset];
-            }
-            log.error("Unknown nucleotide: " + posN);
+        }
+        int base = baseIndex(b);
+        if (base < 0) {
+            log.error("Unknown nucleotide: " + b);
             return 0;
         }
+        return qualities[offset * Q_STRIDE + base];
     }
 
     public int getAvgQuality(int pos, byte b) {
@@ -301,15 +256,11 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
 
     protected void incrementDeletion(int pos, boolean negativeStrand) {
         int offset = pos - start;
-        if (offset >= 0 && offset < del.length) {
-            del[offset] = del[offset] + 1;
-
+        if (offset >= 0 && offset < nPts) {
+            // The strand totals include deletions when countDeletedBasesCovered is set
+            inc(offset * STRIDE + (negativeStrand ? DEL_NEG : DEL_POS));
             if (countDeletedBasesCovered) {
-                if (negativeStrand) {
-                    negTotal[offset] = negTotal[offset] + 1;
-                } else {
-                    posTotal[offset] = posTotal[offset] + 1;
-                }
+                totals[offset]++;
             }
         }
     }
@@ -318,11 +269,11 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
         int pos = insBlock.getStart();
         int offset = pos - start;
         // Insertions are between bases.  increment count on either side
-        if (offset >= 0 && offset < ins.length) {
-            ins[offset] = ins[offset] + 1;
+        if (offset >= 0 && offset < nPts) {
+            inc(offset * STRIDE + INS);
             offset--;
             if (offset >= 0) {
-                ins[offset] = ins[offset] + 1;
+                inc(offset * STRIDE + INS);
             }
         }
     }
@@ -346,62 +297,15 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
     protected void incPositionCount(int pos, byte b, byte q, boolean isNegativeStrand) {
 
         int offset = pos - start;
-        if (offset >= 0 && offset < posA.length) {
-            switch (b) {
-                case 'a':
-                case 'A':
-                    if (isNegativeStrand) {
-                        negA[offset] = negA[offset] + 1;
-                    } else {
-                        posA[offset] = posA[offset] + 1;
-                    }
-                    qA[offset] = qA[offset] + q;
-                    break;
-                case 't':
-                case 'T':
-                    if (isNegativeStrand) {
-                        negT[offset] = negT[offset] + 1;
-                    } else {
-                        posT[offset] = posT[offset] + 1;
-                    }
-                    qT[offset] = qT[offset] + q;
-                    break;
-                case 'c':
-                case 'C':
-                    if (isNegativeStrand) {
-                        negC[offset] = negC[offset] + 1;
-                    } else {
-                        posC[offset] = posC[offset] + 1;
-                    }
-                    qC[offset] = qC[offset] + q;
-                    break;
-                case 'g':
-                case 'G':
-                    if (isNegativeStrand) {
-                        negG[offset] = negG[offset] + 1;
-                    } else {
-                        posG[offset] = posG[offset] + 1;
-                    }
-                    qG[offset] = qG[offset] + q;
-                    break;
-                // Everything else is counted as "N".  This might be an actual "N",  or an ambiguity code
-                default:
-                    if (isNegativeStrand) {
-                        negN[offset] = negN[offset] + 1;
-                    } else {
-                        posN[offset] = posN[offset] + 1;
-                    }
-                    qN[offset] = qN[offset] + q;
+        if (offset >= 0 && offset < nPts) {
+            // Everything else is counted as "N".  This might be an actual "N",  or an ambiguity code
+            int base = baseIndex(b);
+            if (base < 0) base = BASE_N;
 
-            }
-            if (isNegativeStrand) {
-                negTotal[offset] = negTotal[offset] + 1;
-            } else {
-                posTotal[offset] = posTotal[offset] + 1;
-            }
-            totalQ[offset] = totalQ[offset] + q;
+            inc(offset * STRIDE + (isNegativeStrand ? NEG : 0) + base);
+            qualities[offset * Q_STRIDE + base] += q;
 
-            int tmp = posTotal[offset] + negTotal[offset];
+            int tmp = ++totals[offset];
             int maxCountInt = offset / MAX_COUNT_INTERVAL;
             if(tmp > maxCounts[maxCountInt]){
                 maxCounts[maxCountInt] = tmp;
@@ -25,8 +25,13 @@ package org.broad.igv.sam;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
+import org.broad.igv.data.DataSource;
+import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.renderer.BarChartRenderer;
 import org.broad.igv.renderer.DataRange;
+import org.broad.igv.renderer.DataRenderer;
 import org.broad.igv.renderer.SpliceJunctionRenderer;
 import org.broad.igv.track.*;
 import org.broad.igv.ui.IGV;
@@ -34,14 +39,17 @@ import org.broad.igv.ui.event.AlignmentTrackEvent;
 import org.broad.igv.ui.event.AlignmentTrackEventListener;
 import org.broad.igv.ui.panel.IGVPopupMenu;
 import org.broad.igv.util.ResourceLocator;
+import org.broad.tribble.Feature;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -63,6 +71,17 @@ public class SpliceJunctionFinderTrack extends FeatureTrack implements Alignment
 
     boolean ignoreStrand;
 
+    // Junction density, drawn when zoomed out beyond the visibility window.  Null if not available.
+    DataSource junctionDensitySource;
+    DataRenderer densityRenderer;
+
+    // Indexed junctions of the entire file, see SpliceJunctionIndex.  Null if not available, in which case junctions
+    // are extracted from the loaded alignments.
+    FeatureSource junctionSource;
+
+    // Options the indexed junctions were extracted with, see SpliceJunctionIndex.getOptions
+    private String junctionSourceOptions;
+
     public SpliceJunctionFinderTrack(ResourceLocator locator, String name, IAlignmentDataManager dataManager, boolean ignoreStrand) {
         super(locator, locator.getPath() + "_junctions", name);
 
@@ -77,11 +96,64 @@ public class SpliceJunctionFinderTrack extends FeatureTrack implements Alignment
 
     @Override
     protected boolean isShowFeatures(RenderContext context) {
+        if (junctionSource != null) {
+            return !context.getChr().equals(Globals.CHR_ALL);
+        }
         float maxRange = PreferenceManager.getInstance().getAsFloat(PreferenceManager.SAM_MAX_VISIBLE_RANGE);
         float minVisibleScale = (maxRange * 1000) / 700;
         return context.getScale() < minVisibleScale;
     }
 
+    /**
+     * Set the source of junction density, typically the junctions track of an {@link AlignmentSummary}
+     *
+     * @param junctionDensitySource
+     */
+    public void setJunctionDensitySource(DataSource junctionDensitySource) {
+        this.junctionDensitySource = junctionDensitySource;
+    }
+
+    /**
+     * Set the source of indexed junctions.  When set junctions are read from it at any zoom level, rather than
+     * extracted from the loaded alignments.
+     *
+     * @param junctionSource
+     * @param options        the options the junctions were extracted with.  The source is dropped when the current
+     *                       options differ.
+     */
+    public void setJunctionSource(FeatureSource junctionSource, String options) {
+        this.junctionSource = junctionSource;
+        this.junctionSourceOptions = options;
+        packedFeaturesMap.clear();
+    }
+
+    @Override
+    protected void renderCoverage(RenderContext context, Rectangle inputRect) {
+        if (junctionDensitySource == null) {
+            return;
+        }
+        List<LocusScore> scores = junctionDensitySource.getSummaryScoresForRange(context.getChr(),
+                (int) context.getOrigin(), (int) context.getEndLocation(), context.getZoom());
+        if (scores == null || scores.isEmpty()) {
+            return;
+        }
+        float max = 0;
+        for (LocusScore score : scores) {
+            max = Math.max(max, score.getScore());
+        }
+        if (densityRenderer == null) {
+            densityRenderer = new BarChartRenderer();
+        }
+        // The data range of this track scales the junction arcs, only replace it while drawing density
+        DataRange junctionRange = getDataRange();
+        setDataRange(new DataRange(0, 0, max));
+        try {
+            densityRenderer.render(scores, context, inputRect, this);
+        } finally {
+            setDataRange(junctionRange);
+        }
+    }
+
 
     /**
      * Override to return a specialized popup menu
@@ -123,6 +195,19 @@ public class SpliceJunctionFinderTrack extends FeatureTrack implements Alignment
     @Override
     protected void loadFeatures(String chr, int start, int end, RenderContext context) {
         parent = context.getPanel();
+        if (junctionSource != null && !SpliceJunctionIndex.getCurrentOptions().equals(junctionSourceOptions)) {
+            // The flanking width or read filters have changed, extract junctions from the loaded alignments until
+            // junctions with the new options are available
+            setJunctionSource(null, null);
+            boolean build = prefs.getAsBoolean(PreferenceManager.SAM_JUNCTION_INDEX) &&
+                    !Globals.isBatch() && !Globals.isHeadless();
+            SpliceJunctionIndex.attach(getResourceLocator().getPath(), GenomeManager.getInstance().getCurrentGenome(),
+                    this, build);
+        }
+        if (junctionSource != null) {
+            loadIndexedFeatures(chr, start, end, context);
+            return;
+        }
         AlignmentInterval loadedInterval = dataManager.getLoadedInterval(context.getReferenceFrame().getName());
         if (loadedInterval == null) return;
 
@@ -139,6 +224,33 @@ public class SpliceJunctionFinderTrack extends FeatureTrack implements Alignment
     }
 
 
+    private void loadIndexedFeatures(String chr, int start, int end, RenderContext context) {
+        int delta = (end - start) / 2;
+        int expandedStart = Math.max(0, start - delta);
+        int expandedEnd = end + delta;
+
+        List<SpliceJunctionFeature> features = new ArrayList<SpliceJunctionFeature>();
+        try {
+            Iterator<Feature> iter = junctionSource.getFeatures(chr, expandedStart, expandedEnd);
+            while (iter != null && iter.hasNext()) {
+                Feature f = iter.next();
+                if (f instanceof SpliceJunctionFeature) {
+                    features.add((SpliceJunctionFeature) f);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error loading splice junctions", e);
+        }
+        if (ignoreStrand) {
+            features = SpliceJunctionHelper.combineStrands(features);
+        }
+        features = SpliceJunctionHelper.filterJunctionList(dataManager.getSpliceJunctionLoadOptions(), features);
+
+        PackedFeatures pf = new PackedFeaturesSpliceJunctions(chr, expandedStart, expandedEnd, features.iterator(), getName());
+        packedFeaturesMap.put(context.getReferenceFrame().getName(), pf);
+        if (context.getPanel() != null) context.getPanel().repaint();
+    }
+
     @Override
     public boolean handleDataClick(TrackClickEvent te) {
         boolean result = super.handleDataClick(te);
@@ -95,14 +95,7 @@ public class SpliceJunctionHelper {
             return;
         }
 
-        //there may be other ways in which this is indicated. May have to code for them later
-        boolean isNegativeStrand;
-        Object strandAttr = alignment.getAttribute("XS");
-        if (strandAttr != null) {
-            isNegativeStrand = strandAttr.toString().charAt(0) == '-';
-        } else {
-            isNegativeStrand = alignment.isNegativeStrand(); // <= TODO -- this isn't correct for all libraries.
-        }
+        boolean isNegativeStrand = isNegativeStrand(alignment);
 
         Table<Integer, Integer, SpliceJunctionFeature> startEndJunctionsTableThisStrand =
                 isNegativeStrand ? negStartEndJunctionsMap : posStartEndJunctionsMap;
@@ -139,7 +132,20 @@ public class SpliceJunctionHelper {
         }
     }
 
-    private static List<SpliceJunctionFeature> filterJunctionList(LoadOptions loadOptions, List<SpliceJunctionFeature> unfiltered) {
+    /**
+     * @return true if junctions from this alignment are on the negative strand of the transcript
+     */
+    public static boolean isNegativeStrand(Alignment alignment) {
+        //there may be other ways in which this is indicated. May have to code for them later
+        Object strandAttr = alignment.getAttribute("XS");
+        if (strandAttr != null) {
+            return strandAttr.toString().charAt(0) == '-';
+        } else {
+            return alignment.isNegativeStrand(); // <= TODO -- this isn't correct for all libraries.
+        }
+    }
+
+    static List<SpliceJunctionFeature> filterJunctionList(LoadOptions loadOptions, List<SpliceJunctionFeature> unfiltered) {
         if (loadOptions.minJunctionCoverage > 1) {
             List<SpliceJunctionFeature> coveredFeatures = new ArrayList<SpliceJunctionFeature>(unfiltered.size());
             for (SpliceJunctionFeature feature : unfiltered) {
@@ -212,6 +218,10 @@ public class SpliceJunctionHelper {
             if (junction == null) {
                 junction = new SpliceJunctionFeature(negFeat.getChr(), junctionStart, junctionEnd, Strand.POSITIVE);
                 combinedStartEndJunctionsMap.put(junctionStart, junctionEnd, junction);
+            } else {
+                // Don't modify the positive strand junction, the raw junctions can be shared by several helpers
+                junction = new SpliceJunctionFeature(junction, Strand.POSITIVE);
+                combinedStartEndJunctionsMap.put(junctionStart, junctionEnd, junction);
             }
 
             int newJunctionDepth = junction.getJunctionDepth() + negFeat.getJunctionDepth();
@@ -223,6 +233,36 @@ public class SpliceJunctionHelper {
         FeatureUtils.sortFeatureList(filteredCombinedFeatures);
     }
 
+    /**
+     * Combine junctions with the same start and end on opposite strands.  Unlike {@link #getFilteredJunctionsIgnoreStrand()}
+     * this does not require flanking region depths, so it can be used for junctions read from a file.
+     *
+     * @param junctions junctions sorted by start
+     * @return combined junctions, sorted by start
+     */
+    static List<SpliceJunctionFeature> combineStrands(List<SpliceJunctionFeature> junctions) {
+        Table<Integer, Integer, SpliceJunctionFeature> combinedMap = HashBasedTable.create();
+        List<SpliceJunctionFeature> combined = new ArrayList<SpliceJunctionFeature>(junctions.size());
+        for (SpliceJunctionFeature junction : junctions) {
+            int junctionStart = junction.getJunctionStart();
+            int junctionEnd = junction.getJunctionEnd();
+            SpliceJunctionFeature c = combinedMap.get(junctionStart, junctionEnd);
+            if (c == null) {
+                c = new SpliceJunctionFeature(junction.getChr(), junctionStart, junctionEnd, Strand.POSITIVE);
+                c.setStart(junction.getStart());
+                c.setEnd(junction.getEnd());
+                combinedMap.put(junctionStart, junctionEnd, c);
+                combined.add(c);
+            } else {
+                c.setStart(Math.min(c.getStart(), junction.getStart()));
+                c.setEnd(Math.max(c.getEnd(), junction.getEnd()));
+            }
+            c.setJunctionDepth(c.getJunctionDepth() + junction.getJunctionDepth());
+        }
+        FeatureUtils.sortFeatureList(combined);
+        return combined;
+    }
+
     public LoadOptions getLoadOptions() {
         return loadOptions;
     }
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.tribble.IGVBEDCodec;
+import org.broad.igv.sam.reader.AlignmentFilter;
+import org.broad.igv.tools.IgvTools;
+import org.broad.igv.tools.SpliceJunctionExtractor;
+import org.broad.igv.track.TribbleFeatureSource;
+import org.broad.igv.ui.IGV;
+import org.broad.tribble.index.Index;
+import org.broad.tribble.index.IndexFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persistent, indexed splice junctions of a local alignment file, used by the junction track at any zoom level in
+ * place of junctions extracted from the loaded alignments.  The junctions are a bed file, as written by
+ * {@link SpliceJunctionExtractor}, with a tribble index.
+ * <p/>
+ * Junctions are looked for next to the alignment file ("alignments.bam.junctions.bed", as created by
+ * "igvtools junctions") and then in the IGV cache directory.  They are only used if they were extracted from a file
+ * of the same size and modification time, with the current flanking width and read filter settings.  These are
+ * recorded in header lines.  If none are found they can be
+ * extracted in the background and written to the cache directory.  See {@link AlignmentSummary}, which does the same
+ * for zoomed out coverage.
+ */
+public class SpliceJunctionIndex {
+
+    private static Logger log = Logger.getLogger(SpliceJunctionIndex.class);
+
+    public static final String EXTENSION = ".junctions.bed";
+
+    static final String SOURCE_LENGTH = "sourceLength";
+    static final String SOURCE_LAST_MODIFIED = "sourceLastModified";
+    static final String MIN_FLANKING_WIDTH = "minFlankingWidth";
+    static final String FILTER = "filter";
+    static final String CACHE_SUBDIRECTORY = "junctions";
+
+    /**
+     * Junctions are extracted one at a time at low priority, they read the entire alignment file
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "SpliceJunctionIndex");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private static final Set<String> pending = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Extract and index the junctions of an alignment file.  The junctions are written to a temporary file that is
+     * renamed on success, so a partially written file is never used.
+     *
+     * @param alignmentFile    path to a local alignment file, sorted by start position
+     * @param outputFile       the junctions file to create.  The index is written next to it.
+     * @param minFlankingWidth minimum width of the aligned bases on either side of a junction for a read to count
+     * @param filter           alignments rejected by the filter are not counted
+     * @return the number of junctions
+     */
+    public static int build(String alignmentFile, File outputFile, int minFlankingWidth, AlignmentFilter filter)
+            throws IOException {
+
+        File source = new File(alignmentFile);
+        File tmpFile = new File(outputFile.getPath() + ".tmp");
+        File indexFile = new File(outputFile.getPath() + ".idx");
+        File tmpIndexFile = new File(indexFile.getPath() + ".tmp");
+        PrintWriter pw = null;
+        try {
+            pw = new PrintWriter(new BufferedWriter(new FileWriter(tmpFile)));
+            for (String line : getHeaderLines(source, minFlankingWidth, filter)) {
+                pw.println(line);
+            }
+            int count = new SpliceJunctionExtractor(alignmentFile, pw, minFlankingWidth, filter).parse();
+            pw.close();
+            pw = null;
+
+            if ((indexFile.exists() && !indexFile.delete()) || (outputFile.exists() && !outputFile.delete())) {
+                throw new IOException("Could not replace " + outputFile.getAbsolutePath());
+            }
+            if (!tmpFile.renameTo(outputFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath());
+            }
+
+            IGVBEDCodec codec = new IGVBEDCodec();
+            codec.setSpliceJunctions(true);
+            Index idx = IndexFactory.createLinearIndex(outputFile, codec, IgvTools.LINEAR_BIN_SIZE);
+            IgvTools.writeTribbleIndex(idx, tmpIndexFile.getAbsolutePath());
+            if (!tmpIndexFile.renameTo(indexFile)) {
+                throw new IOException("Could not rename " + tmpIndexFile.getAbsolutePath());
+            }
+            return count;
+        } finally {
+            if (pw != null) {
+                pw.close();
+            }
+            if (tmpFile.exists()) {
+                tmpFile.delete();
+            }
+            if (tmpIndexFile.exists()) {
+                tmpIndexFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the header lines which identify the source file and the options the junctions were extracted with
+     */
+    static List<String> getHeaderLines(File source, int minFlankingWidth, AlignmentFilter filter) {
+        return Arrays.asList(
+                "#" + SOURCE_LENGTH + "=" + source.length(),
+                "#" + SOURCE_LAST_MODIFIED + "=" + source.lastModified(),
+                "#" + MIN_FLANKING_WIDTH + "=" + minFlankingWidth,
+                "#" + FILTER + "=" + filter.getDescription());
+    }
+
+    /**
+     * @return the options junctions are extracted with, equal for options which count the same reads
+     */
+    static String getOptions(int minFlankingWidth, AlignmentFilter filter) {
+        return MIN_FLANKING_WIDTH + "=" + minFlankingWidth + "," + FILTER + "=" + filter.getDescription();
+    }
+
+    /**
+     * @return the options of junctions extracted with the current preferences
+     */
+    public static String getCurrentOptions() {
+        return getOptions(getCurrentFlankingWidth(), AlignmentFilter.fromPreferences());
+    }
+
+    private static int getCurrentFlankingWidth() {
+        return new SpliceJunctionHelper.LoadOptions().minReadFlankingWidth;
+    }
+
+    /**
+     * @return a current, indexed junctions file for the alignment file, or null if there is none
+     */
+    public static File getJunctionFile(String alignmentFile, int minFlankingWidth, AlignmentFilter filter) {
+        File source = new File(alignmentFile);
+        File sidecar = new File(alignmentFile + EXTENSION);
+        if (isCurrent(sidecar, source, minFlankingWidth, filter)) {
+            return sidecar;
+        }
+        File cached = getCacheFile(source);
+        if (cached != null && isCurrent(cached, source, minFlankingWidth, filter)) {
+            return cached;
+        }
+        return null;
+    }
+
+    /**
+     * @return the location of the junctions in the cache directory, or null if there is no cache directory
+     */
+    static File getCacheFile(File source) {
+        File cacheDir = DirectoryManager.getCacheDirectory();
+        if (cacheDir == null) {
+            return null;
+        }
+        File junctionDir = new File(cacheDir, CACHE_SUBDIRECTORY);
+        if (!junctionDir.exists()) {
+            junctionDir.mkdirs();
+        }
+        // The path hash distinguishes files of the same name in different directories
+        String name = source.getName() + "_" + Integer.toHexString(source.getAbsolutePath().hashCode()) + EXTENSION;
+        return new File(junctionDir, name);
+    }
+
+    /**
+     * @return true if junctionFile exists, is indexed, and was extracted from the current version of source with
+     *         the given options
+     */
+    static boolean isCurrent(File junctionFile, File source, int minFlankingWidth, AlignmentFilter filter) {
+        if (!junctionFile.exists() || !new File(junctionFile.getPath() + ".idx").exists()) {
+            return false;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(junctionFile));
+            for (String line : getHeaderLines(source, minFlankingWidth, filter)) {
+                if (!line.equals(reader.readLine())) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.info("Ignoring unreadable junctions file: " + junctionFile.getAbsolutePath());
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Attach the indexed junctions of a local alignment file to its junction track.  Current junctions, extracted with
+     * the flanking width and read filter of the current preferences, are attached immediately.  Otherwise, if build is
+     * true, the junctions are extracted in the background and attached when complete.  Until then the track extracts
+     * junctions from the loaded alignments.
+     *
+     * @param alignmentFile
+     * @param genome
+     * @param junctionTrack
+     * @param build         true to extract missing junctions
+     */
+    public static void attach(final String alignmentFile, final Genome genome,
+                              final SpliceJunctionFinderTrack junctionTrack, boolean build) {
+
+        final int minFlankingWidth = getCurrentFlankingWidth();
+        final AlignmentFilter filter = AlignmentFilter.fromPreferences();
+        File junctionFile = getJunctionFile(alignmentFile, minFlankingWidth, filter);
+        if (junctionFile != null) {
+            attach(junctionFile, genome, junctionTrack, minFlankingWidth, filter);
+            return;
+        }
+
+        final File cacheFile = getCacheFile(new File(alignmentFile));
+        if (!build || cacheFile == null || !pending.add(alignmentFile)) {
+            return;
+        }
+        executor.submit(new Runnable() {
+            public void run() {
+                try {
+                    log.info("Extracting splice junctions for " + alignmentFile);
+                    build(alignmentFile, cacheFile, minFlankingWidth, filter);
+                    attach(cacheFile, genome, junctionTrack, minFlankingWidth, filter);
+                    if (IGV.hasInstance()) {
+                        IGV.getInstance().repaintDataPanels();
+                    }
+                } catch (Exception e) {
+                    log.error("Error extracting splice junctions for " + alignmentFile, e);
+                } finally {
+                    pending.remove(alignmentFile);
+                }
+            }
+        });
+    }
+
+    private static void attach(File junctionFile, Genome genome, SpliceJunctionFinderTrack junctionTrack,
+                               int minFlankingWidth, AlignmentFilter filter) {
+        log.debug("Loading splice junctions: " + junctionFile.getAbsolutePath());
+        try {
+            junctionTrack.setJunctionSource(new TribbleFeatureSource(junctionFile.getAbsolutePath(), genome),
+                    getOptions(minFlankingWidth, filter));
+        } catch (IOException e) {
+            log.error("Error loading splice junctions: " + junctionFile.getAbsolutePath(), e);
+        }
+    }
+}
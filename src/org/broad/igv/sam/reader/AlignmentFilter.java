@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.SAMRecord;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.sam.Alignment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The alignment filters set in preferences (duplicates, vendor failed reads, secondary alignments, mapping quality,
+ * and read groups), with a count of the reads rejected for each reason.
+ * <p/>
+ * Readers which support it ({@link FilteringAlignmentReader}) apply {@link #filterRecord(SAMRecord)} to the raw
+ * record, so rejected reads are never decoded into alignments.  Alignments from other readers are filtered with
+ * {@link #filterAlignment(Alignment)}.  Unmapped reads are not filtered by either method, their sequences are
+ * needed for their mapped mates.
+ * <p/>
+ * A filter can be shared by several read-ahead threads (see {@link MergedAlignmentReader}), so the counts are atomic.
+ */
+public class AlignmentFilter {
+
+    private final boolean showDuplicates;
+    private final boolean filterFailedReads;
+    private final boolean filterSecondaryAlignments;
+    private final int qualityThreshold;
+    private final ReadGroupFilter readGroupFilter;
+
+    private final AtomicInteger duplicateCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger secondaryCount = new AtomicInteger();
+    private final AtomicInteger qualityCount = new AtomicInteger();
+    private final AtomicInteger readGroupCount = new AtomicInteger();
+
+    public AlignmentFilter(boolean showDuplicates, boolean filterFailedReads, boolean filterSecondaryAlignments,
+                           int qualityThreshold, ReadGroupFilter readGroupFilter) {
+        this.showDuplicates = showDuplicates;
+        this.filterFailedReads = filterFailedReads;
+        this.filterSecondaryAlignments = filterSecondaryAlignments;
+        this.qualityThreshold = qualityThreshold;
+        this.readGroupFilter = readGroupFilter;
+    }
+
+    /**
+     * Create a filter from the current preferences
+     */
+    public static AlignmentFilter fromPreferences() {
+        PreferenceManager prefMgr = PreferenceManager.getInstance();
+        return new AlignmentFilter(
+                prefMgr.getAsBoolean(PreferenceManager.SAM_SHOW_DUPLICATES),
+                prefMgr.getAsBoolean(PreferenceManager.SAM_FILTER_FAILED_READS),
+                prefMgr.getAsBoolean(PreferenceManager.SAM_FILTER_SECONDARY_ALIGNMENTS),
+                prefMgr.getAsInt(PreferenceManager.SAM_QUALITY_THRESHOLD),
+                ReadGroupFilter.getFilter());
+    }
+
+    /**
+     * @return the settings of this filter, equal for filters which reject the same reads
+     */
+    public List<Object> getSettings() {
+        return Arrays.<Object>asList(showDuplicates, filterFailedReads, filterSecondaryAlignments, qualityThreshold,
+                readGroupFilter);
+    }
+
+    /**
+     * @return a description of the settings which is stable across sessions, for recording with data derived from
+     *         filtered reads
+     */
+    public String getDescription() {
+        String readGroups = readGroupFilter == null ? "none" :
+                Integer.toHexString(new TreeSet<String>(readGroupFilter.getFilteredReadGroups()).toString().hashCode());
+        return "showDuplicates=" + showDuplicates +
+                ",filterFailedReads=" + filterFailedReads +
+                ",filterSecondaryAlignments=" + filterSecondaryAlignments +
+                ",qualityThreshold=" + qualityThreshold +
+                ",readGroups=" + readGroups;
+    }
+
+    /**
+     * @return true if the record should be rejected.  Only the flags, mapping quality, and RG tag are examined.
+     */
+    public boolean filterRecord(SAMRecord record) {
+        if (record.getReadUnmappedFlag()) {
+            return false;
+        }
+        return filter(record.getDuplicateReadFlag(),
+                record.getReadFailsVendorQualityCheckFlag(),
+                !record.getNotPrimaryAlignmentFlag(),
+                record.getMappingQuality(),
+                readGroupFilter == null ? null : (String) record.getAttribute("RG"));
+    }
+
+    /**
+     * @return true if the alignment should be rejected
+     */
+    public boolean filterAlignment(Alignment alignment) {
+        if (!alignment.isMapped()) {
+            return false;
+        }
+        return filter(alignment.isDuplicate(),
+                alignment.isVendorFailedRead(),
+                alignment.isPrimary(),
+                alignment.getMappingQuality(),
+                readGroupFilter == null ? null : alignment.getReadGroup());
+    }
+
+    private boolean filter(boolean duplicate, boolean failed, boolean primary, int mappingQuality, String readGroup) {
+        if (!showDuplicates && duplicate) {
+            duplicateCount.incrementAndGet();
+        } else if (filterFailedReads && failed) {
+            failedCount.incrementAndGet();
+        } else if (filterSecondaryAlignments && !primary) {
+            secondaryCount.incrementAndGet();
+        } else if (mappingQuality < qualityThreshold) {
+            qualityCount.incrementAndGet();
+        } else if (readGroupFilter != null && readGroupFilter.filterReadGroup(readGroup)) {
+            readGroupCount.incrementAndGet();
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    public int getFilteredCount() {
+        return duplicateCount.get() + failedCount.get() + secondaryCount.get() + qualityCount.get() +
+                readGroupCount.get();
+    }
+
+    /**
+     * @return a description of the filtered read counts for popup text, or null if no reads were filtered
+     */
+    public String getValueString() {
+        int total = getFilteredCount();
+        if (total == 0) {
+            return null;
+        }
+        StringBuffer buf = new StringBuffer();
+        buf.append("Filtered reads: " + total);
+        appendCount(buf, "Duplicates", duplicateCount.get());
+        appendCount(buf, "Vendor failed", failedCount.get());
+        appendCount(buf, "Secondary", secondaryCount.get());
+        appendCount(buf, "MAPQ < " + qualityThreshold, qualityCount.get());
+        appendCount(buf, "Read group", readGroupCount.get());
+        return buf.toString();
+    }
+
+    private static void appendCount(StringBuffer buf, String label, int count) {
+        if (count > 0) {
+            buf.append("<br>&nbsp;&nbsp;" + label + ": " + count);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import net.sf.samtools.SAMFileHeader;
 import net.sf.samtools.SAMFileReader;
 import net.sf.samtools.SAMReadGroupRecord;
 import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.goby.GobyAlignmentQueryReader;
 import org.broad.igv.util.FileUtils;
@@ -127,7 +128,7 @@ public class AlignmentReaderFactory {
             if (readers.size() == 1) {
                 return readers.get(0);
             } else {
-                return new MergedAlignmentReader(readers);
+                return new MergedAlignmentReader(readers, isMergedReadAhead());
             }
         } catch (IOException e) {
             log.error("Error parsing " + listFile, e);
@@ -156,7 +157,7 @@ public class AlignmentReaderFactory {
             if (readers.size() == 1) {
                 return readers.get(0);
             } else {
-                return new MergedAlignmentReader(readers);
+                return new MergedAlignmentReader(readers, isMergedReadAhead());
             }
         } catch (IOException e) {
             log.error("Error instantiating reader for: " + aFile, e);
@@ -165,6 +166,13 @@ public class AlignmentReaderFactory {
 
     }
 
+    /**
+     * @return true if merged readers should decode each file on its own worker thread
+     */
+    private static boolean isMergedReadAhead() {
+        return PreferenceManager.getInstance().getAsBoolean(PreferenceManager.SAM_MERGED_READ_AHEAD);
+    }
+
     /**
      * @param header
      * @return Return the set of platforms, uppercase. Will be null iff header is null
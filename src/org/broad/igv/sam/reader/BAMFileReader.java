@@ -18,10 +18,12 @@ package org.broad.igv.sam.reader;
 import net.sf.samtools.SAMFileHeader;
 import net.sf.samtools.SAMFileReader;
 import net.sf.samtools.SAMFileReader.ValidationStringency;
+import net.sf.samtools.SAMRecord;
 import net.sf.samtools.SAMRecordIterator;
 import net.sf.samtools.SAMSequenceRecord;
 import net.sf.samtools.util.CloseableIterator;
 import org.apache.log4j.Logger;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.sam.Alignment;
 import org.broad.igv.ui.util.MessageUtils;
 
@@ -34,13 +36,15 @@ import java.util.Set;
 /**
  * @author jrobinso
  */
-public class BAMFileReader implements AlignmentReader {
+public class BAMFileReader implements FilteringAlignmentReader {
 
     private static Logger log = Logger.getLogger(BAMFileReader.class);
     SAMFileReader reader;
     SAMFileHeader header;
+    File bamFile;
 
     public BAMFileReader(File bamFile) {
+        this.bamFile = bamFile;
         try {
             File indexFile = findIndexFile(bamFile);
             reader = new SAMFileReader(bamFile, indexFile);
@@ -92,10 +96,19 @@ public class BAMFileReader implements AlignmentReader {
     }
 
     public CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained) {
+        return query(sequence, start, end, contained, null);
+    }
+
+    public CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained,
+                                              AlignmentFilter filter) {
         SAMRecordIterator query = null;
         try {
+            CloseableIterator<SAMRecord> readAheadQuery = queryReadAhead(sequence, start + 1, end, contained);
+            if (readAheadQuery != null) {
+                return new WrappedIterator(readAheadQuery, filter);
+            }
             query = reader.query(sequence, start + 1, end, contained);
-            return new WrappedIterator(query);
+            return new WrappedIterator(query, filter);
         } catch (ArrayIndexOutOfBoundsException e) {
             log.error("Error querying BAM file ", e);
             MessageUtils.showMessage("Error reading bam file.  This usually indicates a problem with the index (bai) file." +
@@ -105,6 +118,32 @@ public class BAMFileReader implements AlignmentReader {
 
     }
 
+    /**
+     * Query the file with blocks inflated in parallel.  Returns null if this is not possible, in which case the
+     * picard query should be used.
+     *
+     * @param start 1-based start
+     */
+    private CloseableIterator<SAMRecord> queryReadAhead(String sequence, int start, int end, boolean contained) {
+        if (!reader.hasIndex() || !PreferenceManager.getInstance().getAsBoolean(PreferenceManager.SAM_PARALLEL_INFLATE)) {
+            return null;
+        }
+        int referenceIndex = getHeader().getSequenceIndex(sequence);
+        if (referenceIndex < 0) {
+            return null;
+        }
+        long[] chunks = BAMReadAheadIterator.getChunks(reader.getIndex(), referenceIndex, start, end);
+        if (chunks == null) {
+            return null;
+        }
+        try {
+            return new BAMReadAheadIterator(bamFile, getHeader(), chunks, referenceIndex, start, end, contained);
+        } catch (IOException e) {
+            log.error("Error opening " + bamFile.getAbsolutePath() + ", using the default reader", e);
+            return null;
+        }
+    }
+
     public CloseableIterator<Alignment> iterator() {
         return new WrappedIterator(reader.iterator());
     }
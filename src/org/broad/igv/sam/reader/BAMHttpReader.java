@@ -44,7 +44,7 @@ import java.util.Set;
  * Time: 2:21:04 PM
  * To change this template use File | Settings | File Templates.
  */
-public class BAMHttpReader implements AlignmentReader {
+public class BAMHttpReader implements FilteringAlignmentReader {
 
     static Logger log = Logger.getLogger(BAMHttpReader.class);
 
@@ -134,13 +134,18 @@ public class BAMHttpReader implements AlignmentReader {
     }
 
     public CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained) {
+        return query(sequence, start, end, contained, null);
+    }
+
+    public CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained,
+                                              AlignmentFilter filter) {
         try {
             if (reader == null) {
                 SeekableStream ss = new IGVSeekableBufferedStream(getSeekableStream(url));
                 reader = new SAMFileReader(ss, indexFile, false);
             }
             CloseableIterator<SAMRecord> iter = reader.query(sequence, start + 1, end, contained);
-            return new WrappedIterator(iter);
+            return new WrappedIterator(iter, filter);
         } catch (IOException e) {
             log.error("Error opening SAM reader", e);
             throw new RuntimeException("Error opening SAM reader", e);
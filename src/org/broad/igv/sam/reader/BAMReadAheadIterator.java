@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.BAMIndex;
+import net.sf.samtools.BAMRecordCodec;
+import net.sf.samtools.SAMFileHeader;
+import net.sf.samtools.SAMRecord;
+import net.sf.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the records of an indexed, local BAM file which overlap a region, in the same order and with the
+ * same overlap rules as a picard query.  The file chunks for the region are taken from the BAM index and read
+ * through a {@link BGZFReadAheadInputStream}, which inflates upcoming blocks in parallel.
+ */
+public class BAMReadAheadIterator implements CloseableIterator<SAMRecord> {
+
+    private static Logger log = Logger.getLogger(BAMReadAheadIterator.class);
+
+    private BGZFReadAheadInputStream stream;
+    private BAMRecordCodec codec;
+    private long[] chunks;
+    private int chunkIdx;
+    private long chunkEnd;
+
+    private int referenceIndex;
+    private int start;
+    private int end;
+    private boolean contained;
+
+    private SAMRecord nextRecord;
+    private boolean done;
+
+    /**
+     * @param bamFile
+     * @param header
+     * @param chunks         start and end virtual offsets of the file chunks covering the region
+     * @param referenceIndex index of the sequence in the header
+     * @param start          1-based start of the region, inclusive
+     * @param end            end of the region, inclusive
+     * @param contained      if true only records contained in the region are returned, otherwise all which overlap it
+     */
+    public BAMReadAheadIterator(File bamFile, SAMFileHeader header, long[] chunks, int referenceIndex,
+                                int start, int end, boolean contained) throws IOException {
+        this.stream = new BGZFReadAheadInputStream(bamFile, chunks);
+        this.codec = new BAMRecordCodec(header);
+        this.codec.setInputStream(stream);
+        this.chunks = chunks;
+        this.referenceIndex = referenceIndex;
+        this.start = start;
+        this.end = end <= 0 ? Integer.MAX_VALUE : end;
+        this.contained = contained;
+        this.chunkIdx = -1;
+        this.chunkEnd = -1;
+    }
+
+    /**
+     * Get the file chunks of the index which may contain records overlapping a region.  The index classes which hold
+     * the chunks are not public, so they are read reflectively.
+     *
+     * @return start and end virtual offsets of each chunk, or null if they could not be read
+     */
+    static long[] getChunks(BAMIndex index, int referenceIndex, int start, int end) {
+        try {
+            Object span = index.getSpanOverlapping(referenceIndex, start, end);
+            if (span == null) {
+                return new long[0];
+            }
+            Method toCoordinateArray = span.getClass().getDeclaredMethod("toCoordinateArray");
+            toCoordinateArray.setAccessible(true);
+            long[] chunks = (long[]) toCoordinateArray.invoke(span);
+            return chunks == null ? new long[0] : chunks;
+        } catch (Exception e) {
+            log.debug("Could not read BAM index chunks", e);
+            return null;
+        }
+    }
+
+    public boolean hasNext() {
+        if (nextRecord == null && !done) {
+            try {
+                nextRecord = advance();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            done = nextRecord == null;
+        }
+        return nextRecord != null;
+    }
+
+    public SAMRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SAMRecord record = nextRecord;
+        nextRecord = null;
+        return record;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    public void close() {
+        done = true;
+        nextRecord = null;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.error("Error closing " + stream, e);
+        }
+    }
+
+    /**
+     * @return the next record in the region, or null if there are no more
+     */
+    private SAMRecord advance() throws IOException {
+        while (true) {
+            SAMRecord record = nextRecordInChunks();
+            if (record == null) {
+                return null;
+            }
+
+            int recordReferenceIndex = record.getReferenceIndex();
+            if (recordReferenceIndex != referenceIndex) {
+                if (recordReferenceIndex > referenceIndex || recordReferenceIndex < 0) {
+                    return null;
+                }
+                continue;
+            }
+
+            int alignmentStart = record.getAlignmentStart();
+            int alignmentEnd = record.getAlignmentEnd();
+            if (alignmentEnd == SAMRecord.NO_ALIGNMENT_START) {
+                // Unmapped reads placed with their mate occupy a single position
+                alignmentEnd = alignmentStart;
+            }
+            if (alignmentStart > end) {
+                return null;
+            }
+            if (contained) {
+                if (alignmentStart >= start && alignmentEnd <= end) {
+                    return record;
+                }
+            } else if (alignmentEnd >= start) {
+                return record;
+            }
+        }
+    }
+
+    /**
+     * @return the next record which starts within a chunk, or null after the last chunk
+     */
+    private SAMRecord nextRecordInChunks() throws IOException {
+        while (stream.getFilePointer() >= chunkEnd) {
+            chunkIdx++;
+            if (2 * chunkIdx >= chunks.length) {
+                return null;
+            }
+            long chunkStart = chunks[2 * chunkIdx];
+            chunkEnd = chunks[2 * chunkIdx + 1];
+            if (chunkStart > stream.getFilePointer() || chunkIdx == 0) {
+                stream.seek(chunkStart);
+            }
+        }
+        return codec.decode();
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the blocks of a local BGZF (block compressed) file which cover a list of chunks, inflating upcoming blocks
+ * concurrently.  Chunks are pairs of virtual file offsets as found in a BAM index: the high 48 bits are the address
+ * of a compressed block and the low 16 bits an offset into its uncompressed data.
+ * <p/>
+ * Compressed blocks are read on the calling thread, in file order, and inflated on a small shared pool into a ring
+ * of reusable buffers.  Bytes are always returned in file order.  Blocks outside the chunks, for example the
+ * remainder of a record which extends past the end of a chunk, are read and inflated on demand.
+ * <p/>
+ * Buffers and their inflaters are returned to a shared pool on close, a query allocates them only if the pool is
+ * empty.  Inflaters of buffers which do not fit in the pool are ended.
+ * <p/>
+ * Not thread safe.
+ */
+public class BGZFReadAheadInputStream extends InputStream {
+
+    static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private static final int BLOCK_HEADER_LENGTH = 12;
+
+    private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Number of blocks inflated ahead of the block being read
+     */
+    private static final int READ_AHEAD = 2 * THREAD_COUNT;
+
+    /**
+     * Maximum number of idle buffers kept for reuse, enough for a few concurrent streams
+     */
+    private static final int MAX_POOLED_BLOCKS = 4 * (READ_AHEAD + 1);
+
+    private static final ArrayDeque<Block> blockPool = new ArrayDeque<Block>();
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BGZFInflater");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private RandomAccessFile file;
+    private long fileLength;
+    private long[] chunks;
+
+    // Read ahead position, the next block to inflate and the chunk it belongs to
+    private int chunkIdx;
+    private long nextAddress;
+
+    private ArrayDeque<Block> pending = new ArrayDeque<Block>();
+    private ArrayDeque<Block> free = new ArrayDeque<Block>();
+    private Block spare = obtainBlock();
+    private Block current;
+    private int position;
+
+    /**
+     * @param bgzfFile
+     * @param chunks   start and end virtual offsets of each chunk, in file order
+     */
+    public BGZFReadAheadInputStream(File bgzfFile, long[] chunks) throws IOException {
+        this.file = new RandomAccessFile(bgzfFile, "r");
+        this.fileLength = file.length();
+        this.chunks = chunks;
+        for (int i = 0; i < READ_AHEAD; i++) {
+            free.add(obtainBlock());
+        }
+        if (chunks.length > 0) {
+            nextAddress = getBlockAddress(chunks[0]);
+        }
+        readAhead();
+    }
+
+    static long getBlockAddress(long virtualOffset) {
+        return virtualOffset >>> 16;
+    }
+
+    static int getBlockOffset(long virtualOffset) {
+        return (int) (virtualOffset & 0xFFFF);
+    }
+
+    static long makeVirtualOffset(long blockAddress, int blockOffset) {
+        return (blockAddress << 16) | blockOffset;
+    }
+
+    /**
+     * @return the virtual offset of the next byte.  At the end of a block this is the start of the next block, as
+     *         it is in the index.
+     */
+    public long getFilePointer() {
+        if (current == null) {
+            return 0;
+        }
+        if (position == current.length) {
+            return makeVirtualOffset(current.address + current.compressedSize, 0);
+        }
+        return makeVirtualOffset(current.address, position);
+    }
+
+    /**
+     * Move to a virtual offset.  Seeks should be forward and within the chunks, otherwise blocks are read again.
+     */
+    public void seek(long virtualOffset) throws IOException {
+        long address = getBlockAddress(virtualOffset);
+        if (current == null || current.address != address) {
+            loadBlock(address);
+        }
+        position = Math.min(getBlockOffset(virtualOffset), current.length);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int n = Math.min(length, current.length - position);
+        System.arraycopy(current.data, position, buffer, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spare == null) {
+            return;
+        }
+        // Buffers are reused by other streams, so inflation in progress must complete first
+        for (Block b : pending) {
+            try {
+                b.await();
+            } catch (IOException e) {
+                // Ignore, the block is discarded
+            }
+            releaseBlock(b);
+        }
+        for (Block b : free) {
+            releaseBlock(b);
+        }
+        if (current != null && current != spare) {
+            releaseBlock(current);
+        }
+        releaseBlock(spare);
+        pending.clear();
+        free.clear();
+        current = null;
+        spare = null;
+        file.close();
+    }
+
+    private static Block obtainBlock() {
+        synchronized (blockPool) {
+            Block block = blockPool.poll();
+            return block == null ? new Block() : block;
+        }
+    }
+
+    private static void releaseBlock(Block block) {
+        synchronized (blockPool) {
+            if (blockPool.size() < MAX_POOLED_BLOCKS) {
+                blockPool.add(block);
+                return;
+            }
+        }
+        block.inflater.end();
+    }
+
+    /**
+     * Advance to the next block with data if the current one is exhausted
+     *
+     * @return false at the end of the file
+     */
+    private boolean ensureData() throws IOException {
+        while (current == null || position >= current.length) {
+            long address = current == null ? 0 : current.address + current.compressedSize;
+            if (address >= fileLength) {
+                return false;
+            }
+            loadBlock(address);
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Make the block at address current, taking it from the read ahead queue if it has been inflated there
+     */
+    private void loadBlock(long address) throws IOException {
+
+        Block block = null;
+        while (!pending.isEmpty() && pending.peek().address <= address) {
+            Block b = pending.poll();
+            b.await();
+            if (b.address == address) {
+                block = b;
+                break;
+            }
+            free.add(b);
+        }
+
+        if (current != null && current != spare) {
+            free.add(current);
+        }
+
+        if (block == null) {
+            if (address >= fileLength) {
+                throw new IOException("Virtual offset beyond end of file: " + address);
+            }
+            block = spare;
+            block.read(file, address);
+            block.inflate();
+        }
+        current = block;
+        readAhead();
+    }
+
+    /**
+     * Read the next compressed blocks of the chunks into free buffers and queue them for inflation
+     */
+    private void readAhead() throws IOException {
+        while (!free.isEmpty() && chunkIdx < chunks.length / 2 && nextAddress < fileLength) {
+
+            long endOffset = chunks[2 * chunkIdx + 1];
+            long endAddress = getBlockAddress(endOffset);
+            if (nextAddress > endAddress || (nextAddress == endAddress && getBlockOffset(endOffset) == 0)) {
+                chunkIdx++;
+                if (chunkIdx < chunks.length / 2) {
+                    nextAddress = Math.max(nextAddress, getBlockAddress(chunks[2 * chunkIdx]));
+                }
+                continue;
+            }
+
+            final Block block = free.poll();
+            block.read(file, nextAddress);
+            block.future = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    block.inflate();
+                    return null;
+                }
+            });
+            pending.add(block);
+            nextAddress += block.compressedSize;
+        }
+    }
+
+    /**
+     * A reusable buffer for one block
+     */
+    private static class Block {
+
+        long address;
+        int compressedSize;
+        int length;
+        byte[] compressed = new byte[MAX_BLOCK_SIZE];
+        byte[] data = new byte[MAX_BLOCK_SIZE];
+        Inflater inflater = new Inflater(true);
+        Future future;
+
+        /**
+         * Read the compressed block at address
+         */
+        void read(RandomAccessFile file, long address) throws IOException {
+            this.address = address;
+            this.future = null;
+            file.seek(address);
+            file.readFully(compressed, 0, BLOCK_HEADER_LENGTH);
+            if ((compressed[0] & 0xFF) != 31 || (compressed[1] & 0xFF) != 139 || (compressed[3] & 4) == 0) {
+                throw new IOException("Invalid BGZF block header at " + address);
+            }
+            int extraLength = readUnsignedShort(compressed, 10);
+            file.readFully(compressed, BLOCK_HEADER_LENGTH, extraLength);
+
+            // The "BC" subfield holds the total block size - 1
+            int blockSize = -1;
+            int p = BLOCK_HEADER_LENGTH;
+            while (p + 4 <= BLOCK_HEADER_LENGTH + extraLength) {
+                int subfieldLength = readUnsignedShort(compressed, p + 2);
+                if (compressed[p] == 'B' && compressed[p + 1] == 'C' && subfieldLength == 2) {
+                    blockSize = readUnsignedShort(compressed, p + 4) + 1;
+                }
+                p += 4 + subfieldLength;
+            }
+            int headerLength = BLOCK_HEADER_LENGTH + extraLength;
+            if (blockSize < headerLength + 8 || blockSize > MAX_BLOCK_SIZE) {
+                throw new IOException("Invalid BGZF block size at " + address);
+            }
+            file.readFully(compressed, headerLength, blockSize - headerLength);
+            compressedSize = blockSize;
+        }
+
+        /**
+         * Inflate the compressed block.  The deflated data is followed by the CRC and the uncompressed length.
+         */
+        void inflate() throws IOException {
+            int headerLength = BLOCK_HEADER_LENGTH + readUnsignedShort(compressed, 10);
+            int uncompressedLength = readInt(compressed, compressedSize - 4);
+            if (uncompressedLength < 0 || uncompressedLength > MAX_BLOCK_SIZE) {
+                throw new IOException("Invalid BGZF uncompressed length at " + address);
+            }
+            try {
+                inflater.reset();
+                inflater.setInput(compressed, headerLength, compressedSize - headerLength - 8);
+                int n = 0;
+                while (n < uncompressedLength) {
+                    int count = inflater.inflate(data, n, uncompressedLength - n);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    n += count;
+                }
+                if (n != uncompressedLength) {
+                    throw new IOException("Truncated BGZF block at " + address);
+                }
+                length = n;
+            } catch (DataFormatException e) {
+                throw new IOException("Error inflating BGZF block at " + address + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Wait for inflation queued on the pool to complete
+         */
+        void await() throws IOException {
+            if (future == null) {
+                return;
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted inflating BGZF block at " + address);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Error inflating BGZF block at " + address + ": " + cause);
+            } finally {
+                future = null;
+            }
+        }
+    }
+
+    private static int readUnsignedShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return readUnsignedShort(buffer, offset) | (readUnsignedShort(buffer, offset + 2) << 16);
+    }
+}
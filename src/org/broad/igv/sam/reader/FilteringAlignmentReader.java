@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.sam.Alignment;
+
+import java.io.IOException;
+
+/**
+ * A reader which can filter records before decoding them into alignments
+ */
+public interface FilteringAlignmentReader extends AlignmentReader {
+
+    /**
+     * Query alignments over a given range, skipping records rejected by {@code filter}.
+     * See {@link AlignmentReader#query(String, int, int, boolean)}.
+     */
+    CloseableIterator<Alignment> query(String sequence, int start, int end, boolean contained,
+                                       AlignmentFilter filter) throws IOException;
+}
@@ -33,14 +33,24 @@ import java.util.*;
  * User: jrobinso
  * Date: Apr 25, 2010
  */
-public class MergedAlignmentReader implements AlignmentReader {
+public class MergedAlignmentReader implements FilteringAlignmentReader {
 
     List<AlignmentReader> readers;
     List<String> sequenceNames;
     Map<String, Integer> chrNameIndex;
 
+    /**
+     * If true each component reader decodes ahead on its own worker thread, see {@link ReadAheadIterator}
+     */
+    boolean readAhead;
+
     public MergedAlignmentReader(List<AlignmentReader> readers) {
+        this(readers, false);
+    }
+
+    public MergedAlignmentReader(List<AlignmentReader> readers, boolean readAhead) {
         this.readers = readers;
+        this.readAhead = readAhead;
         loadSequenceNames();
     }
 
@@ -49,7 +59,16 @@ public class MergedAlignmentReader implements AlignmentReader {
     }
 
     public CloseableIterator<Alignment> query(String chr, int start, int end, boolean contained) throws IOException {
-        return new MergedFileIterator(chr, start, end, contained);
+        return new MergedFileIterator(chr, start, end, contained, null);
+    }
+
+    /**
+     * Component readers which support it filter records before decoding them.  Alignments from other readers are
+     * returned unfiltered.
+     */
+    public CloseableIterator<Alignment> query(String chr, int start, int end, boolean contained,
+                                              AlignmentFilter filter) throws IOException {
+        return new MergedFileIterator(chr, start, end, contained, filter);
     }
 
     public void close() throws IOException {
@@ -108,28 +127,36 @@ public class MergedAlignmentReader implements AlignmentReader {
 
         public MergedFileIterator() {
             try {
-                create(null, -1, -1, false);
+                create(null, -1, -1, false, null);
             } catch (IOException e) {
                 e.printStackTrace();
                 return;
             }
         }
 
-        public MergedFileIterator(String chr, int start, int end, boolean contained) throws IOException {
-            create(chr, start, end, contained);
+        public MergedFileIterator(String chr, int start, int end, boolean contained, AlignmentFilter filter)
+                throws IOException {
+            create(chr, start, end, contained, filter);
         }
 
-        private void create(String chr, int start, int end, boolean contained) throws IOException {
+        private void create(String chr, int start, int end, boolean contained, AlignmentFilter filter)
+                throws IOException {
             iteratorQueue = new PriorityQueue(readers.size(), new AlignmentStartComparator());
             boolean iterate = (start == end) && (start == -1);
             for (AlignmentReader reader : readers) {
                 CloseableIterator<Alignment> iter;
                 if (iterate) {
                     iter = reader.iterator();
+                } else if (filter != null && reader instanceof FilteringAlignmentReader) {
+                    iter = ((FilteringAlignmentReader) reader).query(chr, start, end, contained, filter);
                 } else {
                     iter = reader.query(chr, start, end, contained);
                 }
-                allIterators.add(iter);
+                allIterators.add(readAhead ? new ReadAheadIterator(iter) : iter);
+            }
+
+            // With read-ahead all workers are running at this point, so files are decoded in parallel
+            for (CloseableIterator<Alignment> iter : allIterators) {
                 if (iter.hasNext()) {
                     iteratorQueue.add(new RecordIterWrapper(iter));
                 }
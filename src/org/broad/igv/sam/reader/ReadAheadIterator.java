@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+import org.broad.igv.sam.Alignment;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Iterator which decodes alignments from a wrapped iterator on a worker thread, ahead of the consumer, into a
+ * bounded buffer.  Used by {@link MergedAlignmentReader} so that each component file decompresses and decodes
+ * records concurrently while the merge consumes them in order.
+ * <p/>
+ * Record order is preserved.  Exceptions thrown by the wrapped iterator are rethrown to the consumer.  Closing
+ * this iterator stops the worker, which closes the wrapped iterator on its own thread.
+ */
+public class ReadAheadIterator implements CloseableIterator<Alignment> {
+
+    private static Logger log = Logger.getLogger(ReadAheadIterator.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 500;
+
+    /**
+     * Each iterator needs a dedicated worker, a fixed size pool could deadlock the merge (which needs the next
+     * record from every file) when there are more files than threads.  Idle threads are reused.
+     */
+    private static final ExecutorService workerPool = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ReadAhead-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private static final Object END_OF_DATA = new Object();
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final BlockingQueue<Object> buffer;
+    private volatile boolean closed = false;
+    private Object nextItem;
+    private final Future<?> worker;
+
+    public ReadAheadIterator(final CloseableIterator<Alignment> iter) {
+        this(iter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReadAheadIterator(final CloseableIterator<Alignment> iter, int bufferSize) {
+        buffer = new ArrayBlockingQueue<Object>(bufferSize);
+        worker = workerPool.submit(new Runnable() {
+            public void run() {
+                Object last = END_OF_DATA;
+                try {
+                    while (!closed && iter.hasNext()) {
+                        if (!enqueue(iter.next())) break;
+                    }
+                } catch (Throwable t) {
+                    last = t;
+                } finally {
+                    try {
+                        iter.close();
+                    } catch (Exception e) {
+                        log.error("Error closing iterator", e);
+                    }
+                    enqueue(last);
+                }
+            }
+        });
+    }
+
+    /**
+     * Add an item to the buffer, waiting for space.
+     *
+     * @return false if the iterator was closed while waiting
+     */
+    private boolean enqueue(Object item) {
+        try {
+            while (!closed) {
+                if (buffer.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    public boolean hasNext() {
+        if (nextItem == null) {
+            if (closed) return false;
+            try {
+                nextItem = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (nextItem instanceof Throwable) {
+            Throwable t = (Throwable) nextItem;
+            nextItem = END_OF_DATA;
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new RuntimeException(t);
+        }
+        return nextItem != END_OF_DATA;
+    }
+
+    public Alignment next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Alignment alignment = (Alignment) nextItem;
+        nextItem = null;
+        return alignment;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    /**
+     * Stop the worker and release buffered records.  The wrapped iterator is closed by the worker.
+     */
+    public void close() {
+        closed = true;
+        buffer.clear();
+        nextItem = END_OF_DATA;
+        try {
+            worker.get(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Timed out waiting for read-ahead worker to stop");
+        } catch (Exception e) {
+            log.error("Error stopping read-ahead worker", e);
+        }
+    }
+}
@@ -43,12 +43,20 @@ public class ReadGroupFilter {
 
     private Set<String> filteredReadGroups;
 
-    private ReadGroupFilter(Set<String> filteredReadGroups) {
+    ReadGroupFilter(Set<String> filteredReadGroups) {
         this.filteredReadGroups = filteredReadGroups;
     }
 
     public boolean filterAlignment(Alignment alignment) {
-        return filteredReadGroups.contains(alignment.getReadGroup());
+        return filterReadGroup(alignment.getReadGroup());
+    }
+
+    public boolean filterReadGroup(String readGroup) {
+        return filteredReadGroups.contains(readGroup);
+    }
+
+    Set<String> getFilteredReadGroups() {
+        return filteredReadGroups;
     }
 
 
@@ -16,6 +16,8 @@ import net.sf.samtools.util.CloseableIterator;
 import org.broad.igv.sam.Alignment;
 import org.broad.igv.sam.SamAlignment;
 
+import java.util.NoSuchElementException;
+
 /**
  * Created by IntelliJ IDEA.
  * User: jrobinso
@@ -26,9 +28,20 @@ import org.broad.igv.sam.SamAlignment;
 public class WrappedIterator implements CloseableIterator<Alignment> {
 
     CloseableIterator<SAMRecord> iter;
+    AlignmentFilter filter;
+    SAMRecord nextRecord;
 
     public WrappedIterator(CloseableIterator<SAMRecord> iter) {
+        this(iter, null);
+    }
+
+    /**
+     * @param iter
+     * @param filter records rejected by this filter are skipped without being decoded.  May be null.
+     */
+    public WrappedIterator(CloseableIterator<SAMRecord> iter, AlignmentFilter filter) {
         this.iter = iter;
+        this.filter = filter;
     }
 
     public void close() {
@@ -36,11 +49,28 @@ public class WrappedIterator implements CloseableIterator<Alignment> {
     }
 
     public boolean hasNext() {
-        return iter.hasNext();
+        if (filter == null) {
+            return iter.hasNext();
+        }
+        while (nextRecord == null && iter.hasNext()) {
+            SAMRecord record = iter.next();
+            if (!filter.filterRecord(record)) {
+                nextRecord = record;
+            }
+        }
+        return nextRecord != null;
     }
 
     public Alignment next() {
-        return new SamAlignment(iter.next());
+        if (filter == null) {
+            return new SamAlignment(iter.next());
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SAMRecord record = nextRecord;
+        nextRecord = null;
+        return new SamAlignment(record);
     }
 
     public void remove() {
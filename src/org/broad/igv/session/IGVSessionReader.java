@@ -11,7 +11,7 @@
 package org.broad.igv.session;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
+import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.RegionOfInterest;
 import org.broad.igv.feature.genome.Genome;
@@ -561,81 +561,28 @@ public class IGVSessionReader implements SessionReader {
 
             final List<String> errors = new ArrayList<String>();
 
-            // Load files concurrently -- TODO, put a limit on # of threads?
-            List<Thread> threads = new ArrayList(dataFiles.size());
+            // Load files concurrently.  Tracks are registered here, in session order, once all loads are complete.
             long t0 = System.currentTimeMillis();
-            int i = 0;
-            List<Runnable> synchronousLoads = new ArrayList<Runnable>();
-            for (final ResourceLocator locator : dataFiles) {
-
-                final String suppliedPath = locator.getPath();
-                final String relPath = fullToRelPathMap.get(suppliedPath);
-
-                Runnable runnable = new Runnable() {
-                    public void run() {
-                        List<Track> tracks = null;
-                        try {
-                            tracks = igv.load(locator);
-                            for (Track track : tracks) {
-                                if (track == null) {
-                                    log.info("Null track for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                String id = track.getId();
-                                if (id == null) {
-                                    log.info("Null track id for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                if (relPath != null) {
-                                    id = id.replace(suppliedPath, relPath);
-                                }
-
-                                List<Track> trackList = leftoverTrackDictionary.get(id);
-                                if (trackList == null) {
-                                    trackList = new ArrayList();
-                                    leftoverTrackDictionary.put(id, trackList);
-                                    allTracks.put(id, trackList);
-                                }
-                                trackList.add(track);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error loading resource " + locator.getPath(), e);
-                            String ms = "<b>" + locator.getPath() + "</b><br>&nbs;p&nbsp;" + e.toString() + "<br>";
-                            errors.add(ms);
+            PreferenceManager prefs = PreferenceManager.getInstance();
+            SessionResourceLoader loader = new SessionResourceLoader(
+                    prefs.getAsInt(PreferenceManager.SESSION_LOAD_THREADS),
+                    prefs.getAsInt(PreferenceManager.SESSION_LOAD_THREADS_PER_HOST));
+            List<SessionResourceLoader.Result> results = loader.loadAll(new ArrayList<ResourceLocator>(dataFiles),
+                    new SessionResourceLoader.TrackSource() {
+                        public List<Track> load(ResourceLocator locator) throws Exception {
+                            return igv.load(locator);
                         }
-                    }
-                };
-
-                boolean isAlignment = locator.getPath().endsWith(".bam") || locator.getPath().endsWith(".entries") ||
-                        locator.getPath().endsWith(".sam");
-
-
-                // Run synchronously if in batch mode or if there are no "track" elments, or if this is an alignment file
-                // EVERYTHING IS RUN SYNCHRONOUSLY FOR NOW UNTIL WE CAN FIGURE OUT WHAT TO DO TO PREVENT MULTIPLE
-                // AUTHENTICATION DIALOGS
-                if (isAlignment || Globals.isBatch() || !hasTrackElments) {
-                    synchronousLoads.add(runnable);
-                } else {
-                    Thread t = new Thread(runnable);
-                    threads.add(t);
-                    t.start();
+                    });
+
+            for (SessionResourceLoader.Result result : results) {
+                ResourceLocator locator = result.getLocator();
+                if (result.getException() != null) {
+                    log.error("Error loading resource " + locator.getPath(), result.getException());
+                    String ms = "<b>" + locator.getPath() + "</b><br>&nbs;p&nbsp;" + result.getException().toString() + "<br>";
+                    errors.add(ms);
+                } else if (result.getTracks() != null) {
+                    registerTracks(locator, result.getTracks());
                 }
-                i++;
-            }
-            // Wait for all threads to complete
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException ignore) {
-                }
-            }
-
-
-            // Now load data that must be loaded synchronously
-            for (Runnable runnable : synchronousLoads) {
-                runnable.run();
             }
 
             long dt = System.currentTimeMillis() - t0;
@@ -654,6 +601,43 @@ public class IGVSessionReader implements SessionReader {
         dataFiles = null;
     }
 
+    /**
+     * Add loaded tracks to the id -> track dictionaries
+     *
+     * @param locator
+     * @param tracks
+     */
+    private void registerTracks(ResourceLocator locator, List<Track> tracks) {
+
+        final String suppliedPath = locator.getPath();
+        final String relPath = fullToRelPathMap.get(suppliedPath);
+
+        for (Track track : tracks) {
+            if (track == null) {
+                log.info("Null track for resource " + locator.getPath());
+                continue;
+            }
+
+            String id = track.getId();
+            if (id == null) {
+                log.info("Null track id for resource " + locator.getPath());
+                continue;
+            }
+
+            if (relPath != null) {
+                id = id.replace(suppliedPath, relPath);
+            }
+
+            List<Track> trackList = leftoverTrackDictionary.get(id);
+            if (trackList == null) {
+                trackList = new ArrayList();
+                leftoverTrackDictionary.put(id, trackList);
+                allTracks.put(id, trackList);
+            }
+            trackList.add(track);
+        }
+    }
+
     /**
      * Load a single resource.
      * <p/>
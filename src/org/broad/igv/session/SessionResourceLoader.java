@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.session;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.track.Track;
+import org.broad.igv.util.HttpUtils;
+import org.broad.igv.util.ResourceLocator;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the resources of a session concurrently on a bounded pool of threads.
+ * <p/>
+ * Resources are grouped by host.  At most {@code maxPerHost} resources from the same remote host load at once, and
+ * the first resource for a remote host loads alone: any credential prompt for the host is answered once, the
+ * credentials are then cached by the authenticator for the remaining resources.  Results are returned in the order
+ * of the supplied resources, regardless of completion order, so callers can register tracks deterministically on
+ * their own thread.  A load timeline (queue wait and load time per resource) is written to the log.
+ */
+public class SessionResourceLoader {
+
+    private static Logger log = Logger.getLogger(SessionResourceLoader.class);
+
+    /**
+     * Host key for local files
+     */
+    static final String LOCAL = "";
+
+    /**
+     * Loads the tracks for a single resource
+     */
+    public static interface TrackSource {
+        List<Track> load(ResourceLocator locator) throws Exception;
+    }
+
+    /**
+     * Outcome of loading a single resource.
+     */
+    public static class Result {
+        private final ResourceLocator locator;
+        private final String host;
+        private List<Track> tracks;
+        private Exception exception;
+        private long queuedTime;
+        private long startTime;
+        private long endTime;
+
+        Result(ResourceLocator locator, String host) {
+            this.locator = locator;
+            this.host = host;
+        }
+
+        public ResourceLocator getLocator() {
+            return locator;
+        }
+
+        public List<Track> getTracks() {
+            return tracks;
+        }
+
+        /**
+         * @return the exception thrown loading the resource, or null if it loaded successfully
+         */
+        public Exception getException() {
+            return exception;
+        }
+
+        public long getWaitTime() {
+            return startTime - queuedTime;
+        }
+
+        public long getLoadTime() {
+            return endTime - startTime;
+        }
+    }
+
+    private final int maxThreads;
+    private final int maxPerHost;
+
+    private final Map<String, HostQueue> hostQueues = new LinkedHashMap<String, HostQueue>();
+    private ExecutorService executor;
+    private CountDownLatch remaining;
+
+    public SessionResourceLoader(int maxThreads, int maxPerHost) {
+        this.maxThreads = Math.max(1, maxThreads);
+        this.maxPerHost = Math.max(1, maxPerHost);
+    }
+
+    /**
+     * Load all resources, blocking until complete.
+     *
+     * @param locators
+     * @param source
+     * @return results, in the order of {@code locators}
+     */
+    public List<Result> loadAll(List<ResourceLocator> locators, final TrackSource source) {
+
+        List<Result> results = new ArrayList<Result>(locators.size());
+        if (locators.isEmpty()) return results;
+
+        long t0 = System.currentTimeMillis();
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.min(maxThreads, locators.size()), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SessionLoader-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        remaining = new CountDownLatch(locators.size());
+
+        try {
+            synchronized (hostQueues) {
+                for (ResourceLocator locator : locators) {
+                    String host = getHost(locator);
+                    Result result = new Result(locator, host);
+                    result.queuedTime = t0;
+                    results.add(result);
+
+                    HostQueue queue = hostQueues.get(host);
+                    if (queue == null) {
+                        queue = new HostQueue(host);
+                        hostQueues.put(host, queue);
+                    }
+                    queue.pending.add(result);
+                }
+                for (HostQueue queue : hostQueues.values()) {
+                    dispatch(queue, source);
+                }
+            }
+
+            remaining.await();
+
+        } catch (InterruptedException e) {
+            log.error("Interrupted loading session resources", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            hostQueues.clear();
+        }
+
+        logTimeline(results, System.currentTimeMillis() - t0);
+        return results;
+    }
+
+    /**
+     * Submit as many pending resources of the host as its limits allow.  Must be called while holding the
+     * hostQueues lock.
+     */
+    private void dispatch(final HostQueue queue, final TrackSource source) {
+        int limit = queue.leaderDone ? (LOCAL.equals(queue.host) ? maxThreads : maxPerHost) : 1;
+        while (queue.running < limit && !queue.pending.isEmpty()) {
+            final Result result = queue.pending.removeFirst();
+            queue.running++;
+            executor.execute(new Runnable() {
+                public void run() {
+                    result.startTime = System.currentTimeMillis();
+                    try {
+                        result.tracks = source.load(result.locator);
+                    } catch (Exception e) {
+                        result.exception = e;
+                    } finally {
+                        result.endTime = System.currentTimeMillis();
+                        synchronized (hostQueues) {
+                            queue.running--;
+                            queue.leaderDone = true;
+                            if (!executor.isShutdown()) {
+                                dispatch(queue, source);
+                            }
+                        }
+                        remaining.countDown();
+                    }
+                }
+            });
+        }
+    }
+
+    static String getHost(ResourceLocator locator) {
+        String url = locator.getDBUrl() != null ? locator.getDBUrl() : locator.getPath();
+        if (url != null && (HttpUtils.isRemoteURL(url) || url.startsWith("ftp://"))) {
+            try {
+                return new URL(url).getHost();
+            } catch (Exception e) {
+                // Not a parseable URL, treat as local
+            }
+        }
+        return LOCAL;
+    }
+
+    private void logTimeline(List<Result> results, long totalTime) {
+        if (!log.isInfoEnabled()) return;
+
+        StringBuffer buf = new StringBuffer();
+        buf.append("Session load timeline (" + results.size() + " resources, " + totalTime + " ms)");
+        for (Result result : results) {
+            buf.append("\n    ");
+            buf.append(String.format("wait %6d ms  load %6d ms  %-8s  ", result.getWaitTime(), result.getLoadTime(),
+                    result.exception == null ? "ok" : "error"));
+            if (!LOCAL.equals(result.host)) {
+                buf.append("[" + result.host + "] ");
+            }
+            buf.append(result.locator.getPath());
+        }
+        log.info(buf.toString());
+    }
+
+    /**
+     * Resources waiting to load from a single host
+     */
+    private static class HostQueue {
+        final String host;
+        final LinkedList<Result> pending = new LinkedList<Result>();
+        int running;
+        /**
+         * True once the first resource for the host has finished.  Local files need no credentials, so this
+         * starts true.
+         */
+        boolean leaderDone;
+
+        HostQueue(String host) {
+            this.host = host;
+            this.leaderDone = LOCAL.equals(host);
+        }
+    }
+}
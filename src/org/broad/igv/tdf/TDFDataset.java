@@ -159,5 +159,9 @@ public class TDFDataset extends TDFEntity {
         return tileWidth;
     }
 
+    public int getNumberOfTiles() {
+        return nTiles;
+    }
+
 
 }
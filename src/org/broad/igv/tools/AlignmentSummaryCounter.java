@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+package org.broad.igv.tools;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.AlignmentBlock;
+import org.broad.igv.sam.SamAlignment;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.tools.parsers.DataConsumer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes a summary of an alignment file in a single pass, for display when zoomed out beyond the alignment
+ * visibility window.  Two values are reported for each window:
+ * <ol>
+ * <li>Coverage, the mean depth of aligned bases</li>
+ * <li>Junctions, the number of splice junction ends (skipped regions in the cigar)</li>
+ * </ol>
+ * Duplicates, vendor failed reads, and alignments below the minimum mapping quality are not counted.  Like
+ * {@link CoverageCounter} this class is designed to be used from a single thread.
+ */
+public class AlignmentSummaryCounter {
+
+    private static Logger log = Logger.getLogger(AlignmentSummaryCounter.class);
+
+    public static final int COVERAGE = 0;
+    public static final int JUNCTIONS = 1;
+    public static final int NUM_TRACKS = 2;
+
+    private static final String[] TRACK_NAMES = {"Coverage", "Junctions"};
+
+    private String alignmentFile;
+    private DataConsumer consumer;
+    private int windowSize;
+    private int minMappingQuality;
+
+    private String chr;
+    private TreeMap<Integer, float[]> windows = new TreeMap<Integer, float[]>();
+
+    private int totalCount;
+
+    /**
+     * @param alignmentFile     path to the alignment file, which must be sorted by start position
+     * @param consumer          the data consumer, normally a TDF Preprocessor
+     * @param windowSize        window size in bp
+     * @param minMappingQuality alignments with a lower mapping quality are not counted
+     */
+    public AlignmentSummaryCounter(String alignmentFile, DataConsumer consumer, int windowSize,
+                                   int minMappingQuality) {
+        this.alignmentFile = alignmentFile;
+        this.consumer = consumer;
+        this.windowSize = windowSize;
+        this.minMappingQuality = minMappingQuality;
+    }
+
+    /**
+     * The names of tracks which will be created by this counter
+     *
+     * @param prefix String to be prepended to each track name
+     */
+    public static String[] getTrackNames(String prefix) {
+        String[] names = new String[NUM_TRACKS];
+        for (int i = 0; i < NUM_TRACKS; i++) {
+            names[i] = (prefix == null ? "" : prefix) + TRACK_NAMES[i];
+        }
+        return names;
+    }
+
+    public void parse() throws IOException {
+
+        AlignmentReader reader = null;
+        CloseableIterator<Alignment> iter = null;
+        try {
+            reader = AlignmentReaderFactory.getReader(alignmentFile, false);
+            iter = reader.iterator();
+            while (iter.hasNext()) {
+                Alignment alignment = iter.next();
+                if (!passFilter(alignment)) continue;
+
+                totalCount++;
+
+                String alignmentChr = alignment.getChr();
+                if (!alignmentChr.equals(chr)) {
+                    closeWindowsBefore(Integer.MAX_VALUE);
+                    chr = alignmentChr;
+                } else {
+                    // Alignments are sorted by start, no later alignment can contribute to an earlier window
+                    closeWindowsBefore(alignment.getAlignmentStart() / windowSize);
+                }
+                count(alignment);
+            }
+            closeWindowsBefore(Integer.MAX_VALUE);
+
+            consumer.setAttribute("totalCount", String.valueOf(totalCount));
+            consumer.parsingComplete();
+        } finally {
+            if (iter != null) {
+                iter.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    private boolean passFilter(Alignment alignment) {
+        return alignment.isMapped() &&
+                !alignment.isDuplicate() &&
+                !alignment.isVendorFailedRead() &&
+                alignment.getMappingQuality() >= minMappingQuality;
+    }
+
+    private void count(Alignment alignment) {
+
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+        if (blocks != null) {
+            char[] gapTypes = alignment.getGapTypes();
+            int gapIdx = 0;
+            int lastBlockEnd = -1;
+            for (AlignmentBlock block : blocks) {
+                if (block.isSoftClipped()) continue;
+
+                addCoverage(block.getStart(), block.getEnd());
+
+                if (gapTypes != null && lastBlockEnd >= 0 && gapIdx < gapTypes.length) {
+                    if (gapTypes[gapIdx] == SamAlignment.SKIPPED_REGION) {
+                        getWindow(lastBlockEnd / windowSize)[JUNCTIONS]++;
+                        getWindow(block.getStart() / windowSize)[JUNCTIONS]++;
+                    }
+                    gapIdx++;
+                }
+                lastBlockEnd = block.getEnd();
+            }
+        } else {
+            addCoverage(alignment.getAlignmentStart(), alignment.getAlignmentEnd());
+        }
+    }
+
+    private void addCoverage(int start, int end) {
+        for (int w = start / windowSize; w * windowSize < end; w++) {
+            int overlap = Math.min(end, (w + 1) * windowSize) - Math.max(start, w * windowSize);
+            getWindow(w)[COVERAGE] += ((float) overlap) / windowSize;
+        }
+    }
+
+    private float[] getWindow(int idx) {
+        float[] values = windows.get(idx);
+        if (values == null) {
+            values = new float[NUM_TRACKS];
+            windows.put(idx, values);
+        }
+        return values;
+    }
+
+    private void closeWindowsBefore(int idx) {
+        while (!windows.isEmpty() && windows.firstKey() < idx) {
+            Map.Entry<Integer, float[]> entry = windows.pollFirstEntry();
+            int start = entry.getKey() * windowSize;
+            consumer.addData(chr, start, start + windowSize, entry.getValue(), null);
+        }
+    }
+}
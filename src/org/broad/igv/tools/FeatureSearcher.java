@@ -14,20 +14,25 @@ package org.broad.igv.tools;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.feature.CachingFeatureSource;
 import org.broad.igv.track.FeatureSource;
 import org.broad.igv.track.FeatureTrack;
+import org.broad.igv.track.IndexedFeatureSource;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.IndefiniteProgressMonitor;
 import org.broad.tribble.Feature;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Used for searching for the next feature, given a source.
- * We simply call getFeature on that source repeatedly over stepped windows
- * until we find something
+ * Sources implementing {@link IndexedFeatureSource} are asked directly.  For others we call getFeatures
+ * repeatedly over adjacent windows of increasing size until we find something
  * User: jacob
  * Date: 2013-Feb-21
  */
@@ -41,9 +46,12 @@ public class FeatureSearcher implements Runnable {
     private static final int DEFAULT_SEARCH_INCREMENT = 100000;
 
     /**
-     * After searching a window, the increment over which to move.
-     * If smaller than searchWindowSize, it will be a sliding search with overlap.
-     * If larger, there will be gaps. Make negative to search backwards
+     * Upper limit for the window size, which doubles after each empty window
+     */
+    private static final int MAX_SEARCH_WINDOW_SIZE = 10000000;
+
+    /**
+     * Size of the first window searched on each chromosome.  Make negative to search backwards
      */
     private int searchIncrement = DEFAULT_SEARCH_INCREMENT;
 
@@ -89,27 +97,32 @@ public class FeatureSearcher implements Runnable {
         this.end = start + searchWindowSize;
     }
 
+    /**
+     * Move to the adjacent window.  Each window after an empty one is twice as large, up to MAX_SEARCH_WINDOW_SIZE,
+     * so long empty stretches take a logarithmic number of queries.
+     */
     private void incrementSearchCoords(){
-        this.start += searchIncrement;
-        int maxCoord = Integer.MAX_VALUE - searchWindowSize;
-        int minCoord = 0;
+        boolean forward = searchIncrement > 0;
+        searchWindowSize = (int) Math.min(2L * searchWindowSize, Math.max(MAX_SEARCH_WINDOW_SIZE, Math.abs(searchIncrement)));
 
+        int maxCoord = Integer.MAX_VALUE;
         if(this.genome != null){
             maxCoord = genome.getChromosome(chr).getLength();
         }
 
-        boolean outsideBounds = start >= maxCoord || start < minCoord;
+        if(forward){
+            start = end;
+        }else{
+            end = start;
+        }
 
+        boolean outsideBounds = forward ? start >= maxCoord : end <= 0;
 
         if (outsideBounds) {
             String lastChr = chr;
             chr = null;
             if(genome != null){
-                if(start >= maxCoord){
-                    chr = genome.getNextChrName(lastChr);
-                }else if(start < minCoord){
-                    chr = genome.getPrevChrName(lastChr);
-                }
+                chr = forward ? genome.getNextChrName(lastChr) : genome.getPrevChrName(lastChr);
             }
 
             if (chr == null) {
@@ -119,11 +132,20 @@ public class FeatureSearcher implements Runnable {
                 return;
             } else {
                 maxCoord = genome.getChromosome(chr).getLength();
-                start = searchIncrement > 0 ? minCoord : maxCoord - searchWindowSize;
+                searchWindowSize = Math.abs(searchIncrement);
+                if(forward){
+                    start = 0;
+                }else{
+                    end = maxCoord;
+                }
             }
         }
-        this.end = start + searchWindowSize;
-        this.end = Math.min(this.end, maxCoord);
+
+        if(forward){
+            end = (int) Math.min((long) start + searchWindowSize, maxCoord);
+        }else{
+            start = Math.max(0, end - searchWindowSize);
+        }
     }
 
     private Iterator<? extends Feature> getFeatures(String chr, int start, int end) throws IOException{
@@ -173,6 +195,20 @@ public class FeatureSearcher implements Runnable {
             this.monitor.start();
         }
 
+        IndexedFeatureSource<?> indexedSource = getIndexedSource();
+        if(indexedSource != null){
+            try {
+                Feature f = searchIncrement > 0 ? indexedSource.nextFeature(chr, start - 1) :
+                        indexedSource.previousFeature(chr, end);
+                if(f != null){
+                    this.result = Collections.singletonList(f).iterator();
+                }
+            } catch (IOException e) {
+                log.error("Error searching for feature", e);
+            }
+            isRunning = false;
+        }
+
         while(isRunning && !wasCancelled){
             try {
                 if(this.monitor != null){
@@ -185,7 +221,7 @@ public class FeatureSearcher implements Runnable {
                 rslt = getFeatures(chr, start, end);
                 if(rslt != null && rslt.hasNext()){
                     //Found something
-                    this.result = rslt;
+                    this.result = searchIncrement > 0 ? rslt : nearestFirst(rslt, end);
                     break;
                 }else{
                     //Didn't find anything, keep going
@@ -202,6 +238,29 @@ public class FeatureSearcher implements Runnable {
         }
     }
 
+    private IndexedFeatureSource<?> getIndexedSource(){
+        if(track != null) return null;
+        FeatureSource rawSource = source;
+        if(source instanceof CachingFeatureSource){
+            rawSource = ((CachingFeatureSource) source).getSource();
+        }
+        return rawSource instanceof IndexedFeatureSource ? (IndexedFeatureSource<?>) rawSource : null;
+    }
+
+    /**
+     * When searching backwards the feature closest to the search origin is the last one in the window, return the
+     * features starting before {@code end} in reverse order.
+     */
+    private static Iterator<? extends Feature> nearestFirst(Iterator<? extends Feature> features, int end){
+        List<Feature> reversed = new ArrayList<Feature>();
+        while(features.hasNext()){
+            Feature f = features.next();
+            if(f.getStart() < end) reversed.add(f);
+        }
+        Collections.reverse(reversed);
+        return reversed.iterator();
+    }
+
     /**
      * Listener for handling search result
      */
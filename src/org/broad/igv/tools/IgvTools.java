@@ -22,18 +22,29 @@ import org.apache.log4j.*;
 import org.broad.igv.Globals;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.feature.GFFParser;
+import org.broad.igv.feature.GeneModelCache;
 import org.broad.igv.feature.genome.FastaUtils;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeDescriptor;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.maf.MAFBinaryCodec;
+import org.broad.igv.maf.MAFBinaryWriter;
+import org.broad.igv.sam.AlignmentSummary;
+import org.broad.igv.sam.SpliceJunctionIndex;
+import org.broad.igv.sam.reader.AlignmentFilter;
 import org.broad.igv.sam.reader.AlignmentIndexer;
 import org.broad.igv.tdf.TDFUtils;
 import org.broad.igv.tools.converters.BamToBed;
 import org.broad.igv.tools.converters.ExpressionFormatter;
 import org.broad.igv.tools.converters.GCTtoIGVConverter;
 import org.broad.igv.tools.converters.WigToBed;
+import org.broad.igv.tools.merge.BedGraphWriter;
+import org.broad.igv.tools.merge.IntervalSource;
+import org.broad.igv.tools.merge.WigMerger;
+import org.broad.igv.tools.parsers.DataConsumer;
 import org.broad.igv.tools.sort.Sorter;
+import org.broad.igv.track.GFFFeatureSource;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.ReadmeParser;
@@ -71,6 +82,9 @@ public class IgvTools {
     static final String CMD_GUI = "gui";
     static final String CMD_HELP = "help";
     static final String CMD_BAMTOBED = "bamtobed";
+    static final String CMD_MAFTOMAFB = "maftomafb";
+    static final String CMD_SUMWIGS = "sumwigs";
+    static final String CMD_JUNCTIONS = "junctions";
 
     /**
      * Stream for writing messages to the user, which we
@@ -97,6 +111,7 @@ public class IgvTools {
             "index   index an alignment file",
             "toTDF    convert an input file (cn, gct, wig) to tiled data format (tdf)",
             "count   compute coverage density for an alignment file",
+            "junctions   extract splice junctions from an alignment file",
             "formatexp  center, scale, and log2 normalize an expression file",
             "gui      Start the gui",
             "help <command>     display this help message, or help on a specific command",
@@ -116,6 +131,7 @@ public class IgvTools {
     private static CmdLineParser.Option windowFunctions = null;
     private static CmdLineParser.Option tmpDirOption = null;
     private static CmdLineParser.Option maxZoomOption = null;
+    private static CmdLineParser.Option quantileSketchOption = null;
     private static CmdLineParser.Option typeOption = null;
 
     // options for sort
@@ -135,8 +151,14 @@ public class IgvTools {
     private static CmdLineParser.Option strandOption = null;
     private static CmdLineParser.Option queryStringOpt = null;
     private static CmdLineParser.Option minMapQualityOpt = null;
+    private static CmdLineParser.Option minFlankingWidthOpt = null;
     private static CmdLineParser.Option includeDupsOpt = null;
     private static CmdLineParser.Option pairedCoverageOpt = null;
+    private static CmdLineParser.Option summaryOpt = null;
+
+    // options for sumwigs
+    private static CmdLineParser.Option mergeFunctionOption = null;
+    private static CmdLineParser.Option threadsOption = null;
 
     // options for index
     private static CmdLineParser.Option indexTypeOption = null;
@@ -146,6 +168,11 @@ public class IgvTools {
     // Trackline
     private static CmdLineParser.Option colorOption = null;
 
+    /**
+     * Estimate percentile window functions with a quantile sketch (--sketch)
+     */
+    private boolean useQuantileSketch = false;
+
     /**
      * The general usage string
      */
@@ -328,6 +355,7 @@ public class IgvTools {
                 boolean isGCT = typeString.endsWith("gct") || typeString.equals("mage-tab");
                 String wfsString = (String) parser.getOptionValue(windowFunctions);
                 Collection<WindowFunction> wfList = parseWFS(wfsString, isGCT);
+                useQuantileSketch = (Boolean) parser.getOptionValue(quantileSketchOption, false);
 
 
                 if (command.equals(CMD_COUNT)) {
@@ -348,9 +376,13 @@ public class IgvTools {
                     int minMapQuality = (Integer) parser.getOptionValue(minMapQualityOpt, 0);
 
                     int windowSizeValue = (Integer) parser.getOptionValue(windowSizeOption, WINDOW_SIZE);
-                    doCount(ifile, ofile, genomeId, maxZoomValue, wfList, windowSizeValue, extFactorValue,
-                            preFactorValue, posFactorValue,
-                            trackLine, queryString, minMapQuality, countFlags);
+                    if ((Boolean) parser.getOptionValue(summaryOpt, false)) {
+                        doSummary(ifile, ofile, genomeId, maxZoomValue, windowSizeValue, minMapQuality);
+                    } else {
+                        doCount(ifile, ofile, genomeId, maxZoomValue, wfList, windowSizeValue, extFactorValue,
+                                preFactorValue, posFactorValue,
+                                trackLine, queryString, minMapQuality, countFlags);
+                    }
                 } else {
                     String probeFile = (String) parser.getOptionValue(probeFileOption, PROBE_FILE);
                     toTDF(typeString, ifile, ofile, probeFile, genomeId, maxZoomValue, wfList, tmpDirName, maxRecords);
@@ -417,8 +449,20 @@ public class IgvTools {
                 String inputFile = nonOptionArgs[1];
                 String outputFile = nonOptionArgs[2];
                 VCFtoBed.convert(inputFile, outputFile);
-            } else if (command.equals("sumwigs")) {
-                sumWigs(nonOptionArgs[1], nonOptionArgs[2]);
+            } else if (command.equals(CMD_SUMWIGS)) {
+                validateArgsLength(nonOptionArgs, 3, basic_syntax);
+                String function = (String) parser.getOptionValue(mergeFunctionOption, "sum");
+                int nThreads = (Integer) parser.getOptionValue(threadsOption, Runtime.getRuntime().availableProcessors());
+                int maxZoomValue = (Integer) parser.getOptionValue(maxZoomOption, MAX_ZOOM);
+                Collection<WindowFunction> wfList = parseWFS((String) parser.getOptionValue(windowFunctions), false);
+                String genomeId = nonOptionArgs.length > 3 ? nonOptionArgs[3] : null;
+                sumWigs(nonOptionArgs[1], nonOptionArgs[2], genomeId, function, nThreads, maxZoomValue, wfList, tmpDirName);
+            } else if (command.equals(CMD_JUNCTIONS)) {
+                validateArgsLength(nonOptionArgs, 3, basic_syntax);
+                String ofile = nonOptionArgs[2];
+                int minFlankingWidth = (Integer) parser.getOptionValue(minFlankingWidthOpt, 0);
+                int minMapQuality = (Integer) parser.getOptionValue(minMapQualityOpt, 0);
+                doJunctions(ifile, ofile, minFlankingWidth, minMapQuality);
             } else if (command.equals("densitiestobedgraph")) {
                 validateArgsLength(nonOptionArgs, 3, "Error in syntax. Expected: " + command + " [options] inputdir outputdir");
                 File inputDir = new File(nonOptionArgs[1]);
@@ -434,6 +478,13 @@ public class IgvTools {
                 String ofile = nonOptionArgs[2];
                 Boolean pairOption = (Boolean) parser.getOptionValue(pairedCoverageOpt, false);
                 BamToBed.convert(new File(ifile), new File(ofile), pairOption);
+            } else if (command.equals(CMD_MAFTOMAFB)) {
+                validateArgsLength(nonOptionArgs, 3, basic_syntax);
+                String ofile = nonOptionArgs[2];
+                if (!MAFBinaryCodec.isMAFBinary(ofile)) {
+                    ofile = ofile + MAFBinaryCodec.EXTENSION;
+                }
+                MAFBinaryWriter.convert(ifile, ofile);
             } else if (command.equalsIgnoreCase("genGenomeList")) {
                 //Generate a genomes.txt list file based on a directory
                 //TODO Probably a better place for this. Users won't generally use it
@@ -452,6 +503,19 @@ public class IgvTools {
     private CmdLineParser initParser(String command) {
         command = command.toLowerCase();
         CmdLineParser parser = new CmdLineParser();
+        if (command.equals(CMD_SUMWIGS)) {
+            mergeFunctionOption = parser.addStringOption("function");
+            threadsOption = parser.addIntegerOption("threads");
+            tmpDirOption = parser.addStringOption('t', "tmpDir");
+            windowFunctions = parser.addStringOption('f', "windowFunctions");
+            maxZoomOption = parser.addIntegerOption('z', "maxZoom");
+        }
+
+        if (command.equals(CMD_JUNCTIONS)) {
+            minFlankingWidthOpt = parser.addIntegerOption("minFlankingWidth");
+            minMapQualityOpt = parser.addIntegerOption("minMapQuality");
+        }
+
         if (command.equals(CMD_SORT) || command.equals(CMD_TOTDF) || command.equals(CMD_TILE)) {
             maxRecordsOption = parser.addIntegerOption('m', "maxRecords");
             tmpDirOption = parser.addStringOption('t', "tmpDir");
@@ -462,6 +526,7 @@ public class IgvTools {
             // general options
             windowFunctions = parser.addStringOption('f', "windowFunctions");
             maxZoomOption = parser.addIntegerOption('z', "maxZoom");
+            quantileSketchOption = parser.addBooleanOption("sketch");
 
             // extended options for coverage
             if (command.equals(CMD_COUNT) || command.equals(CMD_BAMTOBED)) {
@@ -477,6 +542,7 @@ public class IgvTools {
                 minMapQualityOpt = parser.addIntegerOption("minMapQuality");
                 includeDupsOpt = parser.addBooleanOption("includeDuplicates");
                 pairedCoverageOpt = parser.addBooleanOption("pairs");
+                summaryOpt = parser.addBooleanOption("summary");
 
                 // Trackline
                 colorOption = parser.addStringOption("color");
@@ -515,16 +581,82 @@ public class IgvTools {
     }
 
 
-    private void sumWigs(String inputString, String outputString) throws IOException {
+    /**
+     * Combine numeric tracks (wig, bedGraph, TDF, bigWig).  The output is a bedGraph file, or a tdf file if the
+     * output name ends with ".tdf", in which case a genome is required.
+     *
+     * @param inputString  comma delimited list of files, a directory, or a ".list" file
+     * @param outputString
+     * @param genomeId     optional, except for tdf output
+     * @param function     sum, mean, min, or max
+     * @param nThreads     number of chromosomes to merge concurrently
+     * @param maxZoomValue
+     * @param wfList       window functions for tdf output
+     * @param tmpDirName   directory for temporary files, or null for the default
+     */
+    public void sumWigs(String inputString, String outputString, String genomeId, String function, int nThreads,
+                        int maxZoomValue, Collection<WindowFunction> wfList, String tmpDirName) throws IOException {
+
+        List<File> in;
+        File inputFileOrDir = new File(inputString);
+        if (inputFileOrDir.isDirectory() || inputString.endsWith(".list")) {
+            in = getFilesFromDirOrList(inputFileOrDir);
+        } else {
+            in = new ArrayList();
+            for (String f : inputString.split(",")) {
+                in.add(new File(f));
+            }
+        }
 
-        String[] tokens = inputString.split(",");
-        List<File> in = new ArrayList();
-        for (String f : tokens) {
-            in.add(new File(f));
+        WigMerger.Function mergeFunction;
+        try {
+            mergeFunction = WigMerger.Function.valueOf(function.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new PreprocessingException("Unknown function: " + function + ".  Expected sum, mean, min, or max");
         }
+
         File out = new File(outputString);
-        WigSummer.sumWigs(in, out);
+        boolean isTDF = outputString.endsWith(".tdf");
+        if (isTDF && genomeId == null) {
+            throw new PreprocessingException("A genome is required for tdf output");
+        }
+        Genome genome = genomeId == null ? null : loadGenome(genomeId);
+
+        List<IntervalSource> sources = new ArrayList<IntervalSource>(in.size());
+        for (File f : in) {
+            sources.add(WigMerger.openSource(f.getAbsolutePath()));
+        }
+        WigMerger merger = new WigMerger(sources, mergeFunction, genome, nThreads);
+        if (tmpDirName != null && tmpDirName.trim().length() > 0) {
+            merger.setTmpDir(new File(tmpDirName));
+        }
+
+        String trackName = function.toLowerCase() + " of " + in.size() + " tracks";
+        DataConsumer consumer;
+        if (isTDF) {
+            Preprocessor p = new Preprocessor(out, genome, wfList, -1, null);
+            p.setUseQuantileSketch(useQuantileSketch);
+            p.setTrackParameters(TrackType.OTHER, null, new String[]{trackName});
+            p.setNZoom(maxZoomValue);
+            consumer = p;
+        } else {
+            consumer = new BedGraphWriter(out);
+            consumer.setTrackParameters(TrackType.OTHER, null, new String[]{trackName});
+        }
 
+        try {
+            merger.merge(consumer);
+            if (isTDF) {
+                ((Preprocessor) consumer).finish();
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            // Delete output file as its probably corrupt
+            if (out.exists()) {
+                out.delete();
+            }
+            throw e;
+        }
     }
 
     private void doGCTtoIGV(String typeString, String ifile, File ofile, String probefile, int maxRecords, String tmpDirName, Genome genome) throws IOException {
@@ -603,6 +735,7 @@ public class IgvTools {
         File outputFile = new File(ofile);
         try {
             Preprocessor p = new Preprocessor(outputFile, genome, windowFunctions, nLines, null);
+            p.setUseQuantileSketch(useQuantileSketch);
             if (inputFileOrDir.isDirectory() || inputFileOrDir.getName().endsWith(".list")) {
                 p.setSizeEstimate(0);
                 List<File> files = getFilesFromDirOrList(inputFileOrDir);
@@ -756,6 +889,7 @@ public class IgvTools {
             Preprocessor p = new Preprocessor(tdfFile, genome, windowFunctions, -1, null);
 
             p.setSkipZeroes(true);
+            p.setUseQuantileSketch(useQuantileSketch);
 
             CoverageCounter counter = new CoverageCounter(ifile, p, windowSizeValue, extFactorValue, wigFile,
                     genome, queryString, minMapQuality, countFlags);
@@ -788,6 +922,51 @@ public class IgvTools {
     }
 
 
+    /**
+     * Compute an alignment summary (coverage and junctions) for display when zoomed out.  IGV uses the summary if it
+     * is saved next to the alignment file as "alignments.bam.summary.tdf".
+     *
+     * @param ifile          alignment file
+     * @param ofile          output tdf file
+     * @param genomeId
+     * @param maxZoomValue
+     * @param windowSizeValue
+     * @param minMapQuality
+     * @throws IOException
+     * @see AlignmentSummary
+     */
+    public void doSummary(String ifile, String ofile, String genomeId, int maxZoomValue, int windowSizeValue,
+                          int minMapQuality) throws IOException {
+
+        log.info("Computing alignment summary.  File = " + ifile);
+        log.info("Max zoom = " + maxZoomValue);
+        log.info("Window size = " + windowSizeValue);
+
+        Genome genome = loadGenome(genomeId);
+        if (genome == null) {
+            throw new PreprocessingException("Genome could not be loaded: " + genomeId);
+        }
+
+        File tdfFile = new File(ofile.endsWith(".tdf") ? ofile : ofile + ".tdf");
+        AlignmentSummary.build(ifile, tdfFile, genome, windowSizeValue, maxZoomValue, minMapQuality);
+
+        userMessageWriter.flush();
+    }
+
+    /**
+     * Extract the splice junctions of an alignment file to an indexed junctions bed file
+     */
+    public void doJunctions(String ifile, String ofile, int minFlankingWidth, int minMapQuality) throws IOException {
+
+        log.info("Extracting splice junctions.  File = " + ifile);
+        log.info("Min flanking width = " + minFlankingWidth);
+
+        AlignmentFilter filter = new AlignmentFilter(false, true, false, minMapQuality, null);
+        int count = SpliceJunctionIndex.build(ifile, new File(ofile), minFlankingWidth, filter);
+        userMessageWriter.println("Junctions: " + count);
+        userMessageWriter.flush();
+    }
+
     public void doWIBtoWIG(File txtFile, File wibFile, File wigFile, String trackLine) {
         UCSCUtils.convertWIBFile(txtFile, wibFile, wigFile, trackLine);
     }
@@ -879,6 +1058,9 @@ public class IgvTools {
         if (codec != null) {
             try {
                 createTribbleIndex(ifile, outputFile, indexType, binSize, codec);
+                if (GFFFeatureSource.isGFF(ifile)) {
+                    writeGeneModelCache(ifile);
+                }
             } catch (TribbleException.MalformedFeatureFile e) {
                 StringBuffer buf = new StringBuffer();
                 buf.append("<html>Files must be sorted by start position prior to indexing.<br>");
@@ -894,6 +1076,25 @@ public class IgvTools {
 
     }
 
+    /**
+     * Write the pre-assembled gene models of an indexed GFF file, see {@link GeneModelCache}.  Failure is not fatal,
+     * the file is still usable without the cache.
+     * <p/>
+     * The cache is always written next to the GFF file, whatever the index output directory, as that is where
+     * {@link GFFFeatureSource} looks for it.
+     *
+     * @param ifile
+     */
+    private void writeGeneModelCache(String ifile) {
+        File inputFile = new File(ifile);
+        String cachePath = GeneModelCache.getCachePath(inputFile.getAbsolutePath());
+        try {
+            GeneModelCache.write(inputFile.getAbsolutePath(), cachePath);
+        } catch (Exception e) {
+            log.error("Error writing gene model cache " + cachePath, e);
+        }
+    }
+
     public static void writeTribbleIndex(Index idx, String idxFile) throws IOException{
         LittleEndianOutputStream stream = null;
         try {
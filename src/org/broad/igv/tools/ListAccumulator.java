@@ -23,6 +23,7 @@
 package org.broad.igv.tools;
 
 import org.broad.igv.util.collections.DoubleArrayList;
+import org.broad.igv.util.collections.QuantileSketch;
 import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
@@ -30,7 +31,8 @@ import org.broad.igv.track.WindowFunction;
 import java.util.*;
 
 /**
- * Estimating percentiles -- weighted average of multiple estimates
+ * Estimating percentiles -- weighted average of multiple estimates, or optionally from a {@link QuantileSketch}.
+ * The sketch uses bounded memory and can be merged, at the cost of a small rank error.
  *
  * @author jrobinso
  */
@@ -55,6 +57,7 @@ public class ListAccumulator {
     List<WindowFunction> quantileFunctions;
     Map<WindowFunction, List<PercentileValue>> percentiles = new HashMap();
     DoubleArrayList values = null;
+    QuantileSketch sketch = null;
     float sum = 0.0f;
     int basesCovered = 0;
     int nPts = 0;
@@ -70,12 +73,24 @@ public class ListAccumulator {
 
 
     public ListAccumulator(Collection<WindowFunction> windowFunctions) {
+        this(windowFunctions, false);
+    }
+
+    /**
+     * @param windowFunctions
+     * @param useSketch       if true estimate percentiles with a {@link QuantileSketch} rather than from the values
+     */
+    public ListAccumulator(Collection<WindowFunction> windowFunctions, boolean useSketch) {
         this.windowFunctions = new ArrayList(windowFunctions);
         quantileFunctions = new ArrayList();
         for (WindowFunction wf : windowFunctions) {
             if (PERCENTILE_WINDOW_FUNCTIONS.contains(wf)) {
                 quantileFunctions.add(wf);
-                if (values == null) {
+                if (useSketch) {
+                    if (sketch == null) {
+                        sketch = new QuantileSketch();
+                    }
+                } else if (values == null) {
                     values = new DoubleArrayList();
                 }
             }
@@ -89,7 +104,9 @@ public class ListAccumulator {
             sum += w*v;
             basesCovered +=w;
             nPts++;
-            if (values != null) {
+            if (sketch != null) {
+                sketch.add(v);
+            } else if (values != null) {
                 values.add(v);
                 if (values.size() > MAX_VALUE_COUNT) {
                     computePercentiles();
@@ -108,7 +125,11 @@ public class ListAccumulator {
 
         mean = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
 
-        if (values != null) {
+        if (sketch != null) {
+            for (WindowFunction wf : quantileFunctions) {
+                setValue(wf, nPts == 1 ? mean : (float) sketch.getPercentile(getPercentile(wf)));
+            }
+        } else if (values != null) {
             if (nPts == 1) {
                 for (WindowFunction wf : quantileFunctions) {
                     setValue(wf, mean);
@@ -138,6 +159,7 @@ public class ListAccumulator {
             }
         }
         values = null;
+        sketch = null;
         isFinished = true;
 
     }
@@ -39,6 +39,7 @@ public class Preprocessor implements DataConsumer {
 
     boolean compressed = true;
     private boolean skipZeroes = false;
+    private boolean useQuantileSketch = false;
     private int nZoom = 7;
     int maxExtFactor = 0;
     Zoom[] zoomLevels;
@@ -354,6 +355,17 @@ public class Preprocessor implements DataConsumer {
         this.skipZeroes = skipZeroes;
     }
 
+    /**
+     * Estimate percentile window functions (median, p2, ...) with a bounded memory quantile sketch rather than
+     * from the raw values of each bin.  Must be called before any data is added.
+     *
+     * @param useQuantileSketch
+     */
+    public void setUseQuantileSketch(boolean useQuantileSketch) {
+        this.useQuantileSketch = useQuantileSketch;
+        allDataStats = new ListAccumulator(allDataFunctions, useQuantileSketch);
+    }
+
     public int getNZoom() {
         return nZoom;
     }
@@ -633,7 +645,7 @@ public class Preprocessor implements DataConsumer {
 
                 for (int b = startBin; b <= endBin; b++) {
                     if (accumulators[t][b] == null) {
-                        accumulators[t][b] = new ListAccumulator(datasets.keySet());
+                        accumulators[t][b] = new ListAccumulator(datasets.keySet(), useQuantileSketch);
                     }
                     accumulators[t][b].add(end - start, data[t]);
                 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.AlignmentBlock;
+import org.broad.igv.sam.SamAlignment;
+import org.broad.igv.sam.SpliceJunctionHelper;
+import org.broad.igv.sam.reader.AlignmentFilter;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Extracts splice junctions from an alignment file in a single pass and writes them as a junctions bed file, in the
+ * format written by TopHat.  Each record is a junction with the read depth as the score, the strand, and the maximum
+ * extent of the flanking regions on either side as its two blocks.
+ * <p/>
+ * Memory use is bounded by the number of junctions which can still receive reads.  Alignments are sorted by start,
+ * so once an alignment starts after the start of a junction no later alignment can span it, and the junction is
+ * written as soon as no open junction could precede it in the output.  Output is sorted by start position, so it
+ * can be indexed.
+ * <p/>
+ * Alignments rejected by the {@link AlignmentFilter} are not counted.  Soft clipped blocks are not part of the
+ * flanking regions.
+ */
+public class SpliceJunctionExtractor {
+
+    private static Logger log = Logger.getLogger(SpliceJunctionExtractor.class);
+
+    private String alignmentFile;
+    private PrintWriter out;
+    private int minFlankingWidth;
+    private AlignmentFilter filter;
+
+    private String chr;
+
+    /**
+     * Junctions which can still receive reads, keyed by strand, start, and end
+     */
+    private Map<String, SpliceJunctionFeature> openJunctions = new HashMap<String, SpliceJunctionFeature>();
+
+    /**
+     * Open junctions by junction start, for closing them in order
+     */
+    private TreeMap<Integer, List<SpliceJunctionFeature>> openByJunctionStart =
+            new TreeMap<Integer, List<SpliceJunctionFeature>>();
+
+    /**
+     * Junctions which are complete but not yet written, ordered by start
+     */
+    private PriorityQueue<SpliceJunctionFeature> closedJunctions = new PriorityQueue<SpliceJunctionFeature>(100,
+            new Comparator<SpliceJunctionFeature>() {
+                public int compare(SpliceJunctionFeature o1, SpliceJunctionFeature o2) {
+                    return o1.getStart() - o2.getStart();
+                }
+            });
+
+    private int junctionCount;
+
+    /**
+     * @param alignmentFile     path to the alignment file, which must be sorted by start position
+     * @param out               the junctions are written here
+     * @param minFlankingWidth minimum width of the aligned bases on either side of a junction for a read to count
+     * @param filter           alignments rejected by the filter are not counted
+     */
+    public SpliceJunctionExtractor(String alignmentFile, PrintWriter out, int minFlankingWidth, AlignmentFilter filter) {
+        this.alignmentFile = alignmentFile;
+        this.out = out;
+        this.minFlankingWidth = minFlankingWidth;
+        this.filter = filter;
+    }
+
+    /**
+     * @return the number of junctions written
+     */
+    public int parse() throws IOException {
+
+        AlignmentReader reader = null;
+        CloseableIterator<Alignment> iter = null;
+        try {
+            reader = AlignmentReaderFactory.getReader(alignmentFile, false);
+            iter = reader.iterator();
+            while (iter.hasNext()) {
+                Alignment alignment = iter.next();
+                if (!passFilter(alignment)) continue;
+
+                String alignmentChr = alignment.getChr();
+                if (!alignmentChr.equals(chr)) {
+                    closeJunctionsBefore(Integer.MAX_VALUE);
+                    chr = alignmentChr;
+                } else {
+                    closeJunctionsBefore(alignment.getAlignmentStart());
+                }
+                addAlignment(alignment);
+            }
+            closeJunctionsBefore(Integer.MAX_VALUE);
+            out.flush();
+            log.info("Junctions: " + junctionCount);
+            return junctionCount;
+        } finally {
+            if (iter != null) {
+                iter.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    private boolean passFilter(Alignment alignment) {
+        return alignment.isMapped() && !filter.filterAlignment(alignment);
+    }
+
+    private void addAlignment(Alignment alignment) {
+
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+        char[] gapTypes = alignment.getGapTypes();
+        if (blocks == null || blocks.length < 2 || gapTypes == null) {
+            return;
+        }
+
+        boolean isNegativeStrand = SpliceJunctionHelper.isNegativeStrand(alignment);
+
+        // Gap i - 1 lies between blocks i - 1 and i.  Soft clipped blocks, if shown, have gaps too.
+        int flankingStart = -1;
+        int junctionStart = -1;
+        for (int i = 0; i < blocks.length; i++) {
+            AlignmentBlock block = blocks[i];
+            if (block.isSoftClipped()) {
+                junctionStart = -1;
+                continue;
+            }
+
+            int flankingEnd = block.getEnd();
+            int junctionEnd = block.getStart();
+            if (junctionStart >= 0 && i - 1 < gapTypes.length &&
+                    gapTypes[i - 1] == SamAlignment.SKIPPED_REGION &&
+                    junctionStart - flankingStart >= minFlankingWidth &&
+                    flankingEnd - junctionEnd >= minFlankingWidth) {
+                getJunction(junctionStart, junctionEnd, isNegativeStrand).addRead(flankingStart, flankingEnd);
+            }
+            flankingStart = junctionEnd;
+            junctionStart = flankingEnd;
+        }
+    }
+
+    private SpliceJunctionFeature getJunction(int junctionStart, int junctionEnd, boolean isNegativeStrand) {
+        String key = getKey(junctionStart, junctionEnd, isNegativeStrand);
+        SpliceJunctionFeature junction = openJunctions.get(key);
+        if (junction == null) {
+            junction = new SpliceJunctionFeature(chr, junctionStart, junctionEnd,
+                    isNegativeStrand ? Strand.NEGATIVE : Strand.POSITIVE);
+            openJunctions.put(key, junction);
+            List<SpliceJunctionFeature> list = openByJunctionStart.get(junctionStart);
+            if (list == null) {
+                list = new ArrayList<SpliceJunctionFeature>(2);
+                openByJunctionStart.put(junctionStart, list);
+            }
+            list.add(junction);
+        }
+        return junction;
+    }
+
+    private static String getKey(int junctionStart, int junctionEnd, boolean isNegativeStrand) {
+        return (isNegativeStrand ? "-" : "+") + junctionStart + "_" + junctionEnd;
+    }
+
+    /**
+     * Close junctions which start before {@code position}, and write closed junctions which no open junction can
+     * precede.
+     */
+    private void closeJunctionsBefore(int position) {
+
+        while (!openByJunctionStart.isEmpty() && openByJunctionStart.firstKey() < position) {
+            for (SpliceJunctionFeature junction : openByJunctionStart.pollFirstEntry().getValue()) {
+                openJunctions.remove(getKey(junction.getJunctionStart(), junction.getJunctionEnd(),
+                        junction.getStrand() == Strand.NEGATIVE));
+                closedJunctions.add(junction);
+            }
+        }
+
+        if (closedJunctions.isEmpty()) {
+            return;
+        }
+
+        // Reads added from here on have flanking regions starting at or after position
+        int minOpenStart = position;
+        for (SpliceJunctionFeature junction : openJunctions.values()) {
+            minOpenStart = Math.min(minOpenStart, junction.getStart());
+        }
+        while (!closedJunctions.isEmpty() && closedJunctions.peek().getStart() <= minOpenStart) {
+            write(closedJunctions.poll());
+        }
+    }
+
+    private void write(SpliceJunctionFeature junction) {
+        junctionCount++;
+        int start = junction.getStart();
+        int end = junction.getEnd();
+        boolean negative = junction.getStrand() == Strand.NEGATIVE;
+        out.print(junction.getChr());
+        out.print("\t" + start);
+        out.print("\t" + end);
+        out.print("\tJUNC" + junctionCount);
+        out.print("\t" + junction.getJunctionDepth());
+        out.print("\t" + (negative ? "-" : "+"));
+        out.print("\t" + start);
+        out.print("\t" + end);
+        out.print("\t" + (negative ? "0,0,255" : "255,0,0"));
+        out.print("\t2");
+        out.print("\t" + junction.getStartFlankingRegionLength() + "," + junction.getEndFlankingRegionLength());
+        out.println("\t0," + (junction.getJunctionEnd() - start));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import org.broad.igv.track.TrackType;
+import org.broad.igv.tools.parsers.DataConsumer;
+
+import java.io.*;
+
+/**
+ * Data consumer which writes the first value of each record as a bedGraph line.
+ */
+public class BedGraphWriter implements DataConsumer {
+
+    private PrintWriter pw;
+
+    public BedGraphWriter(File file) throws IOException {
+        pw = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+    }
+
+    public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames) {
+        if (trackLine == null) {
+            trackLine = "track type=bedGraph";
+            if (trackNames != null && trackNames.length > 0) {
+                trackLine += " name=\"" + trackNames[0] + "\"";
+            }
+        }
+        pw.println(trackLine);
+    }
+
+    public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames, boolean b) {
+        setTrackParameters(trackType, trackLine, trackNames);
+    }
+
+    public void addData(String chr, int start, int end, float[] data, String name) {
+        pw.print(chr);
+        pw.print('\t');
+        pw.print(start);
+        pw.print('\t');
+        pw.print(end);
+        pw.print('\t');
+        pw.println(data[0]);
+    }
+
+    public void parsingComplete() {
+        pw.close();
+    }
+
+    public void setType(String type) {
+    }
+
+    public void setSortTolerance(int tolerance) {
+    }
+
+    public void setAttribute(String key, String value) {
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.bbfile.BigWigIterator;
+import org.broad.igv.bbfile.WigItem;
+import org.broad.igv.exceptions.DataLoadException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interval source for bigWig files.  The reader is not thread safe, each iterator opens its own.
+ */
+public class BigWigIntervalSource implements IntervalSource {
+
+    private String path;
+    private List<String> chrNames;
+
+    public BigWigIntervalSource(String path) throws IOException {
+        this.path = path;
+        BBFileReader reader = new BBFileReader(path);
+        try {
+            if (!reader.isBigWigFile()) {
+                throw new DataLoadException("Not a bigWig file", path);
+            }
+            chrNames = new ArrayList<String>(reader.getChromosomeNames());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public Collection<String> getChromosomeNames() {
+        return chrNames;
+    }
+
+    public IntervalIterator iterator(String chr) throws IOException {
+        final BBFileReader reader = new BBFileReader(path);
+        final BigWigIterator iter = reader.getBigWigIterator(chr, 0, chr, Integer.MAX_VALUE, false);
+
+        return new IntervalIterator() {
+            WigItem item;
+
+            public boolean next() {
+                if (iter.hasNext()) {
+                    item = iter.next();
+                    return true;
+                }
+                return false;
+            }
+
+            public int getStart() {
+                return item.getStartBase();
+            }
+
+            public int getEnd() {
+                return item.getEndBase();
+            }
+
+            public float getValue() {
+                return item.getWigValue();
+            }
+
+            public void close() {
+                reader.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A source of scored intervals, read one chromosome at a time.  Iterators for different chromosomes can be used
+ * concurrently from different threads.
+ */
+public interface IntervalSource {
+
+    /**
+     * @return names of the chromosomes with data, as they appear in the source
+     */
+    Collection<String> getChromosomeNames();
+
+    /**
+     * @param chr chromosome name, as returned by {@link #getChromosomeNames()}
+     * @return iterator over the intervals of the chromosome, in start position order
+     */
+    IntervalIterator iterator(String chr) throws IOException;
+
+    /**
+     * Cursor over scored intervals.  Coordinates are zero based, end exclusive.
+     */
+    public static interface IntervalIterator {
+
+        /**
+         * Advance to the next interval
+         *
+         * @return false if there are no more intervals
+         */
+        boolean next() throws IOException;
+
+        int getStart();
+
+        int getEnd();
+
+        float getValue();
+
+        void close();
+    }
+}
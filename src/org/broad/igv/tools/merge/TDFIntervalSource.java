@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import org.broad.igv.Globals;
+import org.broad.igv.tdf.TDFDataset;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tdf.TDFTile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interval source for the raw (un-summarized) data of the first track of a TDF file.
+ */
+public class TDFIntervalSource implements IntervalSource {
+
+    private TDFReader reader;
+
+    public TDFIntervalSource(String path) {
+        reader = TDFReader.getReader(path);
+    }
+
+    public Collection<String> getChromosomeNames() {
+        List<String> chrNames = new ArrayList<String>();
+        for (String chr : reader.getChromosomeNames()) {
+            if (!chr.equals(Globals.CHR_ALL)) {
+                chrNames.add(chr);
+            }
+        }
+        return chrNames;
+    }
+
+    public IntervalIterator iterator(String chr) {
+        return new TDFIterator(reader.getDataset("/" + chr + "/raw"));
+    }
+
+    public void close() {
+        reader.close();
+    }
+
+    static class TDFIterator implements IntervalIterator {
+
+        TDFDataset dataset;
+        int tileNumber = -1;
+        TDFTile tile;
+        int idx;
+
+        TDFIterator(TDFDataset dataset) {
+            this.dataset = dataset;
+        }
+
+        public boolean next() {
+            if (dataset == null) {
+                return false;
+            }
+            idx++;
+            while (tile == null || idx >= tile.getSize()) {
+                tileNumber++;
+                if (tileNumber >= dataset.getNumberOfTiles()) {
+                    return false;
+                }
+                // Tiles are read one at a time to bound memory
+                int tileStart = tileNumber * dataset.getTileWidth();
+                List<TDFTile> tiles = dataset.getTiles(tileStart, tileStart);
+                tile = tiles.isEmpty() ? null : tiles.get(0);
+                idx = 0;
+            }
+            return true;
+        }
+
+        public int getStart() {
+            return tile.getStartPosition(idx);
+        }
+
+        public int getEnd() {
+            return tile.getEndPosition(idx);
+        }
+
+        public float getValue() {
+            return tile.getValue(0, idx);
+        }
+
+        public void close() {
+            if (dataset != null) {
+                dataset.clearCache();
+            }
+            dataset = null;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.exceptions.ParserException;
+import org.broad.igv.track.TrackProperties;
+import org.broad.igv.util.AsciiTokenizer;
+import org.broad.igv.util.ParsingUtils;
+import org.broad.igv.util.ResourceLocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Interval source for wig (fixedStep and variableStep) and bedGraph files.
+ * <p/>
+ * The file is scanned once when the source is created to record the offset of each run of lines for a chromosome.
+ * Iterators then seek directly to the chromosome, so chromosomes can be read in parallel.
+ */
+public class WigIntervalSource implements IntervalSource {
+
+    private static Logger log = Logger.getLogger(WigIntervalSource.class);
+
+    private static final int BUFFER_SIZE = 16000;
+
+    enum Type {
+        FIXED, VARIABLE, BED_GRAPH
+    }
+
+    private String path;
+    private String trackLine;
+    private int startBase = 1;   // Coordinate base of fixedStep start positions, zero if the track line says so
+    private Map<String, List<Segment>> segments = new LinkedHashMap<String, List<Segment>>();
+
+    public WigIntervalSource(String path) throws IOException {
+        this.path = path;
+        scan();
+    }
+
+    public String getTrackLine() {
+        return trackLine;
+    }
+
+    public Collection<String> getChromosomeNames() {
+        return segments.keySet();
+    }
+
+    public IntervalIterator iterator(String chr) throws IOException {
+        List<Segment> chrSegments = segments.get(chr);
+        if (chrSegments == null) {
+            chrSegments = Collections.emptyList();
+        }
+        return new WigIterator(chr, chrSegments);
+    }
+
+    private static boolean isSkipped(AsciiTokenizer tokenizer) {
+        return tokenizer.isBlank() || tokenizer.startsWith("#") || tokenizer.startsWith("browser") ||
+                tokenizer.startsWith("data");
+    }
+
+    private static boolean isStepLine(AsciiTokenizer tokenizer) {
+        return tokenizer.startsWith("fixedStep") || tokenizer.startsWith("variableStep");
+    }
+
+    /**
+     * Record the start of each run of lines for a chromosome.
+     */
+    private void scan() throws IOException {
+
+        AsciiTokenizer tokenizer = new AsciiTokenizer(openStream(), 0, AsciiTokenizer.DEFAULT_BUFFER_SIZE);
+        try {
+            Type type = Type.BED_GRAPH;
+            String currentChr = null;
+            while (tokenizer.nextLine()) {
+                if (isSkipped(tokenizer)) {
+                    continue;
+                }
+                if (tokenizer.startsWith("track")) {
+                    type = Type.BED_GRAPH;
+                    if (trackLine == null) {
+                        trackLine = tokenizer.getLine();
+                        TrackProperties props = new TrackProperties();
+                        ParsingUtils.parseTrackLine(trackLine, props);
+                        if (props.getBaseCoord() == TrackProperties.BaseCoord.ZERO) {
+                            startBase = 0;
+                        }
+                    }
+                } else if (isStepLine(tokenizer)) {
+                    type = tokenizer.startsWith("fixedStep") ? Type.FIXED : Type.VARIABLE;
+                    String chr = parseStepLine(tokenizer).get("chrom");
+                    if (chr == null) {
+                        throw new ParserException("Missing chrom", tokenizer.getLineNumber(), tokenizer.getLine());
+                    }
+                    if (!chr.equals(currentChr)) {
+                        addSegment(chr, tokenizer.getLineOffset(), type);
+                        currentChr = chr;
+                    }
+                } else if (type == Type.BED_GRAPH && tokenizer.getFieldCount() > 3) {
+                    if (currentChr == null || !tokenizer.fieldEquals(0, currentChr)) {
+                        currentChr = tokenizer.getString(0);
+                        addSegment(currentChr, tokenizer.getLineOffset(), type);
+                    }
+                }
+            }
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    private void addSegment(String chr, long offset, Type type) {
+        List<Segment> chrSegments = segments.get(chr);
+        if (chrSegments == null) {
+            chrSegments = new ArrayList<Segment>(1);
+            segments.put(chr, chrSegments);
+        } else {
+            log.warn("Chromosome " + chr + " appears in multiple blocks of " + path);
+        }
+        chrSegments.add(new Segment(offset, type));
+    }
+
+    private InputStream openStream() throws IOException {
+        return ParsingUtils.openInputStreamGZ(new ResourceLocator(path));
+    }
+
+    /**
+     * Parse the key=value pairs of a fixedStep or variableStep line
+     */
+    static Map<String, String> parseStepLine(AsciiTokenizer tokenizer) {
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 1; i < tokenizer.getFieldCount(); i++) {
+            String token = tokenizer.getString(i);
+            int idx = token.indexOf('=');
+            if (idx > 0) {
+                values.put(token.substring(0, idx).toLowerCase(), token.substring(idx + 1));
+            }
+        }
+        return values;
+    }
+
+    private static void skipFully(InputStream is, long n) throws IOException {
+        while (n > 0) {
+            long skipped = is.skip(n);
+            if (skipped <= 0) {
+                if (is.read() < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    /**
+     * Start of a run of lines for a single chromosome
+     */
+    static class Segment {
+        long offset;
+        Type type;
+
+        Segment(long offset, Type type) {
+            this.offset = offset;
+            this.type = type;
+        }
+    }
+
+    class WigIterator implements IntervalIterator {
+
+        String chr;
+        List<Segment> chrSegments;
+        int segmentIndex = -1;
+        AsciiTokenizer tokenizer;
+
+        Type type;
+        int position;
+        int step = 1;
+        int span = 1;
+
+        int start;
+        int end;
+        float value;
+
+        WigIterator(String chr, List<Segment> chrSegments) {
+            this.chr = chr;
+            this.chrSegments = chrSegments;
+        }
+
+        public boolean next() throws IOException {
+            while (true) {
+                if (tokenizer == null && !nextSegment()) {
+                    return false;
+                }
+                if (readInterval()) {
+                    return true;
+                }
+                tokenizer.close();
+                tokenizer = null;
+            }
+        }
+
+        private boolean nextSegment() throws IOException {
+            segmentIndex++;
+            if (segmentIndex >= chrSegments.size()) {
+                return false;
+            }
+            Segment segment = chrSegments.get(segmentIndex);
+            InputStream is = openStream();
+            skipFully(is, segment.offset);
+            tokenizer = new AsciiTokenizer(is, segment.offset, BUFFER_SIZE);
+            type = segment.type;
+            return true;
+        }
+
+        /**
+         * Read the next interval of the current segment.
+         *
+         * @return false at the end of the segment
+         */
+        private boolean readInterval() throws IOException {
+            while (tokenizer.nextLine()) {
+                if (isSkipped(tokenizer)) {
+                    continue;
+                }
+                if (tokenizer.startsWith("track")) {
+                    return false;
+                }
+                try {
+                    if (isStepLine(tokenizer)) {
+                        Map<String, String> values = parseStepLine(tokenizer);
+                        if (!chr.equals(values.get("chrom"))) {
+                            return false;
+                        }
+                        type = tokenizer.startsWith("fixedStep") ? Type.FIXED : Type.VARIABLE;
+                        if (values.containsKey("step")) step = Integer.parseInt(values.get("step"));
+                        if (values.containsKey("span")) span = Integer.parseInt(values.get("span"));
+                        if (values.containsKey("start")) position = Integer.parseInt(values.get("start")) - startBase;
+                        continue;
+                    }
+
+                    switch (type) {
+                        case BED_GRAPH:
+                            if (tokenizer.getFieldCount() < 4) continue;
+                            if (!tokenizer.fieldEquals(0, chr)) {
+                                return false;
+                            }
+                            start = tokenizer.getInt(1);
+                            end = tokenizer.getInt(2);
+                            value = tokenizer.getFloat(3);
+                            return true;
+                        case VARIABLE:
+                            if (tokenizer.getFieldCount() < 2) continue;
+                            // variableStep coordinates are 1 based
+                            start = tokenizer.getInt(0) - 1;
+                            end = start + span;
+                            value = tokenizer.getFloat(1);
+                            return true;
+                        default:
+                            start = position;
+                            end = position + span;
+                            value = tokenizer.getFloat(0);
+                            position += step;
+                            return true;
+                    }
+                } catch (NumberFormatException e) {
+                    throw new ParserException(e.getMessage(), tokenizer.getLineNumber(), tokenizer.getLine());
+                }
+            }
+            return false;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public float getValue() {
+            return value;
+        }
+
+        public void close() {
+            if (tokenizer != null) {
+                try {
+                    tokenizer.close();
+                } catch (IOException e) {
+                    log.error("Error closing " + path, e);
+                }
+                tokenizer = null;
+            }
+            segmentIndex = chrSegments.size();
+        }
+    }
+}
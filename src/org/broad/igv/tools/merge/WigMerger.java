@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.tools.parsers.UnsortedException;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming N-way merge of numeric tracks (wig, bedGraph, TDF, bigWig).
+ * <p/>
+ * Inputs may have different resolutions.  Each chromosome is swept over the union of interval boundaries of all
+ * inputs, and every resulting segment is assigned the combination (sum, mean, min, or max) of the inputs covering it.
+ * Inputs without data over a segment, or with a NaN value, are ignored; in particular the mean is over the inputs
+ * with data.  Adjacent segments with equal values are coalesced.
+ * <p/>
+ * Chromosomes are merged in parallel.  Each worker spills its result to a temporary file, which is replayed to the
+ * {@link DataConsumer} in chromosome order, so memory use does not depend on chromosome size.
+ */
+public class WigMerger {
+
+    private static Logger log = Logger.getLogger(WigMerger.class);
+
+    /**
+     * Size of a (start, end, value) record in the temporary files
+     */
+    private static final int RECORD_SIZE = 12;
+
+    public enum Function {
+        SUM, MEAN, MIN, MAX
+    }
+
+    private List<IntervalSource> sources;
+    private Function function;
+    private Genome genome;
+    private int nThreads;
+    private File tmpDir;
+
+    /**
+     * @param sources
+     * @param function
+     * @param genome   optional.  If supplied chromosome names are matched through their aliases and output in genome
+     *                 order
+     * @param nThreads number of chromosomes merged concurrently
+     */
+    public WigMerger(List<IntervalSource> sources, Function function, Genome genome, int nThreads) {
+        this.sources = sources;
+        this.function = function;
+        this.genome = genome;
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    public void setTmpDir(File tmpDir) {
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * Open an interval source, the type is determined by the file extension.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static IntervalSource openSource(String path) throws IOException {
+        String lowerPath = path.toLowerCase();
+        if (lowerPath.endsWith(".tdf")) {
+            return new TDFIntervalSource(path);
+        } else if (lowerPath.endsWith(".bw") || lowerPath.endsWith(".bigwig")) {
+            return new BigWigIntervalSource(path);
+        } else {
+            return new WigIntervalSource(path);
+        }
+    }
+
+    /**
+     * Merge the inputs, writing the result to the consumer.  The consumer's track parameters must already be set.
+     *
+     * @param consumer
+     * @throws IOException
+     */
+    public void merge(DataConsumer consumer) throws IOException {
+
+        final Map<String, String[]> chrNames = getChromosomeNames();
+        log.info("Merging " + sources.size() + " inputs, " + chrNames.size() + " chromosomes (" + function + ")");
+        Iterator<String> chrIter = getChromosomeOrder(chrNames.keySet()).iterator();
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "WigMerger-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        // Bound the number of chromosomes merged ahead of the consumer, each holds a temporary file
+        int maxPending = 2 * nThreads;
+        LinkedList<Future<File>> pending = new LinkedList<Future<File>>();
+        LinkedList<String> pendingChrs = new LinkedList<String>();
+        try {
+            while (true) {
+                while (pending.size() < maxPending && chrIter.hasNext()) {
+                    final String chr = chrIter.next();
+                    pendingChrs.add(chr);
+                    pending.add(executor.submit(new Callable<File>() {
+                        public File call() throws Exception {
+                            return mergeChromosome(chr, chrNames.get(chr));
+                        }
+                    }));
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                String chr = pendingChrs.removeFirst();
+                File result = getResult(pending.removeFirst());
+                try {
+                    replay(chr, result, consumer);
+                } finally {
+                    result.delete();
+                }
+            }
+        } finally {
+            // Queued chromosomes are dropped by shutdownNow, their futures would never complete.  Only the results
+            // of completed chromosomes are deleted here, those still running are deleted on exit.
+            executor.shutdownNow();
+            for (Future<File> future : pending) {
+                future.cancel(true);
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        future.get().delete();
+                    } catch (Exception e) {
+                        // Already reported
+                    }
+                }
+            }
+        }
+        consumer.parsingComplete();
+    }
+
+    private static File getResult(Future<File> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted merging tracks");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * @return map of chromosome name to the name used by each source (null if the source has no data for it)
+     */
+    private Map<String, String[]> getChromosomeNames() {
+        Map<String, String[]> chrNames = new LinkedHashMap<String, String[]>();
+        for (int i = 0; i < sources.size(); i++) {
+            for (String chr : sources.get(i).getChromosomeNames()) {
+                String name = genome == null ? chr : genome.getChromosomeAlias(chr);
+                String[] names = chrNames.get(name);
+                if (names == null) {
+                    names = new String[sources.size()];
+                    chrNames.put(name, names);
+                }
+                names[i] = chr;
+            }
+        }
+        return chrNames;
+    }
+
+    private List<String> getChromosomeOrder(Set<String> chrNames) {
+        List<String> order = new ArrayList<String>(chrNames.size());
+        if (genome != null) {
+            for (String chr : genome.getAllChromosomeNames()) {
+                if (chrNames.contains(chr)) {
+                    order.add(chr);
+                }
+            }
+        }
+        for (String chr : chrNames) {
+            if (!order.contains(chr)) {
+                order.add(chr);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Merge one chromosome to a temporary file of (start, end, value) records.
+     *
+     * @param chr
+     * @param names chromosome name for each source
+     */
+    File mergeChromosome(String chr, String[] names) throws IOException {
+
+        int n = sources.size();
+        Cursor[] cursors = new Cursor[n];
+        File file = File.createTempFile("igv_merge_", ".bin", tmpDir);
+        file.deleteOnExit();
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64000));
+            SegmentWriter writer = new SegmentWriter(out);
+
+            int nActive = 0;
+            for (int i = 0; i < n; i++) {
+                if (names[i] != null) {
+                    cursors[i] = new Cursor(chr, sources.get(i).iterator(names[i]));
+                    if (cursors[i].advance()) nActive++;
+                }
+            }
+
+            int pos = nextStart(cursors);
+            while (nActive > 0) {
+
+                // The segment ends at the next interval boundary of any input
+                int boundary = Integer.MAX_VALUE;
+                int count = 0;
+                float value = 0;
+                for (Cursor c : cursors) {
+                    if (c == null || !c.active) continue;
+                    if (c.start > pos) {
+                        boundary = Math.min(boundary, c.start);
+                    } else {
+                        boundary = Math.min(boundary, c.end);
+                        if (!Float.isNaN(c.value)) {
+                            value = count == 0 ? c.value : combine(value, c.value);
+                            count++;
+                        }
+                    }
+                }
+
+                if (count > 0) {
+                    writer.add(pos, boundary, function == Function.MEAN ? value / count : value);
+                }
+
+                pos = boundary;
+                boolean covered = false;
+                for (Cursor c : cursors) {
+                    if (c == null || !c.active) continue;
+                    if (c.end <= pos && !c.advance()) {
+                        nActive--;
+                    } else if (c.start <= pos) {
+                        covered = true;
+                    }
+                }
+                if (!covered) {
+                    // Skip the gap to the next interval
+                    pos = nextStart(cursors);
+                }
+            }
+            writer.flush();
+        } finally {
+            for (Cursor c : cursors) {
+                if (c != null) c.close();
+            }
+            if (out != null) out.close();
+        }
+        return file;
+    }
+
+    private float combine(float a, float b) {
+        switch (function) {
+            case MIN:
+                return Math.min(a, b);
+            case MAX:
+                return Math.max(a, b);
+            default:
+                return a + b;
+        }
+    }
+
+    private static int nextStart(Cursor[] cursors) {
+        int start = Integer.MAX_VALUE;
+        for (Cursor c : cursors) {
+            if (c != null && c.active) start = Math.min(start, c.start);
+        }
+        return start;
+    }
+
+    private void replay(String chr, File file, DataConsumer consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64000));
+        float[] data = new float[1];
+        try {
+            long nRecords = file.length() / RECORD_SIZE;
+            for (long i = 0; i < nRecords; i++) {
+                int start = in.readInt();
+                int end = in.readInt();
+                data[0] = in.readFloat();
+                consumer.addData(chr, start, end, data, null);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Current interval of one input.  Overlapping intervals within an input are clipped to the end of the
+     * previous interval.
+     */
+    static class Cursor {
+        String chr;
+        IntervalSource.IntervalIterator iter;
+        boolean active;
+        int start;
+        int end;
+        float value;
+        int lastStart = -1;
+        int lastEnd = 0;
+
+        Cursor(String chr, IntervalSource.IntervalIterator iter) {
+            this.chr = chr;
+            this.iter = iter;
+        }
+
+        boolean advance() throws IOException {
+            while (iter.next()) {
+                int s = iter.getStart();
+                int e = iter.getEnd();
+                if (s < lastStart) {
+                    throw new UnsortedException("Data is not sorted @ " + chr + " " + s +
+                            "  (last position = " + lastStart + ")");
+                }
+                lastStart = s;
+                s = Math.max(s, lastEnd);
+                if (s < e) {
+                    start = s;
+                    end = e;
+                    value = iter.getValue();
+                    lastEnd = e;
+                    active = true;
+                    return true;
+                }
+            }
+            close();
+            return false;
+        }
+
+        void close() {
+            if (iter != null) {
+                iter.close();
+                iter = null;
+            }
+            active = false;
+        }
+    }
+
+    /**
+     * Writes merged segments as (start, end, value) records, coalescing adjacent segments with equal values.
+     */
+    static class SegmentWriter {
+        DataOutputStream out;
+        boolean hasPending;
+        int pendingStart;
+        int pendingEnd;
+        float pendingValue;
+
+        SegmentWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void add(int start, int end, float value) throws IOException {
+            if (hasPending && start == pendingEnd && value == pendingValue) {
+                pendingEnd = end;
+                return;
+            }
+            flush();
+            hasPending = true;
+            pendingStart = start;
+            pendingEnd = end;
+            pendingValue = value;
+        }
+
+        void flush() throws IOException {
+            if (hasPending) {
+                out.writeInt(pendingStart);
+                out.writeInt(pendingEnd);
+                out.writeFloat(pendingValue);
+                hasPending = false;
+            }
+        }
+    }
+}
@@ -16,12 +16,11 @@
 package org.broad.igv.tools.parsers;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.AsciiTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
-import org.broad.tribble.readers.AsciiLineReader;
 
 import java.io.IOException;
 import java.util.Set;
@@ -120,13 +119,13 @@ public class CNParser extends AbstractParser {
      */
     public void parse() throws IOException {
 
-        AsciiLineReader reader = null;
+        AsciiTokenizer tokenizer = null;
         try {
 
             lastPosition = 0;
 
-            reader = ParsingUtils.openAsciiReader(resourceLocator);
-            String nextLine = null;
+            tokenizer = ParsingUtils.openAsciiTokenizer(resourceLocator);
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB_OR_SPACES);
 
 
             // Infer datatype from extension.  This can be overriden in the
@@ -138,59 +137,64 @@ public class CNParser extends AbstractParser {
             }
 
             // Parse comments, if any
-            nextLine = reader.readLine();
-            while (nextLine.startsWith("#") || (nextLine.trim().length() == 0)) {
-                if (nextLine.length() > 0) {
-                    parseComment(nextLine);
+            boolean hasLine = tokenizer.nextLine();
+            while (hasLine && (tokenizer.startsWith("#") || tokenizer.isBlank())) {
+                if (tokenizer.startsWith("#")) {
+                    parseComment(tokenizer.getLine());
                 }
-                nextLine = reader.readLine();
+                hasLine = tokenizer.nextLine();
             }
-            parseHeader(nextLine.trim().split("\t"));
+            if (!hasLine) {
+                log.error("No header line found in " + resourceLocator.getPath());
+                return;
+            }
+            parseHeader(tokenizer.getLine().trim().split("\t"));
 
             setTrackParameters();
 
             float[] dataArray = new float[getHeadings().length];
 
+            // The chromosome name is only materialized when it changes
+            String lastChrToken = null;
 
-            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
-                String[] tokens = Globals.singleTabMultiSpacePattern.split(nextLine);
-                int nTokens = tokens.length;
-                if (nTokens == 0) {
-                    continue;
-                }
+            while (tokenizer.nextLine() && !tokenizer.isBlank()) {
+                int nTokens = tokenizer.getFieldCount();
 
                 try {
 
-                    chr = (genome == null ? tokens[chrColumn] : genome.getChromosomeAlias(tokens[chrColumn]));
+                    if (lastChrToken == null || !tokenizer.fieldEquals(chrColumn, lastChrToken)) {
+                        lastChrToken = tokenizer.getString(chrColumn);
+                        chr = (genome == null ? lastChrToken : genome.getChromosomeAlias(lastChrToken));
+                    }
                     if (!chr.equals(lastChr)) {
                         newChromosome();
                     }
                     lastChr = chr;
 
-                    int startPosition = ParsingUtils.parseInt(tokens[startColumn].trim());
+                    int startPosition = (int) tokenizer.getDouble(startColumn);
                     if (startPosition < lastPosition) {
                         throw new UnsortedException("Error: unsorted file.  .cn files must be sorted by genomic position.");
                     }
                     lastPosition = startPosition;
 
-                    int endPosition = hasEndLocations ? ParsingUtils.parseInt(tokens[endColumn].trim()) : startPosition + 1;
+                    int endPosition = hasEndLocations ? (int) tokenizer.getDouble(endColumn) : startPosition + 1;
 
                     // TODO -- compare nTokens with expected number
                     for (int i = firstDataColumn; i < nTokens; i += skipColumns) {
                         int idx = (i - firstDataColumn) / skipColumns;
                         try {
-                            dataArray[idx] = Float.parseFloat(tokens[i].trim());
+                            dataArray[idx] = tokenizer.getFloat(i);
                         } catch (NumberFormatException numberFormatException) {
                             dataArray[idx] = Float.NaN;
                         }
                     }
 
-                    String probe = tokens[probeColumn];
+                    String probe = tokenizer.getString(probeColumn);
 
                     getDataConsumer().addData(chr, startPosition, endPosition, dataArray, probe);
 
                 } catch (NumberFormatException e) {
-                    log.error("Error parsing number in: " + nextLine + "\n" + e.getMessage(), e);
+                    log.error("Error parsing number in: " + tokenizer.getLine() + "\n" + e.getMessage(), e);
                 }
 
             }
@@ -200,8 +204,8 @@ public class CNParser extends AbstractParser {
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         } finally {
-            if (reader != null) {
-                reader.close();
+            if (tokenizer != null) {
+                tokenizer.close();
             }
         }
     }
@@ -11,7 +11,6 @@
 
 package org.broad.igv.tools.sort;
 
-import org.broad.igv.Globals;
 import org.broad.tribble.readers.AsciiLineReader;
 
 import java.io.IOException;
@@ -59,21 +58,69 @@ public class Parser {
         return createRecord(nextLine);
     }
 
+    /**
+     * Create a record from a line.  Only the chromosome and start columns are located, by scanning the line for
+     * separators, the line is not split.  Separators are tabs, or tabs and runs of spaces if splitOnWhiteSpace is set.
+     */
     public SortableRecord createRecord(String nextLine) {
-        String[] fields = splitOnWhiteSpace ?
-                Globals.singleTabMultiSpacePattern.split(nextLine) :
-                Globals.tabPattern.split(nextLine, -1);
 
-        String chr = fields[chrCol];
-
-        int start;
-        try {
-            start = Integer.parseInt(fields[startCol].trim());
-        } catch (NumberFormatException e) {
-            start = Integer.MAX_VALUE;
+        int chrStart = -1, chrEnd = -1, startStart = -1, startEnd = -1;
+        int lastCol = Math.max(chrCol, startCol);
+        int length = nextLine.length();
+        int fieldStart = 0;
+        for (int col = 0; col <= lastCol; col++) {
+            if (fieldStart > length) {
+                throw new ArrayIndexOutOfBoundsException(lastCol);
+            }
+            int fieldEnd = fieldStart;
+            while (fieldEnd < length && !isSeparator(nextLine.charAt(fieldEnd))) fieldEnd++;
+            if (col == chrCol) {
+                chrStart = fieldStart;
+                chrEnd = fieldEnd;
+            }
+            if (col == startCol) {
+                startStart = fieldStart;
+                startEnd = fieldEnd;
+            }
+            // Skip the separator, a run of spaces counts as one
+            fieldStart = fieldEnd + 1;
+            if (fieldEnd < length && nextLine.charAt(fieldEnd) == ' ') {
+                while (fieldStart < length && nextLine.charAt(fieldStart) == ' ') fieldStart++;
+            }
         }
-        String text = nextLine;
 
-        return new SortableRecord(chr, start, text);
+        String chr = nextLine.substring(chrStart, chrEnd);
+        int start = parseStart(nextLine, startStart, startEnd);
+
+        return new SortableRecord(chr, start, nextLine);
+    }
+
+    private boolean isSeparator(char c) {
+        return c == '\t' || (splitOnWhiteSpace && c == ' ');
+    }
+
+    /**
+     * Parse the start position, or return Integer.MAX_VALUE if it is not an integer
+     */
+    private static int parseStart(String line, int start, int end) {
+        while (start < end && line.charAt(start) == ' ') start++;
+        while (end > start && line.charAt(end - 1) == ' ') end--;
+        if (start == end || end - start > 9) {
+            try {
+                return Integer.parseInt(line.substring(start, end));
+            } catch (NumberFormatException e) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        boolean negative = line.charAt(start) == '-';
+        int i = negative || line.charAt(start) == '+' ? start + 1 : start;
+        if (i == end) return Integer.MAX_VALUE;
+        int value = 0;
+        for (; i < end; i++) {
+            int d = line.charAt(i) - '0';
+            if (d < 0 || d > 9) return Integer.MAX_VALUE;
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
     }
 }
@@ -40,8 +40,10 @@ import javax.xml.bind.annotation.XmlType;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import java.awt.*;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a track of numeric data
@@ -56,7 +58,9 @@ public abstract class DataTrack extends AbstractTrack {
     private DataRenderer renderer;
 
     // TODO -- memory leak.  This needs to get cleared when the gene list changes
-    private HashMap<String, LoadedDataInterval> loadedIntervalCache = new HashMap(200);
+    // Synchronized, region scores are computed on RegionScoreSorter threads while the track is rendered
+    private Map<String, LoadedDataInterval> loadedIntervalCache =
+            Collections.synchronizedMap(new HashMap<String, LoadedDataInterval>(200));
     private boolean featuresLoading = false;
 
 
@@ -34,7 +34,7 @@ import java.util.*;
  * User: jrobinso
  * Date: Jan 31, 2010
  */
-public class FeatureCollectionSource implements FeatureSource {
+public class FeatureCollectionSource implements IndexedFeatureSource<Feature> {
 
     private TrackType type;
 
@@ -71,6 +71,34 @@ public class FeatureCollectionSource implements FeatureSource {
         return filteredFeatures.iterator();
     }
 
+    public Feature nextFeature(String chr, int position) {
+        String nextChr = chr;
+        while (nextChr != null) {
+            List<Feature> features = featureMap.get(nextChr);
+            if (features != null) {
+                Feature f = FeatureUtils.getFeatureAfter(position, features);
+                if (f != null) return f;
+            }
+            nextChr = genome == null ? null : genome.getNextChrName(nextChr);
+            position = -1;
+        }
+        return null;
+    }
+
+    public Feature previousFeature(String chr, int position) {
+        String nextChr = chr;
+        while (nextChr != null) {
+            List<Feature> features = featureMap.get(nextChr);
+            if (features != null) {
+                Feature f = FeatureUtils.getFeatureBefore(position, features);
+                if (f != null) return f;
+            }
+            nextChr = genome == null ? null : genome.getPrevChrName(nextChr);
+            position = Integer.MAX_VALUE;
+        }
+        return null;
+    }
+
     public List<Feature> getFeatures(String chr) {
         return featureMap.get(chr);
     }
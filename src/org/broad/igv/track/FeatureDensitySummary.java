@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFGroup;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tools.Preprocessor;
+import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.ui.IGV;
+import org.broad.tribble.AbstractFeatureReader;
+import org.broad.tribble.CloseableTribbleIterator;
+import org.broad.tribble.Feature;
+import org.broad.tribble.FeatureCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persistent, multi-resolution feature density of an indexed feature file, used by feature and variant tracks in the
+ * whole genome view and when zoomed out beyond the visibility window.  Without it these views either show nothing
+ * or require reading every feature of the file.
+ * <p/>
+ * The density is a TDF file with a single track, the number of features overlapping each window.  Windows without
+ * features are written as zeroes so that the precomputed zoom levels, which average the windows, are true
+ * densities.  The density is computed in the background and written to the IGV cache directory.  It is only used if
+ * it was computed from a file of the same size and modification time, which are recorded as attributes of the TDF
+ * root group.  See {@link org.broad.igv.sam.AlignmentSummary}, which does the same for alignment files.
+ */
+public class FeatureDensitySummary {
+
+    private static Logger log = Logger.getLogger(FeatureDensitySummary.class);
+
+    public static final String EXTENSION = ".density.tdf";
+    public static final int DEFAULT_WINDOW_SIZE = 10000;
+    public static final int DEFAULT_MAX_ZOOM = 6;
+
+    static final String SOURCE_LENGTH = "sourceLength";
+    static final String SOURCE_LAST_MODIFIED = "sourceLastModified";
+    static final String CACHE_SUBDIRECTORY = "densities";
+
+    /**
+     * Densities are computed one at a time at low priority, they read the entire feature file
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "FeatureDensitySummary");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private static final Set<String> pending = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Compute the feature density of a feature file.  The density is written to a temporary file that is renamed on
+     * success, so a partially written file is never used.
+     *
+     * @param featureFile path to a local feature file, sorted by start position
+     * @param outputFile  the density file to create
+     * @param genome
+     * @param windowSize  window size of the finest resolution, in bp
+     * @param maxZoom     number of zoom levels to precompute
+     * @return the number of features
+     */
+    public static int build(String featureFile, File outputFile, Genome genome, int windowSize, int maxZoom)
+            throws IOException {
+
+        File source = new File(featureFile);
+        // TDFWriter requires the .tdf extension
+        File tmpFile = new File(outputFile.getPath() + ".tmp.tdf");
+        try {
+            Preprocessor p = new Preprocessor(tmpFile, genome, Arrays.asList(WindowFunction.mean), -1, null);
+            p.setNZoom(maxZoom);
+            p.setTrackParameters(TrackType.OTHER, null, new String[]{source.getName() + " Feature density"});
+            p.setSizeEstimate((int) (genome.getNominalLength() / windowSize));
+            p.setAttribute(SOURCE_LENGTH, String.valueOf(source.length()));
+            p.setAttribute(SOURCE_LAST_MODIFIED, String.valueOf(source.lastModified()));
+            p.setAttribute("windowSize", String.valueOf(windowSize));
+
+            int count = count(featureFile, genome, p, windowSize);
+            p.finish();
+
+            if (outputFile.exists() && !outputFile.delete()) {
+                throw new IOException("Could not replace " + outputFile.getAbsolutePath());
+            }
+            if (!tmpFile.renameTo(outputFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath());
+            }
+            return count;
+        } finally {
+            if (tmpFile.exists()) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Count the features overlapping each window of the file, in one pass.  Features are sorted by start, so a window
+     * is complete as soon as a feature starts beyond it.
+     *
+     * @return the number of features
+     */
+    static int count(String featureFile, Genome genome, DataConsumer consumer, int windowSize) throws IOException {
+
+        FeatureCodec codec = CodecFactory.getCodec(featureFile, genome);
+        AbstractFeatureReader reader = AbstractFeatureReader.getFeatureReader(featureFile, codec, false);
+        CloseableTribbleIterator<Feature> iter = null;
+        WindowCounter counter = new WindowCounter(consumer, genome, windowSize);
+        int count = 0;
+        try {
+            iter = reader.iterator();
+            while (iter.hasNext()) {
+                Feature f = iter.next();
+                if (f == null) continue;
+                String chr = genome == null ? f.getChr() : genome.getChromosomeAlias(f.getChr());
+                counter.add(chr, f.getStart(), f.getEnd());
+                count++;
+            }
+            counter.finish();
+            consumer.parsingComplete();
+        } finally {
+            if (iter != null) {
+                iter.close();
+            }
+            reader.close();
+        }
+        return count;
+    }
+
+    /**
+     * @return a current density file for the feature file, or null if there is none
+     */
+    public static File getSummaryFile(String featureFile) {
+        File source = new File(featureFile);
+        File cached = getCacheFile(source);
+        if (cached != null && isCurrent(cached, source)) {
+            return cached;
+        }
+        return null;
+    }
+
+    /**
+     * @return the location of the density in the cache directory, or null if there is no cache directory
+     */
+    static File getCacheFile(File source) {
+        File cacheDir = DirectoryManager.getCacheDirectory();
+        if (cacheDir == null) {
+            return null;
+        }
+        File densityDir = new File(cacheDir, CACHE_SUBDIRECTORY);
+        if (!densityDir.exists()) {
+            densityDir.mkdirs();
+        }
+        // The path hash distinguishes files of the same name in different directories
+        String name = source.getName() + "_" + Integer.toHexString(source.getAbsolutePath().hashCode()) + EXTENSION;
+        return new File(densityDir, name);
+    }
+
+    /**
+     * @return true if densityFile exists and was computed from the current version of source
+     */
+    static boolean isCurrent(File densityFile, File source) {
+        if (!densityFile.exists()) {
+            return false;
+        }
+        TDFReader reader = null;
+        try {
+            reader = TDFReader.getReader(densityFile.getAbsolutePath());
+            TDFGroup root = reader.getGroup("/");
+            return root != null &&
+                    String.valueOf(source.length()).equals(root.getAttribute(SOURCE_LENGTH)) &&
+                    String.valueOf(source.lastModified()).equals(root.getAttribute(SOURCE_LAST_MODIFIED));
+        } catch (Exception e) {
+            log.info("Ignoring unreadable feature density: " + densityFile.getAbsolutePath());
+            return false;
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Attach the density of a local feature file to its feature source.  A current density is attached immediately.
+     * Otherwise, if build is true, the density is computed in the background and attached when complete.
+     *
+     * @param featureFile
+     * @param genome
+     * @param source      the feature source, the density is not attached if it already has coverage
+     * @param build       true to compute a missing density
+     */
+    public static void attach(final String featureFile, final Genome genome, final TribbleFeatureSource source,
+                              boolean build) {
+
+        if (source.coverageSource != null) {
+            return;
+        }
+
+        File summaryFile = getSummaryFile(featureFile);
+        if (summaryFile != null) {
+            attach(summaryFile, genome, source);
+            return;
+        }
+
+        final File cacheFile = getCacheFile(new File(featureFile));
+        if (!build || cacheFile == null || !pending.add(featureFile)) {
+            return;
+        }
+        executor.submit(new Runnable() {
+            public void run() {
+                try {
+                    log.info("Computing feature density for " + featureFile);
+                    build(featureFile, cacheFile, genome, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_ZOOM);
+                    attach(cacheFile, genome, source);
+                    if (IGV.hasInstance()) {
+                        IGV.getInstance().repaintDataPanels();
+                    }
+                } catch (Exception e) {
+                    log.error("Error computing feature density for " + featureFile, e);
+                } finally {
+                    pending.remove(featureFile);
+                }
+            }
+        });
+    }
+
+    private static void attach(File summaryFile, Genome genome, TribbleFeatureSource source) {
+        log.debug("Loading feature density: " + summaryFile.getAbsolutePath());
+        TDFReader reader = TDFReader.getReader(summaryFile.getAbsolutePath());
+        source.setCoverageSource(new TDFDataSource(reader, 0, summaryFile.getName(), genome));
+    }
+
+    /**
+     * Accumulates feature counts per window of the current chromosome, and writes each window, including empty ones,
+     * to the consumer in order once no later feature can overlap it.
+     */
+    static class WindowCounter {
+
+        private DataConsumer consumer;
+        private Genome genome;
+        private int windowSize;
+
+        private String chr;
+        private int nextWindow;
+        private TreeMap<Integer, float[]> windows = new TreeMap<Integer, float[]>();
+
+        WindowCounter(DataConsumer consumer, Genome genome, int windowSize) {
+            this.consumer = consumer;
+            this.genome = genome;
+            this.windowSize = windowSize;
+        }
+
+        void add(String featureChr, int start, int end) {
+            if (!featureChr.equals(chr)) {
+                finishChromosome();
+                chr = featureChr;
+                nextWindow = 0;
+            } else {
+                closeWindowsBefore(start / windowSize);
+            }
+            int lastWindow = Math.max(start, end - 1) / windowSize;
+            for (int w = Math.max(nextWindow, start / windowSize); w <= lastWindow; w++) {
+                float[] values = windows.get(w);
+                if (values == null) {
+                    values = new float[1];
+                    windows.put(w, values);
+                }
+                values[0]++;
+            }
+        }
+
+        void finish() {
+            finishChromosome();
+        }
+
+        private void finishChromosome() {
+            if (chr == null) {
+                return;
+            }
+            closeWindowsBefore(Integer.MAX_VALUE);
+            // Empty windows to the end of the chromosome
+            Chromosome chromosome = genome == null ? null : genome.getChromosome(chr);
+            if (chromosome != null) {
+                int chrLength = chromosome.getLength();
+                while ((long) nextWindow * windowSize < chrLength) {
+                    writeWindow(nextWindow, 0, chrLength);
+                }
+            }
+        }
+
+        private void closeWindowsBefore(int window) {
+            while (!windows.isEmpty() && windows.firstKey() < window) {
+                int w = windows.firstKey();
+                while (nextWindow < w) {
+                    writeWindow(nextWindow, 0, Integer.MAX_VALUE);
+                }
+                writeWindow(w, windows.remove(w)[0], Integer.MAX_VALUE);
+            }
+        }
+
+        private void writeWindow(int w, float count, int chrLength) {
+            int start = w * windowSize;
+            int end = (int) Math.min((long) start + windowSize, chrLength);
+            consumer.addData(chr, start, end, new float[]{count}, null);
+            nextWindow = w + 1;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.tribble.Feature;
+
+import java.util.*;
+
+/**
+ * Index of a list of features for finding those at a position.  Features are sorted by start, with the maximum end
+ * of each prefix of the sorted list.  A lookup is a binary search for the last feature starting at or before the
+ * position, followed by a scan back which stops as soon as no earlier feature can reach the position, so it does not
+ * depend on the length of the longest feature.
+ */
+class FeatureIntervalIndex {
+
+    private static final Comparator<Feature> START_COMPARATOR = new Comparator<Feature>() {
+        public int compare(Feature o1, Feature o2) {
+            return o1.getStart() < o2.getStart() ? -1 : (o1.getStart() == o2.getStart() ? 0 : 1);
+        }
+    };
+
+    private Feature[] features;
+    private int[] starts;
+    private int[] maxEnds;
+
+    FeatureIntervalIndex(List<? extends Feature> featureList) {
+        features = featureList.toArray(new Feature[featureList.size()]);
+        // Stable, and close to linear for the usual case of features which are already sorted
+        Arrays.sort(features, START_COMPARATOR);
+        starts = new int[features.length];
+        maxEnds = new int[features.length];
+        int maxEnd = Integer.MIN_VALUE;
+        for (int i = 0; i < features.length; i++) {
+            starts[i] = features[i].getStart();
+            maxEnd = Math.max(maxEnd, features[i].getEnd());
+            maxEnds[i] = maxEnd;
+        }
+    }
+
+    /**
+     * Return all features which overlap the position, extending each feature by half of minWidth on both sides so
+     * very narrow features can be hit.  Matches {@link org.broad.igv.feature.FeatureUtils#getAllFeaturesAt}.
+     *
+     * @param position
+     * @param minWidth
+     * @return the features ordered by start, or null if there are none
+     */
+    List<Feature> getFeaturesAt(double position, double minWidth) {
+
+        int buffer = (int) (minWidth / 2);
+
+        // Last feature with start - buffer <= position
+        int lo = 0;
+        int hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] - buffer <= position) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        LinkedList<Feature> result = null;
+        for (int i = lo - 1; i >= 0 && maxEnds[i] + buffer >= position; i--) {
+            if (features[i].getEnd() + buffer >= position) {
+                if (result == null) result = new LinkedList<Feature>();
+                result.addFirst(features[i]);
+            }
+        }
+        return result == null ? null : new ArrayList<Feature>(result);
+    }
+}
@@ -15,6 +15,7 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.cli_plugin.PluginFeatureSource;
 import org.broad.igv.cli_plugin.PluginSource;
+import org.broad.igv.dev.db.SQLCodecSource;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
@@ -72,6 +73,11 @@ public class FeatureTrack extends AbstractTrack {
     public static final int MINIMUM_FEATURE_SPACING = 5;
     public static final int DEFAULT_MARGIN = 5;
     public static final int NO_FEATURE_ROW_SELECTED = -1;
+
+    /**
+     * When panning the packed interval is extended, until it is this many times the width of the requested interval
+     */
+    private static final int MAX_EXTENDED_INTERVAL_FACTOR = 3;
     protected static final Color SELECTED_FEATURE_ROW_COLOR = new Color(100, 100, 100, 30);
     private static final int DEFAULT_EXPANDED_HEIGHT = 35;
     private static final int DEFAULT_SQUISHED_HEIGHT = 12;
@@ -493,22 +499,15 @@ public class FeatureTrack extends AbstractTrack {
         //If features are stacked we look at only the row.
         //If they are collapsed on top of each other, we get all features in all rows
         int nLevels =  areFeaturesStacked() ? packedFeatures.getRowCount() : 1;
-        List<IGVFeature> possFeatures = null;
-        if ((nLevels > 1) && (featureRow < nLevels)) {
-            possFeatures = packedFeatures.getRows().get(featureRow).getFeatures();
-        } else {
-            possFeatures = packedFeatures.getFeatures();
+        int searchRow = ((nLevels > 1) && (featureRow < nLevels)) ? featureRow : -1;
+        if (packedFeatures.getFeatures() == null) {
+            return null;
         }
 
-        List<Feature> featureList = null;
-        if (possFeatures != null) {
-            // give a 2 pixel window, otherwise very narrow features will be missed.
-            double bpPerPixel = frame.getScale();
-            double minWidth = MINIMUM_FEATURE_SPACING * bpPerPixel;
-            int maxFeatureLength = packedFeatures.getMaxFeatureLength();
-            featureList = FeatureUtils.getAllFeaturesAt(position, maxFeatureLength, minWidth, possFeatures);
-        }
-        return featureList;
+        // give a 2 pixel window, otherwise very narrow features will be missed.
+        double bpPerPixel = frame.getScale();
+        double minWidth = MINIMUM_FEATURE_SPACING * bpPerPixel;
+        return packedFeatures.getFeaturesAt(position, minWidth, searchRow);
     }
 
 
@@ -836,6 +835,21 @@ public class FeatureTrack extends AbstractTrack {
                         if (c != null && end < c.getLength()) expandedEnd = Math.min(c.getLength(), expandedEnd);
                     }
 
+                    // When panning, pack only the features which were not loaded before
+                    String frameName = context.getReferenceFrame().getName();
+                    PackedFeatures<IGVFeature> current = packedFeaturesMap.get(frameName);
+                    if (current != null && current.canExtend(chr, expandedStart, expandedEnd) &&
+                            Math.max(expandedEnd, current.getEnd()) - Math.min(expandedStart, current.getStart()) <=
+                                    MAX_EXTENDED_INTERVAL_FACTOR * (expandedEnd - expandedStart)) {
+                        Iterator<Feature> leftIter = expandedStart < current.getStart() ?
+                                source.getFeatures(chr, expandedStart, current.getStart()) : null;
+                        Iterator<Feature> rightIter = expandedEnd > current.getEnd() ?
+                                source.getFeatures(chr, current.getEnd(), expandedEnd) : null;
+                        packedFeaturesMap.put(frameName, current.extend(expandedStart, expandedEnd, leftIter, rightIter));
+                        context.getReferenceFrame().getEventBus().post(new DataLoadedEvent(context));
+                        return;
+                    }
+
                     Iterator<Feature> iter = source.getFeatures(chr, expandedStart, expandedEnd);
                     if (iter == null) {
                         PackedFeatures pf = new PackedFeatures(chr, expandedStart, expandedEnd);
@@ -896,7 +910,6 @@ public class FeatureTrack extends AbstractTrack {
 
     /**
      * Return the nextLine or previous feature relative to the center location.
-     * TODO -- investigate delegating this method to FeatureSource, where it might be possible to simplify the implementation
      *
      * @param chr
      * @param center
@@ -1047,6 +1060,26 @@ public class FeatureTrack extends AbstractTrack {
         }
     }
 
+    /**
+     * Plugin sources keep a worker process running, tribble sources may have a search reader open, and database
+     * sources keep prepared statements.  Release them.
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        FeatureSource rawSource = source;
+        if (rawSource instanceof CachingFeatureSource) {
+            rawSource = ((CachingFeatureSource) rawSource).getSource();
+        }
+        if (rawSource instanceof PluginSource) {
+            ((PluginSource) rawSource).clearCache();
+        } else if (rawSource instanceof TribbleFeatureSource) {
+            ((TribbleFeatureSource) rawSource).dispose();
+        } else if (rawSource instanceof SQLCodecSource) {
+            ((SQLCodecSource) rawSource).dispose();
+        }
+    }
+
     /**
      * Features are packed upon loading, effectively a cache.
      * This clears that cache. Used to force a refresh
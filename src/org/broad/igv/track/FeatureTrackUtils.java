@@ -11,6 +11,8 @@
 
 package org.broad.igv.track;
 
+import org.broad.igv.feature.CachingFeatureSource;
+import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.tools.FeatureSearcher;
@@ -29,12 +31,19 @@ import java.io.IOException;
 import java.util.Iterator;
 
 /**
- *
+ * Utilities for searching FeatureSources for the features adjacent to a locus
  */
-class FeatureTrackUtils {
+public class FeatureTrackUtils {
+
+    /**
+     * Upper limit on the first search window for sources without a usable feature window size
+     */
+    static final int MAX_INITIAL_SEARCH_WINDOW = 1000000;
 
     /**
-     * Find the next/previous feature which lies outside chr:initStart-initEnd
+     * Find the next/previous feature which lies outside chr:initStart-initEnd.  Sources which implement
+     * {@link IndexedFeatureSource} are asked directly, others are searched with windows of exponentially increasing size.
+     *
      * @param source
      * @param chr
      * @param initStart
@@ -44,66 +53,119 @@ class FeatureTrackUtils {
      * @throws IOException
      */
     public static Feature nextFeature(FeatureSource source, String chr, int initStart, int initEnd, boolean forward) throws IOException {
-        Feature f = null;
-        int binSize = source.getFeatureWindowSize();
+
+        FeatureSource rawSource = source;
+        if (source instanceof CachingFeatureSource) {
+            rawSource = ((CachingFeatureSource) source).getSource();
+        }
+        if (rawSource instanceof IndexedFeatureSource) {
+            IndexedFeatureSource<?> indexedSource = (IndexedFeatureSource<?>) rawSource;
+            return forward ? indexedSource.nextFeature(chr, initEnd) : indexedSource.previousFeature(chr, initStart);
+        }
 
         final Genome genome = GenomeManager.getInstance().getCurrentGenome();
-        if (forward) {
-            // Forward
-            int nextStart = initEnd;
-            String nextChr = chr;
-            while (nextChr != null) {
-                int chrLength = genome.getChromosome(nextChr).getLength();
-                while (nextStart < chrLength) {
-                    int nextEnd = binSize > 0 ? nextStart + source.getFeatureWindowSize() : chrLength;
-                    Iterator<Feature> iter = source.getFeatures(nextChr, nextStart, nextEnd);
-                    if (iter != null) {
-                        // The check on position should not be necessary, but not all implementations of getFeatures
-                        // obey the contract to return features only in the interval.
-                        while (iter.hasNext()) {
-                            Feature feat = iter.next();
-                            if (feat.getStart() > nextStart) {
-                                return feat;
-                            }
+        return forward ? searchNextFeature(source, genome, chr, initEnd) : searchPreviousFeature(source, genome, chr, initStart);
+    }
+
+    /**
+     * Return the first feature starting after {@code position} by querying windows of exponentially increasing size,
+     * continuing on the following chromosomes of {@code genome}.  Empty stretches therefore cost a number of queries
+     * logarithmic, rather than linear, in their length.
+     *
+     * @param source
+     * @param genome may be null, in which case only {@code chr} is searched
+     * @param chr
+     * @param position
+     * @return the feature, or null if none is found
+     * @throws IOException
+     */
+    public static Feature searchNextFeature(FeatureSource source, Genome genome, String chr, int position) throws IOException {
+
+        String nextChr = chr;
+        while (nextChr != null) {
+            int chrLength = getChromosomeLength(genome, nextChr);
+            long windowSize = getInitialWindowSize(source, chrLength);
+            int nextStart = Math.max(0, position);
+            while (nextStart < chrLength) {
+                int nextEnd = (int) Math.min(chrLength, nextStart + windowSize);
+                Iterator<Feature> iter = source.getFeatures(nextChr, nextStart, nextEnd);
+                if (iter != null) {
+                    // The check on position should not be necessary, but not all implementations of getFeatures
+                    // obey the contract to return features only in the interval.
+                    while (iter.hasNext()) {
+                        Feature feat = iter.next();
+                        if (feat.getStart() > position) {
+                            return feat;
                         }
                     }
-                    nextStart = nextEnd;
                 }
-                nextChr = genome.getNextChrName(nextChr);
-                nextStart = 0;
+                nextStart = nextEnd;
+                windowSize *= 2;
             }
-        } else {
-            // Reverse
-            int nextEnd = initStart;
-            String nextChr = chr;
-            while (nextChr != null) {
-                while (nextEnd > 0) {
-                    int nextStart = binSize > 0 ? Math.max(0, nextEnd - source.getFeatureWindowSize()) : 0;
-                    Iterator<Feature> iter = source.getFeatures(nextChr, nextStart, nextEnd);
-                    if (iter != null && iter.hasNext()) {
-                        // The check on position should not be necessary, but not all implementations of getFeatures
-                        // obey the contract to return features only in the interval.
-                        Feature prevFeature = null;
-                        while (iter.hasNext()) {
-                            Feature feat = iter.next();
-                            if (feat.getStart() < nextEnd) {
-                                prevFeature = feat;
-                            }
-                        }
-                        if (prevFeature != null) {
-                            return prevFeature;
+            nextChr = genome == null ? null : genome.getNextChrName(nextChr);
+            position = -1;
+        }
+        return null;
+    }
+
+    /**
+     * Return the feature with the greatest start before {@code position} by querying windows of exponentially increasing
+     * size, continuing on the preceding chromosomes of {@code genome}.
+     *
+     * @param source
+     * @param genome may be null, in which case only {@code chr} is searched
+     * @param chr
+     * @param position
+     * @return the feature, or null if none is found
+     * @throws IOException
+     */
+    public static Feature searchPreviousFeature(FeatureSource source, Genome genome, String chr, int position) throws IOException {
+
+        String nextChr = chr;
+        int nextEnd = position;
+        while (nextChr != null) {
+            long windowSize = getInitialWindowSize(source, getChromosomeLength(genome, nextChr));
+            Feature prevFeature = null;
+            while (nextEnd > 0) {
+                int nextStart = (int) Math.max(0, nextEnd - windowSize);
+                Iterator<Feature> iter = source.getFeatures(nextChr, nextStart, nextEnd);
+                if (iter != null) {
+                    while (iter.hasNext()) {
+                        Feature feat = iter.next();
+                        if (feat.getStart() < position &&
+                                (prevFeature == null || feat.getStart() > prevFeature.getStart())) {
+                            prevFeature = feat;
                         }
                     }
-                    nextEnd = nextStart;
                 }
-                nextChr = genome.getPrevChrName(nextChr);
-                if (nextChr != null) {
-                    nextEnd = genome.getChromosome(nextChr).getLength();
+                // A feature starting before the window might not be the closest, keep searching until a feature
+                // starting within a window is found.
+                if (prevFeature != null && prevFeature.getStart() >= nextStart) {
+                    return prevFeature;
                 }
+                nextEnd = nextStart;
+                windowSize *= 2;
+            }
+            if (prevFeature != null) {
+                return prevFeature;
+            }
+            nextChr = genome == null ? null : genome.getPrevChrName(nextChr);
+            if (nextChr != null) {
+                nextEnd = getChromosomeLength(genome, nextChr);
+                position = nextEnd;
             }
         }
+        return null;
+    }
+
+    private static long getInitialWindowSize(FeatureSource source, int chrLength) {
+        int windowSize = source.getFeatureWindowSize();
+        return windowSize > 0 ? windowSize : Math.min(chrLength, MAX_INITIAL_SEARCH_WINDOW);
+    }
 
-        return f;
+    private static int getChromosomeLength(Genome genome, String chr) {
+        Chromosome chromosome = genome == null ? null : genome.getChromosome(chr);
+        return chromosome == null ? Integer.MAX_VALUE : chromosome.getLength();
     }
 
     /**
@@ -14,6 +14,7 @@ package org.broad.igv.track;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.FileUtils;
 import org.broad.tribble.Feature;
 
 import java.io.IOException;
@@ -27,6 +28,11 @@ public class GFFFeatureSource extends TribbleFeatureSource {
 
     private static Logger log = Logger.getLogger(GFFFeatureSource.class);
 
+    /**
+     * Pre-assembled gene models, if a valid cache was found next to the source file
+     */
+    private GeneModelCache geneModelCache;
+
 
     public static boolean isGFF(String path) {
         String lowpath = path.toLowerCase();
@@ -46,14 +52,38 @@ public class GFFFeatureSource extends TribbleFeatureSource {
         this.isVCF = false;
     }
 
+    @Override
+    protected void init(String path) {
+        super.init(path);
+        if (!FileUtils.isRemote(path) && GeneModelCache.isValid(path)) {
+            try {
+                geneModelCache = new GeneModelCache(GeneModelCache.getCachePath(path), genome);
+            } catch (IOException e) {
+                log.error("Error reading gene model cache for " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Raw GFF records must be combined into features, so search the combined features window by window
+     */
+    @Override
+    public Feature nextFeature(String chr, int position) throws IOException {
+        return FeatureTrackUtils.searchNextFeature(this, genome, chr, position);
+    }
+
     @Override
     public Iterator<Feature> getFeatures(String chr, int start, int end) throws IOException {
 
-        Iterator<Feature> rawIter = super.getFeatures(chr, start, end);
-        GFFCombiner combiner = (new GFFCombiner()).addFeatures(rawIter);
+        String seqName = chrNameMap.get(chr);
+        if (seqName == null) seqName = chr;
 
+        if (geneModelCache != null) {
+            return new WrappedIterator(geneModelCache.getFeatures(seqName, start, end).iterator());
+        }
 
-        return new WrappedIterator(combiner.combineFeatures().iterator());
+        Iterator<Feature> rawIter = super.getFeatures(chr, start, end);
+        return new WrappedIterator(new StreamingGFFCombiner(rawIter));
     }
 
     /**
@@ -312,4 +342,243 @@ public class GFFFeatureSource extends TribbleFeatureSource {
         }
 
     }
+
+    /**
+     * Assembles GFF records into IGV features as they are read, rather than collecting the whole query window
+     * before combining.  Records are grouped into gene models by their ID / Parent relations.  Input is assumed to be
+     * sorted by start position (as it is for indexed files), so once the input passes the end of every record in a
+     * group no more children can follow, and the group is combined with a {@link GFFCombiner} and released.  Only the
+     * open groups, and an ID -> group map for their members, are held in memory.
+     * <p/>
+     * This only holds if the group contains the records of all parents its members refer to, as the parent spans its
+     * children.  Groups with a missing parent, for example the exons of a GTF transcript, are kept open until the end
+     * of the chromosome.
+     * <p/>
+     * Combined features are returned in start order.
+     */
+    public static class StreamingGFFCombiner implements Iterator<Feature> {
+
+        private final Iterator<Feature> rawIter;
+
+        /**
+         * Open groups, in creation (and hence start) order
+         */
+        private final LinkedHashSet<Group> openGroups = new LinkedHashSet<Group>();
+
+        /**
+         * Identifier -> open group containing the feature, or the children of the feature with that identifier
+         */
+        private final Map<String, Group> groupsById = new HashMap<String, Group>();
+
+        /**
+         * Combined features waiting for open groups which might still produce a feature with a lower start
+         */
+        private final PriorityQueue<Feature> pending = new PriorityQueue<Feature>(100, FeatureUtils.FEATURE_START_COMPARATOR);
+
+        private BasicFeature nextRaw;
+        private String currentChr;
+        private int currentStart = -1;
+
+        /**
+         * Lower bound on the end of the open groups.  Groups only need scanning when the input passes this point.
+         */
+        private int minOpenEnd = Integer.MAX_VALUE;
+
+        public StreamingGFFCombiner(Iterator<Feature> rawIter) {
+            this.rawIter = rawIter;
+        }
+
+        public boolean hasNext() {
+            while (!canEmit()) {
+                if (nextRaw == null && rawIter.hasNext()) {
+                    nextRaw = (BasicFeature) rawIter.next();
+                }
+                if (nextRaw == null) {
+                    closeAll();
+                    break;
+                }
+                if (!nextRaw.getChr().equals(currentChr)) {
+                    if (!openGroups.isEmpty() || !pending.isEmpty()) {
+                        // Flush the previous chromosome before starting the next
+                        closeAll();
+                        continue;
+                    }
+                    currentChr = nextRaw.getChr();
+                }
+                addFeature(nextRaw);
+                nextRaw = null;
+            }
+            return !pending.isEmpty();
+        }
+
+        public Feature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.poll();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Remove not supported");
+        }
+
+        /**
+         * A pending feature can be returned if no open group, and no record yet to be read, can start before it.
+         */
+        private boolean canEmit() {
+            if (pending.isEmpty()) return false;
+            int bound = currentStart;
+            if (!openGroups.isEmpty()) {
+                bound = Math.min(bound, openGroups.iterator().next().start);
+            }
+            return pending.peek().getStart() <= bound;
+        }
+
+        private void addFeature(BasicFeature bf) {
+
+            currentStart = bf.getStart();
+            if (currentStart > minOpenEnd) {
+                closeGroups();
+            }
+
+            // Sub-features (exons, utrs, cds) are linked to their group through their parents only,  identifiers
+            // of these parts are not guaranteed to be unique
+            String[] parentIds = bf.getParentIds();
+            String id = bf.getIdentifier();
+            boolean isPart = parentIds != null && (SequenceOntology.exonTypes.contains(bf.getType()) ||
+                    SequenceOntology.utrTypes.contains(bf.getType()) || SequenceOntology.cdsTypes.contains(bf.getType()));
+
+            Group group = null;
+            if (!isPart && id != null) {
+                group = merge(group, groupsById.get(id));
+            }
+            if (parentIds != null) {
+                for (String pid : parentIds) {
+                    group = merge(group, groupsById.get(pid));
+                }
+            }
+            if (group == null) {
+                group = new Group(bf.getStart());
+                openGroups.add(group);
+            }
+
+            group.add(bf);
+            if (!isPart && id != null) {
+                register(id, group);
+                // GTF records refer to their own transcript_id as parent, they do not define the transcript extent
+                if (parentIds == null || !Arrays.asList(parentIds).contains(id)) {
+                    group.definedIds.add(id);
+                }
+            }
+            if (parentIds != null) {
+                for (String pid : parentIds) {
+                    register(pid, group);
+                    group.parentIds.add(pid);
+                }
+            }
+            if (group.isComplete()) {
+                minOpenEnd = Math.min(minOpenEnd, group.end);
+            }
+        }
+
+        private void register(String key, Group group) {
+            if (group.ids.add(key)) {
+                groupsById.put(key, group);
+            }
+        }
+
+        /**
+         * Merge two groups, which have turned out to belong to the same gene model.  The older group is kept.
+         */
+        private Group merge(Group g1, Group g2) {
+            if (g1 == null || g1 == g2) return g2;
+            if (g2 == null) return g1;
+            Group keep = g1.start <= g2.start ? g1 : g2;
+            Group discard = keep == g1 ? g2 : g1;
+            for (BasicFeature bf : discard.features) {
+                keep.add(bf);
+            }
+            for (String key : discard.ids) {
+                groupsById.put(key, keep);
+            }
+            keep.ids.addAll(discard.ids);
+            keep.definedIds.addAll(discard.definedIds);
+            keep.parentIds.addAll(discard.parentIds);
+            openGroups.remove(discard);
+            return keep;
+        }
+
+        /**
+         * Close all complete groups which end before the current input position.
+         */
+        private void closeGroups() {
+            minOpenEnd = Integer.MAX_VALUE;
+            Iterator<Group> iter = openGroups.iterator();
+            while (iter.hasNext()) {
+                Group group = iter.next();
+                if (!group.isComplete()) {
+                    continue;
+                }
+                if (group.end < currentStart) {
+                    iter.remove();
+                    close(group);
+                } else {
+                    minOpenEnd = Math.min(minOpenEnd, group.end);
+                }
+            }
+        }
+
+        private void closeAll() {
+            for (Group group : openGroups) {
+                close(group);
+            }
+            openGroups.clear();
+            minOpenEnd = Integer.MAX_VALUE;
+            currentStart = Integer.MAX_VALUE;
+        }
+
+        private void close(Group group) {
+            for (String key : group.ids) {
+                groupsById.remove(key);
+            }
+            GFFCombiner combiner = new GFFCombiner();
+            for (BasicFeature bf : group.features) {
+                combiner.addFeature(bf);
+            }
+            pending.addAll(combiner.combineFeatures());
+        }
+
+        /**
+         * The raw records of a single gene model, and the identifiers which map to it
+         */
+        private class Group {
+            final int start;
+            int end;
+            final List<BasicFeature> features = new ArrayList<BasicFeature>();
+            final Set<String> ids = new HashSet<String>();
+
+            /**
+             * Identifiers of the records in the group, and of the parents they refer to
+             */
+            final Set<String> definedIds = new HashSet<String>();
+            final Set<String> parentIds = new HashSet<String>();
+
+            Group(int start) {
+                this.start = start;
+                this.end = start;
+            }
+
+            void add(BasicFeature bf) {
+                features.add(bf);
+                end = Math.max(end, bf.getEnd());
+            }
+
+            /**
+             * @return true if the records of all parents are in the group, so its extent is known
+             */
+            boolean isComplete() {
+                return definedIds.containsAll(parentIds);
+            }
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.tribble.Feature;
+
+import java.io.IOException;
+
+/**
+ * A FeatureSource which can locate the features adjacent to a position directly, typically by seeking with an index,
+ * rather than by scanning successive windows with {@link #getFeatures(String, int, int)}.
+ * <p/>
+ * Searches continue across chromosomes, in the order of the current genome.
+ */
+public interface IndexedFeatureSource<T extends Feature> extends FeatureSource<T> {
+
+    /**
+     * Return the first feature which starts after {@code position}, searching {@code chr} and then the following
+     * chromosomes.
+     *
+     * @param chr
+     * @param position 0-based position.  Use -1 to include features starting at the first base
+     * @return the feature, or null if there are no more features
+     * @throws IOException
+     */
+    T nextFeature(String chr, int position) throws IOException;
+
+    /**
+     * Return the feature with the greatest start position before {@code position}, searching {@code chr} and then
+     * the preceding chromosomes.
+     *
+     * @param chr
+     * @param position 0-based position
+     * @return the feature, or null if there are no more features
+     * @throws IOException
+     */
+    T previousFeature(String chr, int position) throws IOException;
+
+}
@@ -13,6 +13,7 @@ package org.broad.igv.track;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.data.Interval;
+import org.broad.igv.feature.IGVFeature;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.tribble.Feature;
@@ -37,6 +38,12 @@ public class PackedFeatures<T extends Feature>{
     protected int maxFeatureLength = 0;
     protected static int maxLevels = 200;
 
+    /**
+     * True if features were loaded, and this can be extended with {@link #extend}
+     */
+    private boolean extendable = false;
+    private FeatureIntervalIndex featureIndex;
+
     /**
      * No-arg constructor to allow subclassing
      */
@@ -58,6 +65,7 @@ public class PackedFeatures<T extends Feature>{
         this.end = end;
         features = new ArrayList(1000);
         rows = packFeatures(iter);
+        extendable = true;
     }
 
 
@@ -198,6 +206,174 @@ public class PackedFeatures<T extends Feature>{
         return rows;
     }
 
+    /**
+     * @return true if the features of the interval start-end can be created with {@link #extend}, i.e. it is on
+     *         the same chromosome and overlaps or adjoins this interval
+     */
+    boolean canExtend(String chr, int start, int end) {
+        return extendable && getClass() == PackedFeatures.class && this.chr.equals(chr) &&
+                start <= this.end && end >= this.start;
+    }
+
+    /**
+     * Create packed features for a larger interval by packing only the features outside this interval.  Features of
+     * this interval keep their rows.  New features are added to the first row with room for them, or to new rows.
+     * This object is not modified, it may still be in use for rendering.
+     *
+     * @param start     start of the new interval.  The packed interval starts at the smaller of this and the current
+     *                  start.
+     * @param end       end of the new interval.  The packed interval ends at the larger of this and the current end.
+     * @param leftIter  features overlapping start to the current start, or null if there are none.
+     * @param rightIter features overlapping the current end to end, or null if there are none.
+     * @return
+     */
+    PackedFeatures<T> extend(int start, int end, Iterator leftIter, Iterator rightIter) {
+
+        PackedFeatures<T> pf = new PackedFeatures<T>();
+        pf.trackName = trackName;
+        pf.chr = chr;
+        pf.start = Math.min(start, this.start);
+        pf.end = Math.max(end, this.end);
+        pf.maxFeatureLength = maxFeatureLength;
+        pf.extendable = true;
+
+        // Features which overlap this interval were loaded with it
+        List<T> left = new ArrayList<T>();
+        while (leftIter != null && leftIter.hasNext()) {
+            T feature = (T) leftIter.next();
+            if (feature.getEnd() < this.start || (feature.getEnd() == this.start && !containsFeature(feature))) {
+                left.add(feature);
+            }
+        }
+        List<T> right = new ArrayList<T>();
+        while (rightIter != null && rightIter.hasNext()) {
+            T feature = (T) rightIter.next();
+            if (feature.getStart() > this.end || (feature.getStart() == this.end && !containsFeature(feature))) {
+                right.add(feature);
+            }
+        }
+
+        // Keep the features sorted by start.  Features of this interval may start before the left features.
+        pf.features = new ArrayList<T>(left.size() + features.size() + right.size());
+        int leftIdx = 0;
+        for (T feature : features) {
+            while (leftIdx < left.size() && left.get(leftIdx).getStart() <= feature.getStart()) {
+                pf.features.add(left.get(leftIdx++));
+            }
+            pf.features.add(feature);
+        }
+        pf.features.addAll(left.subList(leftIdx, left.size()));
+        pf.features.addAll(right);
+        for (T feature : left) {
+            pf.maxFeatureLength = Math.max(pf.maxFeatureLength,
+                    getFeatureEndForPacking(feature) - getFeatureStartForPacking(feature));
+        }
+        for (T feature : right) {
+            pf.maxFeatureLength = Math.max(pf.maxFeatureLength,
+                    getFeatureEndForPacking(feature) - getFeatureStartForPacking(feature));
+        }
+
+        // Pack the left features from the current start outwards, in decreasing order of start.  A feature fits in
+        // a row if it ends before the first feature of the row.
+        List<List<T>> prepended = new ArrayList<List<T>>();
+        List<Integer> rowStarts = new ArrayList<Integer>();
+        for (FeatureRow row : rows) {
+            prepended.add(new ArrayList<T>());
+            rowStarts.add(row.start);
+        }
+        for (int i = left.size() - 1; i >= 0; i--) {
+            T feature = left.get(i);
+            int featureEnd = getFeatureEndForPacking(feature);
+            int rowIdx = 0;
+            while (rowIdx < rowStarts.size() && featureEnd + FeatureTrack.MINIMUM_FEATURE_SPACING > rowStarts.get(rowIdx)) {
+                rowIdx++;
+            }
+            if (rowIdx == rowStarts.size()) {
+                if (rowStarts.size() >= maxLevels) continue;
+                prepended.add(new ArrayList<T>());
+                rowStarts.add(Integer.MAX_VALUE);
+            }
+            prepended.get(rowIdx).add(feature);
+            rowStarts.set(rowIdx, getFeatureStartForPacking(feature));
+        }
+
+        pf.rows = new ArrayList<FeatureRow>(prepended.size());
+        for (int rowIdx = 0; rowIdx < prepended.size(); rowIdx++) {
+            FeatureRow row = pf.new FeatureRow();
+            List<T> rowLeft = prepended.get(rowIdx);
+            for (int i = rowLeft.size() - 1; i >= 0; i--) {
+                row.addFeature(rowLeft.get(i));
+            }
+            if (rowIdx < rows.size()) {
+                FeatureRow oldRow = rows.get(rowIdx);
+                if (row.features.isEmpty()) {
+                    row.start = oldRow.start;
+                }
+                row.features.addAll(oldRow.features);
+                row.end = oldRow.end;
+            }
+            pf.rows.add(row);
+        }
+
+        // Pack the right features in increasing order of start.  A feature fits in a row if it starts after the
+        // last feature of the row.
+        for (T feature : right) {
+            int featureStart = getFeatureStartForPacking(feature);
+            FeatureRow fit = null;
+            for (FeatureRow row : pf.rows) {
+                if (featureStart >= row.end + FeatureTrack.MINIMUM_FEATURE_SPACING) {
+                    fit = row;
+                    break;
+                }
+            }
+            if (fit == null) {
+                if (pf.rows.size() >= maxLevels) continue;
+                fit = pf.new FeatureRow();
+                pf.rows.add(fit);
+            }
+            fit.addFeature(feature);
+        }
+
+        return pf;
+    }
+
+    /**
+     * @return true if a feature with the same location (and name, if it has one) is in this interval
+     */
+    private boolean containsFeature(T feature) {
+        String name = feature instanceof IGVFeature ? ((IGVFeature) feature).getName() : null;
+        for (T f : features) {
+            if (f.getStart() == feature.getStart() && f.getEnd() == feature.getEnd() &&
+                    (name == null || (f instanceof IGVFeature && name.equals(((IGVFeature) f).getName())))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the features which overlap a position, using an index rather than scanning.
+     *
+     * @param position
+     * @param minWidth   features are extended by half of this on each side, so very narrow features can be hit
+     * @param featureRow the row to search, or a negative number to search all features
+     * @return the features ordered by start, or null if there are none
+     */
+    public List<Feature> getFeaturesAt(double position, double minWidth, int featureRow) {
+        FeatureIntervalIndex index;
+        if (featureRow >= 0 && featureRow < rows.size()) {
+            index = rows.get(featureRow).getIndex();
+        } else {
+            synchronized (this) {
+                if (featureIndex == null) {
+                    featureIndex = new FeatureIntervalIndex(features);
+                }
+                index = featureIndex;
+            }
+        }
+        return index.getFeaturesAt(position, minWidth);
+    }
+
     public String getTrackName() {
         return trackName;
     }
@@ -230,6 +406,7 @@ public class PackedFeatures<T extends Feature>{
         int start;
         int end;
         List<T> features;
+        private FeatureIntervalIndex index;
 
         public FeatureRow() {
             this.features = new ArrayList(100);
@@ -246,5 +423,12 @@ public class PackedFeatures<T extends Feature>{
         public List<T> getFeatures() {
             return features;
         }
+
+        synchronized FeatureIntervalIndex getIndex() {
+            if (index == null) {
+                index = new FeatureIntervalIndex(features);
+            }
+            return index;
+        }
     }
 }
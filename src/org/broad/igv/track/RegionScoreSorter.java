@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.RegionOfInterest;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.util.ProgressMonitor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sorts tracks, and track groups, by a score over a region.
+ * <p/>
+ * Computing a score can require loading data, so sorting with a comparator that calls
+ * {@link Track#getRegionScore} recomputes each score O(log n) times.  Instead each track is scored once, in parallel,
+ * by {@link #computeScores}, and the sorts compare the cached values.  Scores of tracks which were not precomputed
+ * are computed on demand on the calling thread.
+ * <p/>
+ * A sorter is specific to a region, score type, and frame.  It is not reused across sorts.
+ */
+public class RegionScoreSorter {
+
+    private static Logger log = Logger.getLogger(RegionScoreSorter.class);
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+        private AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "RegionScore-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final String chr;
+    private final int start;
+    private final int end;
+    private final int zoom;
+    private final RegionScoreType type;
+    private final String frameName;
+
+    private final Map<Track, Float> scores = Collections.synchronizedMap(new IdentityHashMap<Track, Float>());
+    private volatile boolean cancelled;
+    private ProgressMonitor monitor;
+    private int progress;
+
+    /**
+     * @param region
+     * @param type
+     * @param frame  the frame, or null (headless)
+     */
+    public RegionScoreSorter(RegionOfInterest region, RegionScoreType type, ReferenceFrame frame) {
+        this.chr = region.getChr();
+        this.start = region.getStart();
+        this.end = region.getEnd();
+        this.type = type;
+        this.frameName = frame != null ? frame.getName() : null;
+        this.zoom = Math.max(0, frame != null ? frame.getZoom() : 0);
+    }
+
+    public RegionScoreType getType() {
+        return type;
+    }
+
+    /**
+     * @param monitor receives progress as scores are computed, and 100% when complete
+     */
+    public void setMonitor(ProgressMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Stop computing scores.  Scores which are in progress complete.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Compute the score of each track in parallel, except mutation counts which are computed on one thread.  Blocks until all scores are computed or the computation is
+     * cancelled.
+     *
+     * @param tracks
+     * @return true if all scores were computed, false if cancelled
+     */
+    public boolean computeScores(Collection<? extends Track> tracks) {
+
+        List<Track> pending = new ArrayList<Track>(tracks.size());
+        for (Track t : tracks) {
+            if (t != null && !scores.containsKey(t)) {
+                pending.add(t);
+            }
+        }
+
+        final int n = pending.size();
+        final AtomicInteger nComplete = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<Future<?>>(n);
+        if (type == RegionScoreType.MUTATION_COUNT) {
+            // Mutation tracks of a file share one feature source, which is not thread safe.  Score them in order on
+            // a single thread.
+            final List<Track> mutationTracks = pending;
+            futures.add(executor.submit(new Runnable() {
+                public void run() {
+                    for (Track t : mutationTracks) {
+                        if (cancelled) return;
+                        scores.put(t, computeScore(t));
+                        updateProgress(nComplete.incrementAndGet(), n);
+                    }
+                }
+            }));
+        } else {
+            for (final Track t : pending) {
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        if (cancelled) return;
+                        scores.put(t, computeScore(t));
+                        updateProgress(nComplete.incrementAndGet(), n);
+                    }
+                }));
+            }
+        }
+
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.error("Error computing region score", e);
+            }
+        }
+        if (cancelled) {
+            for (Future<?> f : futures) {
+                f.cancel(false);
+            }
+        }
+
+        // Decide the result before reporting completion, a progress dialog cancels itself at 100%
+        boolean complete = !cancelled;
+        if (monitor != null) {
+            synchronized (this) {
+                monitor.fireProgressChange(100 - progress);
+                progress = 100;
+            }
+        }
+        return complete;
+    }
+
+    private synchronized void updateProgress(int nComplete, int n) {
+        // 100% is reported by computeScores
+        int percent = Math.min(99, (100 * nComplete) / n);
+        if (monitor != null && percent > progress) {
+            monitor.fireProgressChange(percent - progress);
+            progress = percent;
+        }
+    }
+
+    private float computeScore(Track t) {
+        try {
+            return t.getRegionScore(chr, start, end, zoom, type, frameName);
+        } catch (Exception e) {
+            log.error("Error computing region score for " + t.getName() + ". Sort might not be accurate.", e);
+            return -Float.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return the score of the track, computing it if necessary
+     */
+    public float getScore(Track t) {
+        Float score = scores.get(t);
+        if (score == null) {
+            score = computeScore(t);
+            scores.put(t, score);
+        }
+        return score;
+    }
+
+    /**
+     * Return the score of a group, the maximum score of its visible tracks.  This is the value of
+     * {@link TrackGroup#getRegionScore}, computed from the cached track scores.
+     */
+    public float getGroupScore(TrackGroup group) {
+        float score = -Float.MAX_VALUE;
+        for (Track track : group.getTracks()) {
+            if (track.isVisible()) {
+                score = Math.max(score, getScore(track));
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Sort tracks in descending order of score.  Null tracks are placed last.
+     */
+    public void sort(List<Track> tracks) {
+        ScoredItem<Track>[] items = new ScoredItem[tracks.size()];
+        for (int i = 0; i < items.length; i++) {
+            Track t = tracks.get(i);
+            items[i] = new ScoredItem<Track>(t, t == null ? 0 : getScore(t));
+        }
+        Arrays.sort(items);
+        ListIterator<Track> iter = tracks.listIterator();
+        for (ScoredItem<Track> item : items) {
+            iter.next();
+            iter.set(item.item);
+        }
+    }
+
+    /**
+     * Sort groups in descending order of score.  The tracks within the groups are not sorted.
+     */
+    public void sortGroups(List<TrackGroup> groups) {
+        ScoredItem<TrackGroup>[] items = new ScoredItem[groups.size()];
+        for (int i = 0; i < items.length; i++) {
+            TrackGroup g = groups.get(i);
+            items[i] = new ScoredItem<TrackGroup>(g, g == null ? 0 : getGroupScore(g));
+        }
+        Arrays.sort(items);
+        ListIterator<TrackGroup> iter = groups.listIterator();
+        for (ScoredItem<TrackGroup> item : items) {
+            iter.next();
+            iter.set(item.item);
+        }
+    }
+
+    private static class ScoredItem<T> implements Comparable<ScoredItem<T>> {
+        T item;
+        float score;
+
+        ScoredItem(T item, float score) {
+            this.item = item;
+            this.score = score;
+        }
+
+        public int compareTo(ScoredItem<T> o) {
+            if (item == null) return o.item == null ? 0 : 1;
+            if (o.item == null) return -1;
+            // Float.compare handles NaN.  The order is flipped to make it descending
+            return Float.compare(o.score, score);
+        }
+    }
+}
@@ -12,6 +12,7 @@
 package org.broad.igv.track;
 
 import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.bbfile.BBFileReader;
 import org.broad.igv.bigwig.BigWigDataSource;
@@ -46,6 +47,7 @@ import org.broad.igv.gwas.GWASTrack;
 import org.broad.igv.lists.GeneList;
 import org.broad.igv.lists.GeneListManager;
 import org.broad.igv.lists.VariantListManager;
+import org.broad.igv.maf.MAFBinaryCodec;
 import org.broad.igv.maf.MultipleAlignmentTrack;
 import org.broad.igv.methyl.MethylTrack;
 import org.broad.igv.peaks.PeakTrack;
@@ -213,7 +215,7 @@ public class TrackLoader {
                 loadFeatureFile(locator, newTracks, genome);
             } else if (WiggleParser.isWiggle(locator)) {
                 loadWigFile(locator, newTracks, genome);
-            } else if (typeString.endsWith(".maf")) {
+            } else if (typeString.endsWith(".maf") || MAFBinaryCodec.isMAFBinary(typeString)) {
                 loadMultipleAlignmentTrack(locator, newTracks, genome);
             } else if (typeString.endsWith(".maf.dict")) {
                 loadMultipleAlignmentTrack(locator, newTracks, genome);
@@ -301,6 +303,13 @@ public class TrackLoader {
                 new TribbleFeatureSource(locator.getPath(), genome);
         String typeString = locator.getPath().toLowerCase();
 
+        // Feature density for the whole genome and zoomed out views of local files, computed in the background if needed
+        if (locator.isLocal() && genome != null) {
+            boolean build = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.FEATURE_DENSITY_SUMMARY) &&
+                    !Globals.isBatch() && !Globals.isHeadless();
+            FeatureDensitySummary.attach(locator.getPath(), genome, src, build);
+        }
+
         if (typeString.endsWith("vcf") || typeString.endsWith("vcf.gz") || typeString.endsWith("bcf")) {
 
             VCFHeader header = (VCFHeader) src.getHeader();
@@ -980,8 +989,9 @@ public class TrackLoader {
             }
 
             boolean showSpliceJunctionTrack = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.SAM_SHOW_JUNCTION_TRACK);
+            SpliceJunctionFinderTrack spliceJunctionTrack = null;
             if (showSpliceJunctionTrack) {
-                SpliceJunctionFinderTrack spliceJunctionTrack = new SpliceJunctionFinderTrack(locator,
+                spliceJunctionTrack = new SpliceJunctionFinderTrack(locator,
                         alignmentTrack.getName() + " Junctions", dataManager, false);
                 spliceJunctionTrack.setHeight(60);
 
@@ -989,6 +999,20 @@ public class TrackLoader {
                 newTracks.add(spliceJunctionTrack);
                 alignmentTrack.setSpliceJunctionTrack(spliceJunctionTrack);
             }
+
+            // Summary for zoomed out coverage and junctions of local bam files, computed in the background if needed
+            if (locator.isLocal() && locator.getPath().toLowerCase().endsWith(".bam")) {
+                boolean build = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.SAM_SUMMARY_SIDECAR) &&
+                        !Globals.isBatch() && !Globals.isHeadless();
+                AlignmentSummary.attach(locator.getPath(), genome, covTrack, spliceJunctionTrack, build);
+
+                // Indexed junctions, for the junction track at any zoom level
+                if (spliceJunctionTrack != null) {
+                    boolean buildJunctions = PreferenceManager.getInstance().getAsBoolean(PreferenceManager.SAM_JUNCTION_INDEX) &&
+                            !Globals.isBatch() && !Globals.isHeadless();
+                    SpliceJunctionIndex.attach(locator.getPath(), genome, spliceJunctionTrack, buildJunctions);
+                }
+            }
             log.debug("Alignment track loaded");
             newTracks.add(alignmentTrack);
 
@@ -1070,6 +1094,8 @@ public class TrackLoader {
             SQLCodecSource source = SQLCodecSource.getFromTable(table);
             if (source != null) {
                 CachingFeatureSource cachingReader = new CachingFeatureSource(source);
+                // Each query is a round trip to the database, so load neighbouring bins ahead of time
+                cachingReader.setPrefetch(true);
                 FeatureTrack track = new FeatureTrack(profileLocator, cachingReader);
                 track.setName(source.getTableName());
                 newTracks.add(track);
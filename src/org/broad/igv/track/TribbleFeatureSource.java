@@ -11,6 +11,7 @@
 
 package org.broad.igv.track;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.data.DataSource;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
@@ -28,9 +29,20 @@ import java.util.*;
  * @author jrobinso
  * @date Jun 27, 2010
  */
-public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
+public class TribbleFeatureSource implements IndexedFeatureSource<Feature> {
+
+    private static Logger log = Logger.getLogger(TribbleFeatureSource.class);
 
     IGVFeatureReader reader;
+
+    /**
+     * A second indexed reader for next feature searches, opened on first use.  Searches run on their own thread
+     * while the cached reader is queried for rendering, and readers are not thread safe (a tabix reader shares one
+     * file pointer among its iterators).
+     */
+    private AbstractFeatureReader searchReader;
+    String path;
+    Set<String> sequenceNames;
     DataSource coverageSource;
     boolean isVCF;
     Genome genome;
@@ -52,6 +64,7 @@ public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
     public TribbleFeatureSource(String path, Genome genome, boolean useCache) throws IOException {
         this.genome = genome;
         this.useCache = useCache;
+        this.path = path;
         init(path);
     }
 
@@ -74,8 +87,9 @@ public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
                 new CachingFeatureReader(basicReader, 5, getFeatureWindowSize()) :
                 new TribbleReaderWrapper(basicReader);
 
+        Collection<String> seqNames = reader.getSequenceNames();
+        sequenceNames = seqNames == null ? null : new HashSet<String>(seqNames);
         if (genome != null) {
-            Collection<String> seqNames = reader.getSequenceNames();
             if (seqNames != null)
                 for (String seqName : seqNames) {
                     String igvChr = genome.getChromosomeAlias(seqName);
@@ -100,6 +114,68 @@ public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
         return reader.query(seqName, start, end);
     }
 
+    /**
+     * Query from {@code position} to the end of the chromosome.  The index positions the reader at the bin containing
+     * {@code position} and features are decoded lazily, so only the records up to the next feature are read no matter
+     * how far away it is.
+     */
+    public synchronized Feature nextFeature(String chr, int position) throws IOException {
+
+        if (searchReader == null) {
+            searchReader = AbstractFeatureReader.getFeatureReader(path, CodecFactory.getCodec(path, genome), true);
+        }
+
+        String nextChr = chr;
+        while (nextChr != null) {
+            String seqName = chrNameMap.get(nextChr);
+            if (seqName == null) seqName = nextChr;
+
+            if (sequenceNames == null || sequenceNames.contains(seqName)) {
+                int chrLength = Integer.MAX_VALUE;
+                if (genome != null && genome.getChromosome(nextChr) != null) {
+                    chrLength = genome.getChromosome(nextChr).getLength();
+                }
+                CloseableTribbleIterator<Feature> iter = null;
+                try {
+                    iter = searchReader.query(seqName, Math.max(0, position), chrLength);
+                    while (iter.hasNext()) {
+                        Feature f = iter.next();
+                        if (f.getStart() > position) {
+                            return f;
+                        }
+                    }
+                } finally {
+                    if (iter != null) iter.close();
+                }
+            }
+
+            nextChr = genome == null ? null : genome.getNextChrName(nextChr);
+            position = -1;
+        }
+        return null;
+    }
+
+    /**
+     * Close the reader of next feature searches, if it has been opened.  The source remains usable.
+     */
+    public synchronized void dispose() {
+        if (searchReader != null) {
+            try {
+                searchReader.close();
+            } catch (IOException e) {
+                log.error("Error closing " + path, e);
+            }
+            searchReader = null;
+        }
+    }
+
+    /**
+     * Index queries of empty regions are cheap, so search backwards with exponentially growing windows.
+     */
+    public Feature previousFeature(String chr, int position) throws IOException {
+        return FeatureTrackUtils.searchPreviousFeature(this, genome, chr, position);
+    }
+
     /**
      * Return coverage values overlapping the query interval.   At this time Tribble sources do not provide
      * coverage values
@@ -115,6 +191,15 @@ public class TribbleFeatureSource implements org.broad.igv.track.FeatureSource {
                 coverageSource.getSummaryScoresForRange(chr, start, end, zoom);
     }
 
+    /**
+     * Set the source of coverage values, typically a {@link FeatureDensitySummary}
+     *
+     * @param coverageSource
+     */
+    public void setCoverageSource(DataSource coverageSource) {
+        this.coverageSource = coverageSource;
+    }
+
     public int getFeatureWindowSize() {
         return featureWindowSize;
     }
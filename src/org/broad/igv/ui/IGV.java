@@ -2149,10 +2149,19 @@ public class IGV {
     }
 
 
+    /**
+     * Number of tracks above which a sort by region score started from the event thread runs in the background
+     */
+    private static final int SORT_PROGRESS_THRESHOLD = 50;
+
     /**
      * Sort all groups (data and feature) by a computed score over a region.  The
      * sort is done twice (1) groups are sorted with the featureGroup, and (2) the
      * groups themselves are sorted.
+     * <p/>
+     * The score of each track is computed once, in parallel.  When called from the event thread for a large
+     * number of tracks the scores are computed in the background, with a progress dialog that allows the sort to
+     * be cancelled.  Otherwise this method returns when the sort is complete.
      *
      * @param region
      * @param type
@@ -2165,28 +2174,54 @@ public class IGV {
         final RegionOfInterest r = region == null ? new RegionOfInterest(frame.getChrName(), (int) frame.getOrigin(),
                 (int) frame.getEnd() + 1, frame.getName()) : region;
 
+        final RegionScoreSorter sorter = new RegionScoreSorter(r, type, frame);
+        final List<Track> tracksWithScore = getTracksWithScore(type);
+
+        if (SwingUtilities.isEventDispatchThread() && tracksWithScore.size() > SORT_PROGRESS_THRESHOLD) {
+            ProgressMonitor monitor = new ProgressMonitor();
+            sorter.setMonitor(monitor);
+            CancellableProgressDialog.showCancellableProgressDialog(mainFrame, "Sorting...", new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    sorter.cancel();
+                }
+            }, monitor);
+
+            LongRunningTask.submit(new NamedRunnable() {
+                public void run() {
+                    if (sorter.computeScores(tracksWithScore)) {
+                        UIUtilities.invokeOnEventThread(new Runnable() {
+                            public void run() {
+                                sortByRegionScore(sorter, tracksWithScore);
+                            }
+                        });
+                    }
+                }
+
+                public String getName() {
+                    return "Sort by " + type;
+                }
+            });
+        } else {
+            sorter.computeScores(tracksWithScore);
+            sortByRegionScore(sorter, tracksWithScore);
+        }
+    }
+
+    private void sortByRegionScore(RegionScoreSorter sorter, List<Track> tracksWithScore) {
+
         // Create a rank order of samples.  This is done globally so sorting is consistent across groups and panels.
-        final List<String> sortedSamples = sortSamplesByRegionScore(r, type, frame);
+        final List<String> sortedSamples = sortSamplesByRegionScore(sorter, tracksWithScore);
 
         for (TrackPanel trackPanel : getTrackPanels()) {
-            trackPanel.sortByRegionsScore(r, type, frame, sortedSamples);
+            trackPanel.sortByRegionsScore(sorter, sortedSamples);
         }
         repaintDataPanels();
     }
 
-
     /**
-     * Sort a collection of tracks by a score over a region.
-     *
-     * @param region
-     * @param type
-     * @param frame
+     * @return the sortable tracks for a score (data) type
      */
-    private List<String> sortSamplesByRegionScore(final RegionOfInterest region,
-                                                  final RegionScoreType type,
-                                                  final ReferenceFrame frame) {
-
-        // Get the sortable tracks for this score (data) type
+    private List<Track> getTracksWithScore(RegionScoreType type) {
         final List<Track> allTracks = getAllTracks();
         final List<Track> tracksWithScore = new ArrayList(allTracks.size());
         for (Track t : allTracks) {
@@ -2194,9 +2229,20 @@ public class IGV {
                 tracksWithScore.add(t);
             }
         }
+        return tracksWithScore;
+    }
+
+
+    /**
+     * Sort a collection of tracks by a score over a region.
+     *
+     * @param sorter
+     * @param tracksWithScore
+     */
+    private List<String> sortSamplesByRegionScore(RegionScoreSorter sorter, List<Track> tracksWithScore) {
 
         // Sort the "sortable" tracks
-        sortByRegionScore(tracksWithScore, region, type, frame);
+        sorter.sort(tracksWithScore);
 
         // Now get sample order from sorted tracks, use to sort (tracks which do not implement the selected "sort by" score)
         List<String> sortedSamples = new ArrayList(tracksWithScore.size());
@@ -2216,37 +2262,9 @@ public class IGV {
                                   final RegionScoreType type,
                                   ReferenceFrame frame) {
         if ((tracks != null) && (region != null) && !tracks.isEmpty()) {
-            final String frameName = frame != null ? frame.getName() : null;
-            int tmpzoom = frame != null ? frame.getZoom() : 0;
-            final int zoom = Math.max(0, tmpzoom);
-            final String chr = region.getChr();
-            final int start = region.getStart();
-            final int end = region.getEnd();
-
-            Comparator<Track> c = new Comparator<Track>() {
-
-                public int compare(Track t1, Track t2) {
-                    try {
-                        if (t1 == null && t2 == null) return 0;
-                        if (t1 == null) return 1;
-                        if (t2 == null) return -1;
-
-
-                        float s1 = t1.getRegionScore(chr, start, end, zoom, type, frameName);
-                        float s2 = t2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                        return Float.compare(s2, s1);
-
-
-                    } catch (Exception e) {
-                        log.error("Error sorting tracks. Sort might not be accurate.", e);
-                        return 0;
-                    }
-
-                }
-            };
-            Collections.sort(tracks, c);
-
+            RegionScoreSorter sorter = new RegionScoreSorter(region, type, frame);
+            sorter.computeScores(tracks);
+            sorter.sort(tracks);
         }
     }
 
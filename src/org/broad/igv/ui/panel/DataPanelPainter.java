@@ -20,7 +20,6 @@ package org.broad.igv.ui.panel;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.PreferenceManager;
-import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.exome.ExomeBlock;
 import org.broad.igv.feature.exome.ExomeReferenceFrame;
 import org.broad.igv.sam.CoverageTrack;
@@ -147,7 +146,7 @@ public class DataPanelPainter {
                 String chr = frame.getChrName();
                 List<ExomeReferenceFrame.Gene> genes = exomeFrame.getGenes(chr);
 
-                idx = FeatureUtils.getIndexBefore(frame.getOrigin(), genes);
+                idx = exomeFrame.getFirstGeneIdx();
 
                 exomeOrigin = ((ExomeReferenceFrame) frame).getExomeOrigin();
                 int top = visibleRect.y;
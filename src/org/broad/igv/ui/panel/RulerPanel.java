@@ -23,7 +23,6 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
 import org.broad.igv.feature.Chromosome;
-import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.exome.ExomeBlock;
 import org.broad.igv.feature.exome.ExomeReferenceFrame;
 import org.broad.igv.feature.genome.ChromosomeCoordinate;
@@ -384,7 +383,7 @@ public class RulerPanel extends JPanel {
         String chr = frame.getChrName();
         List<ExomeReferenceFrame.Gene> genes = frame.getGenes(chr);
 
-        int idx = FeatureUtils.getIndexBefore(frame.getOrigin(), genes);
+        int idx = frame.getFirstGeneIdx();
         Rectangle visibleRect = this.getVisibleRect();
         FontMetrics fm = g.getFontMetrics();
 
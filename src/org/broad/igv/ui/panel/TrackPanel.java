@@ -12,8 +12,7 @@ package org.broad.igv.ui.panel;
 
 
 import org.apache.log4j.Logger;
-import org.broad.igv.feature.RegionOfInterest;
-import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScoreSorter;
 import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackGroup;
 import org.broad.igv.ui.UIConstants;
@@ -264,62 +263,23 @@ public class TrackPanel extends IGVPanel {
 
 
     /**
-     * Sort all groups (data and feature) by a computed score over a region.  The
-     * sort is done twice (1) groups are sorted with the featureGroup, and (2) the
-     * groups themselves are sorted.
+     * Sort groups by a score over a region, and the tracks within each group by the given sample order.
      *
-     * @param region
-     * @param type
+     * @param sorter        the region, score type, and cached track scores
+     * @param sortedSamples samples in order of score
      */
-    public void sortByRegionsScore(final RegionOfInterest region, final RegionScoreType type,
-                                   final ReferenceFrame frame, List<String> sortedSamples) {
+    public void sortByRegionsScore(RegionScoreSorter sorter, List<String> sortedSamples) {
 
-        sortGroupsByRegionScore(trackGroups, region, type, frame.getZoom(), frame.getName());
+        // Sort groups by a score (not the tracks within the group).
+        sorter.sortGroups(trackGroups);
 
         for (TrackGroup group : trackGroups) {
             // If there is a non-null linking attribute
             // Segregate tracks into 2 sub-groups, those matching the score type and those that do not
-            group.sortGroup(type, sortedSamples);
+            group.sortGroup(sorter.getType(), sortedSamples);
         }
     }
 
-    /**
-     * Sort groups by a score (not the tracks within the group).
-     *
-     * @param groups
-     * @param region
-     * @param type
-     * @param inzoom
-     * @param frameName
-     */
-    private void sortGroupsByRegionScore(List<TrackGroup> groups,
-                                         final RegionOfInterest region,
-                                         final RegionScoreType type,
-                                         int inzoom,
-                                         final String frameName) {
-        if ((groups != null) && (region != null) && !groups.isEmpty()) {
-            final int zoom = Math.max(0, inzoom);
-            final String chr = region.getChr();
-            final int start = region.getStart();
-            final int end = region.getEnd();
-            Comparator<TrackGroup> c = new Comparator<TrackGroup>() {
-
-                public int compare(TrackGroup group1, TrackGroup group2) {
-                    float s1 = group1.getRegionScore(chr, start, end, zoom, type, frameName);
-                    float s2 = group2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                    // Use the Float comparator as it handles NaN.  Need to flip the order to make it descending
-                    return Float.compare(s2, s1);
-
-
-                }
-            };
-
-            Collections.sort(groups, c);
-        }
-
-    }
-
 
     /**
      * This is called upon switching genomes to replace the gene and sequence tracks
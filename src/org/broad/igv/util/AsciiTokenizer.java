@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Splits an ASCII stream into lines and fields without allocating per line.  Fields are kept as byte ranges of an
+ * internal buffer, numbers are parsed directly from the bytes and Strings are only created on request.
+ * <p/>
+ * Fields are separated according to the {@link Delimiter}, by default runs of tabs and/or spaces.  In the tab
+ * delimited modes each tab is a separator, so empty fields are preserved, and spaces surrounding a field are trimmed.
+ * Line terminators are "\n" or "\r\n".
+ * <p/>
+ * Values returned by the field accessors are only valid until the next call to {@link #nextLine()}.
+ */
+public class AsciiTokenizer {
+
+    public enum Delimiter {
+        /**
+         * Runs of tabs and/or spaces, equivalent to splitting on Globals.whitespacePattern
+         */
+        WHITESPACE,
+        /**
+         * Each tab, equivalent to splitting on Globals.tabPattern
+         */
+        TAB,
+        /**
+         * Each tab or run of spaces, equivalent to splitting on Globals.singleTabMultiSpacePattern
+         */
+        TAB_OR_SPACES
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 64000;
+
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+    /**
+     * Powers of ten exactly representable as doubles
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Maximum significant digits parsed on the fast path, the mantissa is then exact as a double
+     */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private InputStream is;
+    private byte[] buffer;
+    private int bufferEnd;
+    private long bufferOffset;
+    private boolean eof;
+
+    private int lineStart;
+    private int lineEnd;
+    private int nextLineStart;
+    private int lineNumber;
+
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int nFields;
+    private Delimiter delimiter = Delimiter.WHITESPACE;
+
+    public AsciiTokenizer(InputStream is) {
+        this(is, 0, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param is         stream to tokenize
+     * @param offset     position of the stream in the underlying file, used to report line offsets
+     * @param bufferSize initial buffer size, the buffer grows to hold the longest line
+     */
+    public AsciiTokenizer(InputStream is, long offset, int bufferSize) {
+        this.is = is;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+        this.bufferOffset = offset;
+    }
+
+    public void setTabDelimited(boolean tabDelimited) {
+        setDelimiter(tabDelimited ? Delimiter.TAB : Delimiter.WHITESPACE);
+    }
+
+    public void setDelimiter(Delimiter delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Advance to the next line and split it into fields.
+     *
+     * @return false at end of stream
+     */
+    public boolean nextLine() throws IOException {
+
+        int searchFrom = nextLineStart;
+        while (true) {
+            int nl = -1;
+            for (int i = searchFrom; i < bufferEnd; i++) {
+                if (buffer[i] == '\n') {
+                    nl = i;
+                    break;
+                }
+            }
+
+            if (nl >= 0) {
+                lineStart = nextLineStart;
+                lineEnd = (nl > lineStart && buffer[nl - 1] == '\r') ? nl - 1 : nl;
+                nextLineStart = nl + 1;
+                break;
+            }
+
+            if (eof) {
+                if (nextLineStart >= bufferEnd) {
+                    nFields = 0;
+                    return false;
+                }
+                // Last line, without a terminator
+                lineStart = nextLineStart;
+                lineEnd = bufferEnd;
+                if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') lineEnd--;
+                nextLineStart = bufferEnd;
+                break;
+            }
+
+            searchFrom = bufferEnd - nextLineStart;
+            fill();
+        }
+
+        lineNumber++;
+        split();
+        return true;
+    }
+
+    /**
+     * Move the unread part of the buffer to the front, growing the buffer if a line does not fit, and read more.
+     */
+    private void fill() throws IOException {
+        int remaining = bufferEnd - nextLineStart;
+        if (nextLineStart > 0) {
+            System.arraycopy(buffer, nextLineStart, buffer, 0, remaining);
+            bufferOffset += nextLineStart;
+            nextLineStart = 0;
+            bufferEnd = remaining;
+        }
+        if (bufferEnd == buffer.length) {
+            byte[] tmp = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, tmp, 0, bufferEnd);
+            buffer = tmp;
+        }
+        int n = is.read(buffer, bufferEnd, buffer.length - bufferEnd);
+        if (n < 0) {
+            eof = true;
+        } else {
+            bufferEnd += n;
+        }
+    }
+
+    private void split() {
+        nFields = 0;
+        int i = lineStart;
+        if (delimiter == Delimiter.TAB) {
+            int start = i;
+            for (; i < lineEnd; i++) {
+                if (buffer[i] == '\t') {
+                    addTrimmedField(start, i);
+                    start = i + 1;
+                }
+            }
+            if (lineEnd > lineStart) {
+                addTrimmedField(start, lineEnd);
+            }
+        } else if (delimiter == Delimiter.TAB_OR_SPACES) {
+            int end = lineEnd;
+            while (i < end && buffer[i] == ' ') i++;
+            while (end > i && buffer[end - 1] == ' ') end--;
+            if (i == end) return;
+            int start = i;
+            while (i < end) {
+                if (buffer[i] == '\t') {
+                    addTrimmedField(start, i);
+                    start = ++i;
+                } else if (buffer[i] == ' ') {
+                    int runStart = i;
+                    while (i < end && buffer[i] == ' ') i++;
+                    // Spaces next to a tab are trimmed rather than treated as another separator
+                    if (buffer[i] == '\t') continue;
+                    if (runStart == start) {
+                        start = i;
+                        continue;
+                    }
+                    addField(start, runStart);
+                    start = i;
+                } else {
+                    i++;
+                }
+            }
+            addTrimmedField(start, end);
+        } else {
+            while (i < lineEnd) {
+                while (i < lineEnd && (buffer[i] == '\t' || buffer[i] == ' ')) i++;
+                if (i == lineEnd) break;
+                int start = i;
+                while (i < lineEnd && buffer[i] != '\t' && buffer[i] != ' ') i++;
+                addField(start, i);
+            }
+        }
+    }
+
+    private void addTrimmedField(int start, int end) {
+        while (start < end && buffer[start] == ' ') start++;
+        while (end > start && buffer[end - 1] == ' ') end--;
+        addField(start, end);
+    }
+
+    private void addField(int start, int end) {
+        if (nFields == fieldStarts.length) {
+            int[] tmp = new int[nFields * 2];
+            System.arraycopy(fieldStarts, 0, tmp, 0, nFields);
+            fieldStarts = tmp;
+            tmp = new int[nFields * 2];
+            System.arraycopy(fieldEnds, 0, tmp, 0, nFields);
+            fieldEnds = tmp;
+        }
+        fieldStarts[nFields] = start;
+        fieldEnds[nFields] = end;
+        nFields++;
+    }
+
+    public int getFieldCount() {
+        return nFields;
+    }
+
+    /**
+     * @return the 1-based number of the current line
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the position of the start of the current line in the underlying file
+     */
+    public long getLineOffset() {
+        return bufferOffset + lineStart;
+    }
+
+    /**
+     * @return the position of the start of the next line in the underlying file
+     */
+    public long getNextLineOffset() {
+        return bufferOffset + nextLineStart;
+    }
+
+    /**
+     * @return true if the current line contains only whitespace
+     */
+    public boolean isBlank() {
+        return nFields == 0;
+    }
+
+    public boolean startsWith(String prefix) {
+        int len = prefix.length();
+        if (lineEnd - lineStart < len) return false;
+        for (int i = 0; i < len; i++) {
+            if (buffer[lineStart + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean fieldEquals(int field, String value) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int len = fieldEnds[field] - start;
+        if (len != value.length()) return false;
+        for (int i = 0; i < len; i++) {
+            if (buffer[start + i] != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean fieldEqualsIgnoreCase(int field, String value) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int len = fieldEnds[field] - start;
+        if (len != value.length()) return false;
+        for (int i = 0; i < len; i++) {
+            char c = (char) (buffer[start + i] & 0xff);
+            if (Character.toUpperCase(c) != Character.toUpperCase(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    public String getLine() {
+        return new String(buffer, lineStart, lineEnd - lineStart, ASCII);
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        return new String(buffer, fieldStarts[field], fieldEnds[field] - fieldStarts[field], ASCII);
+    }
+
+    public int getInt(int field) {
+        checkField(field);
+        int i = fieldStarts[field];
+        int end = fieldEnds[field];
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            // Empty, or possibly too large for the fast path
+            return Integer.parseInt(getString(field));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int d = buffer[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    public float getFloat(int field) {
+        double v = parseDecimal(field);
+        return Double.isNaN(v) ? Float.parseFloat(getString(field)) : (float) v;
+    }
+
+    public double getDouble(int field) {
+        double v = parseDecimal(field);
+        return Double.isNaN(v) ? Double.parseDouble(getString(field)) : v;
+    }
+
+    /**
+     * Parse a plain decimal number (optional sign, digits, optional fraction and exponent).
+     *
+     * @return the value, or NaN if the field must be parsed by the JDK
+     */
+    private double parseDecimal(int field) {
+        checkField(field);
+        int i = fieldStarts[field];
+        int end = fieldEnds[field];
+
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int nDigits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean sawPoint = false;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                sawDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    // Leading zero
+                    if (sawPoint) exponent--;
+                } else if (nDigits < MAX_FAST_DIGITS) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    nDigits++;
+                    if (sawPoint) exponent--;
+                } else {
+                    return Double.NaN;
+                }
+            } else if (b == '.' && !sawPoint) {
+                sawPoint = true;
+            } else if ((b == 'e' || b == 'E') && sawDigit) {
+                i++;
+                boolean negativeExp = false;
+                if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                    negativeExp = buffer[i] == '-';
+                    i++;
+                }
+                if (i == end || end - i > 3) return Double.NaN;
+                int exp = 0;
+                for (; i < end; i++) {
+                    int d = buffer[i] - '0';
+                    if (d < 0 || d > 9) return Double.NaN;
+                    exp = exp * 10 + d;
+                }
+                exponent += negativeExp ? -exp : exp;
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!sawDigit) return Double.NaN;
+
+        double value = mantissa;
+        if (mantissa != 0 && exponent != 0) {
+            if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                value = value / POWERS_OF_TEN[-exponent];
+            } else if (exponent > 0 && exponent < POWERS_OF_TEN.length) {
+                value = value * POWERS_OF_TEN[exponent];
+            } else {
+                return Double.NaN;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    private void checkField(int field) {
+        if (field >= nFields) {
+            throw new ArrayIndexOutOfBoundsException("Line " + lineNumber + " has " + nFields +
+                    " fields, expected at least " + (field + 1));
+        }
+    }
+
+    public void close() throws IOException {
+        is.close();
+    }
+}
@@ -79,6 +79,17 @@ public class ParsingUtils {
 
     }
 
+    /**
+     * Open an allocation free line and field tokenizer on the resource, see {@link AsciiTokenizer}
+     *
+     * @param locator
+     * @return
+     * @throws IOException
+     */
+    public static AsciiTokenizer openAsciiTokenizer(ResourceLocator locator) throws IOException {
+        return new AsciiTokenizer(openInputStreamGZ(locator));
+    }
+
     public static InputStream openInputStream(String path) throws IOException {
         return openInputStreamGZ(new ResourceLocator(path));
     }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util.collections;
+
+import org.apache.commons.math.stat.StatUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bounded memory, mergeable estimator of quantiles (a KLL sketch).
+ * <p/>
+ * Values are held in a stack of "compactors".  An item at level h stands for 2^h input values.  When a level fills
+ * it is sorted and every other item, starting at a random offset, is promoted to the next level.  Capacities shrink
+ * geometrically toward the lower levels, so the sketch holds O(k log(n/k)) values regardless of the number of values
+ * added.  Rank error is roughly proportional to 1/k.
+ * <p/>
+ * Until the first compaction all values are retained and quantiles are exact, computed the same way as
+ * {@link StatUtils#percentile(double[], double)}.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+    private static final long SEED = 0x5EED;
+
+    private final int k;
+    // Fixed seed, the same values give the same estimates so output files are reproducible
+    private final Random random = new Random(SEED);
+    private float[][] levels;
+    private int[] sizes;
+    private int nLevels;
+    private long count;
+    private int totalSize;
+    private int maxSize;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k Capacity of the top level, controls accuracy.
+     */
+    public QuantileSketch(int k) {
+        this.k = Math.max(k, MIN_CAPACITY);
+        levels = new float[4][];
+        sizes = new int[4];
+        levels[0] = new float[16];
+        nLevels = 1;
+        maxSize = capacity(0);
+    }
+
+    public void add(float v) {
+        append(0, v);
+        count++;
+        totalSize++;
+        if (totalSize >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Add the values of another sketch to this one.  The other sketch is not modified.
+     *
+     * @param other
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other.count == 0) return;
+        while (nLevels < other.nLevels) {
+            addLevel();
+        }
+        for (int h = 0; h < other.nLevels; h++) {
+            float[] items = other.levels[h];
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, items[i]);
+            }
+        }
+        count += other.count;
+        updateSizes();
+        while (totalSize >= maxSize) {
+            if (!compress()) break;
+        }
+    }
+
+    /**
+     * @return the number of values added, including those of merged sketches
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of values currently retained
+     */
+    public int getRetainedCount() {
+        return totalSize;
+    }
+
+    /**
+     * Estimate the p-th percentile.
+     *
+     * @param p percentile, 0 < p <= 100
+     * @return the estimated value, or NaN if the sketch is empty
+     */
+    public double getPercentile(double p) {
+        if (count == 0) return Double.NaN;
+
+        if (nLevels == 1) {
+            double[] values = new double[sizes[0]];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = levels[0][i];
+            }
+            return StatUtils.percentile(values, p);
+        }
+
+        for (int h = 0; h < nLevels; h++) {
+            Arrays.sort(levels[h], 0, sizes[h]);
+        }
+
+        // Walk the sorted levels in value order, accumulating weight until the target rank is reached
+        double targetRank = (p / 100) * count;
+        long weight = 0;
+        int[] idx = new int[nLevels];
+        float last = Float.NaN;
+        while (true) {
+            int minLevel = -1;
+            for (int h = 0; h < nLevels; h++) {
+                if (idx[h] < sizes[h] && (minLevel < 0 || levels[h][idx[h]] < levels[minLevel][idx[minLevel]])) {
+                    minLevel = h;
+                }
+            }
+            if (minLevel < 0) {
+                return last;
+            }
+            last = levels[minLevel][idx[minLevel]++];
+            weight += 1L << minLevel;
+            if (weight >= targetRank) {
+                return last;
+            }
+        }
+    }
+
+    private int capacity(int level) {
+        int depth = nLevels - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void append(int level, float v) {
+        float[] items = levels[level];
+        if (sizes[level] == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            levels[level] = items;
+        }
+        items[sizes[level]++] = v;
+    }
+
+    private void addLevel() {
+        if (nLevels == levels.length) {
+            levels = Arrays.copyOf(levels, nLevels * 2);
+            sizes = Arrays.copyOf(sizes, nLevels * 2);
+        }
+        levels[nLevels] = new float[16];
+        sizes[nLevels] = 0;
+        nLevels++;
+    }
+
+    /**
+     * Compact every level at or over capacity, promoting half of its items to the level above.
+     *
+     * @return true if any level was compacted
+     */
+    private boolean compress() {
+        boolean compacted = false;
+        for (int h = 0; h < nLevels; h++) {
+            int n = sizes[h];
+            if (n >= capacity(h)) {
+                if (h + 1 == nLevels) {
+                    addLevel();
+                }
+                float[] items = levels[h];
+                Arrays.sort(items, 0, n);
+
+                // With an odd count the smallest item stays behind
+                int keep = n % 2;
+                for (int i = keep + random.nextInt(2); i < n; i += 2) {
+                    append(h + 1, items[i]);
+                }
+                sizes[h] = keep;
+                compacted = true;
+            }
+        }
+        updateSizes();
+        return compacted;
+    }
+
+    private void updateSizes() {
+        totalSize = 0;
+        maxSize = 0;
+        for (int h = 0; h < nLevels; h++) {
+            totalSize += sizes[h];
+            maxSize += capacity(h);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.variant;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Genotype colors for all variants (sites) x samples of a loaded interval, stored as a matrix of palette indices.
+ * The matrix is computed once per loaded interval and color mode, after which painting a sample band is a byte
+ * lookup rather than a Variant -> Genotype -> VariantRenderer traversal.
+ * <p/>
+ * Sample columns are stored in file order.  Sorting or grouping samples does not invalidate the matrix,
+ * the render order is applied with an index map (see {@link #getColumns(java.util.List)}).
+ */
+class GenotypeRasterCache {
+
+    /**
+     * Palette index indicating the cell should not be painted (missing genotype or no color).
+     */
+    static final int NO_COLOR = 0;
+
+    /**
+     * Palette indices are stored as unsigned bytes, index 0 is reserved for NO_COLOR
+     */
+    private static final int MAX_PALETTE_SIZE = 255;
+
+    private final Object interval;
+    private final VariantTrack.ColorMode colorMode;
+    private final boolean hideFiltered;
+
+    /**
+     * Number of palette indices stored per cell, 2 for allele coloring (one for each half of the band), 1 otherwise.
+     */
+    private final int stride;
+    private final int nSamples;
+    private final Map<String, Integer> sampleColumns;
+    private final IdentityHashMap<Variant, Integer> siteIndices;
+    private final List<Color> palette;
+    private final byte[] matrix;
+
+
+    private GenotypeRasterCache(Object interval, VariantTrack.ColorMode colorMode, boolean hideFiltered,
+                                Map<String, Integer> sampleColumns, IdentityHashMap<Variant, Integer> siteIndices,
+                                List<Color> palette, byte[] matrix) {
+        this.interval = interval;
+        this.colorMode = colorMode;
+        this.hideFiltered = hideFiltered;
+        this.stride = strideFor(colorMode);
+        this.nSamples = sampleColumns.size();
+        this.sampleColumns = sampleColumns;
+        this.siteIndices = siteIndices;
+        this.palette = palette;
+        this.matrix = matrix;
+    }
+
+    /**
+     * Build the genotype matrix for the supplied variants.
+     *
+     * @param interval     the loaded interval (typically a PackedFeatures instance) the variants belong to.  Used
+     *                     only as a key to test validity, see {@link #isValid(Object, VariantTrack.ColorMode, boolean)}
+     * @param variants     all variants of the interval
+     * @param samples      samples in file order
+     * @param renderer
+     * @param colorMode
+     * @param hideFiltered
+     * @return the cache.  If the number of distinct colors exceeds the palette capacity the returned cache
+     *         contains no sites, and callers should fall back to rendering genotypes directly.
+     */
+    static GenotypeRasterCache build(Object interval, Collection<? extends Variant> variants, List<String> samples,
+                                     VariantRenderer renderer, VariantTrack.ColorMode colorMode, boolean hideFiltered) {
+
+        Map<String, Integer> sampleColumns = new HashMap<String, Integer>(samples.size() * 2);
+        for (String s : samples) {
+            if (!sampleColumns.containsKey(s)) {
+                sampleColumns.put(s, sampleColumns.size());
+            }
+        }
+        final int nSamples = sampleColumns.size();
+        final int stride = strideFor(colorMode);
+
+        IdentityHashMap<Variant, Integer> siteIndices = new IdentityHashMap<Variant, Integer>(variants.size());
+        List<Color> palette = new ArrayList<Color>();
+        palette.add(null);
+        Map<Color, Integer> paletteIndices = new HashMap<Color, Integer>();
+
+        byte[] matrix = new byte[variants.size() * nSamples * stride];
+        for (Variant variant : variants) {
+            if (siteIndices.containsKey(variant)) continue;
+            final int site = siteIndices.size();
+            siteIndices.put(variant, site);
+
+            final boolean isFiltered = variant.isFiltered() && hideFiltered;
+            for (Map.Entry<String, Integer> entry : sampleColumns.entrySet()) {
+                Genotype genotype = variant.getGenotype(entry.getKey());
+                if (genotype == null) continue;   // Leave as NO_COLOR
+
+                Color[] colors = renderer.getGenotypeBandColors(genotype, colorMode, isFiltered);
+                int offset = (site * nSamples + entry.getValue()) * stride;
+                for (int i = 0; i < stride; i++) {
+                    Color c = colors[i];
+                    if (c == null) continue;
+                    Integer idx = paletteIndices.get(c);
+                    if (idx == null) {
+                        if (palette.size() >= MAX_PALETTE_SIZE) {
+                            return new GenotypeRasterCache(interval, colorMode, hideFiltered, sampleColumns,
+                                    new IdentityHashMap<Variant, Integer>(), palette, null);
+                        }
+                        idx = palette.size();
+                        palette.add(c);
+                        paletteIndices.put(c, idx);
+                    }
+                    matrix[offset + i] = (byte) (int) idx;
+                }
+            }
+        }
+
+        return new GenotypeRasterCache(interval, colorMode, hideFiltered, sampleColumns, siteIndices, palette, matrix);
+    }
+
+    private static int strideFor(VariantTrack.ColorMode colorMode) {
+        return colorMode == VariantTrack.ColorMode.ALLELE ? 2 : 1;
+    }
+
+    /**
+     * @return true if this cache was built for the given interval and display options
+     */
+    boolean isValid(Object interval, VariantTrack.ColorMode colorMode, boolean hideFiltered) {
+        return this.interval == interval && this.colorMode == colorMode && this.hideFiltered == hideFiltered;
+    }
+
+    int getStride() {
+        return stride;
+    }
+
+    /**
+     * Map samples, in render order, to matrix columns.  Samples not known to this cache map to -1.
+     *
+     * @param samples
+     * @return
+     */
+    int[] getColumns(List<String> samples) {
+        int[] columns = new int[samples.size()];
+        for (int i = 0; i < columns.length; i++) {
+            Integer col = sampleColumns.get(samples.get(i));
+            columns[i] = col == null ? -1 : col;
+        }
+        return columns;
+    }
+
+    /**
+     * @return the row of the matrix for the given variant, or -1 if the variant is not in the cached interval
+     */
+    int getSiteIndex(Variant variant) {
+        if (matrix == null) return -1;
+        Integer site = siteIndices.get(variant);
+        return site == null ? -1 : site;
+    }
+
+    /**
+     * Return the palette index for a cell.
+     *
+     * @param site   row, from {@link #getSiteIndex(Variant)}
+     * @param column column, from {@link #getColumns(java.util.List)}
+     * @param half   0 for the first allele (or whole band), 1 for the second allele
+     * @return palette index, {@link #NO_COLOR} if nothing should be painted
+     */
+    int getColorIndex(int site, int column, int half) {
+        if (site < 0 || column < 0) return NO_COLOR;
+        return matrix[(site * nSamples + column) * stride + half] & 0xff;
+    }
+
+    Color getColor(int colorIndex) {
+        return palette.get(colorIndex);
+    }
+
+}
@@ -180,54 +180,19 @@ public class VariantRenderer { //extends FeatureRenderer {
         if (genotype == null) {
             log.error("Genotype not found for sample " + sampleName);
         } else {
-            Color b1Color = Color.gray;
-            Color b2Color = Color.gray;
+            Color[] colors = getGenotypeBandColors(genotype, coloring, isFiltered);
+            Color b1Color = colors[0];
+            Color b2Color = colors[1];
             char b1 = ' ';
             char b2 = ' ';
-            //Assign proper coloring
-            switch (coloring) {
-                case GENOTYPE:
-
-                    b1Color = getGenotypeColor(genotype, isFiltered);
-                    b2Color = b1Color;
-                    break;
-
-                case ALLELE:
-                    final List<Allele> alleleList = genotype.getAlleles();
-                    if (alleleList.size() > 0) {
-                        b1 = getFirstBase(alleleList.get(0));
-                        b1Color = nucleotideColors.get(b1);
-                    }
-                    if (alleleList.size() > 1) {
-                        b2 = getFirstBase(alleleList.get(1));
-                        b2Color = nucleotideColors.get(b2);
-                    }
-                    break;
-                case METHYLATION_RATE:
-
-                    final double goodBaseCount = genotype.getAttributeAsDouble("GB");
-                    b1Color = colorNoCall;
-                    b2Color = b1Color;
-                    final double value = genotype.getAttributeAsDouble("MR");
-                    if (!Double.isNaN(goodBaseCount) && !Double.isNaN(value)) {
-                        if (goodBaseCount < VariantTrack.METHYLATION_MIN_BASE_COUNT || Double.isNaN(value)) {
-                            b1Color = colorNoCall;
-                            b2Color = b1Color;
-
-                        } else {
-                            float mr = (float) value;
-                            mr /= 100f;
-                            b1Color = convertMethylationRateToColor(mr);
-                            b2Color = b1Color;
-                        }
-                    } else {
-                        log.error("GB and MR fields must be defined for all records in a VCF methylation file.");
-                    }
-                    break;
-
-                default:
-                    b1Color = colorNoCall;
-                    b2Color = b1Color;
+            if (coloring == VariantTrack.ColorMode.ALLELE) {
+                final List<Allele> alleleList = genotype.getAlleles();
+                if (alleleList.size() > 0) {
+                    b1 = getFirstBase(alleleList.get(0));
+                }
+                if (alleleList.size() > 1) {
+                    b2 = getFirstBase(alleleList.get(1));
+                }
             }
 
 
@@ -248,7 +213,7 @@ public class VariantRenderer { //extends FeatureRenderer {
             }
 
 
-            if ((dX >= 10) && (dY >= 18)) {
+            if (isGenotypeTextVisible(dX, dY)) {
                 if (b1Color == Color.blue) {
                     g.setColor(Color.white);
                 } else {
@@ -261,6 +226,106 @@ public class VariantRenderer { //extends FeatureRenderer {
         g.dispose();
     }
 
+    /**
+     * Return true if {@link #renderGenotypeBandSNP} draws allele text for bands of the given dimensions.
+     *
+     * @param dX width of the band in pixels
+     * @param dY height of the band in pixels
+     * @return
+     */
+    public boolean isGenotypeTextVisible(int dX, int dY) {
+        return (dX >= 10) && (dY >= 18);
+    }
+
+    /**
+     * Fill a genotype band with precomputed colors, without text.  Geometry matches
+     * {@link #renderGenotypeBandSNP(Variant, RenderContext, Rectangle, int, int, String, VariantTrack.ColorMode, boolean)}.
+     *
+     * @param context
+     * @param bandRectangle
+     * @param pX0
+     * @param dX
+     * @param b1Color  color of the band, or its first half when coloring by allele.  Null colors are not painted
+     * @param b2Color  color of the second half when coloring by allele
+     * @param coloring
+     */
+    public void renderGenotypeBand(RenderContext context, Rectangle bandRectangle, int pX0, int dX,
+                                   Color b1Color, Color b2Color, VariantTrack.ColorMode coloring) {
+
+        int pY = (int) bandRectangle.getY();
+        int dY = (int) bandRectangle.getHeight();
+        int y0 = track.getDisplayMode() == Track.DisplayMode.EXPANDED ? pY + 1 : pY;
+        int h = Math.max(1, track.getDisplayMode() == Track.DisplayMode.EXPANDED ? dY - 2 : dY);
+
+        if (coloring == VariantTrack.ColorMode.ALLELE) {
+            if (b1Color != null) {
+                context.getGraphic2DForColor(b1Color).fillRect(pX0, y0, (dX / 2), h);
+            }
+            if (b2Color != null) {
+                context.getGraphic2DForColor(b2Color).fillRect(pX0 + (dX / 2), y0, (dX / 2), h);
+            }
+        } else if (b1Color != null) {
+            context.getGraphic2DForColor(b1Color).fillRect(pX0, y0, dX, h);
+        }
+    }
+
+    /**
+     * Return the colors of the two halves of a genotype band, {first allele, second allele}.  In modes other than
+     * ALLELE both halves have the same color.  Elements can be null if an allele base has no assigned color.
+     *
+     * @param genotype
+     * @param coloring
+     * @param isFiltered true if the variant is filtered and should be drawn dimmed
+     * @return
+     */
+    public Color[] getGenotypeBandColors(Genotype genotype, VariantTrack.ColorMode coloring, boolean isFiltered) {
+        Color b1Color = Color.gray;
+        Color b2Color = Color.gray;
+        switch (coloring) {
+            case GENOTYPE:
+
+                b1Color = getGenotypeColor(genotype, isFiltered);
+                b2Color = b1Color;
+                break;
+
+            case ALLELE:
+                final List<Allele> alleleList = genotype.getAlleles();
+                if (alleleList.size() > 0) {
+                    b1Color = nucleotideColors.get(getFirstBase(alleleList.get(0)));
+                }
+                if (alleleList.size() > 1) {
+                    b2Color = nucleotideColors.get(getFirstBase(alleleList.get(1)));
+                }
+                break;
+            case METHYLATION_RATE:
+
+                final double goodBaseCount = genotype.getAttributeAsDouble("GB");
+                b1Color = colorNoCall;
+                b2Color = b1Color;
+                final double value = genotype.getAttributeAsDouble("MR");
+                if (!Double.isNaN(goodBaseCount) && !Double.isNaN(value)) {
+                    if (goodBaseCount < VariantTrack.METHYLATION_MIN_BASE_COUNT || Double.isNaN(value)) {
+                        b1Color = colorNoCall;
+                        b2Color = b1Color;
+
+                    } else {
+                        float mr = (float) value;
+                        mr /= 100f;
+                        b1Color = convertMethylationRateToColor(mr);
+                        b2Color = b1Color;
+                    }
+                } else {
+                    log.error("GB and MR fields must be defined for all records in a VCF methylation file.");
+                }
+                break;
+
+            default:
+                b1Color = colorNoCall;
+                b2Color = b1Color;
+        }
+        return new Color[]{b1Color, b2Color};
+    }
+
     private Color convertMethylationRateToColor(float mr) {
         Color color;
         /*
@@ -156,6 +156,20 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
      */
     Map<String, String> alignmentFiles;
 
+    /**
+     * Map of frame name -> genotype colors of the interval loaded in that frame, like packedFeaturesMap.  Rebuilt
+     * when the interval, color mode, or filter visibility changes.
+     */
+    private Map<String, GenotypeRasterCache> genotypeCaches =
+            Collections.synchronizedMap(new HashMap<String, GenotypeRasterCache>());
+
+    /**
+     * Map of genotype cache -> genotype cache column of each sample, in render order.  Reset when samples are
+     * sorted or regrouped.
+     */
+    private Map<GenotypeRasterCache, int[]> sampleRowColumns =
+            Collections.synchronizedMap(new IdentityHashMap<GenotypeRasterCache, int[]>());
+
     public void setRenderer(VariantRenderer renderer) {
         this.renderer = renderer;
     }
@@ -276,6 +290,7 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
         if (groupByAttribute == null) {
             grouped = false;
+            sampleRowColumns.clear();
             return;
         }
 
@@ -293,6 +308,7 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
         grouped = samplesByGroups.size() > 1;
         groupByAttribute = newGroupByAttribute;
+        sampleRowColumns.clear();
     }
 
     /**
@@ -305,6 +321,7 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
         for (List<String> samples : samplesByGroups.values()) {
             Collections.sort(samples, comparator);
         }
+        sampleRowColumns.clear();
     }
 
 
@@ -420,6 +437,8 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
         int curRowTop = top;
 
+        GenotypeRasterCache genotypes = getGenotypeCache(context.getReferenceFrame().getName(), packedFeatures);
+
         if (rows.size() > 0) {
             final double locScale = context.getScale();
             final double origin = context.getOrigin();
@@ -460,7 +479,7 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
                         renderer.renderSiteBand(variant, tmpRect, x, w, context);
                     }
 
-                    renderSamples(g2D, visibleRectangle, variant, context, overallSampleRect, x, w);
+                    renderSamples(g2D, visibleRectangle, variant, context, overallSampleRect, x, w, genotypes);
                     boolean isSelected = selectedVariant != null && selectedVariant == variant;
                     if (isSelected) {
                         Graphics2D selectionGraphics = context.getGraphic2DForColor(Color.black);
@@ -496,32 +515,114 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
         }
     }
 
-    private void renderSamples(Graphics2D g2D, Rectangle visibleRectangle, Variant variant, RenderContext context, Rectangle overallSampleRect, int x, int w) {
+    private void renderSamples(Graphics2D g2D, Rectangle visibleRectangle, Variant variant, RenderContext context,
+                               Rectangle overallSampleRect, int x, int w, GenotypeRasterCache genotypes) {
         Rectangle tmpRect = new Rectangle(overallSampleRect);
         tmpRect.height = getGenotypeBandHeight();
+        if (tmpRect.height <= 0) {
+            return;
+        }
+
+        // Use precomputed colors unless the bands are large enough to show allele text
+        int site = -1;
+        int[] columns = null;
+        if (genotypes != null && !renderer.isGenotypeTextVisible(w, tmpRect.height)) {
+            site = genotypes.getSiteIndex(variant);
+            if (site >= 0) {
+                columns = getSampleRowColumns(genotypes);
+            }
+        }
+
         if (grouped) {
+            int row = 0;
             for (Map.Entry<String, List<String>> entry : samplesByGroups.entrySet()) {
                 for (String sample : entry.getValue()) {
-                    if (overallSampleRect.intersects(visibleRectangle)) {
-                        renderer.renderGenotypeBandSNP(variant, context, tmpRect, x, w, sample, coloring,
-                                hideFiltered);
+                    if (tmpRect.intersects(visibleRectangle)) {
+                        renderGenotype(context, variant, sample, genotypes, site, columns, row, tmpRect, x, w);
                     }
                     tmpRect.y += tmpRect.height;
+                    row++;
                 }
                 g2D.setColor(OFF_WHITE);
                 g2D.fillRect(tmpRect.x, tmpRect.y, tmpRect.width, GROUP_BORDER_WIDTH);
             }
         } else {
-            for (String sample : allSamples) {
+            // Skip directly to the first visible sample, and stop after the last
+            final int nSamples = allSamples.size();
+            int firstRow = Math.max(0, (visibleRectangle.y - tmpRect.y) / tmpRect.height);
+            tmpRect.y += firstRow * tmpRect.height;
+            final double visibleMaxY = visibleRectangle.getMaxY();
+            for (int row = firstRow; row < nSamples && tmpRect.y <= visibleMaxY; row++) {
                 if (tmpRect.intersects(visibleRectangle)) {
-                    renderer.renderGenotypeBandSNP(variant, context, tmpRect, x, w, sample, coloring,
-                            hideFiltered);
+                    renderGenotype(context, variant, allSamples.get(row), genotypes, site, columns, row, tmpRect, x, w);
                 }
                 tmpRect.y += tmpRect.height;
             }
         }
     }
 
+    private void renderGenotype(RenderContext context, Variant variant, String sample, GenotypeRasterCache genotypes,
+                                int site, int[] columns, int row, Rectangle bandRect, int x, int w) {
+        if (columns == null) {
+            renderer.renderGenotypeBandSNP(variant, context, bandRect, x, w, sample, coloring, hideFiltered);
+        } else {
+            int column = columns[row];
+            int c1 = genotypes.getColorIndex(site, column, 0);
+            int c2 = genotypes.getStride() > 1 ? genotypes.getColorIndex(site, column, 1) : c1;
+            if (c1 != GenotypeRasterCache.NO_COLOR || c2 != GenotypeRasterCache.NO_COLOR) {
+                renderer.renderGenotypeBand(context, bandRect, x, w, genotypes.getColor(c1), genotypes.getColor(c2),
+                        coloring);
+            }
+        }
+    }
+
+    /**
+     * Return the genotype cache for the interval loaded in a frame, building it if necessary.  Returns null if
+     * genotypes are not drawn or a custom renderer is in use.
+     *
+     * @param frameName
+     * @param packedFeatures
+     * @return
+     */
+    private GenotypeRasterCache getGenotypeCache(String frameName, PackedFeatures packedFeatures) {
+        if (renderer.getClass() != VariantRenderer.class || allSamples.isEmpty() ||
+                getDisplayMode() == DisplayMode.COLLAPSED) {
+            return null;
+        }
+        GenotypeRasterCache genotypeCache = genotypeCaches.get(frameName);
+        if (genotypeCache == null || !genotypeCache.isValid(packedFeatures, coloring, hideFiltered)) {
+            if (genotypeCache != null) {
+                sampleRowColumns.remove(genotypeCache);
+            }
+            List<Variant> variants = packedFeatures.getFeatures();
+            genotypeCache = GenotypeRasterCache.build(packedFeatures, variants, allSamples, renderer, coloring,
+                    hideFiltered);
+            genotypeCaches.put(frameName, genotypeCache);
+        }
+        return genotypeCache;
+    }
+
+    /**
+     * Return the genotype cache column for each sample, in render order (groups concatenated if grouped).
+     */
+    private int[] getSampleRowColumns(GenotypeRasterCache genotypes) {
+        int[] columns = sampleRowColumns.get(genotypes);
+        if (columns == null) {
+            List<String> renderOrder;
+            if (grouped) {
+                renderOrder = new ArrayList<String>(allSamples.size());
+                for (List<String> samples : samplesByGroups.values()) {
+                    renderOrder.addAll(samples);
+                }
+            } else {
+                renderOrder = allSamples;
+            }
+            columns = genotypes.getColumns(renderOrder);
+            sampleRowColumns.put(genotypes, columns);
+        }
+        return columns;
+    }
+
     /**
      * Renders the top line, bottom track line, and border between variants / genotypes
      * @param g2D
@@ -776,6 +877,8 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
     public void setHideFiltered(boolean value) {
         this.hideFiltered = value;
+        genotypeCaches.clear();
+        sampleRowColumns.clear();
     }
 
     @XmlAttribute
@@ -785,6 +888,8 @@ public class VariantTrack extends FeatureTrack implements TrackGroupEventListene
 
     public void setColorMode(ColorMode mode) {
         this.coloring = mode;
+        genotypeCaches.clear();
+        sampleRowColumns.clear();
     }
 
 
@@ -13,6 +13,7 @@ package org.broad.igv.cli_plugin;
 
 import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.Globals;
+import org.broad.igv.feature.CachingFeatureSource;
 import org.broad.igv.track.FeatureTrack;
 import org.broad.igv.track.TrackLoader;
 import org.broad.igv.util.ResourceLocator;
@@ -21,11 +22,14 @@ import org.broad.tribble.Feature;
 import org.junit.Assume;
 import org.junit.Test;
 
+import java.io.*;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * User: jacob
  * Date: 2012-Aug-10
@@ -74,4 +78,117 @@ public class PluginFeatureSourceTest extends AbstractHeadlessTest {
         TestUtils.assertFeatureListsEqual(featuresExp, featuresAct);
 
     }
+
+    /**
+     * Queries within a previous result are answered from the cache, without running the plugin again
+     */
+    @Test
+    public void testCache() throws Exception {
+        Assume.assumeTrue(!Globals.IS_WINDOWS);
+
+        File counter = new File(TestUtils.TMP_OUTPUT_DIR, "pluginRuns.txt");
+        counter.delete();
+        File script = writeScript("countingCat.sh", "echo run >> " + counter.getAbsolutePath() + "\ncat \"$1\"\n");
+
+        LinkedHashMap<Argument, Object> arguments = createCatArguments();
+        PluginFeatureSource pluginSource = new PluginFeatureSource(Arrays.asList("/bin/sh", script.getAbsolutePath()),
+                arguments, catOutput(false), AbstractPluginTest.getCatReader().getSpecPath());
+        FeatureTrack trackA = (FeatureTrack) arguments.values().toArray()[1];
+
+        int start = 178707289 - 1;
+        int end = 179714478;
+        TestUtils.assertFeatureListsEqual(trackA.getFeatures("chr2", start, end).iterator(),
+                pluginSource.getFeatures("chr2", start, end));
+        TestUtils.assertFeatureListsEqual(trackA.getFeatures("chr2", start + 1000, end - 1000).iterator(),
+                pluginSource.getFeatures("chr2", start + 1000, end - 1000));
+        assertEquals(1, countLines(counter));
+
+        pluginSource.getFeatures("chr2", 1, 30);
+        assertEquals(2, countLines(counter));
+
+        pluginSource.clearCache();
+        pluginSource.getFeatures("chr2", 1, 30);
+        assertEquals(3, countLines(counter));
+    }
+
+    /**
+     * A single worker process answers all queries
+     */
+    @Test
+    public void testWorker() throws Exception {
+        Assume.assumeTrue(!Globals.IS_WINDOWS);
+
+        File counter = new File(TestUtils.TMP_OUTPUT_DIR, "pluginWorkers.txt");
+        counter.delete();
+        File script = writeScript("catWorker.sh", "echo start >> " + counter.getAbsolutePath() + "\n" +
+                "while read a b; do cat $a; echo '" + PluginWorker.END_OF_RESULT + "'; done\n");
+
+        LinkedHashMap<Argument, Object> arguments = createCatArguments();
+        PluginFeatureSource pluginSource = new PluginFeatureSource(Arrays.asList("/bin/sh", script.getAbsolutePath()),
+                arguments, catOutput(true), AbstractPluginTest.getCatReader().getSpecPath());
+        FeatureTrack trackA = (FeatureTrack) arguments.values().toArray()[1];
+
+        int[][] intervals = {{1, 30}, {178707289 - 1, 179714478}, {0, 1000000}};
+        for (int[] interval : intervals) {
+            Iterator<Feature> featuresExp = trackA.getFeatures("chr2", interval[0], interval[1]).iterator();
+            pluginSource.clearCache();
+            TestUtils.assertFeatureListsEqual(featuresExp, pluginSource.getFeatures("chr2", interval[0], interval[1]));
+        }
+        // clearCache stops the worker
+        assertEquals(intervals.length, countLines(counter));
+
+        // The last worker serves the remaining queries
+        for (int[] interval : intervals) {
+            Iterator<Feature> featuresExp = trackA.getFeatures("chr1", interval[0], interval[1]).iterator();
+            TestUtils.assertFeatureListsEqual(featuresExp, pluginSource.getFeatures("chr1", interval[0], interval[1]));
+        }
+        assertEquals(intervals.length, countLines(counter));
+
+        // Disposing a track of the source stops the worker, a new one serves the next query
+        new FeatureTrack("pluginWorker", "pluginWorker", new CachingFeatureSource(pluginSource)).dispose();
+        pluginSource.getFeatures("chr1", 1, 30);
+        assertEquals(intervals.length + 1, countLines(counter));
+        pluginSource.clearCache();
+    }
+
+    private LinkedHashMap<Argument, Object> createCatArguments() throws Exception {
+        List<Argument> argumentList = AbstractPluginTest.getCatReader().getTools().get(0).commandList.get(0).argumentList;
+        LinkedHashMap<Argument, Object> arguments = new LinkedHashMap<Argument, Object>(argumentList.size());
+        arguments.put(argumentList.get(0), "");
+
+        // The test scripts only output track A
+        String[] paths = new String[]{TestUtils.DATA_DIR + "bed/test.bed", TestUtils.DATA_DIR + "bed/testAlternateColor.bed"};
+        TrackLoader loader = new TrackLoader();
+        for (int i = 0; i < paths.length; i++) {
+            TestUtils.createIndex(paths[i]);
+            arguments.put(argumentList.get(i + 1), loader.load(new ResourceLocator(paths[i]), genome).get(0));
+        }
+        return arguments;
+    }
+
+    private static PluginSpecReader.Output catOutput(boolean worker) {
+        PluginSpecReader.Output output = new PluginSpecReader.Output();
+        output.parser = new PluginSpecReader.Parser();
+        output.parser.format = "bed";
+        output.parser.strict = true;
+        output.parser.worker = worker;
+        return output;
+    }
+
+    private static File writeScript(String name, String contents) throws IOException {
+        File script = new File(TestUtils.TMP_OUTPUT_DIR, name);
+        FileWriter writer = new FileWriter(script);
+        writer.write(contents);
+        writer.close();
+        return script;
+    }
+
+    private static int countLines(File file) throws IOException {
+        if (!file.exists()) return 0;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        int count = 0;
+        while (reader.readLine() != null) count++;
+        reader.close();
+        return count;
+    }
 }
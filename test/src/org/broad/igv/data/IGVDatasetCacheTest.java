@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class IGVDatasetCacheTest extends AbstractHeadlessTest {
+
+    /**
+     * A dataset loaded from the cache must be identical to one read from the text file
+     */
+    @Test
+    public void testCompareToText() throws Exception {
+        compare(TestUtils.DATA_DIR + "igv/recombRate.igv.txt");
+        compare(TestUtils.DATA_DIR + "cn/multi_snp.cn");
+        compare(TestUtils.DATA_DIR + "cn/HindForGISTIC.hg16.cn");
+    }
+
+    private void compare(String path) throws Exception {
+
+        ResourceLocator locator = new ResourceLocator(path);
+        File cacheFile = new File(TestUtils.TMP_OUTPUT_DIR, new File(path).getName() + IGVDatasetCache.EXTENSION);
+        cacheFile.delete();
+
+        IGVDataset expected = new IGVDataset(locator, genome, null);
+
+        // The first load writes the cache, the second reads it
+        new IGVDataset(locator, genome, cacheFile);
+        assertNotNull(IGVDatasetCache.open(cacheFile, new File(path), genome));
+        IGVDataset actual = new IGVDataset(locator, genome, cacheFile);
+
+        assertArrayEquals(expected.getTrackNames(), actual.getTrackNames());
+        assertArrayEquals(expected.getChromosomes(), actual.getChromosomes());
+        assertEquals(expected.getDataMin(), actual.getDataMin(), 0);
+        assertEquals(expected.getDataMax(), actual.getDataMax(), 0);
+        assertEquals(expected.isLogNormalized(), actual.isLogNormalized());
+        assertEquals(expected.getType(), actual.getType());
+
+        for (String chr : expected.getChromosomes()) {
+            assertEquals(expected.getLongestFeature(chr), actual.getLongestFeature(chr));
+            assertArrayEquals(expected.getStartLocations(chr), actual.getStartLocations(chr));
+            assertArrayEquals(expected.getEndLocations(chr), actual.getEndLocations(chr));
+            assertArrayEquals(expected.getFeatureNames(chr), actual.getFeatureNames(chr));
+            for (String trackName : expected.getTrackNames()) {
+                float[] e = expected.getData(trackName, chr);
+                float[] a = actual.getData(trackName, chr);
+                assertTrue(path + " " + chr + " " + trackName, Arrays.equals(e, a));
+            }
+        }
+
+        if (expected.getGenomeSummary() != null) {
+            assertArrayEquals(expected.getGenomeSummary().getLocations(), actual.getGenomeSummary().getLocations());
+            for (String trackName : expected.getTrackNames()) {
+                assertTrue(Arrays.equals(expected.getGenomeSummary().getData(trackName),
+                        actual.getGenomeSummary().getData(trackName)));
+            }
+        }
+    }
+
+    /**
+     * A cache is not used once the source file changes
+     */
+    @Test
+    public void testStale() throws Exception {
+
+        File source = new File(TestUtils.TMP_OUTPUT_DIR, "cacheTest.cn");
+        FileWriter writer = new FileWriter(source);
+        writer.write("SNP\tChromosome\tPhysicalPosition\ts1\ts2\n");
+        writer.write("a\tchr1\t100\t1.5\t-1\n");
+        writer.write("b\tchr1\t200\t2.5\t-2\n");
+        writer.write("c\tchr2\t100\t3.5\t-3\n");
+        writer.close();
+
+        File cacheFile = new File(TestUtils.TMP_OUTPUT_DIR, "cacheTest.cn" + IGVDatasetCache.EXTENSION);
+        cacheFile.delete();
+        ResourceLocator locator = new ResourceLocator(source.getAbsolutePath());
+        new IGVDataset(locator, genome, cacheFile);
+        assertNotNull(IGVDatasetCache.open(cacheFile, source, genome));
+
+        writer = new FileWriter(source, true);
+        writer.write("d\tchr2\t200\t4.5\t-4\n");
+        writer.close();
+        assertNull(IGVDatasetCache.open(cacheFile, source, genome));
+
+        // The cache is rewritten on the next load
+        IGVDataset ds = new IGVDataset(locator, genome, cacheFile);
+        assertEquals(2, ds.getData("s2", "chr2").length);
+        assertNotNull(IGVDatasetCache.open(cacheFile, source, genome));
+        assertEquals(-4, new IGVDataset(locator, genome, cacheFile).getData("s2", "chr2")[1], 0);
+    }
+}
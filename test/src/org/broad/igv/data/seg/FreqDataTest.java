@@ -12,12 +12,18 @@
 package org.broad.igv.data.seg;
 
 import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author jrobinso
@@ -37,4 +43,73 @@ public class FreqDataTest extends AbstractHeadlessTest {
 
         FreqData fd = new FreqData(sd, genome);
     }
+
+    /**
+     * Compare the binned counts to counts computed bin by bin from the segments, before and after
+     * changing the thresholds and bin size.
+     */
+    @Test
+    public void testCounts() throws IOException {
+
+        ResourceLocator locator = new ResourceLocator(TestUtils.DATA_DIR + "seg/Broad.080528.subtypes.seg.gz");
+        SegmentedDataSet sd = new SegmentFileParser(locator).loadSegments(locator, genome);
+
+        FreqData fd = new FreqData(sd, genome);
+        checkCounts(fd, sd, FreqData.DEFAULT_BIN_SIZE, FreqData.DEFAULT_AMP_THRESHOLD, FreqData.DEFAULT_DEL_THRESHOLD);
+
+        fd.setParameters(1000000, -0.3f, 0.5f);
+        checkCounts(fd, sd, 1000000, 0.5f, -0.3f);
+    }
+
+    private void checkCounts(FreqData fd, SegmentedDataSet sd, int binSize, float ampThreshold, float delThreshold) {
+
+        int sizeInKB = (int) (genome.getNominalLength() / 1000);
+        int wgBinSize = sizeInKB / 700;
+
+        List<String> chrs = genome.getLongChromosomeNames();
+        float[][] expAmp = new float[chrs.size() + 1][];
+        float[][] expDel = new float[chrs.size() + 1][];
+        for (int c = 0; c <= chrs.size(); c++) {
+            String chr = c < chrs.size() ? chrs.get(c) : Globals.CHR_ALL;
+            expAmp[c] = new float[fd.getAmpCounts(chr).size()];
+            expDel[c] = new float[fd.getDelCounts(chr).size()];
+        }
+
+        boolean logNormalized = sd.isLogNormalized();
+        for (String sample : sd.getSampleNames()) {
+            for (int c = 0; c < chrs.size(); c++) {
+                List<LocusScore> segments = sd.getSegments(sample, chrs.get(c));
+                if (segments == null) continue;
+                for (LocusScore seg : segments) {
+                    float score = logNormalized ? seg.getScore() : (float) (Math.log(seg.getScore() / 2) / Globals.log2);
+                    float[][] exp = score > ampThreshold ? expAmp : (score < delThreshold ? expDel : null);
+                    if (exp == null) continue;
+                    float sign = exp == expAmp ? 1 : -1;
+
+                    for (int b = seg.getStart() / binSize; b <= seg.getEnd() / binSize && b < exp[c].length; b++) {
+                        exp[c][b] += sign * FreqData.weight(seg.getStart(), seg.getEnd(), b, binSize);
+                    }
+                    int gStart = genome.getGenomeCoordinate(chrs.get(c), seg.getStart());
+                    int gEnd = genome.getGenomeCoordinate(chrs.get(c), seg.getEnd());
+                    float[] wg = exp[chrs.size()];
+                    for (int b = gStart / wgBinSize; b <= gEnd / wgBinSize && b < wg.length; b++) {
+                        wg[b] += sign * FreqData.weight(gStart, gEnd, b, wgBinSize);
+                    }
+                }
+            }
+        }
+
+        float total = 0;
+        for (int c = 0; c <= chrs.size(); c++) {
+            String chr = c < chrs.size() ? chrs.get(c) : Globals.CHR_ALL;
+            List<LocusScore> amp = fd.getAmpCounts(chr);
+            List<LocusScore> del = fd.getDelCounts(chr);
+            for (int b = 0; b < expAmp[c].length; b++) {
+                assertEquals(chr + " " + b, expAmp[c][b], amp.get(b).getScore(), 1.0e-3);
+                assertEquals(chr + " " + b, expDel[c][b], del.get(b).getScore(), 1.0e-3);
+                total += expAmp[c][b] - expDel[c][b];
+            }
+        }
+        assertTrue(total > 0);
+    }
 }
@@ -21,11 +21,24 @@ import org.broad.tribble.AsciiFeatureCodec;
 import org.broad.tribble.Feature;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 public class SQLCodecSourceTest {
 
@@ -54,6 +67,39 @@ public class SQLCodecSourceTest {
         assertEquals(71, count);
     }
 
+    /**
+     * Prepared statements are closed on dispose and when the connection changes, and prepared again as needed
+     */
+    @Test
+    public void testCloseStatements() throws Exception {
+        String path = "sql/Unigene.unsorted.db";
+        SQLCodecSource reader = getUnigene(path);
+        reader.setFeatureWindowSize(Integer.MAX_VALUE / 2);
+
+        PreparedStatement statement = reader.getQueryStatement(false);
+        assertSame(statement, reader.getQueryStatement(false));
+        reader.dispose();
+        assertClosed(statement);
+        assertEquals(71, TestUtils.assertFeatureIteratorSorted(reader.getFeatures("chr2", 0, Integer.MAX_VALUE / 4)));
+
+        statement = reader.getQueryStatement(false);
+        DBManager.closeConnection(reader.locator);
+        assertNotSame(statement, reader.getQueryStatement(false));
+        assertClosed(statement);
+        assertEquals(71, TestUtils.assertFeatureIteratorSorted(reader.getFeatures("chr2", 0, Integer.MAX_VALUE / 4)));
+        reader.dispose();
+    }
+
+    // The sqlite driver does not implement isClosed
+    private static void assertClosed(PreparedStatement statement) {
+        try {
+            statement.executeQuery();
+            fail("Statement is open");
+        } catch (SQLException e) {
+            // Expected
+        }
+    }
+
     //Check that iterating returns sorted features
     @Test
     public void testIterateBEDUnsorted() throws Exception {
@@ -158,4 +204,83 @@ public class SQLCodecSourceTest {
         assertEquals(1, count);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Every feature overlapping an interval is in one of the bins returned by calculateBins
+     */
+    @Test
+    public void testCalculateBins() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            int start = random.nextInt(250000000);
+            int end = start + 1 + random.nextInt(2000000);
+            int[] bins = SQLCodecSource.calculateBins(start, end);
+            if (bins == null) continue;
+
+            int featStart = Math.max(0, start - random.nextInt(5000000));
+            int featEnd = Math.max(featStart + 1, Math.min(start + 1 + random.nextInt(5000000), 500000000));
+            int bin = SQLCodecSource.binFromRange(featStart, featEnd);
+            boolean found = false;
+            for (int b : bins) {
+                found |= b == bin;
+            }
+            assertTrue(featStart + "-" + featEnd + " in " + start + "-" + end, found);
+        }
+    }
+
+    /**
+     * Queries using the bin column return the same features as queries without it
+     */
+    @Test
+    public void testQueryBinned() throws Exception {
+
+        String dbName = "unigene.binned.db";
+        File dbFile = new File(TestUtils.TMP_OUTPUT_DIR, dbName);
+        dbFile.delete();
+        String url = DBManager.createConnectionURL("sqlite", new File(TestUtils.TMP_OUTPUT_DIR).getAbsolutePath(), dbName, null);
+        ResourceLocator locator = new ResourceLocator(url);
+
+        Connection conn = DBManager.getConnection(locator);
+        Statement st = conn.createStatement();
+        st.executeUpdate("CREATE TABLE unigene (bin INTEGER, chrom TEXT, chromStart INTEGER, chromEnd INTEGER, " +
+                "name TEXT, score TEXT, strand TEXT, thickStart TEXT, thickEnd TEXT, itemRgb TEXT, blockCount TEXT, " +
+                "blockSizes TEXT, blockStarts TEXT)");
+        st.close();
+        PreparedStatement insert = conn.prepareStatement("INSERT INTO unigene VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)");
+        BufferedReader reader = new BufferedReader(new FileReader(TestUtils.DATA_DIR + "bed/Unigene.sample.bed"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] tokens = line.split("\t");
+            insert.setInt(1, SQLCodecSource.binFromRange(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2])));
+            for (int i = 0; i < tokens.length; i++) {
+                insert.setString(i + 2, tokens[i]);
+            }
+            insert.executeUpdate();
+        }
+        reader.close();
+        insert.close();
+
+        DBProfile.DBTable table = new DBProfile.DBTable(locator, "unigene", "n/a", "bin", "chrom", "chromStart", "chromEnd", 2, Integer.MAX_VALUE, null, null, null);
+        SQLCodecSource binned = new SQLCodecSource(table, new IGVBEDCodec());
+        SQLCodecSource unbinned = getUnigene("sql/unigene.db");
+        binned.setFeatureWindowSize(Integer.MAX_VALUE);
+        unbinned.setFeatureWindowSize(Integer.MAX_VALUE);
+
+        Random random = new Random(2);
+        int nBinned = 0;
+        int nFeatures = 0;
+        for (int i = 0; i < 200; i++) {
+            int start = 178000000 + random.nextInt(3000000);
+            int end = start + 1 + random.nextInt(1500000);
+            if (SQLCodecSource.calculateBins(start, end) != null) nBinned++;
+            Iterator<Feature> expected = unbinned.getFeatures("chr2", start, end);
+            List<Feature> actual = new ArrayList<Feature>();
+            Iterator<Feature> iter = binned.getFeatures("chr2", start, end);
+            while (iter.hasNext()) actual.add(iter.next());
+            nFeatures += actual.size();
+            TestUtils.assertFeatureListsEqual(expected, actual.iterator());
+        }
+        assertTrue(nBinned > 100);
+        assertTrue(nFeatures > 200);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.feature;
+
+import org.broad.igv.track.FeatureSource;
+import org.broad.tribble.Feature;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachingFeatureSourceTest {
+
+    /**
+     * With prefetch on, panning by the width of the view is answered from bins loaded in the background
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+
+        CountingSource source = new CountingSource();
+        CachingFeatureSource cachingSource = new CachingFeatureSource(source, 100, 1000);
+        cachingSource.setPrefetch(true);
+
+        cachingSource.getFeatures("chr1", 20000, 29999);
+        AbstractCacher.awaitPrefetch();
+        assertEquals(3, source.queries.get());
+
+        // These queries are answered from the cache, and prefetch the next bins out
+        cachingSource.getFeatures("chr1", 30000, 39999);
+        AbstractCacher.awaitPrefetch();
+        assertEquals(4, source.queries.get());
+        Iterator iter = cachingSource.getFeatures("chr1", 10000, 19999);
+        AbstractCacher.awaitPrefetch();
+        assertEquals(5, source.queries.get());
+
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        assertEquals(100, count);
+
+        cachingSource = new CachingFeatureSource(source, 100, 1000);
+        cachingSource.getFeatures("chr1", 20000, 29999);
+        AbstractCacher.awaitPrefetch();
+        assertEquals(6, source.queries.get());
+    }
+
+    /**
+     * Queries answered from the cache do not wait for a prefetch in progress
+     */
+    @Test
+    public void testCachedQueryDuringPrefetch() throws Exception {
+
+        final CountDownLatch prefetchStarted = new CountDownLatch(1);
+        final CountDownLatch releasePrefetch = new CountDownLatch(1);
+        CountingSource source = new CountingSource() {
+            public Iterator getFeatures(String chr, int start, int end) throws IOException {
+                if (Thread.currentThread().getName().equals("BinPrefetch")) {
+                    prefetchStarted.countDown();
+                    try {
+                        releasePrefetch.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.getFeatures(chr, start, end);
+            }
+        };
+        final CachingFeatureSource cachingSource = new CachingFeatureSource(source, 100, 1000);
+        cachingSource.setPrefetch(true);
+
+        try {
+            cachingSource.getFeatures("chr1", 20000, 29999);
+            assertTrue(prefetchStarted.await(10, TimeUnit.SECONDS));
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            Future<Iterator> cached = executor.submit(new Callable<Iterator>() {
+                public Iterator call() throws Exception {
+                    return cachingSource.getFeatures("chr1", 21000, 28999);
+                }
+            });
+            assertTrue(cached.get(10, TimeUnit.SECONDS).hasNext());
+            executor.shutdown();
+        } finally {
+            releasePrefetch.countDown();
+            AbstractCacher.awaitPrefetch();
+        }
+        assertEquals(3, source.queries.get());
+    }
+
+    private static class CountingSource implements FeatureSource {
+
+        AtomicInteger queries = new AtomicInteger();
+
+        public Iterator getFeatures(String chr, int start, int end) throws IOException {
+            queries.incrementAndGet();
+            List<Feature> features = new ArrayList<Feature>();
+            for (int pos = start; pos < end; pos += 100) {
+                features.add(new BasicFeature(chr, pos, pos + 10));
+            }
+            return features.iterator();
+        }
+
+        public List<LocusScore> getCoverageScores(String chr, int start, int end, int zoom) {
+            return null;
+        }
+
+        public int getFeatureWindowSize() {
+            return Integer.MAX_VALUE;
+        }
+
+        public void setFeatureWindowSize(int size) {
+        }
+    }
+}
@@ -12,6 +12,7 @@
 package org.broad.igv.feature.exome;
 
 import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.tribble.CodecFactory;
 import org.broad.igv.ui.panel.ReferenceFrame;
@@ -99,6 +100,31 @@ public class ExomeUtilsTest extends AbstractHeadlessTest {
     }
 
 
+    @Test
+    public void testBlockIndex() {
+        ExomeReferenceFrame.ExomeData exomeData = frame.getExomeData("chr6");
+        List<ExomeBlock> blocks = frame.getBlocks("chr6");
+        for (ExomeBlock b : blocks) {
+            for (int offset : new int[]{0, b.getLength() / 2, b.getLength() - 1}) {
+                assertEquals(b.getExomeStart() + offset, exomeData.genomeToExomePosition(b.getGenomeStart() + offset));
+                assertEquals(b.getGenomeStart() + offset, exomeData.exomeToGenomePosition(b.getExomeStart() + offset));
+            }
+            assertEquals(b.getIdx(), exomeData.getBlockIndexForGenomePosition(b.getGenomeStart()));
+            assertEquals(b.getIdx(), exomeData.getBlockIndexForExomePosition(b.getExomeEnd() - 1));
+        }
+
+        // Past the end of the exome
+        ExomeBlock last = blocks.get(blocks.size() - 1);
+        assertEquals(last.getGenomeEnd(), exomeData.exomeToGenomePosition(last.getExomeEnd() + 100));
+
+        List<ExomeReferenceFrame.Gene> genes = frame.getGenes("chr6");
+        for (ExomeReferenceFrame.Gene gene : genes) {
+            for (int position : new int[]{gene.getStart() - 1, gene.getStart(), gene.getStart() + 1}) {
+                assertEquals(FeatureUtils.getIndexBefore(position, genes), exomeData.getGeneIndexBefore(position));
+            }
+        }
+    }
+
     static Map<String, List<Feature>> loadTestFeatures() throws IOException {
 
         Map<String, List<Feature>> allFeatures = new HashMap<String, List<Feature>>();
@@ -74,4 +74,52 @@ public class MAFParserTest {
         (new File(indexFile)).delete();
 
     }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+
+        String mafFile = TestUtils.DATA_DIR + "maf/ucscSample.maf";
+        new File(TestUtils.TMP_OUTPUT_DIR).mkdirs();
+        String binaryFile = TestUtils.TMP_OUTPUT_DIR + "ucscSample" + MAFBinaryCodec.EXTENSION;
+
+        MAFIndex.blockSize = 2;
+
+        MAFBinaryWriter.convert(mafFile, binaryFile);
+
+        MAFParser parser = new MAFParser(mafFile);
+        MAFBinaryReader binaryReader = new MAFBinaryReader(binaryFile);
+
+        assertEquals(parser.getTrackName(), binaryReader.getTrackName());
+        Assert.assertArrayEquals(parser.getSpecies().toArray(), binaryReader.getSpecies().toArray());
+
+        List<MultipleAlignmentBlock> expected = parser.loadAlignments("chr1", 0, 1000000);
+        List<MultipleAlignmentBlock> actual = binaryReader.loadAlignments("chr1", 0, 1000000);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            MultipleAlignmentBlock e = expected.get(i);
+            MultipleAlignmentBlock a = actual.get(i);
+            assertEquals(e.getKey(), a.getKey());
+            assertEquals(e.getGaps().size(), a.getGaps().size());
+            assertEquals(e.getSequences().size(), a.getSequences().size());
+            for (int j = 0; j < e.getSequences().size(); j++) {
+                MultipleAlignmentBlock.Sequence es = e.getSequences().get(j);
+                MultipleAlignmentBlock.Sequence as = a.getSequences().get(j);
+                assertEquals(es.getChr(), as.getChr());
+                assertEquals(es.getStart(), as.getStart());
+                assertEquals(es.getSize(), as.getSize());
+                assertEquals(es.getStrand(), as.getStrand());
+                assertEquals(es.getSrcSize(), as.getSrcSize());
+                assertEquals(es.getText(), as.getText());
+            }
+        }
+
+        // Query restricted to the last block
+        List<MultipleAlignmentBlock> last = binaryReader.loadAlignments("chr1", 43219, 43220);
+        assertEquals(1, last.size());
+        assertEquals(43219, last.get(0).getStart());
+
+        (new File(mafFile + ".index")).delete();
+        (new File(binaryFile)).delete();
+        (new File(binaryFile + ".index")).delete();
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.track.RenderContextImpl;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentRendererTest extends AbstractHeadlessTest {
+
+    private static final int WIDTH = 800;
+
+    /**
+     * The raster path must produce exactly the pixels of the Graphics2D path.  Paired and spliced reads
+     * (cufflinks_test_data.sam) and zero quality reads with deletions (test_2.sam) are rendered at several scales, row
+     * heights, and color options.  Taller rows, drawn with strand arrows, are not rasterized.
+     */
+    @Test
+    public void testRasterEquivalence() throws Exception {
+
+        for (String file : new String[]{"sam/cufflinks_test_data.sam", "sam/test_2.sam"}) {
+
+            List<Alignment> alignments = loadAlignments(TestUtils.DATA_DIR + file);
+            assertTrue(alignments.size() > 100);
+
+            Map<String, Color> selectedReadNames = new HashMap<String, Color>();
+            selectedReadNames.put(alignments.get(10).getReadName(), Color.green);
+            selectedReadNames.put(alignments.get(20).getReadName(), null);
+
+            int minStart = Integer.MAX_VALUE;
+            for (Alignment a : alignments) {
+                minStart = Math.min(minStart, a.getStart());
+            }
+
+            for (double scale : new double[]{5, 7.3, 30}) {
+                List<List<Alignment>> rows = packRows(alignments, scale);
+                for (int rowHeight : new int[]{3, 4, 10, 12}) {
+                    for (AlignmentTrack.ColorOption colorOption : new AlignmentTrack.ColorOption[]{
+                            AlignmentTrack.ColorOption.INSERT_SIZE, AlignmentTrack.ColorOption.READ_STRAND}) {
+
+                        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+                        renderOptions.setColorOption(colorOption);
+                        renderOptions.flagUnmappedPairs = true;
+                        boolean leaveMargin = rowHeight > 10;
+                        double origin = minStart - 20 * scale;
+
+                        BufferedImage expected = render(rows, origin, scale, rowHeight, renderOptions, leaveMargin,
+                                selectedReadNames, false);
+                        BufferedImage actual = render(rows, origin, scale, rowHeight, renderOptions, leaveMargin,
+                                selectedReadNames, true);
+                        assertSamePixels(file + " scale=" + scale + " rowHeight=" + rowHeight + " " + colorOption,
+                                expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCanRasterize() throws Exception {
+        BufferedImage image = new BufferedImage(WIDTH, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+
+        assertTrue(AlignmentRenderer.canRasterize(new TestContext(g, 0, 10), renderOptions, 8));
+
+        // Bases are drawn when zoomed in, arrows on tall rows
+        assertFalse(AlignmentRenderer.canRasterize(new TestContext(g, 0, 1), renderOptions, 8));
+        assertFalse(AlignmentRenderer.canRasterize(new TestContext(g, 0, 10), renderOptions, 12));
+
+        g.scale(2, 2);
+        assertFalse(AlignmentRenderer.canRasterize(new TestContext(g, 0, 10), renderOptions, 8));
+    }
+
+    private BufferedImage render(List<List<Alignment>> rows, double origin, double scale, int rowHeight,
+                                 AlignmentTrack.RenderOptions renderOptions, boolean leaveMargin,
+                                 Map<String, Color> selectedReadNames, boolean useRaster) {
+
+        int height = rows.size() * rowHeight;
+        BufferedImage image = new BufferedImage(WIDTH, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.white);
+        g.fillRect(0, 0, WIDTH, height);
+        Rectangle trackRect = new Rectangle(0, 0, WIDTH, height);
+        g.setClip(trackRect);
+
+        TestContext context = new TestContext(g, origin, scale);
+        AlignmentRenderer renderer = AlignmentRenderer.getInstance();
+        AlignmentRaster raster = null;
+        if (useRaster) {
+            int alignmentHeight = leaveMargin ? rowHeight - 2 : rowHeight;
+            assertTrue(AlignmentRenderer.canRasterize(context, renderOptions, alignmentHeight));
+            raster = new AlignmentRaster(trackRect);
+        }
+
+        int y = 0;
+        for (List<Alignment> row : rows) {
+            Rectangle rowRect = new Rectangle(0, y, WIDTH, rowHeight);
+            if (useRaster) {
+                renderer.renderAlignments(row, context, raster, rowRect, trackRect, renderOptions, leaveMargin, selectedReadNames);
+            } else {
+                renderer.renderAlignments(row, context, rowRect, trackRect, renderOptions, leaveMargin, selectedReadNames);
+            }
+            y += rowHeight;
+        }
+        if (useRaster) {
+            raster.drawTo(g);
+            raster.dispose();
+        }
+        context.dispose();
+        g.dispose();
+        return image;
+    }
+
+    private static void assertSamePixels(String message, BufferedImage expected, BufferedImage actual) {
+        int nonWhite = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                assertEquals(message + " pixel " + x + "," + y, Integer.toHexString(e), Integer.toHexString(actual.getRGB(x, y)));
+                if (e != Color.white.getRGB()) nonWhite++;
+            }
+        }
+        assertTrue(message, nonWhite > 0);
+    }
+
+    private static List<Alignment> loadAlignments(String path) throws Exception {
+        AlignmentReader reader = AlignmentReaderFactory.getReader(path, false);
+        List<Alignment> alignments = new ArrayList<Alignment>();
+        Map<String, Alignment> unpairedMates = new HashMap<String, Alignment>();
+        CloseableIterator<Alignment> iter = reader.iterator();
+        while (iter.hasNext()) {
+            Alignment a = iter.next();
+            if (!a.isMapped()) continue;
+
+            // Combine every other pair into a PairedAlignment
+            Alignment mate = unpairedMates.remove(a.getReadName());
+            if (mate != null && alignments.size() % 2 == 0) {
+                alignments.remove(mate);
+                PairedAlignment pair = new PairedAlignment(mate);
+                pair.setSecondAlignment(a);
+                alignments.add(pair);
+            } else {
+                if (a.isPaired()) unpairedMates.put(a.getReadName(), a);
+                alignments.add(a);
+            }
+        }
+        iter.close();
+        reader.close();
+
+        Collections.sort(alignments, new Comparator<Alignment>() {
+            public int compare(Alignment o1, Alignment o2) {
+                return o1.getStart() - o2.getStart();
+            }
+        });
+        return alignments;
+    }
+
+    /**
+     * Pack alignments into rows, allowing neighbors in a row to share a pixel column
+     */
+    private static List<List<Alignment>> packRows(List<Alignment> alignments, double scale) {
+        List<List<Alignment>> rows = new ArrayList<List<Alignment>>();
+        List<Integer> rowEnds = new ArrayList<Integer>();
+        int minGap = (int) (2 * scale);
+        for (Alignment a : alignments) {
+            int idx = -1;
+            for (int i = 0; i < rowEnds.size(); i++) {
+                if (rowEnds.get(i) + minGap <= a.getStart()) {
+                    idx = i;
+                    break;
+                }
+            }
+            if (idx < 0) {
+                rows.add(new ArrayList<Alignment>());
+                rowEnds.add(0);
+                idx = rows.size() - 1;
+            }
+            rows.get(idx).add(a);
+            rowEnds.set(idx, a.getEnd());
+        }
+        return rows;
+    }
+
+    /**
+     * A render context with a fixed origin and scale
+     */
+    private static class TestContext extends RenderContextImpl {
+
+        double origin;
+        double scale;
+
+        TestContext(Graphics2D graphics, double origin, double scale) {
+            super(null, graphics, null, null);
+            this.origin = origin;
+            this.scale = scale;
+        }
+
+        @Override
+        public double getOrigin() {
+            return origin;
+        }
+
+        @Override
+        public double getScale() {
+            return scale;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AlignmentTilePoolTest extends AbstractHeadlessTest {
+
+    /**
+     * A tile is loaded once for all requests it contains, and removed when the last reference is released
+     */
+    @Test
+    public void testReferenceCounting() throws Exception {
+
+        final AtomicInteger loads = new AtomicInteger();
+        AlignmentTilePool.TileLoader loader = new AlignmentTilePool.TileLoader() {
+            public AlignmentTileLoader.AlignmentTile loadTile(int start, int end) {
+                loads.incrementAndGet();
+                AlignmentTileLoader.AlignmentTile t = new AlignmentTileLoader.AlignmentTile(start, end, null,
+                        new AlignmentDataManager.DownsampleOptions(), null);
+                t.setLoaded(true);
+                return t;
+            }
+        };
+
+        List<Object> key = Arrays.<Object>asList("testReferenceCounting.bam", "chr1");
+        int size = AlignmentTilePool.size();
+
+        AlignmentTilePool.Entry e1 = AlignmentTilePool.acquire(key, 1000, 5000, null, loader);
+        AlignmentTilePool.Entry e2 = AlignmentTilePool.acquire(key, 2000, 3000, null, loader);
+        assertSame(e1, e2);
+        assertEquals(1, loads.get());
+        assertEquals(size + 1, AlignmentTilePool.size());
+
+        // Not contained, and a different key
+        AlignmentTilePool.Entry e3 = AlignmentTilePool.acquire(key, 4000, 6000, null, loader);
+        AlignmentTilePool.Entry e4 = AlignmentTilePool.acquire(Arrays.<Object>asList("testReferenceCounting.bam", "chr2"),
+                1000, 5000, null, loader);
+        assertNotSame(e1, e3);
+        assertNotSame(e1, e4);
+        assertEquals(3, loads.get());
+
+        AlignmentTilePool.release(e1);
+        assertSame(e1, AlignmentTilePool.acquire(key, 1000, 5000, null, loader));
+        AlignmentTilePool.release(e1);
+        AlignmentTilePool.release(e2);
+        AlignmentTilePool.release(e3);
+        AlignmentTilePool.release(e4);
+        assertEquals(size, AlignmentTilePool.size());
+
+        AlignmentTilePool.acquire(key, 1000, 5000, null, loader);
+        assertEquals(4, loads.get());
+    }
+
+    /**
+     * A tile whose load throws is removed from the pool, the next request loads it again
+     */
+    @Test
+    public void testLoadError() throws Exception {
+
+        final AtomicInteger loads = new AtomicInteger();
+        AlignmentTilePool.TileLoader loader = new AlignmentTilePool.TileLoader() {
+            public AlignmentTileLoader.AlignmentTile loadTile(int start, int end) {
+                if (loads.incrementAndGet() == 1) {
+                    throw new RuntimeException("Load error");
+                }
+                AlignmentTileLoader.AlignmentTile t = new AlignmentTileLoader.AlignmentTile(start, end, null,
+                        new AlignmentDataManager.DownsampleOptions(), null);
+                t.setLoaded(true);
+                return t;
+            }
+        };
+
+        List<Object> key = Arrays.<Object>asList("testLoadError.bam", "chr1");
+        int size = AlignmentTilePool.size();
+
+        try {
+            AlignmentTilePool.acquire(key, 1000, 5000, null, loader);
+            fail("Expected the load error");
+        } catch (RuntimeException e) {
+            assertEquals("Load error", e.getMessage());
+        }
+        assertEquals(size, AlignmentTilePool.size());
+
+        AlignmentTilePool.Entry entry = AlignmentTilePool.acquire(key, 1000, 5000, null, loader);
+        assertEquals(2, loads.get());
+        assertEquals(size + 1, AlignmentTilePool.size());
+        AlignmentTilePool.release(entry);
+        assertEquals(size, AlignmentTilePool.size());
+    }
+
+    /**
+     * Data managers for the same file share reads and counts, but each interval is packed separately
+     */
+    @Test
+    public void testSharedIntervals() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "sam/NA12878.muc1.test.sam";
+        TestUtils.createIndex(path);
+        AlignmentDataManager m1 = new AlignmentDataManager(new ResourceLocator(path), genome);
+        AlignmentDataManager m2 = new AlignmentDataManager(new ResourceLocator(path), genome);
+
+        int size = AlignmentTilePool.size();
+        AlignmentInterval i1 = AlignmentDataManagerTest.loadInterval(m1, "chr1", 153425000, 153430000);
+        AlignmentInterval i2 = AlignmentDataManagerTest.loadInterval(m2, "chr1", 153426000, 153429000);
+        assertEquals(size + 1, AlignmentTilePool.size());
+
+        assertSame(i1.getCounts(), i2.getCounts());
+        assertNotSame(i1.getGroupedAlignments(), i2.getGroupedAlignments());
+        assertNotSame(i1.getSpliceJunctionHelper(), i2.getSpliceJunctionHelper());
+        assertTrue(i2.contains("chr1", 153426000, 153429000));
+
+        int count1 = count(i1);
+        assertTrue(count1 > 0);
+        assertEquals(count1, count(i2));
+
+        AlignmentTilePool.release(i1.getPoolEntry());
+        AlignmentTilePool.release(i2.getPoolEntry());
+        assertEquals(size, AlignmentTilePool.size());
+    }
+
+    private static int count(AlignmentInterval interval) {
+        int count = 0;
+        for (List<AlignmentInterval.Row> rows : interval.getGroupedAlignments().values()) {
+            for (AlignmentInterval.Row row : rows) {
+                count += row.alignments.size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CoverageSummaryTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testGetBinSize() throws Exception {
+        assertEquals(2, CoverageSummary.getBinSize(2));
+        assertEquals(2, CoverageSummary.getBinSize(3.9));
+        assertEquals(4, CoverageSummary.getBinSize(4));
+        assertEquals(32, CoverageSummary.getBinSize(50));
+    }
+
+    /**
+     * Every level must agree with a direct scan of the counts
+     */
+    @Test
+    public void testLevels() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "sam/test_2.sam";
+        AlignmentReader reader = AlignmentReaderFactory.getReader(path, false);
+        CloseableIterator<Alignment> iter = reader.iterator();
+        Alignment first = iter.next();
+        String chr = first.getChr();
+        int start = first.getStart();
+        int end = start + 5000;
+        DenseAlignmentCounts counts = new DenseAlignmentCounts(start, end, null);
+        counts.incCounts(first);
+        while (iter.hasNext()) {
+            Alignment a = iter.next();
+            if (a.isMapped() && a.getChr().equals(chr) && a.getEnd() < end) {
+                counts.incCounts(a);
+            }
+        }
+        iter.close();
+        reader.close();
+        counts.finish();
+
+        // A reference of all 'a' gives a mix of matching and mismatching positions
+        byte[] refBases = new byte[end - start];
+        Arrays.fill(refBases, (byte) 'a');
+        float snpThreshold = 0.2f;
+
+        CoverageSummary summary = new CoverageSummary(counts, chr, refBases, snpThreshold, false);
+        assertTrue(summary.isCurrent(snpThreshold, false));
+        assertFalse(summary.isCurrent(0.5f, false));
+
+        int nMismatches = 0;
+        for (int binSize = 2; binSize <= 1024; binSize *= 2) {
+            CoverageSummary.Level level = summary.getLevel(binSize);
+            assertEquals(binSize, level.getBinSize());
+            for (int bin = 0; bin < level.getBinCount(); bin++) {
+                int maxTotal = 0;
+                float maxFraction = -1;
+                int mismatchPos = -1;
+                int binStart = start + bin * binSize;
+                for (int pos = binStart; pos < Math.min(end, binStart + binSize); pos++) {
+                    int total = counts.getTotalCount(pos);
+                    maxTotal = Math.max(maxTotal, total);
+                    if (total > 0 && counts.isMismatch(pos, (byte) 'a', chr, snpThreshold)) {
+                        float fraction = 1 - ((float) counts.getCount(pos, (byte) 'a')) / total;
+                        if (fraction > maxFraction) {
+                            maxFraction = fraction;
+                            mismatchPos = pos;
+                        }
+                    }
+                }
+                assertEquals("max " + binSize + " " + bin, maxTotal, level.getMaxTotal(bin));
+                assertEquals("mismatch " + binSize + " " + bin, mismatchPos, level.getMismatchPosition(bin));
+                if (binSize == 2 && mismatchPos >= 0) nMismatches++;
+            }
+        }
+        assertTrue(nMismatches > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBinSize() throws Exception {
+        DenseAlignmentCounts counts = new DenseAlignmentCounts(0, 100, null);
+        new CoverageSummary(counts, "chr1", null, 0.2f, false).getLevel(6);
+    }
+}
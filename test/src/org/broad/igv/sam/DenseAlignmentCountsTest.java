@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DenseAlignmentCountsTest extends AbstractHeadlessTest {
+
+    private static final byte[] BASES = {'a', 'c', 'g', 't', 'n'};
+
+    /**
+     * The packed counts must agree with SparseAlignmentCounts, which keeps an int per count
+     */
+    @Test
+    public void testCompareToSparse() throws Exception {
+        List<Alignment> alignments = loadAlignments(TestUtils.DATA_DIR + "sam/test_2.sam");
+        String chr = alignments.get(0).getChr();
+        int start = alignments.get(0).getStart();
+        int end = start + 5000;
+
+        DenseAlignmentCounts dense = new DenseAlignmentCounts(start, end, null);
+        SparseAlignmentCounts sparse = new SparseAlignmentCounts(start, end, null);
+        for (Alignment a : alignments) {
+            if (a.getChr().equals(chr)) {
+                dense.incCounts(a);
+                sparse.incCounts(a);
+            }
+        }
+        dense.finish();
+        sparse.finish();
+
+        int nCovered = 0;
+        for (int pos = start; pos < end; pos++) {
+            String msg = "pos " + pos;
+            assertEquals(msg, sparse.getTotalCount(pos), dense.getTotalCount(pos));
+            assertEquals(msg, sparse.getPosTotal(pos), dense.getPosTotal(pos));
+            assertEquals(msg, sparse.getNegTotal(pos), dense.getNegTotal(pos));
+            assertEquals(msg, sparse.getTotalQuality(pos), dense.getTotalQuality(pos));
+            assertEquals(msg, sparse.getDelCount(pos), dense.getDelCount(pos));
+            assertEquals(msg, sparse.getInsCount(pos), dense.getInsCount(pos));
+            for (byte b : BASES) {
+                assertEquals(msg, sparse.getCount(pos, b), dense.getCount(pos, b));
+                assertEquals(msg, sparse.getPosCount(pos, b), dense.getPosCount(pos, b));
+                assertEquals(msg, sparse.getNegCount(pos, b), dense.getNegCount(pos, b));
+                assertEquals(msg, sparse.getQuality(pos, b), dense.getQuality(pos, b));
+            }
+            if (dense.getTotalCount(pos) > 0) nCovered++;
+        }
+        assertEquals(sparse.getNumberOfPoints(), nCovered);
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        DenseAlignmentCounts counts = new DenseAlignmentCounts(100, 200, null);
+        int n = 3 * DenseAlignmentCounts.OVERFLOW;
+        for (int i = 0; i < n; i++) {
+            counts.incPositionCount(150, (byte) 'G', (byte) 30, false);
+            counts.incPositionCount(150, (byte) 'A', (byte) 20, true);
+        }
+        counts.incPositionCount(150, (byte) 'a', (byte) 20, false);
+
+        assertEquals(n, counts.getCount(150, (byte) 'g'));
+        assertEquals(n, counts.getPosCount(150, (byte) 'g'));
+        assertEquals(n + 1, counts.getCount(150, (byte) 'a'));
+        assertEquals(n, counts.getNegCount(150, (byte) 'a'));
+        assertEquals(n + 1, counts.getPosTotal(150));
+        assertEquals(2 * n + 1, counts.getTotalCount(150));
+        assertEquals(30 * n, counts.getQuality(150, (byte) 'g'));
+        assertEquals(50 * n + 20, counts.getTotalQuality(150));
+        assertEquals(2 * n + 1, counts.getMaxCount(100, 200));
+        assertEquals(0, counts.getTotalCount(151));
+    }
+
+    static List<Alignment> loadAlignments(String path) throws Exception {
+        AlignmentReader reader = AlignmentReaderFactory.getReader(path, false);
+        List<Alignment> alignments = new ArrayList<Alignment>();
+        CloseableIterator<Alignment> iter = reader.iterator();
+        while (iter.hasNext()) {
+            Alignment a = iter.next();
+            if (a.isMapped()) alignments.add(a);
+        }
+        iter.close();
+        reader.close();
+        return alignments;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
+
+import java.util.List;
+
+/**
+ * Time incCounts and measure the heap footprint of DenseAlignmentCounts, compared to SparseAlignmentCounts.
+ * Run from main, this is not a unit test.
+ */
+@Ignore
+public class DenseAlignmentCountsTiming {
+
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : TestUtils.DATA_DIR + "sam/NA12878.muc1.test.sam";
+        int nTrials = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        List<Alignment> alignments = DenseAlignmentCountsTest.loadAlignments(path);
+        String chr = alignments.get(0).getChr();
+        int start = alignments.get(0).getStart();
+        int end = alignments.get(alignments.size() - 1).getEnd() + 1;
+
+        // Warm up both implementations before timing
+        count(new DenseAlignmentCounts(start, end, null), alignments, chr);
+        count(new SparseAlignmentCounts(start, end, null), alignments, chr);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < nTrials; i++) {
+            count(new DenseAlignmentCounts(start, end, null), alignments, chr);
+        }
+        long denseTime = System.nanoTime() - t0;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < nTrials; i++) {
+            count(new SparseAlignmentCounts(start, end, null), alignments, chr);
+        }
+        long sparseTime = System.nanoTime() - t0;
+
+        System.out.println(String.format("incCounts, %d alignments x %d: dense %2.2e sec, sparse %2.2e sec",
+                alignments.size(), nTrials, denseTime / 1e9, sparseTime / 1e9));
+
+        int nPts = end - start;
+        long before = usedMemory();
+        AlignmentCounts dense = count(new DenseAlignmentCounts(start, end, null), alignments, chr);
+        long afterDense = usedMemory();
+        AlignmentCounts sparse = count(new SparseAlignmentCounts(start, end, null), alignments, chr);
+        long afterSparse = usedMemory();
+        System.out.println(String.format("Footprint: dense %.1f bytes per position, sparse %.1f bytes per position",
+                ((double) (afterDense - before)) / nPts, ((double) (afterSparse - afterDense)) / nPts));
+        // Keeps both instances reachable until measured
+        System.out.println("Positions: dense " + dense.getNumberOfPoints() + ", sparse " + sparse.getNumberOfPoints());
+    }
+
+    private static AlignmentCounts count(AlignmentCounts counts, List<Alignment> alignments, String chr) {
+        for (Alignment a : alignments) {
+            if (a.getChr().equals(chr)) counts.incCounts(a);
+        }
+        counts.finish();
+        return counts;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
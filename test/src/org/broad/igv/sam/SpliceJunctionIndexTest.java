@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.sam.reader.AlignmentFilter;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.track.TribbleFeatureSource;
+import org.broad.igv.util.TestUtils;
+import org.broad.tribble.Feature;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class SpliceJunctionIndexTest extends AbstractHeadlessTest {
+
+    private static final String SAM_FILE = TestUtils.DATA_DIR + "sam/cufflinks_test_data.sam";
+
+    /**
+     * Junctions read from the index must match those extracted from the loaded alignments
+     */
+    @Test
+    public void testBuild() throws Exception {
+
+        File junctionFile = new File(TestUtils.TMP_OUTPUT_DIR, "cufflinks_test_data" + SpliceJunctionIndex.EXTENSION);
+        AlignmentFilter filter = AlignmentFilter.fromPreferences();
+        int count = SpliceJunctionIndex.build(SAM_FILE, junctionFile, 0, filter);
+        assertTrue(count > 0);
+        assertTrue(SpliceJunctionIndex.isCurrent(junctionFile, new File(SAM_FILE), 0, filter));
+        assertFalse(SpliceJunctionIndex.isCurrent(junctionFile, new File(TestUtils.DATA_DIR + "sam/has_padding.sam"), 0, filter));
+
+        // Junctions extracted with other options are not current
+        assertFalse(SpliceJunctionIndex.isCurrent(junctionFile, new File(SAM_FILE), 5, filter));
+        assertFalse(SpliceJunctionIndex.isCurrent(junctionFile, new File(SAM_FILE), 0,
+                new AlignmentFilter(true, true, false, 0, null)));
+        assertFalse(SpliceJunctionIndex.isCurrent(junctionFile, new File(SAM_FILE), 0,
+                new AlignmentFilter(false, true, false, 10, null)));
+
+        compare(extractJunctions(SAM_FILE, "test_chromosome", 0), readJunctions(junctionFile, "test_chromosome"));
+    }
+
+    /**
+     * Many overlapping junctions on both strands and two chromosomes, so junctions are written while others are open
+     */
+    @Test
+    public void testGenerated() throws Exception {
+
+        File samFile = new File(TestUtils.TMP_OUTPUT_DIR, "junctionTest.sam");
+        PrintWriter pw = new PrintWriter(new FileWriter(samFile));
+        pw.println("@HD\tVN:1.0\tSO:coordinate");
+        pw.println("@SQ\tSN:chr1\tLN:247249719");
+        pw.println("@SQ\tSN:chr2\tLN:242951149");
+        Random random = new Random(1);
+        int[] intronStarts = {1000, 1040, 1100, 5000, 5010};
+        int[] intronLengths = {200, 500, 50, 3000, 20};
+        String bases = "";
+        for (int i = 0; i < 60; i++) bases += "A";
+        for (String chr : new String[]{"chr1", "chr2"}) {
+            TreeMap<Integer, List<String>> records = new TreeMap<Integer, List<String>>();
+            for (int i = 0; i < 400; i++) {
+                int n = random.nextInt(intronStarts.length);
+                int first = 1 + random.nextInt(58);
+                int start = intronStarts[n] - first;
+                String cigar = first + "M" + intronLengths[n] + "N" + (60 - first) + "M";
+                String xs = random.nextBoolean() ? "+" : "-";
+                List<String> list = records.get(start);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    records.put(start, list);
+                }
+                list.add("r" + i + "\t0\t" + chr + "\t" + (start + 1) + "\t60\t" + cigar + "\t*\t0\t0\t" +
+                        bases + "\t*\tXS:A:" + xs);
+            }
+            for (List<String> list : records.values()) {
+                for (String record : list) {
+                    pw.println(record);
+                }
+            }
+        }
+        pw.close();
+
+        File junctionFile = new File(TestUtils.TMP_OUTPUT_DIR, "junctionTest" + SpliceJunctionIndex.EXTENSION);
+        for (int minFlankingWidth : new int[]{0, 20}) {
+            SpliceJunctionIndex.build(samFile.getAbsolutePath(), junctionFile, minFlankingWidth,
+                    AlignmentFilter.fromPreferences());
+            for (String chr : new String[]{"chr1", "chr2"}) {
+                List<SpliceJunctionFeature> expected = extractJunctions(samFile.getAbsolutePath(), chr, minFlankingWidth);
+                assertTrue(expected.size() > 5);
+                compare(expected, readJunctions(junctionFile, chr));
+            }
+        }
+    }
+
+    /**
+     * Soft clipped blocks, when shown, have gaps of their own which must not shift the gap types of later blocks
+     */
+    @Test
+    public void testSoftClipped() throws Exception {
+
+        PreferenceManager prefs = PreferenceManager.getInstance();
+        String showSoftClipped = prefs.get(PreferenceManager.SAM_SHOW_SOFT_CLIPPED);
+        prefs.put(PreferenceManager.SAM_SHOW_SOFT_CLIPPED, "true");
+        try {
+            File samFile = new File(TestUtils.TMP_OUTPUT_DIR, "junctionSoftClipTest.sam");
+            PrintWriter pw = new PrintWriter(new FileWriter(samFile));
+            pw.println("@HD\tVN:1.0\tSO:coordinate");
+            pw.println("@SQ\tSN:chr1\tLN:247249719");
+            String bases = "";
+            for (int i = 0; i < 105; i++) bases += "A";
+            pw.println("r1\t0\tchr1\t1001\t60\t5S50M1000N50M\t*\t0\t0\t" + bases + "\t*\tXS:A:+");
+            pw.println("r2\t0\tchr1\t1001\t60\t5S30M10D30M200N40M\t*\t0\t0\t" + bases + "\t*\tXS:A:+");
+            pw.close();
+
+            File junctionFile = new File(TestUtils.TMP_OUTPUT_DIR, "junctionSoftClipTest" + SpliceJunctionIndex.EXTENSION);
+            SpliceJunctionIndex.build(samFile.getAbsolutePath(), junctionFile, 0, AlignmentFilter.fromPreferences());
+            List<SpliceJunctionFeature> junctions = readJunctions(junctionFile, "chr1");
+
+            assertEquals(2, junctions.size());
+            assertEquals(1050, junctions.get(0).getJunctionStart());
+            assertEquals(2050, junctions.get(0).getJunctionEnd());
+            assertEquals(1070, junctions.get(1).getJunctionStart());
+            assertEquals(1270, junctions.get(1).getJunctionEnd());
+        } finally {
+            prefs.put(PreferenceManager.SAM_SHOW_SOFT_CLIPPED, showSoftClipped);
+        }
+    }
+
+    private List<SpliceJunctionFeature> readJunctions(File junctionFile, String chr) throws Exception {
+        TribbleFeatureSource source = new TribbleFeatureSource(junctionFile.getAbsolutePath(), genome, false);
+        Iterator<Feature> iter = source.getFeatures(chr, 0, 1000000);
+        List<SpliceJunctionFeature> actual = new ArrayList<SpliceJunctionFeature>();
+        int lastStart = -1;
+        while (iter.hasNext()) {
+            SpliceJunctionFeature f = (SpliceJunctionFeature) iter.next();
+            assertTrue(f.getStart() >= lastStart);
+            lastStart = f.getStart();
+            actual.add(f);
+        }
+        return actual;
+    }
+
+    private void compare(List<SpliceJunctionFeature> expected, List<SpliceJunctionFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (SpliceJunctionFeature e : expected) {
+            SpliceJunctionFeature match = null;
+            for (SpliceJunctionFeature a : actual) {
+                if (a.isSameJunction(e) && a.getStrand() == e.getStrand()) {
+                    match = a;
+                    break;
+                }
+            }
+            assertNotNull(e.getJunctionStart() + "-" + e.getJunctionEnd(), match);
+            assertEquals(e.getJunctionDepth(), match.getJunctionDepth());
+            assertEquals(e.getStart(), match.getStart());
+            assertEquals(e.getEnd(), match.getEnd());
+            assertEquals(e.getChr(), match.getChr());
+        }
+    }
+
+    private List<SpliceJunctionFeature> extractJunctions(String path, String chr, int minFlankingWidth) throws Exception {
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(new SpliceJunctionHelper.LoadOptions(1, minFlankingWidth));
+        AlignmentReader reader = AlignmentReaderFactory.getReader(path, false);
+        CloseableIterator<Alignment> iter = reader.iterator();
+        while (iter.hasNext()) {
+            Alignment alignment = iter.next();
+            if (alignment.isMapped() && !alignment.isDuplicate() && !alignment.isVendorFailedRead() &&
+                    alignment.getChr().equals(chr)) {
+                helper.addAlignment(alignment);
+            }
+        }
+        iter.close();
+        reader.close();
+        helper.finish();
+        return helper.getFilteredJunctions();
+    }
+}
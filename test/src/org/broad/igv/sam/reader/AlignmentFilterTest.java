@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.SAMFileReader;
+import net.sf.samtools.SAMRecord;
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AlignmentFilterTest {
+
+    private static final String SAM_FILE = TestUtils.DATA_DIR + "sam/NA12878.muc1.test.sam";
+
+    /**
+     * Filtering raw records must reject the same reads, with the same counts, as filtering decoded alignments
+     */
+    @Test
+    public void testPreDecodeFilter() throws Exception {
+
+        Set<String> readGroups = new HashSet<String>();
+        SAMFileReader reader = openReader();
+        for (SAMRecord record : reader) {
+            String rg = (String) record.getAttribute("RG");
+            if (rg.startsWith("SRR")) {
+                readGroups.add(rg);
+            }
+        }
+        reader.close();
+        assertTrue(readGroups.size() > 0);
+
+        AlignmentFilter preFilter = new AlignmentFilter(false, true, true, 30, new ReadGroupFilter(readGroups));
+        List<String> expected = new ArrayList<String>();
+        reader = openReader();
+        CloseableIterator<Alignment> iter = new WrappedIterator(reader.iterator(), preFilter);
+        while (iter.hasNext()) {
+            expected.add(iter.next().getReadName());
+        }
+        iter.close();
+        reader.close();
+
+        AlignmentFilter postFilter = new AlignmentFilter(false, true, true, 30, new ReadGroupFilter(readGroups));
+        List<String> actual = new ArrayList<String>();
+        reader = openReader();
+        iter = new WrappedIterator(reader.iterator());
+        while (iter.hasNext()) {
+            Alignment alignment = iter.next();
+            if (!postFilter.filterAlignment(alignment)) {
+                actual.add(alignment.getReadName());
+            }
+        }
+        iter.close();
+        reader.close();
+
+        assertEquals(expected, actual);
+        assertTrue(preFilter.getFilteredCount() >= readGroups.size());
+        assertEquals(postFilter.getFilteredCount(), preFilter.getFilteredCount());
+        assertEquals(postFilter.getValueString(), preFilter.getValueString());
+        assertTrue(preFilter.getValueString().contains("Read group"));
+    }
+
+    private static SAMFileReader openReader() {
+        SAMFileReader reader = new SAMFileReader(new File(SAM_FILE));
+        reader.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+        return reader;
+    }
+
+    @Test
+    public void testNoFilter() throws Exception {
+        AlignmentFilter filter = new AlignmentFilter(true, false, false, 0, null);
+        SAMFileReader reader = openReader();
+        int count = 0;
+        for (SAMRecord record : reader) {
+            assertFalse(filter.filterRecord(record));
+            count++;
+        }
+        reader.close();
+        assertTrue(count > 0);
+        assertEquals(0, filter.getFilteredCount());
+        assertNull(filter.getValueString());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.sam.reader;
+
+import net.sf.samtools.BAMIndexer;
+import net.sf.samtools.SAMFileReader;
+import net.sf.samtools.SAMRecord;
+import net.sf.samtools.SAMSequenceRecord;
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.util.TestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BAMReadAheadIteratorTest {
+
+    private static File bamFile;
+    private static File indexFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        File outDir = new File(TestUtils.TMP_OUTPUT_DIR);
+        outDir.mkdirs();
+        bamFile = new File(outDir, "BAMReadAheadIteratorTest.bam");
+        indexFile = new File(outDir, "BAMReadAheadIteratorTest.bam.bai");
+        copy(new File(TestUtils.DATA_DIR + "samtools/index_test.bam"), bamFile);
+
+        SAMFileReader reader = new SAMFileReader(bamFile);
+        reader.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+        reader.enableFileSource(true);
+        BAMIndexer indexer = new BAMIndexer(indexFile, reader.getFileHeader());
+        for (SAMRecord record : reader) {
+            indexer.processAlignment(record);
+        }
+        indexer.finish();
+        reader.close();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        bamFile.delete();
+        indexFile.delete();
+    }
+
+    /**
+     * Queries return the same records, in the same order, as picard queries
+     */
+    @Test
+    public void testQuery() throws Exception {
+
+        SAMFileReader reader = new SAMFileReader(bamFile, indexFile);
+        reader.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+        try {
+            int queries = 0;
+            int records = 0;
+            for (SAMSequenceRecord sequence : reader.getFileHeader().getSequenceDictionary().getSequences()) {
+                int length = sequence.getSequenceLength();
+                int step = Math.max(1, length / 7);
+                for (int start = 1; start < length; start += step) {
+                    for (boolean contained : new boolean[]{false, true}) {
+                        int end = Math.min(length, start + step / 2);
+                        List<String> expected = getRecords(reader.query(sequence.getSequenceName(), start, end, contained));
+                        List<String> actual = getRecords(query(reader, sequence, start, end, contained));
+                        assertEquals(sequence.getSequenceName() + ":" + start + "-" + end, expected, actual);
+                        queries++;
+                        records += expected.size();
+                    }
+                }
+
+                // Whole sequence
+                List<String> expected = getRecords(reader.query(sequence.getSequenceName(), 0, 0, false));
+                List<String> actual = getRecords(query(reader, sequence, 0, 0, false));
+                assertEquals(sequence.getSequenceName(), expected, actual);
+                records += expected.size();
+            }
+            assertTrue(queries > 0);
+            assertTrue(records > 0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads through BAMFileReader match the picard reader
+     */
+    @Test
+    public void testBAMFileReader() throws Exception {
+
+        SAMFileReader reader = new SAMFileReader(bamFile, indexFile);
+        reader.setValidationStringency(SAMFileReader.ValidationStringency.SILENT);
+        SAMSequenceRecord sequence = reader.getFileHeader().getSequence(0);
+        List<String> expected = getRecords(reader.query(sequence.getSequenceName(), 1, sequence.getSequenceLength(), false));
+        reader.close();
+
+        BAMFileReader bamReader = new BAMFileReader(bamFile);
+        CloseableIterator<org.broad.igv.sam.Alignment> iter =
+                bamReader.query(sequence.getSequenceName(), 0, sequence.getSequenceLength(), false);
+        int count = 0;
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        iter.close();
+        bamReader.close();
+        assertEquals(expected.size(), count);
+    }
+
+    private static CloseableIterator<SAMRecord> query(SAMFileReader reader, SAMSequenceRecord sequence,
+                                                      int start, int end, boolean contained) throws IOException {
+        int referenceIndex = sequence.getSequenceIndex();
+        long[] chunks = BAMReadAheadIterator.getChunks(reader.getIndex(), referenceIndex, start,
+                end <= 0 ? -1 : end);
+        assertNotNull(chunks);
+        return new BAMReadAheadIterator(bamFile, reader.getFileHeader(), chunks, referenceIndex, start, end, contained);
+    }
+
+    private static List<String> getRecords(CloseableIterator<SAMRecord> iter) {
+        List<String> records = new ArrayList<String>();
+        while (iter.hasNext()) {
+            SAMRecord record = iter.next();
+            records.add(record.getReadName() + ":" + record.getFlags() + ":" + record.getAlignmentStart());
+        }
+        iter.close();
+        return records;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        OutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
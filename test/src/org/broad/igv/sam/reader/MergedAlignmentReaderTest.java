@@ -22,10 +22,13 @@ import org.junit.Test;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: jacob
@@ -89,4 +92,35 @@ public class MergedAlignmentReaderTest extends AbstractHeadlessTest {
         }
     }
 
+    @Test
+    public void testReadAheadPreservesOrder() throws Exception {
+        String path = TestUtils.DATA_DIR + "bam/chr1_chr2.hg18.bam";
+
+        List<String> expected = readAll(path, false, -1);
+        List<String> actual = readAll(path, true, -1);
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+
+        // Closing before the end must stop the workers without error
+        List<String> partial = readAll(path, true, 10);
+        assertEquals(expected.subList(0, 10), partial);
+    }
+
+    private List<String> readAll(String path, boolean readAhead, int max) throws Exception {
+        List<AlignmentReader> readers = new ArrayList<AlignmentReader>();
+        for (int i = 0; i < 3; i++) {
+            readers.add(AlignmentReaderFactory.getReader(path, false));
+        }
+        MergedAlignmentReader mergedReader = new MergedAlignmentReader(readers, readAhead);
+        CloseableIterator<Alignment> iter = mergedReader.iterator();
+        List<String> records = new ArrayList<String>();
+        while (iter.hasNext() && (max < 0 || records.size() < max)) {
+            Alignment a = iter.next();
+            records.add(a.getChr() + ":" + a.getAlignmentStart() + ":" + a.getReadName());
+        }
+        iter.close();
+        mergedReader.close();
+        return records;
+    }
+
 }
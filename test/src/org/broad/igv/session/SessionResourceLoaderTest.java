@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.session;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.track.Track;
+import org.broad.igv.util.ResourceLocator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionResourceLoaderTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testGetHost() {
+        assertEquals("data.broadinstitute.org",
+                SessionResourceLoader.getHost(new ResourceLocator("http://data.broadinstitute.org/igvdata/test.bam")));
+        assertEquals(SessionResourceLoader.LOCAL, SessionResourceLoader.getHost(new ResourceLocator("/local/test.bam")));
+    }
+
+    @Test
+    public void testLoadAll() throws Exception {
+
+        final int maxPerHost = 2;
+        final String remoteHost = "host1.org";
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<String> loadOrder = Collections.synchronizedList(new ArrayList<String>());
+        final boolean[] leaderRanAlone = {true};
+
+        List<ResourceLocator> locators = new ArrayList<ResourceLocator>();
+        for (int i = 0; i < 10; i++) {
+            locators.add(new ResourceLocator("http://" + remoteHost + "/file" + i + ".bed"));
+        }
+        locators.add(new ResourceLocator("/local/error.bed"));
+
+        SessionResourceLoader loader = new SessionResourceLoader(8, maxPerHost);
+        List<SessionResourceLoader.Result> results = loader.loadAll(locators, new SessionResourceLoader.TrackSource() {
+            public List<Track> load(ResourceLocator locator) throws Exception {
+                if (locator.getPath().contains("error")) {
+                    throw new IOException("Expected error");
+                }
+                int n = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), n));
+                }
+                boolean isLeader = loadOrder.isEmpty();
+                loadOrder.add(locator.getPath());
+                Thread.sleep(50);
+                if (isLeader && running.get() > 1) {
+                    leaderRanAlone[0] = false;
+                }
+                running.decrementAndGet();
+                return new ArrayList<Track>();
+            }
+        });
+
+        // Results are in input order
+        assertEquals(locators.size(), results.size());
+        for (int i = 0; i < locators.size(); i++) {
+            assertSame(locators.get(i), results.get(i).getLocator());
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertNull(results.get(i).getException());
+            assertNotNull(results.get(i).getTracks());
+        }
+        assertNotNull(results.get(10).getException());
+
+        assertTrue(leaderRanAlone[0]);
+        assertTrue(maxRunning.get() <= maxPerHost);
+        assertEquals(locators.get(0).getPath(), loadOrder.get(0));
+    }
+}
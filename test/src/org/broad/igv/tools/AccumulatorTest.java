@@ -219,4 +219,44 @@ public class AccumulatorTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Percentiles estimated with a quantile sketch
+     */
+    @Test
+    public void testSketch() {
+
+        ListAccumulator accum = new ListAccumulator(wfs, true);
+        for (int i = 0; i < numberOfPoints; i++) {
+            accum.add(1, (float) Math.random());
+        }
+        assertTrue(accum.sketch.getRetainedCount() < 2000);
+        accum.finish();
+
+        for (WindowFunction wf : wfs) {
+            double v = accum.getValue(wf);
+            assertEquals(wf.getValue(), values.get(wf), v, 1.0e-2);
+        }
+    }
+
+    /**
+     * Small bins are computed exactly, identical to the list implementation
+     */
+    @Test
+    public void testSketchSmall() {
+
+        ListAccumulator sketchAccum = new ListAccumulator(wfs, true);
+        ListAccumulator listAccum = new ListAccumulator(wfs);
+        for (int i = 0; i < 50; i++) {
+            float v = (float) Math.random();
+            sketchAccum.add(1, v);
+            listAccum.add(1, v);
+        }
+        sketchAccum.finish();
+        listAccum.finish();
+
+        for (WindowFunction wf : wfs) {
+            assertEquals(wf.getValue(), listAccum.getValue(wf), sketchAccum.getValue(wf), 1.0e-6);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools;
+
+import net.sf.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.InMemorySequence;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.AlignmentBlock;
+import org.broad.igv.sam.AlignmentSummary;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentSummaryCounterTest extends AbstractHeadlessTest {
+
+    private static final String ALIGNMENT_FILE = TestUtils.DATA_DIR + "sam/cufflinks_test_data.sam";
+    private static final String CHR = "test_chromosome";
+    private static final int LENGTH = 1000;
+
+    /**
+     * Compare the windowed summary to per base values computed directly from the alignments
+     */
+    @Test
+    public void testCounts() throws Exception {
+
+        int windowSize = 10;
+        float[] coverage = new float[LENGTH];
+        float[] junctions = new float[LENGTH / windowSize];
+        int nAlignments = 0;
+
+        AlignmentReader reader = AlignmentReaderFactory.getReader(ALIGNMENT_FILE, false);
+        CloseableIterator<Alignment> iter = reader.iterator();
+        while (iter.hasNext()) {
+            Alignment a = iter.next();
+            if (!a.isMapped()) continue;
+            nAlignments++;
+            AlignmentBlock[] blocks = a.getAlignmentBlocks();
+            for (int b = 0; b < blocks.length; b++) {
+                AlignmentBlock block = blocks[b];
+                byte[] bases = block.getBases();
+                for (int i = 0; i < bases.length; i++) {
+                    int pos = block.getStart() + i;
+                    coverage[pos]++;
+                }
+                if (b > 0) {
+                    junctions[blocks[b - 1].getEnd() / windowSize]++;
+                    junctions[block.getStart() / windowSize]++;
+                }
+            }
+        }
+        iter.close();
+        reader.close();
+
+        CoverageCounterTest.TestDataConsumer dc = new CoverageCounterTest.TestDataConsumer();
+        AlignmentSummaryCounter counter = new AlignmentSummaryCounter(ALIGNMENT_FILE, dc, windowSize, 0);
+        counter.parse();
+
+        assertEquals(String.valueOf(nAlignments), dc.attributes.get("totalCount"));
+
+        float[][] expected = new float[AlignmentSummaryCounter.NUM_TRACKS][LENGTH / windowSize];
+        for (int pos = 0; pos < LENGTH; pos++) {
+            expected[AlignmentSummaryCounter.COVERAGE][pos / windowSize] += coverage[pos] / windowSize;
+        }
+        expected[AlignmentSummaryCounter.JUNCTIONS] = junctions;
+
+        float[][] actual = new float[AlignmentSummaryCounter.NUM_TRACKS][LENGTH / windowSize];
+        int lastStart = -1;
+        for (CoverageCounterTest.TestData data : dc.testDatas) {
+            assertEquals(CHR, data.chr);
+            assertTrue("windows must be in order", data.start > lastStart);
+            lastStart = data.start;
+            for (int t = 0; t < AlignmentSummaryCounter.NUM_TRACKS; t++) {
+                actual[t][data.start / windowSize] = data.data[t];
+            }
+        }
+
+        for (int t = 0; t < AlignmentSummaryCounter.NUM_TRACKS; t++) {
+            for (int w = 0; w < LENGTH / windowSize; w++) {
+                assertEquals("track " + t + " window " + w, expected[t][w], actual[t][w], 1.0e-4);
+            }
+        }
+        float nJunctions = 0;
+        for (int w = 0; w < LENGTH / windowSize; w++) {
+            nJunctions += junctions[w];
+        }
+        assertTrue(nJunctions > 0);
+    }
+
+    @Test
+    public void testBuildSummary() throws Exception {
+
+        File source = new File(ALIGNMENT_FILE);
+        File summaryFile = new File(TestUtils.TMP_OUTPUT_DIR, source.getName() + AlignmentSummary.EXTENSION);
+        summaryFile.delete();
+        Genome genome = createGenome();
+
+        AlignmentSummary.build(ALIGNMENT_FILE, summaryFile, genome, 25, 3, 0);
+        assertTrue(summaryFile.exists());
+        assertFalse(new File(summaryFile.getPath() + ".tmp.tdf").exists());
+
+        TDFReader reader = TDFReader.getReader(summaryFile.getAbsolutePath());
+        assertEquals(String.valueOf(source.length()), reader.getGroup("/").getAttribute("sourceLength"));
+        assertEquals("2", reader.getGroup("/").getAttribute("summaryVersion"));
+        assertEquals(AlignmentSummaryCounter.NUM_TRACKS, reader.getTrackNames().length);
+
+        TDFDataSource coverage = new TDFDataSource(reader, AlignmentSummaryCounter.COVERAGE, "Coverage", genome);
+        List<LocusScore> scores = coverage.getSummaryScoresForRange(CHR, 0, LENGTH, 10);
+        float total = 0;
+        for (LocusScore score : scores) {
+            assertTrue(score.getStart() >= 50 && score.getEnd() <= LENGTH);
+            total += score.getScore();
+        }
+        assertTrue(total > 0);
+        reader.close();
+    }
+
+    private static Genome createGenome() {
+        byte[] seq = new byte[LENGTH];
+        Arrays.fill(seq, (byte) 'A');
+        return new Genome("summaryTest", "summaryTest", new InMemorySequence(CHR, seq), true);
+    }
+}
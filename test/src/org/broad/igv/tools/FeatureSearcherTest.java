@@ -12,6 +12,7 @@
 package org.broad.igv.tools;
 
 import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.LocusScore;
 import org.broad.igv.track.FeatureSource;
 import org.broad.igv.track.TribbleFeatureSource;
 import org.broad.igv.util.LongRunningTask;
@@ -20,6 +21,8 @@ import org.broad.tribble.Feature;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 
 import static junit.framework.Assert.*;
 
@@ -114,8 +117,9 @@ public class FeatureSearcherTest extends AbstractHeadlessTest {
         Feature feat = searcher.getResult().next();
 
         assertEquals("chr1", feat.getChr());
-        assertEquals(100000, feat.getStart());
-        assertEquals(100010, feat.getEnd());
+        // The closest feature before the search origin
+        assertEquals(100020, feat.getStart());
+        assertEquals(100040, feat.getEnd());
     }
 
     public void tstSearchDifferentChromo(boolean sepThread) throws Exception{
@@ -140,12 +144,34 @@ public class FeatureSearcherTest extends AbstractHeadlessTest {
 
     /**
      * Test that stopping actually stops the search.
-     * We start searching a window which will never complete
+     * We start searching a slow, unindexed source over a region with no features
      * @throws Exception
      */
     @Test
     public void testCancel() throws Exception{
-        FeatureSearcher searcher = new FeatureSearcher(getTestBedSource(), genome, "chr3", 0);
+        final FeatureSource<? extends Feature> bedSource = getTestBedSource();
+        FeatureSource<Feature> slowSource = new FeatureSource<Feature>() {
+            public Iterator<Feature> getFeatures(String chr, int start, int end) throws IOException {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    //ignore
+                }
+                return (Iterator<Feature>) bedSource.getFeatures(chr, start, end);
+            }
+
+            public List<LocusScore> getCoverageScores(String chr, int start, int end, int zoom) {
+                return null;
+            }
+
+            public int getFeatureWindowSize() {
+                return bedSource.getFeatureWindowSize();
+            }
+
+            public void setFeatureWindowSize(int size) {
+            }
+        };
+        FeatureSearcher searcher = new FeatureSearcher(slowSource, genome, "chr3", 0);
         searcher.setSearchIncrement(100);
 
         // Be careful monkeying around here.
@@ -15,6 +15,7 @@ import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.data.Dataset;
 import org.broad.igv.data.expression.ExpressionFileParser;
 import org.broad.igv.feature.FeatureDB;
+import org.broad.igv.feature.GeneModelCache;
 import org.broad.igv.feature.genome.FastaIndex;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.sam.Alignment;
@@ -116,6 +117,24 @@ public class IGVToolsTest extends AbstractHeadlessTest {
         assertNotNull(index.getIndexEntry("NC_000913_bb"));
     }
 
+    /**
+     * The gene model cache must be written next to the GFF file, where GFFFeatureSource looks for it, not to
+     * the index output directory
+     */
+    @Test
+    public void testIndexGFFGeneModelCache() throws Exception {
+        TestUtils.clearOutputDir();
+        File inputDir = new File(TestUtils.TMP_OUTPUT_DIR, "gff");
+        inputDir.mkdirs();
+        File inputFile = new File(inputDir, "canonical.eden.sorted.gff3");
+        FileUtils.copyFile(new File(TestUtils.DATA_DIR + "gff/canonical.eden.sorted.gff3"), inputFile);
+
+        igvTools.doIndex(inputFile.getAbsolutePath(), TestUtils.TMP_OUTPUT_DIR, IgvTools.LINEAR_INDEX, IgvTools.LINEAR_BIN_SIZE);
+
+        assertTrue(GeneModelCache.isValid(inputFile.getAbsolutePath()));
+        assertFalse(new File(TestUtils.TMP_OUTPUT_DIR, inputFile.getName() + GeneModelCache.EXTENSION).exists());
+    }
+
     @Test
     public void testLinearIndex() throws IOException {
 
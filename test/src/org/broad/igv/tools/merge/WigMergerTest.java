@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.tools.merge;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.tools.IgvTools;
+import org.broad.igv.tools.WigSummer;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WigMergerTest extends AbstractHeadlessTest {
+
+    /**
+     * Write a small variableStep wig and a bedGraph of different resolution
+     */
+    private List<IntervalSource> createSources() throws IOException {
+
+        File wig = new File(TestUtils.TMP_OUTPUT_DIR, "merge1.wig");
+        wig.deleteOnExit();
+        PrintWriter pw = new PrintWriter(wig);
+        pw.println("track type=wiggle_0 name=merge1");
+        pw.println("variableStep chrom=chr1 span=10");
+        pw.println("1\t1.0");        // [0, 10)
+        pw.println("11\t2.0");       // [10, 20)
+        pw.println("variableStep chrom=chr2 span=10");
+        pw.println("101\t5.0");      // [100, 110)
+        pw.close();
+
+        File bedGraph = new File(TestUtils.TMP_OUTPUT_DIR, "merge2.bedgraph");
+        bedGraph.deleteOnExit();
+        pw = new PrintWriter(bedGraph);
+        pw.println("chr1\t5\t15\t10");
+        pw.println("chr1\t30\t40\t20");
+        pw.close();
+
+        List<IntervalSource> sources = new ArrayList<IntervalSource>();
+        sources.add(WigMerger.openSource(wig.getAbsolutePath()));
+        sources.add(WigMerger.openSource(bedGraph.getAbsolutePath()));
+        return sources;
+    }
+
+    private List<float[]> merge(WigMerger.Function function) throws IOException {
+
+        File out = new File(TestUtils.TMP_OUTPUT_DIR, "merged_" + function + ".bedgraph");
+        out.deleteOnExit();
+        BedGraphWriter writer = new BedGraphWriter(out);
+        writer.setTrackParameters(TrackType.OTHER, null, new String[]{"merged"});
+        new WigMerger(createSources(), function, null, 2).merge(writer);
+
+        // Read the result back as (chr index, start, end, value)
+        WigIntervalSource result = new WigIntervalSource(out.getAbsolutePath());
+        List<float[]> records = new ArrayList<float[]>();
+        int chrIdx = 1;
+        for (String chr : Arrays.asList("chr1", "chr2")) {
+            IntervalSource.IntervalIterator iter = result.iterator(chr);
+            while (iter.next()) {
+                records.add(new float[]{chrIdx, iter.getStart(), iter.getEnd(), iter.getValue()});
+            }
+            iter.close();
+            chrIdx++;
+        }
+        return records;
+    }
+
+    private void assertRecords(float[][] expected, List<float[]> records) {
+        assertEquals(expected.length, records.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals("Record " + i, expected[i], records.get(i), 1.0e-6f);
+        }
+    }
+
+    @Test
+    public void testSum() throws Exception {
+        float[][] expected = {
+                {1, 0, 5, 1},
+                {1, 5, 10, 11},
+                {1, 10, 15, 12},
+                {1, 15, 20, 2},
+                {1, 30, 40, 20},
+                {2, 100, 110, 5}};
+        assertRecords(expected, merge(WigMerger.Function.SUM));
+    }
+
+    @Test
+    public void testMeanMinMax() throws Exception {
+        float[][] mean = {
+                {1, 0, 5, 1},
+                {1, 5, 10, 5.5f},
+                {1, 10, 15, 6},
+                {1, 15, 20, 2},
+                {1, 30, 40, 20},
+                {2, 100, 110, 5}};
+        assertRecords(mean, merge(WigMerger.Function.MEAN));
+
+        // Adjacent segments with equal values are coalesced
+        float[][] min = {
+                {1, 0, 10, 1},
+                {1, 10, 20, 2},
+                {1, 30, 40, 20},
+                {2, 100, 110, 5}};
+        assertRecords(min, merge(WigMerger.Function.MIN));
+
+        float[][] max = {
+                {1, 0, 5, 1},
+                {1, 5, 15, 10},
+                {1, 15, 20, 2},
+                {1, 30, 40, 20},
+                {2, 100, 110, 5}};
+        assertRecords(max, merge(WigMerger.Function.MAX));
+    }
+
+    /**
+     * Sum a fixedStep file with itself, write to TDF, and read the raw data back
+     */
+    @Test
+    public void testSumToTDF() throws Exception {
+
+        String input = TestUtils.DATA_DIR + "wig/test_fixedStep.wig";
+        File out = new File(TestUtils.TMP_OUTPUT_DIR, "sumwigs.tdf");
+        out.deleteOnExit();
+
+        (new IgvTools()).sumWigs(input + "," + input, out.getAbsolutePath(), TestUtils.defaultGenome, "sum", 2,
+                3, Arrays.asList(WindowFunction.mean), null);
+
+        assertScaled(new WigIntervalSource(input).iterator("chr19"),
+                new TDFIntervalSource(out.getAbsolutePath()).iterator("chr19"), 2);
+    }
+
+    @Test
+    public void testWigSummer() throws Exception {
+        String input = TestUtils.DATA_DIR + "wig/test_fixedStep.wig";
+        File out = new File(TestUtils.TMP_OUTPUT_DIR, "summed.bedgraph");
+        out.deleteOnExit();
+        WigSummer.sumWigs(Arrays.asList(new File(input), new File(input), new File(input)), out);
+
+        assertScaled(new WigIntervalSource(input).iterator("chr19"),
+                new WigIntervalSource(out.getAbsolutePath()).iterator("chr19"), 3);
+    }
+
+    /**
+     * Assert every input interval is covered by an output interval with the scaled value.  Runs of equal values
+     * are coalesced in the output, so one output interval may cover several input intervals.
+     */
+    /**
+     * An error merging one chromosome is reported while other chromosomes are being merged, or are queued behind
+     * them.  The merge must not wait for chromosomes which will never run.
+     */
+    @Test(timeout = 20000)
+    public void testChromosomeError() throws Exception {
+
+        final List<String> chrs = Arrays.asList("chr1", "chr2", "chr3", "chr4", "chr5", "chr6");
+        IntervalSource source = new IntervalSource() {
+            public Collection<String> getChromosomeNames() {
+                return chrs;
+            }
+
+            public IntervalIterator iterator(String chr) throws IOException {
+                if (chr.equals("chr1")) {
+                    throw new IOException("Error reading " + chr);
+                }
+                // Other chromosomes occupy the merge threads until interrupted
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted reading " + chr);
+                }
+                throw new IOException("Not interrupted reading " + chr);
+            }
+        };
+
+        File out = new File(TestUtils.TMP_OUTPUT_DIR, "merged_error.bedgraph");
+        out.deleteOnExit();
+        BedGraphWriter writer = new BedGraphWriter(out);
+        writer.setTrackParameters(TrackType.OTHER, null, new String[]{"merged"});
+        try {
+            new WigMerger(Arrays.asList(source), WigMerger.Function.SUM, null, 2).merge(writer);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("Error reading chr1", e.getMessage());
+        }
+    }
+
+    private void assertScaled(IntervalSource.IntervalIterator expected, IntervalSource.IntervalIterator actual,
+                              float factor) throws IOException {
+        int n = 0;
+        boolean hasActual = actual.next();
+        while (expected.next()) {
+            while (hasActual && actual.getEnd() <= expected.getStart()) {
+                hasActual = actual.next();
+            }
+            assertTrue(hasActual);
+            assertTrue(actual.getStart() <= expected.getStart());
+            assertEquals(factor * expected.getValue(), actual.getValue(), 1.0e-4);
+            n++;
+        }
+        assertTrue(n > 0);
+        expected.close();
+        actual.close();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeatureDensitySummaryTest extends AbstractHeadlessTest {
+
+    private static final String BED_FILE = TestUtils.DATA_DIR + "bed/Unigene.sample.sorted.bed";
+
+    /**
+     * Every window of a chromosome is written in order, with the number of features overlapping it
+     */
+    @Test
+    public void testCount() throws Exception {
+
+        int windowSize = 1000;
+        List<int[]> bedFeatures = readBed(BED_FILE);
+        final List<int[]> windows = new ArrayList<int[]>();
+        DataConsumer consumer = new TestDataConsumer() {
+            public void addData(String chr, int start, int end, float[] data, String name) {
+                assertEquals("chr2", chr);
+                windows.add(new int[]{start, end, (int) data[0]});
+            }
+        };
+
+        assertEquals(bedFeatures.size(), FeatureDensitySummary.count(BED_FILE, genome, consumer, windowSize));
+
+        int chrLength = genome.getChromosome("chr2").getLength();
+        assertEquals((chrLength + windowSize - 1) / windowSize, windows.size());
+        int nonEmpty = 0;
+        for (int w = 0; w < windows.size(); w++) {
+            int start = w * windowSize;
+            int end = Math.min(start + windowSize, chrLength);
+            assertEquals(start, windows.get(w)[0]);
+            assertEquals(end, windows.get(w)[1]);
+
+            int expected = 0;
+            for (int[] f : bedFeatures) {
+                if (f[0] < end && f[1] > start) expected++;
+            }
+            assertEquals("window " + w, expected, windows.get(w)[2]);
+            if (expected > 0) nonEmpty++;
+        }
+        assertTrue(nonEmpty > 0);
+    }
+
+    /**
+     * The density file is current for its source, and provides coverage for chromosome and whole genome views
+     */
+    @Test
+    public void testBuild() throws Exception {
+
+        File outputFile = new File(TestUtils.TMP_OUTPUT_DIR, "Unigene.sample.sorted.bed" + FeatureDensitySummary.EXTENSION);
+        outputFile.getParentFile().mkdirs();
+        outputFile.delete();
+        try {
+            FeatureDensitySummary.build(BED_FILE, outputFile, genome, FeatureDensitySummary.DEFAULT_WINDOW_SIZE,
+                    FeatureDensitySummary.DEFAULT_MAX_ZOOM);
+            assertTrue(FeatureDensitySummary.isCurrent(outputFile, new File(BED_FILE)));
+            assertFalse(FeatureDensitySummary.isCurrent(outputFile, new File(TestUtils.DATA_DIR + "bed/Unigene.sample.bed")));
+
+            TribbleFeatureSource source = new TribbleFeatureSource(BED_FILE, genome);
+            assertNull(source.coverageSource);
+            source.setCoverageSource(new TDFDataSource(TDFReader.getReader(outputFile.getAbsolutePath()), 0,
+                    "density", genome));
+
+            int chrLength = genome.getChromosome("chr2").getLength();
+            assertTrue(getMax(source.getCoverageScores("chr2", 0, chrLength, 0)) > 0);
+            assertTrue(getMax(source.getCoverageScores(Globals.CHR_ALL, 0, (int) (genome.getNominalLength() / 1000), 0)) > 0);
+        } finally {
+            outputFile.delete();
+        }
+    }
+
+    private static float getMax(List<LocusScore> scores) {
+        assertNotNull(scores);
+        float max = 0;
+        for (LocusScore score : scores) {
+            max = Math.max(max, score.getScore());
+        }
+        return max;
+    }
+
+    private static List<int[]> readBed(String path) throws Exception {
+        List<int[]> features = new ArrayList<int[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(path));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#") || line.startsWith("track") || line.trim().length() == 0) continue;
+                String[] tokens = line.split("\t");
+                features.add(new int[]{Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2])});
+            }
+        } finally {
+            reader.close();
+        }
+        return features;
+    }
+
+    private static abstract class TestDataConsumer implements DataConsumer {
+
+        public void setType(String type) {
+        }
+
+        public void parsingComplete() {
+        }
+
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames) {
+        }
+
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames, boolean b) {
+        }
+
+        public void setSortTolerance(int tolerance) {
+        }
+
+        public void setAttribute(String key, String value) {
+        }
+    }
+}
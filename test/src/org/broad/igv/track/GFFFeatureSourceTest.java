@@ -15,7 +15,9 @@ import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.feature.BasicFeature;
 import org.broad.igv.feature.Exon;
 import org.broad.igv.feature.GFFParser;
+import org.broad.igv.feature.GeneModelCache;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.tribble.CodecFactory;
 import org.broad.igv.feature.tribble.GFFCodec;
 import org.broad.igv.tools.IgvTools;
 import org.broad.igv.util.ParsingUtils;
@@ -422,6 +424,144 @@ chr1	.	CDS	7000	7600	.	+	1	ID=cds00004;Parent=mRNA00003;Name=edenprotein.4
 
     }
 
+    private List<Feature> readRawFeatures(String filepath) throws Exception {
+        BufferedReader reader = null;
+        try {
+            reader = ParsingUtils.openBufferedReader(filepath);
+            GFFCodec codec = (GFFCodec) CodecFactory.getCodec(filepath, genome);
+            List<Feature> features = new ArrayList<Feature>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) continue;
+                Feature f = codec.decode(line);
+                if (f != null) features.add(f);
+            }
+            return features;
+        } finally {
+            if (reader != null) reader.close();
+        }
+    }
+
+    /**
+     * Alternative coding sequences produce features with the same identifier, distinguish them by coding starts
+     */
+    private String getKey(BasicFeature bf) {
+        String key = bf.getIdentifier();
+        if (bf.hasExons()) {
+            for (Exon exon : bf.getExons()) {
+                key += ":" + exon.getCdStart();
+            }
+        }
+        return key;
+    }
+
+    private void assertFeaturesEqual(List<Feature> expected, List<Feature> actual) {
+        assertEquals(expected.size(), actual.size());
+        Map<String, BasicFeature> expectedByKey = new HashMap<String, BasicFeature>();
+        for (Feature f : expected) {
+            BasicFeature bf = (BasicFeature) f;
+            expectedByKey.put(getKey(bf), bf);
+        }
+        String lastChr = null;
+        int lastStart = -1;
+        for (Feature f : actual) {
+            if (f.getChr().equals(lastChr)) {
+                assertTrue("Features out of order", f.getStart() >= lastStart);
+            }
+            lastChr = f.getChr();
+            lastStart = f.getStart();
+            BasicFeature bf = (BasicFeature) f;
+            BasicFeature exp = expectedByKey.get(getKey(bf));
+            assertNotNull(bf.getIdentifier(), exp);
+            assertEquals(exp.getChr(), bf.getChr());
+            assertEquals(exp.getStart(), bf.getStart());
+            assertEquals(exp.getEnd(), bf.getEnd());
+            assertEquals(exp.getThickEnd(), bf.getThickEnd());
+            assertEquals(exp.getName(), bf.getName());
+            assertEquals(exp.getType(), bf.getType());
+            assertEquals(exp.getExonCount(), bf.getExonCount());
+            for (int i = 0; i < bf.getExonCount(); i++) {
+                Exon expExon = exp.getExons().get(i);
+                Exon exon = bf.getExons().get(i);
+                assertEquals(expExon.getStart(), exon.getStart());
+                assertEquals(expExon.getEnd(), exon.getEnd());
+                assertEquals(expExon.getCdStart(), exon.getCdStart());
+                assertEquals(expExon.getCdEnd(), exon.getCdEnd());
+                assertEquals(expExon.isNonCoding(), exon.isNonCoding());
+                assertEquals(expExon.getNumber(), exon.getNumber());
+                assertEquals(expExon.getReadingFrame(), exon.getReadingFrame());
+                assertEquals(expExon.getName(), exon.getName());
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingCombiner() throws Exception {
+        String[] files = {"gff/gene.sorted.gff3", "gff/canonical.eden.sorted.gff3", "gff/aliased.sorted.gff",
+                "gtf/transcript_id.gtf", "gtf/no_transcript.gtf"};
+        for (String file : files) {
+            List<Feature> rawFeatures = readRawFeatures(TestUtils.DATA_DIR + file);
+            List<Feature> expected = new GFFFeatureSource.GFFCombiner().addFeatures(rawFeatures.iterator()).combineFeatures();
+
+            // Combining modifies the raw features, so read them again
+            rawFeatures = readRawFeatures(TestUtils.DATA_DIR + file);
+            List<Feature> actual = new ArrayList<Feature>();
+            Iterator<Feature> iter = new GFFFeatureSource.StreamingGFFCombiner(rawFeatures.iterator());
+            while (iter.hasNext()) {
+                actual.add(iter.next());
+            }
+            assertFeaturesEqual(expected, actual);
+        }
+    }
+
+    /**
+     * GTF transcripts have no parent record, their exons must still be combined into a single feature
+     */
+    @Test
+    public void testStreamingCombinerNoTranscript() throws Exception {
+        List<Feature> rawFeatures = readRawFeatures(TestUtils.DATA_DIR + "gtf/no_transcript.gtf");
+        List<Feature> actual = new ArrayList<Feature>();
+        Iterator<Feature> iter = new GFFFeatureSource.StreamingGFFCombiner(rawFeatures.iterator());
+        while (iter.hasNext()) {
+            actual.add(iter.next());
+        }
+
+        assertEquals(2, actual.size());
+        BasicFeature t1 = (BasicFeature) actual.get(0);
+        assertEquals("T1", t1.getIdentifier());
+        assertEquals(3, t1.getExonCount());
+        assertEquals(999, t1.getStart());
+        assertEquals(2100, t1.getEnd());
+        assertEquals("T2", ((BasicFeature) actual.get(1)).getIdentifier());
+    }
+
+    @Test
+    public void testGeneModelCache() throws Exception {
+        String filepath = TestUtils.DATA_DIR + "gff/canonical.eden.sorted.gff3";
+        String cachePath = TestUtils.TMP_OUTPUT_DIR + "canonical.eden.sorted.gff3" + GeneModelCache.EXTENSION;
+        GeneModelCache.write(filepath, cachePath);
+
+        List<Feature> rawFeatures = readRawFeatures(filepath);
+        List<Feature> expected = new GFFFeatureSource.GFFCombiner().addFeatures(rawFeatures.iterator()).combineFeatures();
+
+        GeneModelCache cache = new GeneModelCache(cachePath, genome);
+        List<Feature> actual = cache.getFeatures("chr1", 0, Integer.MAX_VALUE);
+        assertFeaturesEqual(expected, actual);
+
+        boolean foundGene = false;
+        for (Feature f : actual) {
+            BasicFeature bf = (BasicFeature) f;
+            if ("gene00001".equals(bf.getIdentifier())) {
+                assertEquals("EDEN", bf.getAttributes().get("Name"));
+                foundGene = true;
+            }
+        }
+        assertTrue(foundGene);
+
+        assertEquals(0, cache.getFeatures("chr1", 0, 100).size());
+        assertEquals(0, cache.getFeatures("chr2", 0, Integer.MAX_VALUE).size());
+    }
+
     private void assertWholeExonCoding(Exon exon) {
         assertEquals(exon.getCdStart(), exon.getStart());
         assertEquals(exon.getCdEnd(), exon.getEnd());
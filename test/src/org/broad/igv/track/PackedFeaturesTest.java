@@ -12,6 +12,7 @@
 package org.broad.igv.track;
 
 import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.tribble.CodecFactory;
 import org.broad.igv.util.TestUtils;
 import org.broad.tribble.AbstractFeatureReader;
@@ -19,11 +20,9 @@ import org.broad.tribble.Feature;
 import org.broad.tribble.FeatureCodec;
 import org.junit.Test;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 /**
  * @author jrobinso
@@ -52,6 +51,130 @@ public class PackedFeaturesTest extends AbstractHeadlessTest {
     }
 
 
+    /**
+     * Extending an interval adds each new feature once, keeps the rows of existing features, and packs without overlap
+     */
+    @Test
+    public void testExtend() throws Exception {
+
+        List<TestFeature> features = randomFeatures(2000, 100000, 500, 1);
+
+        PackedFeatures<TestFeature> pf = new PackedFeatures("chr1", 40000, 60000, query(features, 40000, 60000), "");
+        Map<TestFeature, Integer> rowIndexes = getRowIndexes(pf);
+
+        // Extend right, then left, then both
+        int[][] intervals = {{50000, 70000}, {30000, 55000}, {20000, 80000}};
+        for (int[] interval : intervals) {
+            Iterator left = interval[0] < pf.getStart() ? query(features, interval[0], pf.getStart()) : null;
+            Iterator right = interval[1] > pf.getEnd() ? query(features, pf.getEnd(), interval[1]) : null;
+            assertTrue(pf.canExtend("chr1", interval[0], interval[1]));
+            PackedFeatures<TestFeature> extended = pf.extend(interval[0], interval[1], left, right);
+
+            int start = Math.min(interval[0], pf.getStart());
+            int end = Math.max(interval[1], pf.getEnd());
+            assertEquals(start, extended.getStart());
+            assertEquals(end, extended.getEnd());
+
+            List<TestFeature> expected = new ArrayList<TestFeature>();
+            Iterator<TestFeature> iter = query(features, start, end);
+            while (iter.hasNext()) expected.add(iter.next());
+            List<TestFeature> extendedFeatures = extended.getFeatures();
+            assertEquals(expected.size(), extendedFeatures.size());
+            for (int i = 1; i < extendedFeatures.size(); i++) {
+                assertTrue(extendedFeatures.get(i).getStart() >= extendedFeatures.get(i - 1).getStart());
+            }
+
+            Map<TestFeature, Integer> extendedRowIndexes = getRowIndexes(extended);
+            assertEquals(expected.size(), extendedRowIndexes.size());
+            for (TestFeature f : expected) {
+                assertTrue(extendedRowIndexes.containsKey(f));
+            }
+            for (Map.Entry<TestFeature, Integer> entry : rowIndexes.entrySet()) {
+                assertEquals(entry.getValue(), extendedRowIndexes.get(entry.getKey()));
+            }
+
+            for (PackedFeatures.FeatureRow row : extended.getRows()) {
+                List<TestFeature> rowFeatures = row.getFeatures();
+                for (int i = 1; i < rowFeatures.size(); i++) {
+                    assertTrue(rowFeatures.get(i).getStart() >=
+                            rowFeatures.get(i - 1).getEnd() + FeatureTrack.MINIMUM_FEATURE_SPACING);
+                }
+            }
+
+            pf = extended;
+            rowIndexes = extendedRowIndexes;
+        }
+
+        assertFalse(pf.canExtend("chr2", 20000, 80000));
+        assertFalse(pf.canExtend("chr1", 90000, 95000));
+    }
+
+    /**
+     * Indexed lookups find the same features as a scan
+     */
+    @Test
+    public void testGetFeaturesAt() throws Exception {
+
+        List<TestFeature> features = randomFeatures(1000, 50000, 2000, 2);
+        PackedFeatures<TestFeature> pf = new PackedFeatures("chr1", 0, 60000, features.iterator(), "");
+
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            double position = random.nextInt(55000);
+            double minWidth = random.nextInt(20);
+            assertEquals(FeatureUtils.getAllFeaturesAt(position, pf.getMaxFeatureLength(), minWidth, features),
+                    pf.getFeaturesAt(position, minWidth, -1));
+
+            int rowIdx = random.nextInt(pf.getRowCount());
+            List<TestFeature> rowFeatures = pf.getRows().get(rowIdx).getFeatures();
+            assertEquals(FeatureUtils.getAllFeaturesAt(position, pf.getMaxFeatureLength(), minWidth, rowFeatures),
+                    pf.getFeaturesAt(position, minWidth, rowIdx));
+        }
+    }
+
+    private static List<TestFeature> randomFeatures(int count, int range, int maxLength, long seed) {
+        Random random = new Random(seed);
+        List<TestFeature> features = new ArrayList<TestFeature>();
+        for (int i = 0; i < count; i++) {
+            int start = random.nextInt(range);
+            features.add(new TestFeature("chr1", start, start + 1 + random.nextInt(maxLength)));
+        }
+        // Include features which touch the query boundaries
+        features.add(new TestFeature("chr1", 59000, 60000));
+        features.add(new TestFeature("chr1", 60000, 61000));
+        features.add(new TestFeature("chr1", 39000, 40000));
+        Collections.sort(features, new Comparator<TestFeature>() {
+            public int compare(TestFeature o1, TestFeature o2) {
+                return o1.getStart() - o2.getStart();
+            }
+        });
+        return features;
+    }
+
+    /**
+     * Features overlapping start-end, including those which only touch it, as a feature source may return
+     */
+    private static Iterator<TestFeature> query(List<TestFeature> features, int start, int end) {
+        List<TestFeature> result = new ArrayList<TestFeature>();
+        for (TestFeature f : features) {
+            if (f.getStart() <= end && f.getEnd() >= start) {
+                result.add(f);
+            }
+        }
+        return result.iterator();
+    }
+
+    private static Map<TestFeature, Integer> getRowIndexes(PackedFeatures<TestFeature> pf) {
+        Map<TestFeature, Integer> rowIndexes = new IdentityHashMap<TestFeature, Integer>();
+        List<PackedFeatures<TestFeature>.FeatureRow> rows = pf.getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            for (TestFeature f : rows.get(i).getFeatures()) {
+                assertNull(rowIndexes.put(f, i));
+            }
+        }
+        return rowIndexes;
+    }
+
     private void assertPackedFeaturesEqual(PackedFeatures<? extends Feature> expected, PackedFeatures<? extends Feature> actual) {
 
         TestUtils.assertFeatureListsEqual(expected.getFeatures().iterator(), actual.getFeatures().iterator());
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.feature.RegionOfInterest;
+import org.broad.igv.ui.util.ProgressMonitor;
+import org.junit.Test;
+
+import java.awt.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RegionScoreSorterTest {
+
+    private static final RegionOfInterest REGION = new RegionOfInterest("chr1", 100, 200, "");
+
+    /**
+     * Tracks are sorted in descending order of score, and each score is computed exactly once
+     */
+    @Test
+    public void testSort() throws Exception {
+
+        Random random = new Random(1);
+        List<Track> tracks = new ArrayList<Track>();
+        List<ScoreTrack> scoreTracks = new ArrayList<ScoreTrack>();
+        for (int i = 0; i < 1000; i++) {
+            float score = i % 100 == 0 ? Float.NaN : random.nextInt(50);
+            ScoreTrack t = new ScoreTrack("t" + i, score);
+            tracks.add(t);
+            scoreTracks.add(t);
+        }
+        tracks.add(null);
+
+        final AtomicInteger progress = new AtomicInteger();
+        ProgressMonitor monitor = new ProgressMonitor();
+        monitor.addPropertyChangeListener(new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent evt) {
+                progress.set((Integer) evt.getNewValue());
+            }
+        });
+
+        RegionScoreSorter sorter = new RegionScoreSorter(REGION, RegionScoreType.SCORE, null);
+        sorter.setMonitor(monitor);
+        assertTrue(sorter.computeScores(tracks));
+        assertEquals(100, progress.get());
+        sorter.sort(tracks);
+
+        assertNull(tracks.get(tracks.size() - 1));
+        for (int i = 1; i < tracks.size() - 1; i++) {
+            float s1 = ((ScoreTrack) tracks.get(i - 1)).score;
+            float s2 = ((ScoreTrack) tracks.get(i)).score;
+            assertTrue(s1 + " " + s2, Float.compare(s1, s2) >= 0);
+        }
+        for (ScoreTrack t : scoreTracks) {
+            assertEquals(t.getName(), 1, t.count.get());
+        }
+    }
+
+    /**
+     * Groups are sorted by the maximum score of their visible tracks
+     */
+    @Test
+    public void testSortGroups() throws Exception {
+
+        List<TrackGroup> groups = new ArrayList<TrackGroup>();
+        TrackGroup g1 = new TrackGroup("g1");
+        g1.add(new ScoreTrack("a", 1));
+        ScoreTrack hidden = new ScoreTrack("b", 10);
+        hidden.setVisible(false);
+        g1.add(hidden);
+        TrackGroup g2 = new TrackGroup("g2");
+        g2.add(new ScoreTrack("c", 5));
+        groups.add(g1);
+        groups.add(g2);
+
+        RegionScoreSorter sorter = new RegionScoreSorter(REGION, RegionScoreType.SCORE, null);
+        sorter.sortGroups(groups);
+        assertSame(g2, groups.get(0));
+        assertEquals(g1.getRegionScore("chr1", 100, 200, 0, RegionScoreType.SCORE, null),
+                sorter.getGroupScore(g1), 0);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        List<Track> tracks = new ArrayList<Track>();
+        for (int i = 0; i < 100; i++) {
+            tracks.add(new ScoreTrack("t" + i, i));
+        }
+        RegionScoreSorter sorter = new RegionScoreSorter(REGION, RegionScoreType.SCORE, null);
+        sorter.cancel();
+        assertFalse(sorter.computeScores(tracks));
+        for (Track t : tracks) {
+            assertEquals(0, ((ScoreTrack) t).count.get());
+        }
+    }
+
+    static class ScoreTrack extends AbstractTrack {
+
+        float score;
+        AtomicInteger count = new AtomicInteger();
+
+        ScoreTrack(String id, float score) {
+            super(id);
+            this.score = score;
+        }
+
+        @Override
+        public float getRegionScore(String chr, int start, int end, int zoom, RegionScoreType type, String frameName) {
+            count.incrementAndGet();
+            return score;
+        }
+
+        public void render(RenderContext context, Rectangle rect) {
+        }
+    }
+}
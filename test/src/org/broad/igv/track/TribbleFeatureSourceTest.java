@@ -6,6 +6,11 @@ import org.junit.Assume;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.broad.igv.util.TestUtils;
+import org.broad.tribble.Feature;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 
 /**
@@ -32,6 +37,57 @@ public class TribbleFeatureSourceTest {
     }
 
 
+    /**
+     * Compare the index-backed next / previous feature search with the exponential window search and with a scan of
+     * all features.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNextPreviousFeature() throws Exception {
+        String file = org.broad.igv.util.TestUtils.DATA_DIR + "bed/Unigene.sample.sorted.bed";
+        TribbleFeatureSource featureSource = new TribbleFeatureSource(file, null, false);
+
+        List<Feature> allFeatures = new ArrayList<Feature>();
+        Iterator<Feature> iter = featureSource.getFeatures("chr2", 0, Integer.MAX_VALUE);
+        while (iter.hasNext()) {
+            allFeatures.add(iter.next());
+        }
+        Assert.assertTrue(allFeatures.size() > 10);
+
+        for (Feature f : allFeatures) {
+            for (int position = f.getStart() - 1; position <= f.getStart() + 1; position++) {
+                Feature expectedNext = null;
+                Feature expectedPrev = null;
+                for (Feature g : allFeatures) {
+                    if (expectedNext == null && g.getStart() > position) expectedNext = g;
+                    if (g.getStart() < position) expectedPrev = g;
+                }
+
+                assertSameStart(expectedNext, featureSource.nextFeature("chr2", position));
+                assertSameStart(expectedNext, FeatureTrackUtils.searchNextFeature(featureSource, null, "chr2", position));
+                assertSameStart(expectedPrev, featureSource.previousFeature("chr2", position));
+            }
+        }
+
+        Assert.assertNull(featureSource.nextFeature("chr2", allFeatures.get(allFeatures.size() - 1).getStart()));
+        Assert.assertNull(featureSource.nextFeature("chrNotInFile", 0));
+
+        // Disposing closes the search reader, a later search opens a new one
+        featureSource.dispose();
+        assertSameStart(allFeatures.get(1), featureSource.nextFeature("chr2", allFeatures.get(0).getStart()));
+        featureSource.dispose();
+    }
+
+    private static void assertSameStart(Feature expected, Feature actual) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+        } else {
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected.getStart(), actual.getStart());
+        }
+    }
+
 
     @Ignore   // Ignored, getting Cannot run program "lsof" error on test server. The test is redundant to testCloseFileHandles()
     @Test
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2007-2012 The Broad Institute, Inc.
+ * SOFTWARE COPYRIGHT NOTICE
+ * This software and its documentation are the copyright of the Broad Institute, Inc. All rights are reserved.
+ *
+ * This software is supplied without any warranty or guaranteed support whatsoever. The Broad Institute is not responsible for its use, misuse, or functionality.
+ *
+ * This software is licensed under the terms of the GNU Lesser General Public License (LGPL),
+ * Version 2.1 which is available at http://www.opensource.org/licenses/lgpl-2.1.php.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.Globals;
+import org.broad.tribble.readers.AsciiLineReader;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import util.LongRunning;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AsciiTokenizerTest {
+
+    private static AsciiTokenizer tokenizer(String text, int bufferSize) {
+        return new AsciiTokenizer(new ByteArrayInputStream(text.getBytes()), 0, bufferSize);
+    }
+
+    @Test
+    public void testLines() throws Exception {
+
+        String text = "chr1\t10  20\t1.5\r\n\nvariableStep chrom=chr2\nlast line";
+        // A small buffer exercises refills and growth
+        AsciiTokenizer tokenizer = tokenizer(text, 16);
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals(4, tokenizer.getFieldCount());
+        assertEquals("chr1", tokenizer.getString(0));
+        assertTrue(tokenizer.fieldEquals(0, "chr1"));
+        assertFalse(tokenizer.fieldEquals(0, "chr11"));
+        assertEquals(10, tokenizer.getInt(1));
+        assertEquals(20, tokenizer.getInt(2));
+        assertEquals(1.5f, tokenizer.getFloat(3), 0);
+        assertEquals("chr1\t10  20\t1.5", tokenizer.getLine());
+        assertEquals(0, tokenizer.getLineOffset());
+
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.isBlank());
+
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.startsWith("variableStep"));
+        assertEquals(text.indexOf("variableStep"), tokenizer.getLineOffset());
+        assertEquals("chrom=chr2", tokenizer.getString(1));
+
+        assertTrue(tokenizer.nextLine());
+        assertEquals("last line", tokenizer.getLine());
+        assertEquals(4, tokenizer.getLineNumber());
+        assertFalse(tokenizer.nextLine());
+    }
+
+    @Test
+    public void testTabDelimited() throws Exception {
+        AsciiTokenizer tokenizer = tokenizer("a\t\tb c\t", 100);
+        tokenizer.setTabDelimited(true);
+        assertTrue(tokenizer.nextLine());
+        assertEquals(4, tokenizer.getFieldCount());
+        assertEquals("", tokenizer.getString(1));
+        assertEquals("b c", tokenizer.getString(2));
+    }
+
+    @Test
+    public void testTabTrimsSpaces() throws Exception {
+        AsciiTokenizer tokenizer = tokenizer(" chr1 \t 100\tname with spaces \n", 100);
+        tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
+        assertTrue(tokenizer.nextLine());
+        assertEquals(3, tokenizer.getFieldCount());
+        assertTrue(tokenizer.fieldEquals(0, "chr1"));
+        assertEquals(100, tokenizer.getInt(1));
+        assertEquals("name with spaces", tokenizer.getString(2));
+    }
+
+    /**
+     * TAB_OR_SPACES must split like Globals.singleTabMultiSpacePattern, used by the parsers it replaced
+     */
+    @Test
+    public void testTabOrSpaces() throws Exception {
+        String[] lines = {"chr1\t100\t200\t1.5", "chr1   100  200 1.5", "a\t\tb", "  a b  ", "single"};
+        StringBuffer buf = new StringBuffer();
+        for (String line : lines) {
+            buf.append(line).append('\n');
+        }
+        AsciiTokenizer tokenizer = tokenizer(buf.toString(), 16);
+        tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB_OR_SPACES);
+        for (String line : lines) {
+            assertTrue(tokenizer.nextLine());
+            String[] expected = Globals.singleTabMultiSpacePattern.split(line.trim());
+            assertEquals(line, expected.length, tokenizer.getFieldCount());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(line, expected[i].trim(), tokenizer.getString(i));
+            }
+        }
+        assertFalse(tokenizer.nextLine());
+
+        // Unlike the pattern, spaces next to a tab are not an extra separator
+        tokenizer = tokenizer("a \t b", 16);
+        tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB_OR_SPACES);
+        assertTrue(tokenizer.nextLine());
+        assertEquals(2, tokenizer.getFieldCount());
+        assertEquals("b", tokenizer.getString(1));
+    }
+
+    @Test
+    public void testOffsetsAndCase() throws Exception {
+        String text = "#header\r\nCHR\tSTART\nchr1\t5";
+        AsciiTokenizer tokenizer = tokenizer(text, 8);
+        tokenizer.setTabDelimited(true);
+        assertTrue(tokenizer.nextLine());
+        assertEquals(text.indexOf("CHR"), tokenizer.getNextLineOffset());
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.fieldEqualsIgnoreCase(0, "chr"));
+        assertTrue(tokenizer.fieldEqualsIgnoreCase(1, "Start"));
+        assertFalse(tokenizer.fieldEqualsIgnoreCase(1, "Star"));
+        assertEquals(text.indexOf("chr1"), tokenizer.getNextLineOffset());
+        assertTrue(tokenizer.nextLine());
+        assertEquals(text.length(), tokenizer.getNextLineOffset());
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+
+        String[] values = {"0", "-0.5", "+3", "1e3", "2.5E-3", ".25", "7.", "123456789012345678", "NaN", "-Infinity",
+                "1.17549435E-38", "3.4028235e38", "0.000001", "-2147483648"};
+        StringBuffer buf = new StringBuffer();
+        for (String v : values) {
+            buf.append(v).append(' ');
+        }
+        AsciiTokenizer tokenizer = tokenizer(buf.toString(), 100);
+        assertTrue(tokenizer.nextLine());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], Float.parseFloat(values[i]), tokenizer.getFloat(i), 0);
+            assertEquals(values[i], Double.parseDouble(values[i]), tokenizer.getDouble(i), 0);
+        }
+        assertEquals(-2147483648, tokenizer.getInt(values.length - 1));
+
+        // Random values round trip exactly
+        Random random = new Random(1);
+        buf = new StringBuffer();
+        float[] floats = new float[1000];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = (float) ((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10));
+            buf.append(floats[i]).append('\t');
+        }
+        tokenizer = tokenizer(buf.toString(), 100);
+        assertTrue(tokenizer.nextLine());
+        for (int i = 0; i < floats.length; i++) {
+            assertEquals(floats[i], tokenizer.getFloat(i), 0);
+        }
+    }
+
+    /**
+     * Fields past the end of a short line must not compare against the offsets of a previous, longer line
+     */
+    @Test
+    public void testMissingField() throws Exception {
+        AsciiTokenizer tokenizer = tokenizer("chr1 100 +\nchr1 200\n", 100);
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.fieldEquals(2, "+"));
+        assertTrue(tokenizer.nextLine());
+        try {
+            tokenizer.fieldEquals(2, "+");
+            fail("Expected ArrayIndexOutOfBoundsException");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Expected
+        }
+        try {
+            tokenizer.fieldEqualsIgnoreCase(2, "+");
+            fail("Expected ArrayIndexOutOfBoundsException");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testBadInt() throws Exception {
+        AsciiTokenizer tokenizer = tokenizer("12x", 100);
+        tokenizer.nextLine();
+        tokenizer.getInt(0);
+    }
+
+    /**
+     * Throughput of the tokenizer against the split-and-parse idiom it replaced, on a synthetic bedGraph
+     */
+    @Category(LongRunning.class)
+    @Test
+    public void benchmarkTokenizer() throws Exception {
+
+        int nLines = 1000000;
+        Random random = new Random(1);
+        StringBuffer buf = new StringBuffer();
+        for (int i = 0; i < nLines; i++) {
+            buf.append("chr1\t").append(i * 25).append('\t').append(i * 25 + 25).append('\t')
+                    .append(random.nextFloat() * 100).append('\n');
+        }
+        byte[] bytes = buf.toString().getBytes();
+
+        for (int trial = 0; trial < 3; trial++) {
+            long t0 = System.nanoTime();
+            AsciiLineReader reader = new AsciiLineReader(new ByteArrayInputStream(bytes));
+            String line;
+            double sum1 = 0;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = Globals.tabPattern.split(line, -1);
+                sum1 += Integer.parseInt(tokens[1]) + Integer.parseInt(tokens[2]) + Float.parseFloat(tokens[3]);
+            }
+            long splitTime = System.nanoTime() - t0;
+
+            t0 = System.nanoTime();
+            AsciiTokenizer tokenizer = new AsciiTokenizer(new ByteArrayInputStream(bytes));
+            tokenizer.setDelimiter(AsciiTokenizer.Delimiter.TAB);
+            double sum2 = 0;
+            while (tokenizer.nextLine()) {
+                sum2 += tokenizer.getInt(1) + tokenizer.getInt(2) + tokenizer.getFloat(3);
+            }
+            long tokenizerTime = System.nanoTime() - t0;
+
+            assertEquals(sum1, sum2, Math.abs(sum1) * 1.0e-9);
+            System.out.println(String.format("%d lines: split %2.2e sec, tokenizer %2.2e sec",
+                    nLines, splitTime / 1e9, tokenizerTime / 1e9));
+        }
+    }
+}
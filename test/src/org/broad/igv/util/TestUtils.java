@@ -17,6 +17,7 @@ import net.sf.samtools.util.ftp.FTPClient;
 import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
 import org.broad.igv.PreferenceManager;
+import org.broad.igv.feature.GeneModelCache;
 import org.broad.igv.feature.NamedFeature;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeListItem;
@@ -129,6 +130,10 @@ public class TestUtils {
         String indexPath = (new IgvTools()).doIndex(file, null, indexType, binSize);
         File indexFile = new File(indexPath);
         indexFile.deleteOnExit();
+        File cacheFile = new File(GeneModelCache.getCachePath(file));
+        if (cacheFile.exists()) {
+            cacheFile.deleteOnExit();
+        }
     }
 
     /**
@@ -21,9 +21,13 @@ import org.broad.tribble.Feature;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: jacob
@@ -51,4 +55,41 @@ public class VariantTrackTest extends AbstractHeadlessTest {
         }
     }
 
+    @Test
+    public void testGenotypeRasterCache() throws Exception {
+        String filePath = TestUtils.DATA_DIR + "vcf/multi_allele_freqs.vcf";
+        TestUtils.createIndex(filePath);
+
+        VariantTrack variantTrack = (VariantTrack) (new TrackLoader()).load(new ResourceLocator(filePath), genome).get(0);
+        List<Feature> featuresList = variantTrack.getFeatures("chr1", 542939 - 10, 543702 + 10);
+        List<Variant> variants = new ArrayList<Variant>();
+        for (Feature f : featuresList) {
+            variants.add((Variant) f);
+        }
+
+        List<String> samples = new ArrayList<String>(variantTrack.getAllSamples());
+        VariantRenderer renderer = new VariantRenderer(variantTrack);
+
+        for (VariantTrack.ColorMode mode : new VariantTrack.ColorMode[]{VariantTrack.ColorMode.GENOTYPE, VariantTrack.ColorMode.ALLELE}) {
+            GenotypeRasterCache cache = GenotypeRasterCache.build(featuresList, variants, samples, renderer, mode, false);
+            assertTrue(cache.isValid(featuresList, mode, false));
+
+            // Reverse the render order, columns should follow the samples
+            List<String> renderOrder = new ArrayList<String>(samples);
+            Collections.reverse(renderOrder);
+            int[] columns = cache.getColumns(renderOrder);
+
+            for (Variant variant : variants) {
+                int site = cache.getSiteIndex(variant);
+                assertTrue(site >= 0);
+                for (int row = 0; row < renderOrder.size(); row++) {
+                    Color[] expected = renderer.getGenotypeBandColors(variant.getGenotype(renderOrder.get(row)), mode, false);
+                    for (int half = 0; half < cache.getStride(); half++) {
+                        assertEquals(expected[half], cache.getColor(cache.getColorIndex(site, columns[row], half)));
+                    }
+                }
+            }
+        }
+    }
+
 }